@@ -0,0 +1,104 @@
+/**
+ * Copyright 2015 Derk-Jan Karrenbeld
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.xpbytes.gson.hal;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link HalBatchReader} on a batch of small resources per level of parallelism. The
+ * score should fall close to linearly with the parallelism, up to the number of cores; {@code
+ * sequential} is the single-threaded loop the batch reader replaces.
+ */
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+@State( Scope.Benchmark )
+public class HalBatchBenchmark {
+
+    private static final int DOCUMENTS = 20000;
+
+    @Param( { "1", "2", "4", "8" } )
+    public int parallelism;
+
+    private Gson gson;
+    private String batch;
+    private ForkJoinPool pool;
+
+    @Setup public void setup() {
+        gson = new GsonBuilder()
+            .registerTypeAdapterFactory( new HalTypeAdapterFactory() )
+            .create();
+        pool = new ForkJoinPool( parallelism );
+
+        String document = HalBenchmarkDocuments.Shape.SMALL.document();
+        StringBuilder out = new StringBuilder( DOCUMENTS * ( document.length() + 1 ) );
+        for ( int i = 0; i < DOCUMENTS; i++ )
+            out.append( document ).append( '\n' );
+        batch = out.toString();
+    }
+
+    @TearDown public void teardown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public HalBatchReport batch( final Blackhole blackhole ) {
+        return new HalBatchReader<>( gson, HalBenchmarkDocuments.SmallResource.class )
+            .setExecutor( pool )
+            .setMaxInFlight( 2 * parallelism )
+            .read( new StringReader( batch ), new HalBatchReader.Callback<Object>() {
+                @Override public void onResource( long line, Object resource ) {
+                    blackhole.consume( resource );
+                }
+
+                @Override public void onError( long line, String json, RuntimeException error ) {
+                    throw error;
+                }
+            } );
+    }
+
+    @Benchmark
+    public void sequential( Blackhole blackhole ) throws IOException {
+        BufferedReader lines = new BufferedReader( new StringReader( batch ) );
+        String line;
+        while ( ( line = lines.readLine() ) != null )
+            blackhole.consume( gson.fromJson( line, HalBenchmarkDocuments.SmallResource.class ) );
+    }
+}
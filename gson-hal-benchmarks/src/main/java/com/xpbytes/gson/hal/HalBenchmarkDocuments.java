@@ -0,0 +1,251 @@
+/**
+ * Copyright 2015 Derk-Jan Karrenbeld
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.xpbytes.gson.hal;
+
+import com.google.gson.annotations.SerializedName;
+
+import java.net.URI;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * The documents and resource types of the read and write benchmarks. Every HAL resource has a
+ * plain counterpart that binds the same document with a stock {@link com.google.gson.Gson}, with
+ * the reserved roots mapped as regular nested objects. The difference between the two is the cost
+ * of {@link HalTypeAdapterFactory}.
+ */
+final class HalBenchmarkDocuments {
+
+    static final int NESTED_DEPTH = 16;
+    static final int LINK_COUNT = 32;
+    static final int ITEM_COUNT = 1000;
+
+    private HalBenchmarkDocuments() {}
+
+    /**
+     * The shapes of the benchmarked documents
+     */
+    enum Shape {
+        /** A single resource with a few fields, links and one embed, like the sample resource */
+        SMALL( SmallResource.class, PlainSmallResource.class ) {
+            @Override String document() {
+                return "{ \"id\": \"sample\", \"name\": \"Sample\", \"count\": 3, \"tags\": [ \"a\", \"b\" ], " +
+                    "\"_links\": { \"self\": { \"href\": \"/api/sample\" }, \"next\": { \"href\": \"/api/sample/next\" }, " +
+                    "\"last\": { \"href\": \"/api/sample{?page}\", \"templated\": true, \"title\": \"Last\" } }, " +
+                    "\"_embedded\": { \"owner\": { \"id\": 324, \"name\": \"Owner\", " +
+                    "\"_links\": { \"self\": { \"href\": \"/api/owners/324\" } } } } }";
+            }
+        },
+
+        /** A chain of resources, each embedded in the previous one */
+        NESTED( NestedResource.class, PlainNestedResource.class ) {
+            @Override String document() {
+                StringBuilder out = new StringBuilder();
+                for ( int depth = 0; depth < NESTED_DEPTH; depth++ ) {
+                    out.append( String.format( Locale.US,
+                        "{ \"depth\": %d, \"name\": \"Node %d\", \"_links\": { \"self\": { \"href\": \"/api/nodes/%d\" } }",
+                        depth, depth, depth ) );
+                    if ( depth + 1 < NESTED_DEPTH )
+                        out.append( ", \"_embedded\": { \"child\": " );
+                }
+                for ( int depth = 0; depth < NESTED_DEPTH; depth++ )
+                    out.append( depth == 0 ? " }" : " } }" );
+                return out.toString();
+            }
+        },
+
+        /** A single resource with many links */
+        WIDE_LINKS( WideLinksResource.class, PlainWideLinksResource.class ) {
+            @Override String document() {
+                StringBuilder out = new StringBuilder( "{ \"id\": \"wide\", \"_links\": { " );
+                for ( int link = 0; link < LINK_COUNT; link++ ) {
+                    out.append( String.format( Locale.US,
+                        "%s\"link%02d\": { \"href\": \"/api/wide/links/%d\", \"title\": \"Link %d\" }",
+                        link == 0 ? "" : ", ", link, link, link ) );
+                }
+                return out.append( " } }" ).toString();
+            }
+        },
+
+        /** A page with a large embedded collection */
+        LARGE_COLLECTION( PageResource.class, PlainPageResource.class ) {
+            @Override String document() {
+                StringBuilder out = new StringBuilder( String.format( Locale.US,
+                    "{ \"total\": %d, \"_links\": { \"self\": { \"href\": \"/api/items\" } }, \"_embedded\": { \"items\": [ ",
+                    ITEM_COUNT ) );
+                for ( int item = 0; item < ITEM_COUNT; item++ ) {
+                    out.append( String.format( Locale.US,
+                        "%s{ \"id\": %d, \"name\": \"Item %d\", \"price\": %d.95, " +
+                            "\"_links\": { \"self\": { \"href\": \"/api/items/%d\" } } }",
+                        item == 0 ? "" : ", ", item, item, item % 100, item ) );
+                }
+                return out.append( " ] } }" ).toString();
+            }
+        };
+
+        final Class<?> halType;
+        final Class<?> plainType;
+
+        Shape( Class<?> halType, Class<?> plainType ) {
+            this.halType = halType;
+            this.plainType = plainType;
+        }
+
+        /**
+         * @return the JSON document of the shape
+         */
+        abstract String document();
+    }
+
+    @HalResource
+    static class SmallResource {
+        String id;
+        String name;
+        int count;
+        List<String> tags;
+
+        @HalLink String self;
+        @HalLink URI next;
+        @HalLink( optional = true ) HalLinkObject last;
+        @HalEmbed OwnerResource owner;
+    }
+
+    @HalResource
+    static class OwnerResource {
+        int id;
+        String name;
+
+        @HalLink String self;
+    }
+
+    @HalResource
+    static class NestedResource {
+        int depth;
+        String name;
+
+        @HalLink String self;
+        @HalEmbed( optional = true ) NestedResource child;
+    }
+
+    @HalResource
+    static class WideLinksResource {
+        String id;
+
+        @HalLink( optional = true ) HalLinkObject link00, link01, link02, link03, link04, link05, link06, link07;
+        @HalLink( optional = true ) HalLinkObject link08, link09, link10, link11, link12, link13, link14, link15;
+        @HalLink( optional = true ) HalLinkObject link16, link17, link18, link19, link20, link21, link22, link23;
+        @HalLink( optional = true ) HalLinkObject link24, link25, link26, link27, link28, link29, link30, link31;
+    }
+
+    @HalResource
+    static class PageResource {
+        int total;
+
+        @HalLink String self;
+        @HalEmbed List<ItemResource> items;
+    }
+
+    @HalResource
+    static class ItemResource {
+        int id;
+        String name;
+        double price;
+
+        @HalLink String self;
+    }
+
+    static class PlainLink {
+        String href;
+        Boolean templated;
+        String title;
+    }
+
+    static class PlainSelfLinks {
+        PlainLink self;
+    }
+
+    static class PlainSmallResource {
+        String id;
+        String name;
+        int count;
+        List<String> tags;
+
+        @SerializedName( "_links" ) PlainSmallLinks links;
+        @SerializedName( "_embedded" ) PlainSmallEmbeds embedded;
+    }
+
+    static class PlainSmallLinks {
+        PlainLink self;
+        PlainLink next;
+        PlainLink last;
+    }
+
+    static class PlainSmallEmbeds {
+        PlainOwnerResource owner;
+    }
+
+    static class PlainOwnerResource {
+        int id;
+        String name;
+
+        @SerializedName( "_links" ) PlainSelfLinks links;
+    }
+
+    static class PlainNestedResource {
+        int depth;
+        String name;
+
+        @SerializedName( "_links" ) PlainSelfLinks links;
+        @SerializedName( "_embedded" ) PlainNestedEmbeds embedded;
+    }
+
+    static class PlainNestedEmbeds {
+        PlainNestedResource child;
+    }
+
+    static class PlainWideLinksResource {
+        String id;
+
+        @SerializedName( "_links" ) PlainWideLinks links;
+    }
+
+    static class PlainWideLinks {
+        PlainLink link00, link01, link02, link03, link04, link05, link06, link07;
+        PlainLink link08, link09, link10, link11, link12, link13, link14, link15;
+        PlainLink link16, link17, link18, link19, link20, link21, link22, link23;
+        PlainLink link24, link25, link26, link27, link28, link29, link30, link31;
+    }
+
+    static class PlainPageResource {
+        int total;
+
+        @SerializedName( "_links" ) PlainSelfLinks links;
+        @SerializedName( "_embedded" ) PlainPageEmbeds embedded;
+    }
+
+    static class PlainPageEmbeds {
+        List<PlainItemResource> items;
+    }
+
+    static class PlainItemResource {
+        int id;
+        String name;
+        double price;
+
+        @SerializedName( "_links" ) PlainSelfLinks links;
+    }
+}
@@ -0,0 +1,99 @@
+/**
+ * Copyright 2015 Derk-Jan Karrenbeld
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.xpbytes.gson.hal;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.charset.Charset;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link HalContentCache} on the large collection pushed through a {@link HalPushParser}.
+ * {@code unchanged} reads a page that was read before, {@code changed} hashes every item but finds
+ * none of them, which is the overhead of hashing over {@code uncached}.
+ */
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+@State( Scope.Benchmark )
+public class HalContentCacheBenchmark {
+
+    private Gson gson;
+    private byte[] document;
+    private HalContentCache cache;
+
+    @Setup public void setup() {
+        gson = new GsonBuilder()
+            .registerTypeAdapterFactory( new HalTypeAdapterFactory() )
+            .create();
+        document = HalBenchmarkDocuments.Shape.LARGE_COLLECTION.document().getBytes( Charset.forName( "UTF-8" ) );
+        cache = new HalContentCache( 2 * HalBenchmarkDocuments.ITEM_COUNT );
+        parse( cache, null );
+    }
+
+    @Benchmark
+    public void uncached( Blackhole blackhole ) {
+        parse( null, blackhole );
+    }
+
+    @Benchmark
+    public void unchanged( Blackhole blackhole ) {
+        parse( cache, blackhole );
+    }
+
+    @Benchmark
+    public void changed( Blackhole blackhole ) {
+        parse( new HalContentCache( 2 * HalBenchmarkDocuments.ITEM_COUNT ), blackhole );
+    }
+
+    private void parse( HalContentCache contentCache, final Blackhole blackhole ) {
+        HalPushParser.open( gson, HalBenchmarkDocuments.PageResource.class, "items", HalBenchmarkDocuments.ItemResource.class,
+            new HalPushParser.Listener<HalBenchmarkDocuments.PageResource, HalBenchmarkDocuments.ItemResource>() {
+                @Override public void onItem( HalBenchmarkDocuments.ItemResource item ) {
+                    if ( blackhole != null )
+                        blackhole.consume( item );
+                }
+
+                @Override public void onComplete( HalBenchmarkDocuments.PageResource resource ) {
+                    if ( blackhole != null )
+                        blackhole.consume( resource );
+                }
+
+                @Override public void onError( JsonParseException error ) {
+                    throw error;
+                }
+            } )
+            .setContentCache( contentCache )
+            .feed( document, 0, document.length );
+    }
+}
@@ -0,0 +1,80 @@
+/**
+ * Copyright 2015 Derk-Jan Karrenbeld
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.xpbytes.gson.hal;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the latency of reading a single large page, with its embedded items bound in parallel
+ * per level of parallelism. A parallelism of 0 reads the items sequentially, which is the
+ * default.
+ */
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+@State( Scope.Benchmark )
+public class HalParallelEmbedsBenchmark {
+
+    @Param( { "0", "1", "2", "4", "8" } )
+    public int parallelism;
+
+    private Gson gson;
+    private String document;
+    private ForkJoinPool pool;
+
+    @Setup public void setup() {
+        HalTypeAdapterFactory factory = new HalTypeAdapterFactory();
+        if ( parallelism > 0 ) {
+            pool = new ForkJoinPool( parallelism );
+            factory.setParallelEmbeds( pool, HalParallelEmbeds.CHUNK_SIZE );
+        }
+
+        gson = new GsonBuilder()
+            .registerTypeAdapterFactory( factory )
+            .create();
+        document = HalBenchmarkDocuments.Shape.LARGE_COLLECTION.document();
+    }
+
+    @TearDown public void teardown() {
+        if ( pool != null )
+            pool.shutdown();
+    }
+
+    @Benchmark
+    public Object read() {
+        return gson.fromJson( document, HalBenchmarkDocuments.PageResource.class );
+    }
+}
@@ -0,0 +1,112 @@
+/**
+ * Copyright 2015 Derk-Jan Karrenbeld
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.xpbytes.gson.hal;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures reading and writing HAL documents through {@link HalTypeAdapterFactory} against a
+ * plain {@link Gson} baseline that binds the same documents, see {@link HalBenchmarkDocuments}.
+ * Each {@code hal} score should be compared with the {@code plain} score of the same shape; run
+ * with {@code -prof gc} to compare the allocation per operation as well.
+ *
+ * The {@code AllCores} variants read from every available core at once, so contention on shared
+ * caches shows up as a score that falls short of the single thread score times the number of
+ * cores.
+ */
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+@State( Scope.Benchmark )
+public class HalReadWriteBenchmark {
+
+    @Param( { "SMALL", "NESTED", "WIDE_LINKS", "LARGE_COLLECTION" } )
+    public String shapeName;
+
+    private HalBenchmarkDocuments.Shape shape;
+    private Gson hal;
+    private Gson plain;
+    private String document;
+    private Object halResource;
+    private Object plainResource;
+
+    @Setup public void setup() {
+        hal = new GsonBuilder()
+            .registerTypeAdapterFactory( new HalTypeAdapterFactory() )
+            .create();
+        plain = new Gson();
+
+        shape = HalBenchmarkDocuments.Shape.valueOf( shapeName );
+        document = shape.document();
+        halResource = hal.fromJson( document, shape.halType );
+        plainResource = plain.fromJson( document, shape.plainType );
+    }
+
+    @Benchmark
+    @Threads( 1 )
+    public Object readHal() {
+        return hal.fromJson( document, shape.halType );
+    }
+
+    @Benchmark
+    @Threads( 1 )
+    public Object readPlain() {
+        return plain.fromJson( document, shape.plainType );
+    }
+
+    @Benchmark
+    @Threads( 1 )
+    public String writeHal() {
+        return hal.toJson( halResource );
+    }
+
+    @Benchmark
+    @Threads( 1 )
+    public String writePlain() {
+        return plain.toJson( plainResource );
+    }
+
+    @Benchmark
+    @Threads( Threads.MAX )
+    public Object readHalAllCores() {
+        return hal.fromJson( document, shape.halType );
+    }
+
+    @Benchmark
+    @Threads( Threads.MAX )
+    public Object readPlainAllCores() {
+        return plain.fromJson( document, shape.plainType );
+    }
+}
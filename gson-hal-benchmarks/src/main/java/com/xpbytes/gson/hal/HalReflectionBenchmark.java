@@ -0,0 +1,137 @@
+/**
+ * Copyright 2015 Derk-Jan Karrenbeld
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.xpbytes.gson.hal;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.TypeAdapter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.Field;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the lookups every read goes through once the adapters exist: the adapter of a
+ * resource from a {@link Gson} instance that is created once, and the fields of a resource type
+ * from the {@link HalReflection} cache, against the static synchronized map that cache replaced.
+ * The lookups share no mutable state, so the {@code AllCores} score should be the
+ * {@code SingleThread} score times {@code Runtime.getRuntime().availableProcessors()}; the
+ * synchronized baseline falls short of that as its monitor is contended.
+ */
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+@State( Scope.Benchmark )
+public class HalReflectionBenchmark {
+
+    private Gson gson;
+
+    @Setup public void setup() {
+        gson = new GsonBuilder()
+            .registerTypeAdapterFactory( new HalTypeAdapterFactory() )
+            .create();
+        gson.getAdapter( BenchmarkResource.class );
+    }
+
+    @Benchmark
+    @Threads( 1 )
+    public TypeAdapter<BenchmarkResource> getAdapterSingleThread() {
+        return gson.getAdapter( BenchmarkResource.class );
+    }
+
+    @Benchmark
+    @Threads( Threads.MAX )
+    public TypeAdapter<BenchmarkResource> getAdapterAllCores() {
+        return gson.getAdapter( BenchmarkResource.class );
+    }
+
+    @Benchmark
+    @Threads( 1 )
+    public List<Field> getAllFieldsSingleThread() {
+        return HalReflection.getAllFields( BenchmarkResource.class );
+    }
+
+    @Benchmark
+    @Threads( Threads.MAX )
+    public List<Field> getAllFieldsAllCores() {
+        return HalReflection.getAllFields( BenchmarkResource.class );
+    }
+
+    @Benchmark
+    @Threads( 1 )
+    public List<Field> synchronizedFieldsSingleThread() {
+        return SynchronizedFieldCache.getAllFields( BenchmarkResource.class );
+    }
+
+    @Benchmark
+    @Threads( Threads.MAX )
+    public List<Field> synchronizedFieldsAllCores() {
+        return SynchronizedFieldCache.getAllFields( BenchmarkResource.class );
+    }
+
+    /**
+     * The field cache as it was before {@link HalReflection} cached fields per class value: a
+     * static map behind a static monitor, written on every lookup
+     */
+    private static final class SynchronizedFieldCache {
+
+        private static final Map<Class<?>, List<Field>> fieldCache = new HashMap<>();
+
+        static synchronized List<Field> getAllFields( Class<?> type ) {
+            return getAllFields( new ArrayList<Field>(), type );
+        }
+
+        private static synchronized List<Field> getAllFields( List<Field> fields, Class<?> type ) {
+            List<Field> fieldsForOnlyThisClass = fieldCache.get( type );
+            if ( fieldsForOnlyThisClass == null )
+                fieldsForOnlyThisClass = Arrays.asList( type.getDeclaredFields() );
+            fieldCache.put( type, fieldsForOnlyThisClass );
+
+            fields.addAll( fieldsForOnlyThisClass );
+            return type.getSuperclass() == null ? fields : getAllFields( fields, type.getSuperclass() );
+        }
+    }
+
+    @HalResource
+    public static class BenchmarkResource extends HalResourceBase {
+        String id;
+        String name;
+
+        @HalLink URI next;
+        @HalLink( optional = true ) HalLinkObject previous;
+        @HalEmbed( optional = true ) BenchmarkResource parent;
+    }
+}
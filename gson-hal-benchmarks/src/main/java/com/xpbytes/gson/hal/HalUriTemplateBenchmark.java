@@ -0,0 +1,102 @@
+/**
+ * Copyright 2015 Derk-Jan Karrenbeld
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.xpbytes.gson.hal;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the expansion of templated links. {@code expandCompiled} is the cost of the expansion
+ * alone, {@code expandLink} adds the lookup of the compiled template by href and {@code
+ * compileUncached} is the one-time cost of parsing a template. Run with {@code -prof gc} to see
+ * the allocation per expansion.
+ */
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+@State( Scope.Benchmark )
+public class HalUriTemplateBenchmark {
+
+    private static final String SIMPLE = "/api/orders/{id}";
+    private static final String QUERY = "/api/orders{?page,size,sort*}{#section}";
+    private static final String PATH = "https://example.com{/segments*}/items{;filter}{&q}";
+
+    private final Map<String, Object> variables = new HashMap<>();
+    private HalUriTemplate simple;
+    private HalUriTemplate query;
+    private HalUriTemplate path;
+    private HalLinkObject link;
+
+    @Setup public void setup() {
+        variables.put( "id", 1024 );
+        variables.put( "page", 3 );
+        variables.put( "size", 50 );
+        variables.put( "sort", Arrays.asList( "created,desc", "name" ) );
+        variables.put( "section", "summary" );
+        variables.put( "segments", Arrays.asList( "v2", "shops", "best shop" ) );
+        variables.put( "filter", "open" );
+        variables.put( "q", "caf\u00e9 & bar" );
+
+        simple = HalUriTemplate.compile( SIMPLE );
+        query = HalUriTemplate.compile( QUERY );
+        path = HalUriTemplate.compile( PATH );
+
+        link = new HalLinkObject( QUERY );
+        link.setTemplated( true );
+    }
+
+    @Benchmark
+    public String expandCompiledSimple() {
+        return simple.expand( variables );
+    }
+
+    @Benchmark
+    public String expandCompiledQuery() {
+        return query.expand( variables );
+    }
+
+    @Benchmark
+    public String expandCompiledPath() {
+        return path.expand( variables );
+    }
+
+    @Benchmark
+    public String expandLink() {
+        return link.expand( variables );
+    }
+
+    @Benchmark
+    public HalUriTemplate compileUncached() {
+        // Bypasses the cache, which would otherwise return the same compiled template
+        return HalUriTemplate.parse( QUERY );
+    }
+}
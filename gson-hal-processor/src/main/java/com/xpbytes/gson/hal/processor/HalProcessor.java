@@ -0,0 +1,200 @@
+/**
+ * Copyright 2015 Derk-Jan Karrenbeld
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.xpbytes.gson.hal.processor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardLocation;
+
+/**
+ * Generates a {@link com.xpbytes.gson.hal.HalAccessor} for every {@link
+ * com.xpbytes.gson.hal.HalResource} class in the compilation, plus a {@link
+ * com.xpbytes.gson.hal.HalAccessorRegistry} that lists them, registered as a service so {@link
+ * com.xpbytes.gson.hal.HalTypeAdapterFactory} picks the accessors up without any configuration.
+ *
+ * Classes that can't be accessed without reflection, such as inner classes or classes with
+ * private fields that have no accessible getter and setter, are reported as a note and keep using
+ * reflection at runtime.
+ *
+ * The registry is named {@code GeneratedHalAccessorRegistry} and placed in the package of the
+ * first resource. Pass {@code -Ahal.registry=com.example.MyRegistry} to choose its name, which is
+ * needed when several modules that are processed separately share that package.
+ */
+public final class HalProcessor extends AbstractProcessor {
+
+    static final String REGISTRY_OPTION = "hal.registry";
+    private static final String REGISTRY_SERVICE =
+        "META-INF/services/com.xpbytes.gson.hal.HalAccessorRegistry";
+
+    /** The accessor names by the binary names of their resource types */
+    private final Map<String, String> accessors = new TreeMap<>();
+    private final List<Element> originatingElements = new ArrayList<>();
+    private String registryPackage;
+    private boolean pending;
+    private boolean registryWritten;
+
+    @Override public Set<String> getSupportedAnnotationTypes() {
+        return Collections.singleton( HalResourceModel.HAL_RESOURCE );
+    }
+
+    @Override public Set<String> getSupportedOptions() {
+        return Collections.singleton( REGISTRY_OPTION );
+    }
+
+    @Override public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override public boolean process( Set<? extends TypeElement> annotations, RoundEnvironment roundEnv ) {
+        TypeElement resource = processingEnv.getElementUtils().getTypeElement( HalResourceModel.HAL_RESOURCE );
+        boolean found = false;
+
+        if ( resource != null ) {
+            for ( Element element : roundEnv.getElementsAnnotatedWith( resource ) ) {
+                if ( !( element instanceof TypeElement ) )
+                    continue;
+
+                found |= generate( (TypeElement)element );
+            }
+        }
+
+        // The registry is written in the round after the last accessors were generated, so it is
+        // not created in the final round
+        if ( pending && ( !found || roundEnv.processingOver() ) )
+            writeRegistry();
+
+        return false;
+    }
+
+    private boolean generate( TypeElement type ) {
+        HalResourceModel model = HalResourceModel.analyze( processingEnv, type );
+        if ( model.unsupported != null ) {
+            processingEnv.getMessager().printMessage( Diagnostic.Kind.NOTE,
+                "No HalAccessor generated for " + type.getQualifiedName() + " because " +
+                    model.unsupported + "; it will be bound through reflection", type );
+            return false;
+        }
+
+        if ( accessors.containsKey( model.binaryName() ) )
+            return false;
+
+        if ( registryWritten ) {
+            processingEnv.getMessager().printMessage( Diagnostic.Kind.WARNING,
+                "No HalAccessor generated for " + type.getQualifiedName() + " because it " +
+                    "appeared after the registry was written", type );
+            return false;
+        }
+
+        try {
+            JavaFileObject file = processingEnv.getFiler().createSourceFile( model.accessorQualifiedName(), type );
+            try ( Writer writer = file.openWriter() ) {
+                writer.write( model.render() );
+            }
+        } catch ( IOException e ) {
+            processingEnv.getMessager().printMessage( Diagnostic.Kind.ERROR,
+                "Unable to write HalAccessor for " + type.getQualifiedName() + ": " + e.getMessage(), type );
+            return false;
+        }
+
+        accessors.put( model.binaryName(), model.accessorQualifiedName() );
+        originatingElements.add( type );
+        if ( registryPackage == null || model.packageName.compareTo( registryPackage ) < 0 )
+            registryPackage = model.packageName;
+        pending = true;
+        return true;
+    }
+
+    private void writeRegistry() {
+        pending = false;
+        registryWritten = true;
+
+        String registryName = processingEnv.getOptions().get( REGISTRY_OPTION );
+        if ( registryName == null || registryName.isEmpty() )
+            registryName = registryPackage.isEmpty() ?
+                "GeneratedHalAccessorRegistry" : registryPackage + ".GeneratedHalAccessorRegistry";
+
+        int dot = registryName.lastIndexOf( '.' );
+        String packageName = dot == -1 ? "" : registryName.substring( 0, dot );
+        String simpleName = registryName.substring( dot + 1 );
+        Element[] origins = originatingElements.toArray( new Element[ originatingElements.size() ] );
+
+        try {
+            JavaFileObject source = processingEnv.getFiler().createSourceFile( registryName, origins );
+            try ( Writer writer = source.openWriter() ) {
+                writer.write( renderRegistry( packageName, simpleName ) );
+            }
+
+            FileObject service = processingEnv.getFiler()
+                .createResource( StandardLocation.CLASS_OUTPUT, "", REGISTRY_SERVICE, origins );
+            try ( Writer writer = service.openWriter() ) {
+                writer.write( registryName + "\n" );
+            }
+        } catch ( IOException e ) {
+            processingEnv.getMessager().printMessage( Diagnostic.Kind.ERROR,
+                "Unable to write HalAccessorRegistry " + registryName + ": " + e.getMessage() );
+        }
+    }
+
+    private String renderRegistry( String packageName, String simpleName ) {
+        StringBuilder out = new StringBuilder();
+        out.append( "// Generated by gson-hal-processor. Do not edit.\n" );
+        if ( !packageName.isEmpty() )
+            out.append( "package " ).append( packageName ).append( ";\n" );
+        out.append( "\n" )
+            .append( "@SuppressWarnings( \"unchecked\" )\n" )
+            .append( "public final class " ).append( simpleName )
+            .append( " implements com.xpbytes.gson.hal.HalAccessorRegistry {\n\n" )
+            .append( "    private static final String[] TYPE_NAMES = {\n" );
+
+        for ( String typeName : accessors.keySet() )
+            out.append( "        " ).append( HalResourceModel.literal( typeName ) ).append( ",\n" );
+
+        out.append( "    };\n\n" )
+            .append( "    @Override public <T> com.xpbytes.gson.hal.HalAccessor<T> get( Class<T> type ) {\n" )
+            .append( "        switch ( type.getName() ) {\n" );
+
+        for ( Map.Entry<String, String> accessor : accessors.entrySet() ) {
+            out.append( "            case " ).append( HalResourceModel.literal( accessor.getKey() ) )
+                .append( ": return (com.xpbytes.gson.hal.HalAccessor<T>)new " ).append( accessor.getValue() )
+                .append( "();\n" );
+        }
+
+        out.append( "            default: return null;\n" )
+            .append( "        }\n" )
+            .append( "    }\n\n" )
+            .append( "    @Override public String[] typeNames() {\n" )
+            .append( "        return TYPE_NAMES.clone();\n" )
+            .append( "    }\n" )
+            .append( "}\n" );
+        return out.toString();
+    }
+}
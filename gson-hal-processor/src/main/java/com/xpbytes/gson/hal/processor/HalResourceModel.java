@@ -0,0 +1,487 @@
+/**
+ * Copyright 2015 Derk-Jan Karrenbeld
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.xpbytes.gson.hal.processor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.type.WildcardType;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+
+/**
+ * The members of a {@link com.xpbytes.gson.hal.HalResource} type as the generated accessor sees
+ * them. Mirrors the rules of the runtime binding plan: a field is a link if it is annotated with
+ * {@code HalLink} or its item type is a {@code HalLinkObject}, an embed if it is annotated with
+ * {@code HalEmbed} or its item type is a resource, and a regular field otherwise.
+ */
+final class HalResourceModel {
+
+    static final String HAL_RESOURCE = "com.xpbytes.gson.hal.HalResource";
+    private static final String HAL_LINK = "com.xpbytes.gson.hal.HalLink";
+    private static final String HAL_EMBED = "com.xpbytes.gson.hal.HalEmbed";
+    private static final String HAL_LINK_OBJECT = "com.xpbytes.gson.hal.HalLinkObject";
+    private static final String SERIALIZED_NAME = "com.google.gson.annotations.SerializedName";
+
+    final TypeElement type;
+    final String packageName;
+    final String accessorSimpleName;
+    final List<Member> members = new ArrayList<>();
+
+    /** Why no accessor can be generated, or null if one can */
+    String unsupported;
+
+    private final Elements elements;
+    private final Types types;
+
+    private HalResourceModel( ProcessingEnvironment env, TypeElement type ) {
+        this.elements = env.getElementUtils();
+        this.types = env.getTypeUtils();
+        this.type = type;
+        this.packageName = elements.getPackageOf( type ).getQualifiedName().toString();
+
+        String binaryName = elements.getBinaryName( type ).toString();
+        String simpleBinaryName = packageName.isEmpty() ?
+            binaryName : binaryName.substring( packageName.length() + 1 );
+        this.accessorSimpleName = simpleBinaryName.replace( '$', '_' ) + "_HalAccessor";
+    }
+
+    /**
+     * Analyzes a resource type
+     *
+     * @param env   the processing environment
+     * @param type  the resource type
+     * @return the model, with {@link #unsupported} set if no accessor can be generated
+     */
+    static HalResourceModel analyze( ProcessingEnvironment env, TypeElement type ) {
+        HalResourceModel model = new HalResourceModel( env, type );
+        model.unsupported = model.analyze();
+        return model;
+    }
+
+    String accessorQualifiedName() {
+        return packageName.isEmpty() ? accessorSimpleName : packageName + "." + accessorSimpleName;
+    }
+
+    String binaryName() {
+        return elements.getBinaryName( type ).toString();
+    }
+
+    private String analyze() {
+        if ( type.getKind() != ElementKind.CLASS )
+            return "it is not a class";
+        if ( type.getModifiers().contains( Modifier.ABSTRACT ) )
+            return "it is abstract";
+        if ( !type.getTypeParameters().isEmpty() )
+            return "it has type parameters";
+
+        for ( Element element = type; element instanceof TypeElement; element = element.getEnclosingElement() ) {
+            TypeElement enclosing = (TypeElement)element;
+            if ( enclosing.getModifiers().contains( Modifier.PRIVATE ) )
+                return "it is not accessible";
+            if ( enclosing.getNestingKind() == NestingKind.MEMBER &&
+                !enclosing.getModifiers().contains( Modifier.STATIC ) )
+                return "it is an inner class";
+            if ( enclosing.getNestingKind() == NestingKind.LOCAL ||
+                enclosing.getNestingKind() == NestingKind.ANONYMOUS )
+                return "it is a local class";
+        }
+
+        if ( !hasAccessibleNoArgsConstructor() )
+            return "it has no accessible no-args constructor";
+
+        for ( TypeElement current = type; current != null; current = superclassOf( current ) ) {
+            for ( VariableElement field : ElementFilter.fieldsIn( current.getEnclosedElements() ) ) {
+                if ( field.getModifiers().contains( Modifier.STATIC ) ||
+                    field.getModifiers().contains( Modifier.TRANSIENT ) )
+                    continue;
+
+                String reason = addMember( current, field );
+                if ( reason != null )
+                    return reason;
+            }
+        }
+        return null;
+    }
+
+    private String addMember( TypeElement declaring, VariableElement field ) {
+        if ( !isAccessible( declaring ) )
+            return String.format( Locale.US, "superclass %s is not accessible", declaring.getQualifiedName() );
+
+        String fieldName = field.getSimpleName().toString();
+        TypeMirror fieldType = field.asType();
+        String typeExpression = typeExpression( fieldType );
+        if ( typeExpression == null )
+            return String.format( Locale.US, "the type of field %s is not supported", fieldName );
+
+        Member member = new Member();
+        member.declaring = declaring.getQualifiedName().toString();
+        member.fieldName = fieldName;
+        member.typeExpression = typeExpression;
+        member.castType = castType( fieldType );
+
+        AnnotationMirror serializedName = findAnnotation( field, SERIALIZED_NAME );
+        AnnotationMirror link = findAnnotation( field, HAL_LINK );
+        AnnotationMirror embed = findAnnotation( field, HAL_EMBED );
+        TypeMirror itemType = itemType( fieldType );
+
+        if ( link != null || isSubtype( itemType, HAL_LINK_OBJECT ) ) {
+            member.kind = "link";
+            member.jsonName = halName( serializedName, link, fieldName );
+            member.optional = link != null && Boolean.TRUE.equals( annotationValue( link, "optional" ) );
+            Object relation = link == null ? null : annotationValue( link, "rel" );
+            member.relation = relation == null || ( (String)relation ).isEmpty() ? null : (String)relation;
+        } else if ( embed != null || isResource( itemType ) ) {
+            member.kind = "embed";
+            member.jsonName = halName( serializedName, embed, fieldName );
+            member.optional = embed != null && Boolean.TRUE.equals( annotationValue( embed, "optional" ) );
+        } else {
+            member.kind = "field";
+            if ( serializedName != null ) {
+                member.jsonName = (String)annotationValue( serializedName, "value" );
+                Object alternates = annotationValue( serializedName, "alternate" );
+                if ( alternates instanceof List ) {
+                    for ( Object alternate : (List<?>)alternates )
+                        member.alternates.add( (String)( (AnnotationValue)alternate ).getValue() );
+                }
+            }
+        }
+
+        if ( isAccessible( field ) ) {
+            member.getter = "target." + fieldName;
+            member.setter = "target." + fieldName + " = %s";
+            if ( field.getModifiers().contains( Modifier.FINAL ) )
+                return String.format( Locale.US, "field %s is final", fieldName );
+        } else {
+            String capitalized = Character.toUpperCase( fieldName.charAt( 0 ) ) + fieldName.substring( 1 );
+            ExecutableElement getter = findMethod( declaring, "get" + capitalized, null );
+            if ( getter == null && fieldType.getKind() == TypeKind.BOOLEAN )
+                getter = findMethod( declaring, "is" + capitalized, null );
+            ExecutableElement setter = findMethod( declaring, "set" + capitalized, fieldType );
+            if ( getter == null || setter == null )
+                return String.format( Locale.US, "field %s is not accessible and has no accessible getter and setter",
+                    fieldName );
+
+            member.getter = "target." + getter.getSimpleName() + "()";
+            member.setter = "target." + setter.getSimpleName() + "( %s )";
+        }
+
+        members.add( member );
+        return null;
+    }
+
+    private boolean hasAccessibleNoArgsConstructor() {
+        for ( ExecutableElement constructor : ElementFilter.constructorsIn( type.getEnclosedElements() ) ) {
+            if ( constructor.getParameters().isEmpty() )
+                return !constructor.getModifiers().contains( Modifier.PRIVATE );
+        }
+        return false;
+    }
+
+    private TypeElement superclassOf( TypeElement element ) {
+        TypeMirror superclass = element.getSuperclass();
+        if ( superclass.getKind() != TypeKind.DECLARED )
+            return null;
+
+        TypeElement result = (TypeElement)( (DeclaredType)superclass ).asElement();
+        return result.getQualifiedName().contentEquals( "java.lang.Object" ) ? null : result;
+    }
+
+    /**
+     * Is an element accessible from the generated accessor, which lives in the package of the
+     * resource?
+     */
+    private boolean isAccessible( Element element ) {
+        if ( element.getModifiers().contains( Modifier.PUBLIC ) )
+            return true;
+        if ( element.getModifiers().contains( Modifier.PRIVATE ) )
+            return false;
+
+        PackageElement elementPackage = elements.getPackageOf( element );
+        return elementPackage.getQualifiedName().contentEquals( packageName );
+    }
+
+    private ExecutableElement findMethod( TypeElement declaring, String name, TypeMirror parameter ) {
+        for ( ExecutableElement method : ElementFilter.methodsIn( declaring.getEnclosedElements() ) ) {
+            if ( !method.getSimpleName().contentEquals( name ) || !isAccessible( method ) ||
+                method.getModifiers().contains( Modifier.STATIC ) )
+                continue;
+
+            if ( parameter == null && method.getParameters().isEmpty() &&
+                method.getReturnType().getKind() != TypeKind.VOID )
+                return method;
+
+            if ( parameter != null && method.getParameters().size() == 1 &&
+                types.isSameType( method.getParameters().get( 0 ).asType(), parameter ) )
+                return method;
+        }
+        return null;
+    }
+
+    private static String halName( AnnotationMirror serializedName, AnnotationMirror hal, String fieldName ) {
+        if ( serializedName != null )
+            return (String)annotationValue( serializedName, "value" );
+
+        Object name = hal == null ? null : annotationValue( hal, "name" );
+        return name == null || ( (String)name ).isEmpty() ? fieldName : (String)name;
+    }
+
+    /**
+     * Gets the type of a field as an item. Will walk collections to find the inner type.
+     */
+    private TypeMirror itemType( TypeMirror type ) {
+        if ( type.getKind() != TypeKind.DECLARED )
+            return type;
+
+        TypeMirror collection = types.erasure( elements.getTypeElement( "java.util.Collection" ).asType() );
+        List<? extends TypeMirror> arguments = ( (DeclaredType)type ).getTypeArguments();
+        if ( types.isAssignable( types.erasure( type ), collection ) && !arguments.isEmpty() ) {
+            TypeMirror argument = arguments.get( 0 );
+            if ( argument.getKind() == TypeKind.WILDCARD ) {
+                TypeMirror bound = ( (WildcardType)argument ).getExtendsBound();
+                return bound == null ? elements.getTypeElement( "java.lang.Object" ).asType() : bound;
+            }
+            return argument;
+        }
+        return type;
+    }
+
+    private boolean isSubtype( TypeMirror type, String className ) {
+        TypeElement element = elements.getTypeElement( className );
+        return element != null && type.getKind() == TypeKind.DECLARED &&
+            types.isAssignable( types.erasure( type ), types.erasure( element.asType() ) );
+    }
+
+    private boolean isResource( TypeMirror type ) {
+        if ( type.getKind() != TypeKind.DECLARED )
+            return false;
+
+        TypeElement element = (TypeElement)( (DeclaredType)type ).asElement();
+        for ( AnnotationMirror annotation : elements.getAllAnnotationMirrors( element ) ) {
+            if ( isAnnotation( annotation, HAL_RESOURCE ) )
+                return true;
+        }
+        return false;
+    }
+
+    private static AnnotationMirror findAnnotation( Element element, String name ) {
+        for ( AnnotationMirror annotation : element.getAnnotationMirrors() ) {
+            if ( isAnnotation( annotation, name ) )
+                return annotation;
+        }
+        return null;
+    }
+
+    private static boolean isAnnotation( AnnotationMirror annotation, String name ) {
+        return ( (TypeElement)annotation.getAnnotationType().asElement() ).getQualifiedName().contentEquals( name );
+    }
+
+    private static Object annotationValue( AnnotationMirror annotation, String name ) {
+        for ( ExecutableElement key : annotation.getElementValues().keySet() ) {
+            if ( key.getSimpleName().contentEquals( name ) )
+                return annotation.getElementValues().get( key ).getValue();
+        }
+        return null;
+    }
+
+    /**
+     * Gets a Java expression that evaluates to the {@link java.lang.reflect.Type} of a field,
+     * using {@code TypeToken.getParameterized} for parameterized types
+     *
+     * @param type the type
+     * @return the expression, or null if the type is not supported
+     */
+    private String typeExpression( TypeMirror type ) {
+        switch ( type.getKind() ) {
+            case BOOLEAN: case BYTE: case SHORT: case INT: case LONG: case CHAR: case FLOAT: case DOUBLE:
+                return type + ".class";
+
+            case ARRAY:
+                TypeMirror component = ( (ArrayType)type ).getComponentType();
+                if ( component.getKind() == TypeKind.DECLARED &&
+                    !( (DeclaredType)component ).getTypeArguments().isEmpty() )
+                    return null;
+                return types.erasure( type ) + ".class";
+
+            case WILDCARD:
+                TypeMirror bound = ( (WildcardType)type ).getExtendsBound();
+                return bound == null ? "java.lang.Object.class" : typeExpression( bound );
+
+            case TYPEVAR:
+                return types.erasure( type ) + ".class";
+
+            case DECLARED:
+                String raw = rawName( type ) + ".class";
+                List<? extends TypeMirror> arguments = ( (DeclaredType)type ).getTypeArguments();
+                if ( arguments.isEmpty() )
+                    return raw;
+
+                StringBuilder expression = new StringBuilder( "com.google.gson.reflect.TypeToken.getParameterized( " )
+                    .append( raw );
+                for ( TypeMirror argument : arguments ) {
+                    String argumentExpression = typeExpression( argument );
+                    if ( argumentExpression == null )
+                        return null;
+                    expression.append( ", " ).append( argumentExpression );
+                }
+                return expression.append( " ).getType()" ).toString();
+
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Gets the type a value is cast to before it is assigned to a field
+     */
+    private String castType( TypeMirror type ) {
+        switch ( type.getKind() ) {
+            case BOOLEAN: return "java.lang.Boolean";
+            case BYTE: return "java.lang.Byte";
+            case SHORT: return "java.lang.Short";
+            case INT: return "java.lang.Integer";
+            case LONG: return "java.lang.Long";
+            case CHAR: return "java.lang.Character";
+            case FLOAT: return "java.lang.Float";
+            case DOUBLE: return "java.lang.Double";
+            case DECLARED: return rawName( type );
+            default: return types.erasure( type ).toString();
+        }
+    }
+
+    private String rawName( TypeMirror type ) {
+        return ( (TypeElement)types.asElement( type ) ).getQualifiedName().toString();
+    }
+
+    /**
+     * Renders the source of the accessor
+     *
+     * @return the source
+     */
+    String render() {
+        String typeName = type.getQualifiedName().toString();
+        StringBuilder out = new StringBuilder();
+        out.append( "// Generated by gson-hal-processor. Do not edit.\n" );
+        if ( !packageName.isEmpty() )
+            out.append( "package " ).append( packageName ).append( ";\n" );
+        out.append( "\n" )
+            .append( "@SuppressWarnings( { \"unchecked\", \"rawtypes\" } )\n" )
+            .append( "public final class " ).append( accessorSimpleName )
+            .append( " implements com.xpbytes.gson.hal.HalAccessor<" ).append( typeName ).append( "> {\n\n" )
+            .append( "    private static final com.xpbytes.gson.hal.HalMember[] MEMBERS = {\n" );
+
+        for ( Member member : members ) {
+            out.append( "        com.xpbytes.gson.hal.HalMember." ).append( member.kind ).append( "( " )
+                .append( member.declaring ).append( ".class, " )
+                .append( literal( member.fieldName ) ).append( ", " )
+                .append( literal( member.jsonName ) ).append( ", " );
+            if ( member.relation != null )
+                out.append( literal( member.relation ) ).append( ", " );
+            if ( !"field".equals( member.kind ) )
+                out.append( member.optional ).append( ", " );
+            out.append( member.typeExpression );
+            for ( String alternate : member.alternates )
+                out.append( ", " ).append( literal( alternate ) );
+            out.append( " ),\n" );
+        }
+
+        out.append( "    };\n\n" )
+            .append( "    @Override public Class<" ).append( typeName ).append( "> type() {\n" )
+            .append( "        return " ).append( typeName ).append( ".class;\n" )
+            .append( "    }\n\n" )
+            .append( "    @Override public " ).append( typeName ).append( " newInstance() {\n" )
+            .append( "        return new " ).append( typeName ).append( "();\n" )
+            .append( "    }\n\n" )
+            .append( "    @Override public com.xpbytes.gson.hal.HalMember[] members() {\n" )
+            .append( "        return MEMBERS.clone();\n" )
+            .append( "    }\n\n" )
+            .append( "    @Override public Object get( " ).append( typeName ).append( " target, int member ) {\n" )
+            .append( "        switch ( member ) {\n" );
+
+        for ( int i = 0; i < members.size(); i++ )
+            out.append( "            case " ).append( i ).append( ": return " ).append( members.get( i ).getter ).append( ";\n" );
+
+        out.append( "            default: throw new IndexOutOfBoundsException( String.valueOf( member ) );\n" )
+            .append( "        }\n" )
+            .append( "    }\n\n" )
+            .append( "    @Override public void set( " ).append( typeName ).append( " target, int member, Object value ) {\n" )
+            .append( "        switch ( member ) {\n" );
+
+        for ( int i = 0; i < members.size(); i++ ) {
+            Member member = members.get( i );
+            out.append( "            case " ).append( i ).append( ": " )
+                .append( String.format( Locale.US, member.setter, "(" + member.castType + ")value" ) )
+                .append( "; return;\n" );
+        }
+
+        out.append( "            default: throw new IndexOutOfBoundsException( String.valueOf( member ) );\n" )
+            .append( "        }\n" )
+            .append( "    }\n" )
+            .append( "}\n" );
+        return out.toString();
+    }
+
+    static String literal( String value ) {
+        if ( value == null )
+            return "null";
+
+        StringBuilder out = new StringBuilder( "\"" );
+        for ( char c : value.toCharArray() ) {
+            if ( c == '"' || c == '\\' )
+                out.append( '\\' ).append( c );
+            else if ( c < 0x20 || c > 0x7e )
+                out.append( String.format( Locale.US, "\\u%04x", (int)c ) );
+            else
+                out.append( c );
+        }
+        return out.append( '"' ).toString();
+    }
+
+    /**
+     * A member of the resource
+     */
+    static final class Member {
+        String kind;
+        String declaring;
+        String fieldName;
+        String jsonName;
+        String relation;
+        boolean optional;
+        String typeExpression;
+        String castType;
+        String getter;
+        String setter;
+        final List<String> alternates = new ArrayList<>();
+    }
+}
@@ -0,0 +1,249 @@
+/**
+ * Copyright 2015 Derk-Jan Karrenbeld
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.xpbytes.gson.hal.processor;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.xpbytes.gson.hal.HalAccessor;
+import com.xpbytes.gson.hal.HalAccessorRegistry;
+import com.xpbytes.gson.hal.HalPreloadReport;
+import com.xpbytes.gson.hal.HalTypeAdapterFactory;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.ServiceLoader;
+
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+@RunWith( JUnit4.class )
+public class HalProcessorTest {
+
+    private static final String SAMPLE_RESOURCE =
+        "package sample;\n" +
+        "import com.xpbytes.gson.hal.*;\n" +
+        "import com.google.gson.annotations.SerializedName;\n" +
+        "import java.net.URI;\n" +
+        "import java.util.List;\n" +
+        "@HalResource\n" +
+        "public class SampleResource extends HalResourceBase {\n" +
+        "    String id;\n" +
+        "    int count;\n" +
+        "    List<String> tags;\n" +
+        "    @SerializedName( value = \"display_name\", alternate = \"displayName\" ) String name;\n" +
+        "    transient String ignored;\n" +
+        "    @HalLink URI next;\n" +
+        "    @HalLink HalLinkObject last;\n" +
+        "    @HalLink( name = \"foo:bar\", optional = true ) String namedLink;\n" +
+        "    @HalLink( rel = \"http://example.com/rels/parent\", optional = true ) String parent;\n" +
+        "    @HalEmbed Embedded resource;\n" +
+        "    @HalEmbed( optional = true ) Embedded optionalResource;\n" +
+        "    transient @HalLink String cached;\n" +
+        "    transient @HalEmbed Embedded cachedResource;\n" +
+        "}\n";
+
+    private static final String EMBEDDED_RESOURCE =
+        "package sample;\n" +
+        "import com.xpbytes.gson.hal.*;\n" +
+        "@HalResource\n" +
+        "public class Embedded {\n" +
+        "    int foo;\n" +
+        "    @HalLink String self;\n" +
+        "}\n";
+
+    private static final String PRIVATE_RESOURCE =
+        "package sample;\n" +
+        "import com.xpbytes.gson.hal.*;\n" +
+        "@HalResource\n" +
+        "public class PrivateResource {\n" +
+        "    private String hidden;\n" +
+        "    @HalLink String self;\n" +
+        "    transient @HalLink String cached;\n" +
+        "    transient @HalEmbed Embedded cachedResource;\n" +
+        "}\n";
+
+    private static final String SAMPLE_JSON =
+        "{ 'id': 'sample', 'count': 3, 'tags': [ 'a', 'b' ], 'displayName': 'Sample', 'ignored': 'x', " +
+        "'_links': { 'self': { 'href': '/api/sample' }, 'next': { 'href': '/api/sample/next' }, " +
+        "'last': { 'href': '/api/sample/last', 'templated': true }, 'foo:bar': { 'href': '/foo/bar' }, " +
+        "'curies': [ { 'name': 'ex', 'href': 'http://example.com/rels/{rel}', 'templated': true } ], " +
+        "'ex:parent': { 'href': '/api/parent' } }, " +
+        "'_embedded': { 'resource': { 'foo': 324, '_links': { 'self': { 'href': '/api/embedded/324' } } } } }";
+
+    @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+    private ClassLoader loader;
+    private String diagnostics;
+
+    @Before public void setup() throws IOException {
+        File sources = folder.newFolder( "sources" );
+        File classes = folder.newFolder( "classes" );
+        File samplePackage = new File( sources, "sample" );
+        assertThat( samplePackage.mkdirs(), is( true ) );
+
+        write( new File( samplePackage, "SampleResource.java" ), SAMPLE_RESOURCE );
+        write( new File( samplePackage, "Embedded.java" ), EMBEDDED_RESOURCE );
+        write( new File( samplePackage, "PrivateResource.java" ), PRIVATE_RESOURCE );
+
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        StandardJavaFileManager files = compiler.getStandardFileManager( null, null, null );
+        Iterable<? extends JavaFileObject> units = files.getJavaFileObjects( samplePackage.listFiles() );
+
+        StringWriter output = new StringWriter();
+        List<String> options = new ArrayList<>( Arrays.asList(
+            "-d", classes.getPath(),
+            "-classpath", System.getProperty( "java.class.path" ) ) );
+
+        JavaCompiler.CompilationTask task = compiler.getTask( output, files, null, options, null, units );
+        task.setProcessors( Collections.singletonList( new HalProcessor() ) );
+        boolean success = task.call();
+        files.close();
+
+        diagnostics = output.toString();
+        assertThat( diagnostics, success, is( true ) );
+
+        loader = new URLClassLoader( new URL[] { classes.toURI().toURL() }, getClass().getClassLoader() );
+    }
+
+    @Test
+    public void generateAccessorsAndRegistry() throws Exception {
+        HalAccessorRegistry registry = ServiceLoader.load( HalAccessorRegistry.class, loader ).iterator().next();
+        assertThat( registry.getClass().getName(), is( "sample.GeneratedHalAccessorRegistry" ) );
+        assertThat( Arrays.asList( registry.typeNames() ), is( Arrays.asList( "sample.Embedded", "sample.SampleResource" ) ) );
+
+        Class<?> sample = loader.loadClass( "sample.SampleResource" );
+        HalAccessor<?> accessor = registry.get( sample );
+        assertThat( accessor, is( notNullValue() ) );
+        assertThat( accessor.type(), is( equalTo( (Object)sample ) ) );
+        assertThat( accessor.newInstance(), is( notNullValue() ) );
+    }
+
+    @Test
+    public void skipInaccessibleResources() throws Exception {
+        HalAccessorRegistry registry = ServiceLoader.load( HalAccessorRegistry.class, loader ).iterator().next();
+        assertThat( registry.get( loader.loadClass( "sample.PrivateResource" ) ), is( nullValue() ) );
+        assertThat( diagnostics, containsString( "sample.PrivateResource" ) );
+    }
+
+    @Test
+    public void preloadGeneratedResources() throws Exception {
+        Gson gson = new GsonBuilder()
+            .registerTypeAdapterFactory( new HalTypeAdapterFactory() )
+            .create();
+
+        HalPreloadReport report = HalTypeAdapterFactory.preloadGenerated( gson, loader );
+        assertThat( report.getResourceTypes(), is( Arrays.<Class<?>>asList(
+            loader.loadClass( "sample.Embedded" ),
+            loader.loadClass( "sample.SampleResource" ) ) ) );
+    }
+
+    @Test
+    public void deserializeThroughAccessor() throws Exception {
+        Gson gson = new GsonBuilder()
+            .registerTypeAdapterFactory( new HalTypeAdapterFactory() )
+            .create();
+
+        Class<?> sample = loader.loadClass( "sample.SampleResource" );
+        Object resource = gson.fromJson( SAMPLE_JSON, sample );
+
+        assertThat( get( resource, "id" ), is( (Object)"sample" ) );
+        assertThat( get( resource, "count" ), is( (Object)3 ) );
+        assertThat( get( resource, "tags" ), is( (Object)Arrays.asList( "a", "b" ) ) );
+        assertThat( get( resource, "name" ), is( (Object)"Sample" ) );
+        assertThat( get( resource, "ignored" ), is( nullValue() ) );
+        assertThat( get( resource, "next" ), is( (Object)URI.create( "/api/sample/next" ) ) );
+        assertThat( get( resource, "namedLink" ), is( (Object)"/foo/bar" ) );
+        assertThat( get( resource, "parent" ), is( (Object)"/api/parent" ) );
+        assertThat( get( resource, "optionalResource" ), is( nullValue() ) );
+        assertThat( sample.getMethod( "getHalSelfReference" ).invoke( resource ), is( (Object)"/api/sample" ) );
+
+        Object embedded = get( resource, "resource" );
+        assertThat( get( embedded, "foo" ), is( (Object)324 ) );
+        assertThat( get( embedded, "self" ), is( (Object)"/api/embedded/324" ) );
+    }
+
+    @Test
+    public void skipTransientHalFieldsLikeReflection() throws Exception {
+        Gson gson = new GsonBuilder()
+            .registerTypeAdapterFactory( new HalTypeAdapterFactory() )
+            .create();
+        String json = "{ '_links': { 'self': { 'href': '/api/sample' }, 'next': { 'href': '/api/next' }, " +
+            "'last': { 'href': '/api/last' }, 'cached': { 'href': '/api/cached' } }, " +
+            "'_embedded': { 'resource': { 'foo': 1, '_links': { 'self': { 'href': '/api/1' } } }, " +
+            "'cachedResource': { 'foo': 2, '_links': { 'self': { 'href': '/api/2' } } } } }";
+
+        // Bound through the generated accessor and through reflection respectively
+        for ( String type : Arrays.asList( "sample.SampleResource", "sample.PrivateResource" ) ) {
+            Object resource = gson.fromJson( json, loader.loadClass( type ) );
+            assertThat( type, get( resource, "cached" ), is( nullValue() ) );
+            assertThat( type, get( resource, "cachedResource" ), is( nullValue() ) );
+            assertThat( type, gson.toJson( resource ), not( containsString( "cached" ) ) );
+        }
+    }
+
+    @Test
+    public void serializeThroughAccessor() throws Exception {
+        Gson gson = new GsonBuilder()
+            .registerTypeAdapterFactory( new HalTypeAdapterFactory() )
+            .create();
+
+        Class<?> sample = loader.loadClass( "sample.SampleResource" );
+        Object resource = gson.fromJson( SAMPLE_JSON, sample );
+        Object roundTrip = gson.fromJson( gson.toJson( resource ), sample );
+
+        assertThat( gson.toJson( roundTrip ), is( equalTo( gson.toJson( resource ) ) ) );
+        assertThat( gson.toJson( resource ), containsString( "\"display_name\":\"Sample\"" ) );
+        assertThat( sample.getMethod( "getHalSelfReference" ).invoke( roundTrip ), is( (Object)"/api/sample" ) );
+    }
+
+    private static Object get( Object target, String field ) throws Exception {
+        java.lang.reflect.Field declared = target.getClass().getDeclaredField( field );
+        declared.setAccessible( true );
+        return declared.get( target );
+    }
+
+    private static void write( File file, String contents ) throws IOException {
+        Files.write( file.toPath(), contents.getBytes( Charset.forName( "UTF-8" ) ) );
+    }
+}
@@ -0,0 +1,64 @@
+/**
+ * Copyright 2015 Derk-Jan Karrenbeld
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.xpbytes.gson.hal;
+
+/**
+ * Reflection-free access to a {@link HalResource} type, generated at build time by the
+ * gson-hal-processor annotation processor. When an accessor is registered through a {@link
+ * HalAccessorRegistry}, {@link HalTypeAdapterFactory} binds the type through it instead of
+ * scanning fields and annotations at runtime.
+ *
+ * @param <T> the resource type
+ */
+public interface HalAccessor<T> {
+
+    /**
+     * @return the resource type
+     */
+    Class<T> type();
+
+    /**
+     * @return a new, empty instance of the resource
+     */
+    T newInstance();
+
+    /**
+     * Describes the members of the resource. The index of a member in this array is the index
+     * that is passed to {@link #get(Object, int)} and {@link #set(Object, int, Object)}.
+     *
+     * @return the members
+     */
+    HalMember[] members();
+
+    /**
+     * Gets the value of a member
+     *
+     * @param target    the resource
+     * @param member    the index of the member
+     * @return the value
+     */
+    Object get( T target, int member );
+
+    /**
+     * Sets the value of a member
+     *
+     * @param target    the resource
+     * @param member    the index of the member
+     * @param value     the value
+     */
+    void set( T target, int member, Object value );
+}
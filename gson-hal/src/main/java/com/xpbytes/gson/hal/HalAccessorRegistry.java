@@ -0,0 +1,40 @@
+/**
+ * Copyright 2015 Derk-Jan Karrenbeld
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.xpbytes.gson.hal;
+
+/**
+ * A registry of generated {@link HalAccessor}s. The gson-hal-processor annotation processor
+ * generates one registry per compilation and lists it in {@code
+ * META-INF/services/com.xpbytes.gson.hal.HalAccessorRegistry}, where {@link
+ * HalTypeAdapterFactory} finds it through {@link java.util.ServiceLoader}.
+ */
+public interface HalAccessorRegistry {
+
+    /**
+     * Gets the accessor of a resource type
+     *
+     * @param type  the resource type
+     * @param <T>   the resource type
+     * @return the accessor, or null if this registry has none for the type
+     */
+    <T> HalAccessor<T> get( Class<T> type );
+
+    /**
+     * @return the names of all the resource types this registry has accessors for
+     */
+    String[] typeNames();
+}
@@ -0,0 +1,116 @@
+/**
+ * Copyright 2015 Derk-Jan Karrenbeld
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.xpbytes.gson.hal;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.WeakHashMap;
+
+/**
+ * Finds the generated {@link HalAccessor} of a resource type through the {@link
+ * HalAccessorRegistry} services of its class loader.
+ */
+final class HalAccessors {
+
+    /**
+     * The registry class names per class loader. Only names are kept, so the cache never holds on
+     * to a class loader that is otherwise unreachable.
+     */
+    private static final Map<ClassLoader, List<String>> registryNames = new WeakHashMap<>();
+
+    /** The registry instance per registry class, released together with the class */
+    private static final ClassValue<HalAccessorRegistry> registries = new ClassValue<HalAccessorRegistry>() {
+        @Override protected HalAccessorRegistry computeValue( Class<?> type ) {
+            try {
+                return (HalAccessorRegistry)type.getDeclaredConstructor().newInstance();
+            } catch ( ReflectiveOperationException e ) {
+                throw new IllegalStateException( "Unable to instantiate " + type.getName(), e );
+            }
+        }
+    };
+
+    private HalAccessors() {}
+
+    /**
+     * Finds the generated accessor of a type
+     *
+     * @param type  the resource type
+     * @param <T>   the resource type
+     * @return the accessor, or null if there is none
+     */
+    static <T> HalAccessor<T> find( Class<T> type ) {
+        ClassLoader loader = getClassLoader( type );
+        for ( String name : getRegistryNames( loader ) ) {
+            HalAccessorRegistry registry = getRegistry( name, loader );
+            HalAccessor<T> accessor = registry == null ? null : registry.get( type );
+
+            // A registry resolves by name, which may be a different class in another class loader
+            if ( accessor != null && accessor.type() == type )
+                return accessor;
+        }
+        return null;
+    }
+
+    /**
+     * Gets all the registries that are visible to a class loader
+     *
+     * @param loader the class loader
+     * @return the registries
+     */
+    static List<HalAccessorRegistry> getRegistries( ClassLoader loader ) {
+        List<HalAccessorRegistry> result = new ArrayList<>();
+        for ( String name : getRegistryNames( loader ) ) {
+            HalAccessorRegistry registry = getRegistry( name, loader );
+            if ( registry != null )
+                result.add( registry );
+        }
+        return result;
+    }
+
+    private static HalAccessorRegistry getRegistry( String name, ClassLoader loader ) {
+        try {
+            return registries.get( Class.forName( name, true, loader ) );
+        } catch ( ClassNotFoundException e ) {
+            return null;
+        }
+    }
+
+    private static synchronized List<String> getRegistryNames( ClassLoader loader ) {
+        List<String> names = registryNames.get( loader );
+        if ( names != null )
+            return names;
+
+        names = new ArrayList<>();
+        try {
+            for ( HalAccessorRegistry registry : ServiceLoader.load( HalAccessorRegistry.class, loader ) )
+                names.add( registry.getClass().getName() );
+        } catch ( ServiceConfigurationError ignored ) {
+            // A broken registry only means that reflection is used instead
+        }
+
+        registryNames.put( loader, names );
+        return names;
+    }
+
+    private static ClassLoader getClassLoader( Class<?> type ) {
+        ClassLoader loader = type.getClassLoader();
+        return loader == null ? ClassLoader.getSystemClassLoader() : loader;
+    }
+}
@@ -0,0 +1,352 @@
+/**
+ * Copyright 2015 Derk-Jan Karrenbeld
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.xpbytes.gson.hal;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonIOException;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Reads newline-delimited documents, one document per line, and decodes them in parallel. The
+ * input is read on the calling thread and split into chunks of lines, which are decoded on an
+ * executor. Results are handed to a {@link Callback} on the calling thread, either in input order
+ * or in the order the chunks complete.
+ *
+ * <pre>
+ * HalBatchReport report = new HalBatchReader&lt;&gt;( gson, Order.class )
+ *     .setOrdered( false )
+ *     .read( input, new HalBatchReader.Callback&lt;Order&gt;() { ... } );
+ * </pre>
+ *
+ * At most {@link #setMaxInFlight(int)} chunks are decoding or waiting to be handed over at any
+ * time; the input is not read any further until a chunk has been handed over. A line that fails
+ * to decode is reported to the callback and does not abort the batch. Blank lines are skipped.
+ *
+ * @param <T> the type of the documents
+ */
+public final class HalBatchReader<T> {
+
+    private static final Charset UTF_8 = Charset.forName( "UTF-8" );
+
+    /**
+     * Receives the results of a batch, always on the thread that reads the batch
+     *
+     * @param <T> the type of the documents
+     */
+    public interface Callback<T> {
+
+        /**
+         * Called with a decoded document
+         *
+         * @param line      the line number of the document, starting at 1
+         * @param resource  the document, or null if the line is the JSON literal null
+         */
+        void onResource( long line, T resource );
+
+        /**
+         * Called with a document that failed to decode
+         *
+         * @param line  the line number of the document, starting at 1
+         * @param json  the line
+         * @param error the failure, usually a {@link com.google.gson.JsonParseException}
+         */
+        void onError( long line, String json, RuntimeException error );
+    }
+
+    private final Gson gson;
+    private final Class<T> type;
+    private Executor executor = ForkJoinPool.commonPool();
+    private int chunkSize = 256;
+    private int maxInFlight = 2 * Runtime.getRuntime().availableProcessors();
+    private boolean ordered = true;
+
+    /**
+     * @param gson the gson instance, usually with a {@link HalTypeAdapterFactory} registered
+     * @param type the type of the documents
+     */
+    public HalBatchReader( Gson gson, Class<T> type ) {
+        this.gson = gson;
+        this.type = type;
+    }
+
+    /**
+     * Sets the executor that decodes the chunks. The common fork-join pool is used by default.
+     * A chunk the executor rejects is decoded on the thread that reads the batch.
+     *
+     * @param executor the executor
+     * @return this reader
+     */
+    public HalBatchReader<T> setExecutor( Executor executor ) {
+        if ( executor == null )
+            throw new IllegalArgumentException( "executor == null" );
+
+        this.executor = executor;
+        return this;
+    }
+
+    /**
+     * Sets the number of lines per chunk. Larger chunks amortize the handover between threads,
+     * smaller ones spread uneven documents better. The default is 256.
+     *
+     * @param chunkSize the number of lines
+     * @return this reader
+     */
+    public HalBatchReader<T> setChunkSize( int chunkSize ) {
+        if ( chunkSize < 1 )
+            throw new IllegalArgumentException( "chunkSize < 1: " + chunkSize );
+
+        this.chunkSize = chunkSize;
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of chunks that are decoding or waiting to be handed over, which
+     * bounds the memory of a batch. The default is twice the number of processors.
+     *
+     * @param maxInFlight the number of chunks
+     * @return this reader
+     */
+    public HalBatchReader<T> setMaxInFlight( int maxInFlight ) {
+        if ( maxInFlight < 1 )
+            throw new IllegalArgumentException( "maxInFlight < 1: " + maxInFlight );
+
+        this.maxInFlight = maxInFlight;
+        return this;
+    }
+
+    /**
+     * Sets whether the results are handed over in input order, which is the default, or in the
+     * order the chunks complete. Unordered batches don't wait for a slow chunk to hand over
+     * the chunks after it.
+     *
+     * @param ordered true for input order
+     * @return this reader
+     */
+    public HalBatchReader<T> setOrdered( boolean ordered ) {
+        this.ordered = ordered;
+        return this;
+    }
+
+    /**
+     * Reads a batch of UTF-8 encoded documents
+     *
+     * @see #read(Reader, Callback)
+     *
+     * @param input     the documents, one per line
+     * @param callback  the callback for the results
+     * @return the report of the batch
+     */
+    public HalBatchReport read( InputStream input, Callback<? super T> callback ) {
+        return read( new InputStreamReader( input, UTF_8 ), callback );
+    }
+
+    /**
+     * Reads a batch of documents. Returns once every document has been handed to the callback.
+     * The input is not closed.
+     *
+     * @param input     the documents, one per line
+     * @param callback  the callback for the results
+     * @return the report of the batch
+     *
+     * @throws JsonIOException if the input can't be read or the thread is interrupted
+     */
+    public HalBatchReport read( Reader input, Callback<? super T> callback ) {
+        return new Batch( callback ).run( input instanceof BufferedReader ?
+            (BufferedReader)input :
+            new BufferedReader( input, 64 * 1024 ) );
+    }
+
+    /**
+     * The state of a single batch
+     */
+    private final class Batch {
+        private final Callback<? super T> callback;
+        private final Deque<FutureTask<Chunk>> pending = new ArrayDeque<>();
+        private final BlockingQueue<FutureTask<Chunk>> completed;
+        private long documents;
+        private long errors;
+
+        Batch( Callback<? super T> callback ) {
+            this.callback = callback;
+            this.completed = ordered ? null : new LinkedBlockingQueue<FutureTask<Chunk>>();
+        }
+
+        HalBatchReport run( BufferedReader input ) {
+            long start = System.nanoTime();
+            try {
+                long lineNumber = 0;
+                Chunk chunk = new Chunk( chunkSize );
+                String line;
+                while ( ( line = input.readLine() ) != null ) {
+                    lineNumber++;
+                    if ( isBlank( line ) )
+                        continue;
+
+                    chunk.add( lineNumber, line );
+                    if ( chunk.size < chunkSize )
+                        continue;
+
+                    submit( chunk );
+                    chunk = new Chunk( chunkSize );
+
+                    // Hand over whatever completed in the meantime, without waiting
+                    while ( handOver( false ) )
+                        continue;
+                }
+
+                if ( chunk.size > 0 )
+                    submit( chunk );
+                while ( !pending.isEmpty() )
+                    handOver( true );
+            } catch ( IOException e ) {
+                throw new JsonIOException( e );
+            } catch ( InterruptedException e ) {
+                Thread.currentThread().interrupt();
+                throw new JsonIOException( "Interrupted while reading a batch", e );
+            } finally {
+                for ( FutureTask<Chunk> task : pending )
+                    task.cancel( false );
+            }
+
+            return new HalBatchReport( documents, errors, System.nanoTime() - start );
+        }
+
+        private void submit( Chunk chunk ) throws InterruptedException {
+            // Backpressure: the input is not read any further until there is room for the chunk
+            while ( pending.size() >= maxInFlight )
+                handOver( true );
+
+            FutureTask<Chunk> task = ordered ?
+                new FutureTask<>( chunk ) :
+                new FutureTask<Chunk>( chunk ) {
+                    @Override protected void done() {
+                        completed.add( this );
+                    }
+                };
+            try {
+                executor.execute( task );
+            } catch ( RejectedExecutionException e ) {
+                // Decoded on the reading thread instead, so the lines of the chunk are not lost
+                task.run();
+            }
+            pending.addLast( task );
+        }
+
+        /**
+         * Hands the next chunk that is complete over to the callback
+         *
+         * @param block true to wait for a chunk to complete
+         * @return true if a chunk was handed over
+         */
+        private boolean handOver( boolean block ) throws InterruptedException {
+            FutureTask<Chunk> task;
+            if ( ordered ) {
+                task = pending.peekFirst();
+                if ( task == null || ( !block && !task.isDone() ) )
+                    return false;
+                pending.removeFirst();
+            } else {
+                task = block ? completed.take() : completed.poll();
+                if ( task == null )
+                    return false;
+                pending.remove( task );
+            }
+
+            Chunk chunk;
+            try {
+                chunk = task.get();
+            } catch ( ExecutionException e ) {
+                // Chunks catch every failure of a line, so this is an error of the VM
+                if ( e.getCause() instanceof Error )
+                    throw (Error)e.getCause();
+                throw new IllegalStateException( e.getCause() );
+            }
+
+            for ( int i = 0; i < chunk.size; i++ ) {
+                documents++;
+                if ( chunk.errors[ i ] == null ) {
+                    @SuppressWarnings( "unchecked" )
+                    T resource = (T)chunk.results[ i ];
+                    callback.onResource( chunk.lineNumbers[ i ], resource );
+                } else {
+                    errors++;
+                    callback.onError( chunk.lineNumbers[ i ], chunk.lines[ i ], chunk.errors[ i ] );
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * A chunk of lines, decoded as a single task
+     */
+    private final class Chunk implements Callable<Chunk> {
+        final long[] lineNumbers;
+        final String[] lines;
+        final Object[] results;
+        final RuntimeException[] errors;
+        int size;
+
+        Chunk( int capacity ) {
+            this.lineNumbers = new long[ capacity ];
+            this.lines = new String[ capacity ];
+            this.results = new Object[ capacity ];
+            this.errors = new RuntimeException[ capacity ];
+        }
+
+        void add( long lineNumber, String line ) {
+            lineNumbers[ size ] = lineNumber;
+            lines[ size ] = line;
+            size++;
+        }
+
+        @Override public Chunk call() {
+            for ( int i = 0; i < size; i++ ) {
+                try {
+                    results[ i ] = gson.fromJson( lines[ i ], type );
+                } catch ( RuntimeException e ) {
+                    errors[ i ] = e;
+                }
+            }
+            return this;
+        }
+    }
+
+    private static boolean isBlank( String line ) {
+        for ( int i = 0; i < line.length(); i++ ) {
+            if ( line.charAt( i ) > ' ' )
+                return false;
+        }
+        return true;
+    }
+}
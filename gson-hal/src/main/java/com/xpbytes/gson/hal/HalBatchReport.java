@@ -0,0 +1,68 @@
+/**
+ * Copyright 2015 Derk-Jan Karrenbeld
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.xpbytes.gson.hal;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The outcome of a batch read by {@link HalBatchReader}
+ */
+public final class HalBatchReport {
+
+    private final long documents;
+    private final long errors;
+    private final long durationNanos;
+
+    HalBatchReport( long documents, long errors, long durationNanos ) {
+        this.documents = documents;
+        this.errors = errors;
+        this.durationNanos = durationNanos;
+    }
+
+    /**
+     * @return the number of documents, which excludes blank lines
+     */
+    public long getDocuments() {
+        return documents;
+    }
+
+    /**
+     * @return the number of documents that failed to decode
+     */
+    public long getErrors() {
+        return errors;
+    }
+
+    /**
+     * Gets the duration of the batch
+     *
+     * @param unit the unit of the duration
+     * @return the duration
+     */
+    public long getDuration( TimeUnit unit ) {
+        return unit.convert( durationNanos, TimeUnit.NANOSECONDS );
+    }
+
+    @Override public String toString() {
+        return String.format( Locale.US,
+            "Read %d documents with %d errors in %.1f ms",
+            documents,
+            errors,
+            durationNanos / 1e6 );
+    }
+}
@@ -0,0 +1,639 @@
+/**
+ * Copyright 2015 Derk-Jan Karrenbeld
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.xpbytes.gson.hal;
+
+import com.google.gson.FieldNamingPolicy;
+import com.google.gson.Gson;
+import com.google.gson.JsonIOException;
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.annotations.SerializedName;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The immutable binding plan of a {@link HalResource} type. Everything the adapter needs per
+ * member (JSON names, optional flags, accessors and child adapters) is resolved once, when the
+ * plan is created, so reading or writing a document does no reflection.
+ *
+ * A plan is created either by scanning the fields and annotations of the type, or from the
+ * generated {@link HalAccessor} of the type, in which case no reflection is used at all.
+ *
+ * @param <T> the resource type
+ */
+final class HalBindingPlan<T> {
+
+    /** The modifiers of fields that are never bound, like Gson excludes them by default */
+    private static final int SKIPPED_MODIFIERS = Modifier.STATIC | Modifier.TRANSIENT;
+
+    /** The generated accessor, or null if the plan was created through reflection */
+    final HalAccessor<T> accessor;
+
+    /** The regular, non-HAL fields by their JSON name */
+    final Map<String, BoundField> fields;
+
+    /** The regular, non-HAL fields that are serialized, in declaration order */
+    final BoundField[] serializedFields;
+
+    /** The link bindings by their JSON name */
+    final Map<String, Binding> links;
+
+    /** The link bindings that are bound to a relation, by their relation */
+    final Map<String, Binding> relations;
+
+    /** The embed bindings by their JSON name */
+    final Map<String, Binding> embeds;
+
+    /** All link and embed bindings, indexed by {@link Binding#index} */
+    final Binding[] bindings;
+
+    /** True if any of the bindings is required */
+    final boolean hasRequired;
+
+    /** The binding of the self link, or null if the self link is not bound to a single value */
+    final Binding self;
+
+    private HalBindingPlan( HalAccessor<T> accessor, Map<String, BoundField> fields,
+        BoundField[] serializedFields, Map<String, Binding> links, Map<String, Binding> relations,
+        Map<String, Binding> embeds, Binding[] bindings ) {
+        this.accessor = accessor;
+        this.fields = fields;
+        this.serializedFields = serializedFields;
+        this.links = links;
+        this.relations = relations;
+        this.embeds = embeds;
+        this.bindings = bindings;
+
+        boolean required = false;
+        for ( Binding binding : bindings )
+            required |= !binding.optional;
+        this.hasRequired = required;
+
+        Binding self = links.get( HalConstants.SELF_LINK );
+        this.self = self != null && self.collection == null ? self : null;
+    }
+
+    /**
+     * Creates the binding plan for a type by scanning its fields. Child adapters are resolved
+     * through the {@link Gson} instance, which takes care of recursive types.
+     *
+     * @param gson      the gson instance
+     * @param type      the resource type
+     * @param pool      the intern pool for links, or null
+     * @param parallel  the parallel binding of large embedded arrays, or null
+     * @param <T>       the resource type
+     * @return the plan
+     */
+    static <T> HalBindingPlan<T> create( Gson gson, TypeToken<T> type, HalInternPool pool,
+        HalParallelEmbeds parallel ) {
+        Builder<T> builder = new Builder<>( gson, type.getRawType(), null, pool, parallel );
+
+        for ( Field field : HalReflection.getAllFields( type.getRawType() ) ) {
+            // The compact representation of a link is bound by HalLinkObjectTypeAdapter
+            if ( field.getDeclaringClass() == HalLinkObject.class )
+                continue;
+
+            // Skipped by the generated accessors too, which can't know how the Gson instance excludes
+            if ( ( field.getModifiers() & SKIPPED_MODIFIERS ) != 0 )
+                continue;
+
+            if ( HalReflection.isLink( field ) ) {
+                HalLink link = field.getAnnotation( HalLink.class );
+                builder.addLink( field.getName(),
+                    HalReflection.getJsonFieldName( link, field ),
+                    link == null || link.rel().isEmpty() ? null : link.rel(),
+                    link != null && link.optional(),
+                    HalReflection.getFieldGenericType( field ),
+                    HalFieldAccessor.of( field ) );
+                continue;
+            }
+
+            if ( HalReflection.isEmbed( field ) ) {
+                HalEmbed embed = field.getAnnotation( HalEmbed.class );
+                builder.addEmbed( field.getName(),
+                    HalReflection.getJsonFieldName( embed, field ),
+                    embed != null && embed.optional(),
+                    HalReflection.getFieldGenericType( field ),
+                    HalFieldAccessor.of( field ) );
+                continue;
+            }
+
+            boolean serialize = !excludes( gson, field, true );
+            boolean deserialize = !excludes( gson, field, false );
+            if ( !serialize && !deserialize )
+                continue;
+
+            SerializedName serializedName = field.getAnnotation( SerializedName.class );
+            builder.addField(
+                serializedName == null ? gson.fieldNamingStrategy().translateName( field ) : serializedName.value(),
+                serializedName == null ? new String[ 0 ] : serializedName.alternate(),
+                serialize,
+                deserialize,
+                HalReflection.getFieldGenericType( field ),
+                HalFieldAccessor.of( field ) );
+        }
+
+        return builder.build();
+    }
+
+    /**
+     * Creates the binding plan for a type from its generated accessor, without reflection.
+     * Reflection is only used to honor a naming strategy or exclusion configuration of the
+     * {@link Gson} instance, as those are defined in terms of {@link Field}s.
+     *
+     * @param gson      the gson instance
+     * @param accessor  the generated accessor
+     * @param pool      the intern pool for links, or null
+     * @param parallel  the parallel binding of large embedded arrays, or null
+     * @param <T>       the resource type
+     * @return the plan
+     */
+    static <T> HalBindingPlan<T> create( Gson gson, HalAccessor<T> accessor, HalInternPool pool,
+        HalParallelEmbeds parallel ) {
+        Builder<T> builder = new Builder<>( gson, accessor.type(), accessor, pool, parallel );
+        boolean defaultNaming = gson.fieldNamingStrategy() == FieldNamingPolicy.IDENTITY;
+        boolean defaultExclusion = isDefaultExclusion( gson );
+
+        HalMember[] members = accessor.members();
+        for ( int i = 0; i < members.length; i++ ) {
+            HalMember member = members[ i ];
+            HalFieldAccessor fieldAccessor = HalFieldAccessor.of( accessor, i );
+
+            switch ( member.getKind() ) {
+                case LINK:
+                    builder.addLink( member.getFieldName(), member.getJsonName(), member.getRelation(),
+                        member.isOptional(), member.getType(), fieldAccessor );
+                    break;
+
+                case EMBED:
+                    builder.addEmbed( member.getFieldName(), member.getJsonName(), member.isOptional(),
+                        member.getType(), fieldAccessor );
+                    break;
+
+                default:
+                    String name = member.getJsonName();
+                    boolean serialize = true;
+                    boolean deserialize = true;
+                    if ( !defaultExclusion || ( name == null && !defaultNaming ) ) {
+                        Field field = getDeclaredField( member );
+                        serialize = !excludes( gson, field, true );
+                        deserialize = !excludes( gson, field, false );
+                        if ( !serialize && !deserialize )
+                            break;
+
+                        if ( name == null )
+                            name = gson.fieldNamingStrategy().translateName( field );
+                    }
+
+                    builder.addField( name == null ? member.getFieldName() : name,
+                        member.getAlternates(), serialize, deserialize, member.getType(), fieldAccessor );
+                    break;
+            }
+        }
+
+        return builder.build();
+    }
+
+    private static boolean isDefaultExclusion( Gson gson ) {
+        try {
+            return HalGsonInternals.isDefaultExclusion( gson );
+        } catch ( LinkageError e ) {
+            return false;
+        }
+    }
+
+    private static boolean excludes( Gson gson, Field field, boolean serialize ) {
+        try {
+            return HalGsonInternals.excludes( gson, field, serialize );
+        } catch ( LinkageError e ) {
+            // Without the excluder of Gson, exclude what it excludes by default
+            return ( field.getModifiers() & SKIPPED_MODIFIERS ) != 0;
+        }
+    }
+
+    private static Field getDeclaredField( HalMember member ) {
+        try {
+            return member.getDeclaringClass().getDeclaredField( member.getFieldName() );
+        } catch ( NoSuchFieldException e ) {
+            throw new JsonIOException( "Generated accessor is out of date with " +
+                member.getDeclaringClass().getName(), e );
+        }
+    }
+
+    /**
+     * Collects the members of a plan
+     */
+    private static final class Builder<T> {
+        private final Gson gson;
+        private final Class<?> type;
+        private final HalAccessor<T> accessor;
+        private final HalInternPool pool;
+        private final HalParallelEmbeds parallel;
+        private final Map<String, BoundField> fields = new LinkedHashMap<>();
+        private final List<BoundField> serializedFields = new ArrayList<>();
+        private final Map<String, Binding> links = new HashMap<>();
+        private final Map<String, Binding> relations = new HashMap<>();
+        private final Map<String, Binding> embeds = new HashMap<>();
+        private final List<Binding> bindings = new ArrayList<>();
+
+        Builder( Gson gson, Class<?> type, HalAccessor<T> accessor, HalInternPool pool,
+            HalParallelEmbeds parallel ) {
+            this.gson = gson;
+            this.type = type;
+            this.accessor = accessor;
+            this.pool = pool;
+            this.parallel = parallel;
+        }
+
+        void addField( String name, String[] alternates, boolean serialize, boolean deserialize,
+            Type fieldType, HalFieldAccessor fieldAccessor ) {
+            TypeToken<?> token = TypeToken.get( fieldType );
+            BoundField field = new BoundField( name, fieldAccessor, token.getRawType().isPrimitive(),
+                gson.getAdapter( token ) );
+
+            if ( serialize )
+                serializedFields.add( field );
+
+            if ( !deserialize )
+                return;
+
+            putBoundField( name, field );
+            for ( String alternate : alternates )
+                putBoundField( alternate, field );
+        }
+
+        void addLink( String fieldName, String name, String relation, boolean optional, Type fieldType,
+            HalFieldAccessor fieldAccessor ) {
+            Type elementType = HalReflection.getCollectionElementType( fieldType );
+            Class<?> itemType = TypeToken.get( elementType == null ? fieldType : elementType ).getRawType();
+
+            // If this is not a descendant of a HalLinkObject, we better treat it as one.
+            Class<?> linkType = HalLinkObject.class.isAssignableFrom( itemType ) ?
+                itemType : HalLinkObject.class;
+
+            Binding binding = new Binding( bindings.size(), name, optional,
+                HalLinkConverter.forType( fieldName, itemType ),
+                collectionFactory( fieldName, fieldType, elementType ),
+                gson.getAdapter( linkType ),
+                linkType,
+                fieldAccessor,
+                pool,
+                null );
+            putBinding( links, binding );
+
+            if ( relation != null && relations.put( relation, binding ) != null )
+                throw new IllegalArgumentException( String.format( Locale.US,
+                    "%s declares multiple links with relation %s",
+                    type,
+                    relation )
+                );
+        }
+
+        void addEmbed( String fieldName, String name, boolean optional, Type fieldType,
+            HalFieldAccessor fieldAccessor ) {
+            Type elementType = HalReflection.getCollectionElementType( fieldType );
+
+            Type itemType = elementType == null ? fieldType : elementType;
+            putBinding( embeds, new Binding( bindings.size(), name, optional,
+                null,
+                collectionFactory( fieldName, fieldType, elementType ),
+                gson.getAdapter( TypeToken.get( itemType ) ),
+                itemType,
+                fieldAccessor,
+                null,
+                elementType == null ? null : parallel ) );
+        }
+
+        private static HalCollectionFactory collectionFactory( String fieldName, Type fieldType,
+            Type elementType ) {
+            return elementType == null ?
+                null :
+                HalCollectionFactory.forType( fieldName, TypeToken.get( fieldType ).getRawType() );
+        }
+
+        HalBindingPlan<T> build() {
+            return new HalBindingPlan<>(
+                accessor,
+                Collections.unmodifiableMap( fields ),
+                serializedFields.toArray( new BoundField[ serializedFields.size() ] ),
+                Collections.unmodifiableMap( links ),
+                Collections.unmodifiableMap( relations ),
+                Collections.unmodifiableMap( embeds ),
+                bindings.toArray( new Binding[ bindings.size() ] )
+            );
+        }
+
+        private void putBoundField( String name, BoundField field ) {
+            BoundField previous = fields.put( name, field );
+            if ( previous != null )
+                throw new IllegalArgumentException( String.format( Locale.US,
+                    "%s declares multiple JSON fields named %s",
+                    type,
+                    name )
+                );
+        }
+
+        private void putBinding( Map<String, Binding> named, Binding binding ) {
+            Binding previous = named.put( binding.name, binding );
+            if ( previous != null )
+                throw new IllegalArgumentException( String.format( Locale.US,
+                    "%s declares multiple %s named %s",
+                    type,
+                    binding.link ? "links" : "embeds",
+                    binding.name )
+                );
+            bindings.add( binding );
+        }
+    }
+
+    /**
+     * A regular, non-HAL field with the adapter for its type
+     */
+    static final class BoundField {
+        final String name;
+        final HalFieldAccessor accessor;
+        final boolean primitive;
+        final TypeAdapter<?> adapter;
+
+        BoundField( String name, HalFieldAccessor accessor, boolean primitive, TypeAdapter<?> adapter ) {
+            this.name = name;
+            this.accessor = accessor;
+            this.primitive = primitive;
+            this.adapter = adapter;
+        }
+
+        void read( JsonReader in, Object object ) throws IOException {
+            Object value = adapter.read( in );
+            if ( value == null && primitive )
+                return;
+
+            accessor.set( object, value );
+        }
+
+        void write( JsonWriter out, Object object ) throws IOException {
+            out.name( name );
+            @SuppressWarnings( "unchecked" )
+            TypeAdapter<Object> valueAdapter = (TypeAdapter<Object>)adapter;
+            valueAdapter.write( out, accessor.get( object ) );
+        }
+    }
+
+    /**
+     * A link or embed field with its resolved JSON name, optional flag, accessor and child adapter.
+     * Collection fields accept both a single object and an array of objects, as allowed by the
+     * HAL specification, and are always written as an array.
+     */
+    static final class Binding {
+        final int index;
+        final String name;
+        final boolean optional;
+        final boolean link;
+        final HalLinkConverter converter;
+        final HalCollectionFactory collection;
+        final TypeAdapter<?> adapter;
+        final Type type;
+        final HalFieldAccessor accessor;
+        final HalInternPool pool;
+        final HalParallelEmbeds parallel;
+
+        /**
+         * The size of the last array that was read, used to presize the next collection. Racy
+         * updates only affect the initial capacity.
+         */
+        private int sizeHint;
+
+        /**
+         * @param index         the index of the binding in the plan
+         * @param name          the JSON name
+         * @param optional      true if the binding may be absent
+         * @param converter     the link converter, or null if this is an embed
+         * @param collection    the collection factory, or null if this is not a collection field
+         * @param adapter       the adapter of the link object or embedded resource
+         * @param type          the type of the link object or embedded resource
+         * @param accessor      the accessor of the field
+         * @param pool          the intern pool for links, or null
+         * @param parallel      the parallel binding of large arrays, or null to read them sequentially
+         */
+        Binding( int index, String name, boolean optional, HalLinkConverter converter,
+            HalCollectionFactory collection, TypeAdapter<?> adapter, Type type, HalFieldAccessor accessor,
+            HalInternPool pool, HalParallelEmbeds parallel ) {
+            this.index = index;
+            this.name = name;
+            this.optional = optional;
+            this.link = converter != null;
+            this.converter = converter;
+            this.collection = collection;
+            this.adapter = adapter;
+            this.type = type;
+            this.accessor = accessor;
+            this.pool = pool;
+            this.parallel = parallel;
+        }
+
+        /**
+         * Reads the value of the binding and assigns it to the object. A read that reuses values
+         * reads into the value that is assigned already, if it is of the same type.
+         *
+         * @param in            the reader, positioned at the value
+         * @param object        the object
+         * @param context       the state of the read
+         * @param depth         the embed depth of the object
+         */
+        void read( JsonReader in, Object object, HalReadContext context, int depth ) throws IOException {
+            Object current = context.reuse ? accessor.get( object ) : null;
+            Object value = collection == null ?
+                readItem( in, context, depth, current ) :
+                readCollection( in, context, depth, current );
+            if ( value == current )
+                return;
+
+            accessor.set( object, value );
+        }
+
+        /**
+         * Reads a collection, decoding each item straight from the array. The items of an embedded
+         * array that is larger than the parallel threshold are bound in parallel from there on.
+         *
+         * A collection that is reused keeps its instance. The items of a list are read into the
+         * item at the same position, other collections are refilled.
+         *
+         * @param in        the reader, positioned at the array, a single item or null
+         * @param current   the collection to reuse, or null
+         * @return the collection or null
+         */
+        private Collection<Object> readCollection( JsonReader in, HalReadContext context, int depth,
+            Object current ) throws IOException {
+            if ( in.peek() == JsonToken.NULL ) {
+                in.nextNull();
+                return null;
+            }
+
+            Collection<Object> items;
+            List<Object> reused = null;
+            if ( collection.creates( current ) ) {
+                @SuppressWarnings( "unchecked" )
+                Collection<Object> created = (Collection<Object>)current;
+                items = created;
+                if ( items instanceof List )
+                    reused = (List<Object>)items;
+                else
+                    items.clear();
+            } else {
+                items = null;
+            }
+
+            if ( in.peek() != JsonToken.BEGIN_ARRAY ) {
+                if ( items == null )
+                    items = collection.create( 1 );
+                Object item = readItem( in, context, depth, reused == null || reused.isEmpty() ? null : reused.get( 0 ) );
+                items.clear();
+                items.add( item );
+                return items;
+            }
+
+            if ( items == null )
+                items = collection.create( sizeHint );
+
+            in.beginArray();
+            int count = 0;
+            for ( ; in.hasNext(); count++ ) {
+                if ( parallel != null && count == parallel.threshold ) {
+                    if ( reused != null ) {
+                        reused.subList( count, reused.size() ).clear();
+                        reused = null;
+                    }
+                    parallel.read( in, adapter, items, context, depth + 1 );
+                    break;
+                }
+
+                if ( reused != null && count < reused.size() ) {
+                    Object existing = reused.get( count );
+                    Object item = readItem( in, context, depth, existing );
+                    if ( item != existing )
+                        reused.set( count, item );
+                } else {
+                    items.add( readItem( in, context, depth, null ) );
+                }
+            }
+            in.endArray();
+
+            if ( reused != null && reused.size() > count )
+                reused.subList( count, reused.size() ).clear();
+
+            // Only written on change, so parallel reads don't contend for the cache line
+            if ( sizeHint != items.size() )
+                sizeHint = items.size();
+            return items;
+        }
+
+        /**
+         * Reads a single item. Embedded resources are read with the projection of the read, one
+         * level deeper. Links that are bound by their href only are read into the scratch link
+         * of the read, and keep the current value if its href is the same.
+         *
+         * @param current the item to reuse, or null
+         */
+        private Object readItem( JsonReader in, HalReadContext context, int depth, Object current )
+            throws IOException {
+            if ( !link ) {
+                if ( adapter instanceof HalTypeAdapter )
+                    return ( (HalTypeAdapter<?>)adapter ).readResource( in, context, depth + 1, current );
+                if ( adapter instanceof HalLazyTypeAdapter )
+                    return ( (HalLazyTypeAdapter<?>)adapter ).read( in, context, depth + 1 );
+                return adapter.read( in );
+            }
+
+            HalLinkObject linkObject;
+            if ( !( adapter instanceof HalLinkObjectTypeAdapter ) )
+                linkObject = (HalLinkObject)adapter.read( in );
+            else if ( converter == HalLinkConverter.LINK_OBJECT )
+                linkObject = ( (HalLinkObjectTypeAdapter<?>)adapter ).read( in, current );
+            else
+                linkObject = ( (HalLinkObjectTypeAdapter<?>)adapter ).read( in, context.scratchLink() );
+
+            if ( linkObject == null )
+                return null;
+            if ( pool != null )
+                pool.intern( linkObject );
+            if ( current != null && converter != HalLinkConverter.LINK_OBJECT &&
+                current.toString().equals( linkObject.getHref() ) )
+                return current;
+            return converter.convert( linkObject, pool );
+        }
+
+        /**
+         * Writes the value of the binding
+         *
+         * @param out   the writer, positioned after the name of the binding
+         * @param value the value of the field, not null
+         */
+        void write( JsonWriter out, Object value ) throws IOException {
+            if ( collection == null ) {
+                writeItem( out, value );
+                return;
+            }
+
+            out.beginArray();
+            for ( Object item : (Collection<?>)value )
+                writeItem( out, item );
+            out.endArray();
+        }
+
+        private void writeItem( JsonWriter out, Object item ) throws IOException {
+            if ( item == null ) {
+                out.nullValue();
+                return;
+            }
+
+            @SuppressWarnings( "unchecked" )
+            TypeAdapter<Object> itemAdapter = (TypeAdapter<Object>)adapter;
+            itemAdapter.write( out, link ? converter.toLink( item ) : item );
+        }
+
+        /**
+         * Creates the exception for when this required binding was not present
+         *
+         * @return the exception
+         */
+        JsonParseException missing() {
+            return new JsonParseException(
+                String.format( Locale.US,
+                    link ?
+                        "Expected link `%s` in the links root `%s` to be present" :
+                        "Expected embed `%s` in the embedded root `%s` to be present",
+                    name,
+                    link ? HalConstants.RESERVED_LINKS_ROOT : HalConstants.RESERVED_EMBEDDED_ROOT
+                )
+            );
+        }
+    }
+}
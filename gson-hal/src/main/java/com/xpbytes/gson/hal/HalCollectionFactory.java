@@ -0,0 +1,162 @@
+/**
+ * Copyright 2015 Derk-Jan Karrenbeld
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.xpbytes.gson.hal;
+
+import com.google.gson.JsonIOException;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Modifier;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.TreeSet;
+
+/**
+ * Creates the collection of a collection-valued link or embed field. The implementation is
+ * selected once per field, when the binding plan is created.
+ */
+abstract class HalCollectionFactory {
+
+    /**
+     * Creates an empty collection
+     *
+     * @param expectedSize the expected number of items, used to presize the collection
+     * @return the collection
+     */
+    abstract Collection<Object> create( int expectedSize );
+
+    /**
+     * Checks if a collection is of the implementation this factory creates, so it can be read into
+     * instead of creating a new one
+     *
+     * @param value the value of the field, or null
+     * @return true if it is
+     */
+    abstract boolean creates( Object value );
+
+    /**
+     * Selects the factory for a field. Interfaces get the same implementations Gson uses:
+     * {@link ArrayList} for lists and plain collections, {@link LinkedHashSet} for sets, {@link
+     * TreeSet} for sorted sets and {@link ArrayDeque} for queues. Concrete types are created
+     * through their no-args constructor.
+     *
+     * @param fieldName         the name of the field
+     * @param collectionType    the raw type of the field
+     * @return the factory
+     *
+     * @throws JsonIOException if the collection type can't be instantiated
+     */
+    static HalCollectionFactory forType( String fieldName, Class<?> collectionType ) {
+        if ( collectionType.isInterface() || Modifier.isAbstract( collectionType.getModifiers() ) ) {
+            if ( collectionType.isAssignableFrom( ArrayList.class ) )
+                return LIST;
+            if ( collectionType.isAssignableFrom( LinkedHashSet.class ) )
+                return SET;
+            if ( collectionType.isAssignableFrom( TreeSet.class ) )
+                return SORTED_SET;
+            if ( collectionType.isAssignableFrom( ArrayDeque.class ) )
+                return QUEUE;
+
+            throw new JsonIOException( String.format( Locale.US,
+                "Field %s is of type %s, which is not a supported collection type",
+                fieldName,
+                collectionType.getName() )
+            );
+        }
+
+        try {
+            Constructor<?> constructor = collectionType.getDeclaredConstructor();
+            constructor.setAccessible( true );
+            return new Instantiating( constructor );
+        } catch ( NoSuchMethodException | SecurityException e ) {
+            throw new JsonIOException( String.format( Locale.US,
+                "Field %s is of type %s, which has no accessible no-args constructor",
+                fieldName,
+                collectionType.getName() ), e
+            );
+        }
+    }
+
+    private static final HalCollectionFactory LIST = new HalCollectionFactory() {
+        @Override Collection<Object> create( int expectedSize ) {
+            return new ArrayList<>( expectedSize );
+        }
+
+        @Override boolean creates( Object value ) {
+            return value != null && value.getClass() == ArrayList.class;
+        }
+    };
+
+    private static final HalCollectionFactory SET = new HalCollectionFactory() {
+        @Override Collection<Object> create( int expectedSize ) {
+            // Large enough to hold the expected items without rehashing at the default load factor
+            return new LinkedHashSet<>( Math.max( 16, (int)( expectedSize / .75f ) + 1 ) );
+        }
+
+        @Override boolean creates( Object value ) {
+            return value != null && value.getClass() == LinkedHashSet.class;
+        }
+    };
+
+    private static final HalCollectionFactory SORTED_SET = new HalCollectionFactory() {
+        @Override Collection<Object> create( int expectedSize ) {
+            return new TreeSet<>();
+        }
+
+        @Override boolean creates( Object value ) {
+            return value != null && value.getClass() == TreeSet.class;
+        }
+    };
+
+    private static final HalCollectionFactory QUEUE = new HalCollectionFactory() {
+        @Override Collection<Object> create( int expectedSize ) {
+            return new ArrayDeque<>( Math.max( 1, expectedSize ) );
+        }
+
+        @Override boolean creates( Object value ) {
+            return value != null && value.getClass() == ArrayDeque.class;
+        }
+    };
+
+    private static final class Instantiating extends HalCollectionFactory {
+        private final Constructor<?> constructor;
+
+        Instantiating( Constructor<?> constructor ) {
+            this.constructor = constructor;
+        }
+
+        @Override Collection<Object> create( int expectedSize ) {
+            try {
+                @SuppressWarnings( "unchecked" )
+                Collection<Object> items = (Collection<Object>)constructor.newInstance();
+                return items;
+            } catch ( InstantiationException | IllegalAccessException e ) {
+                throw new JsonIOException( "Unable to invoke " + constructor + " with no args", e );
+            } catch ( InvocationTargetException e ) {
+                throw new JsonIOException( "Failed to invoke " + constructor + " with no args",
+                    e.getTargetException() );
+            }
+        }
+
+        @Override boolean creates( Object value ) {
+            return value != null && value.getClass() == constructor.getDeclaringClass();
+        }
+    }
+}
@@ -19,5 +19,6 @@ package com.xpbytes.gson.hal;
 final class HalConstants {
     public static final String RESERVED_LINKS_ROOT = "_links";
     public static final String RESERVED_EMBEDDED_ROOT = "_embedded";
+    public static final String SELF_LINK = "self";
 
 }
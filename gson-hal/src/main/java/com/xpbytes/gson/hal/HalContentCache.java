@@ -0,0 +1,302 @@
+/**
+ * Copyright 2015 Derk-Jan Karrenbeld
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.xpbytes.gson.hal;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Remembers resources by a hash of the content they were bound from, so content that is unchanged
+ * since it was last read resolves to the resource bound before instead of being bound again. This
+ * suits polling, where most of a document, or all of it, is the same as in the previous response.
+ *
+ * Content is looked up by a 64-bit FNV-1a hash of the raw content, computed as it streams by, and
+ * a hit is only taken once the content turns out to be equal to the content that was bound, which
+ * the cache keeps a copy of. Documents pushed to a parser are never held as a whole, so those are
+ * compared by their SHA-256 digest instead. Any difference in the content, including whitespace,
+ * is a miss; the resources of unchanged content are shared with earlier results, so they should
+ * be treated as immutable. Two places look up content:
+ *
+ * <ul>
+ *     <li>{@link #fromJson(Gson, String, Class)} hashes a whole document before it is parsed, and
+ *     only parses it if it changed</li>
+ *     <li>{@link HalPushParser#setContentCache(HalContentCache)} hashes the document and every
+ *     embed and item as their bytes arrive, and binds only those that changed</li>
+ * </ul>
+ *
+ * Content is only shared between reads through the same type adapter, so a cache can be shared
+ * by Gson instances that bind differently. Like {@link HalInternPool}, the cache is a
+ * direct-mapped table: each hash has a single slot, and
+ * replaces whatever occupied that slot before. Lookups are lock-free and the cache can be shared by
+ * any number of threads.
+ */
+public final class HalContentCache {
+
+    private static final long OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long PRIME = 0x100000001b3L;
+
+    private final AtomicReferenceArray<Entry> entries;
+    private final int mask;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * @param capacity the number of documents and subtrees to keep, rounded up to a power of two
+     */
+    public HalContentCache( int capacity ) {
+        if ( capacity <= 0 || capacity > 1 << 30 )
+            throw new IllegalArgumentException( "capacity must be between 1 and 2^30" );
+
+        int size = Math.max( 1, Integer.highestOneBit( capacity - 1 ) << 1 );
+        this.entries = new AtomicReferenceArray<>( size );
+        this.mask = size - 1;
+    }
+
+    /**
+     * Deserializes a document, unless it is the same as a document of the same type that was read
+     * through this cache before. Hashing the document takes a single pass over its characters,
+     * which is a fraction of the cost of parsing it.
+     *
+     * @param gson  the gson instance
+     * @param json  the document
+     * @param type  the type of the document
+     * @param <T>   the type of the document
+     * @return the resource, which is the one read before if the document is unchanged
+     *
+     * @throws com.google.gson.JsonSyntaxException if the document is malformed
+     */
+    public <T> T fromJson( Gson gson, String json, Class<T> type ) {
+        if ( json == null )
+            return null;
+
+        long hash = OFFSET_BASIS;
+        for ( int i = 0; i < json.length(); i++ )
+            hash = update( hash, json.charAt( i ) );
+
+        // A document read by another Gson instance, or with another scoped projection, was bound
+        // differently
+        TypeAdapter<T> adapter = gson.getAdapter( type );
+        HalProjection projection = HalProjection.current( null );
+        Object cached = get( hash, json, adapter, projection );
+        if ( cached != null )
+            return type.cast( cached );
+
+        T resource = gson.fromJson( json, type );
+        put( hash, json, adapter, projection, resource );
+        return resource;
+    }
+
+    /**
+     * Gets the number of lookups that resolved to a resource read before
+     *
+     * @return the number of hits
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Gets the number of lookups of content that had to be bound
+     *
+     * @return the number of misses
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Gets the number of documents and subtrees the cache holds at most
+     *
+     * @return the capacity
+     */
+    public int getCapacity() {
+        return mask + 1;
+    }
+
+    /**
+     * Removes all resources and resets the counters
+     */
+    public void clear() {
+        for ( int i = 0; i <= mask; i++ )
+            entries.set( i, null );
+        hits.reset();
+        misses.reset();
+    }
+
+    /**
+     * Starts a hash
+     *
+     * @param seed  what the content is bound to, such as the name of an embed, or 0
+     * @return the initial hash
+     */
+    static long start( long seed ) {
+        return ( OFFSET_BASIS ^ seed ) * PRIME;
+    }
+
+    /**
+     * Adds a byte or character of the content to a hash
+     *
+     * @param hash  the hash so far
+     * @param c     the byte, as an unsigned value, or the character
+     * @return the hash
+     */
+    static long update( long hash, int c ) {
+        return ( hash ^ c ) * PRIME;
+    }
+
+    /**
+     * Creates the digest that documents which are not held as a whole are compared by
+     *
+     * @return the digest
+     */
+    static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance( "SHA-256" );
+        } catch ( NoSuchAlgorithmException e ) {
+            // Every Java platform is required to support SHA-256
+            throw new IllegalStateException( e );
+        }
+    }
+
+    /**
+     * Gets the hash of a digest
+     *
+     * @param digest the digest
+     * @return the hash
+     */
+    static long hash( byte[] digest ) {
+        long hash = 0;
+        for ( int i = 0; i < 8; i++ )
+            hash = hash << 8 | ( digest[ i ] & 0xff );
+        return hash;
+    }
+
+    /**
+     * Looks up the resource bound from a document
+     *
+     * @param hash          the hash of the document
+     * @param content       the document
+     * @param owner         what the document was bound through, such as a type adapter
+     * @param projection    the projection the document was bound with, or null
+     * @return the resource, or null if the document was not bound before
+     */
+    Object get( long hash, String content, Object owner, HalProjection projection ) {
+        Entry entry = lookup( hash, owner, projection );
+        return found( entry != null && content.equals( entry.content ) ? entry : null );
+    }
+
+    /**
+     * Looks up the resource bound from content
+     *
+     * @param hash          the hash of the content
+     * @param content       the array with the content
+     * @param length        the length of the content
+     * @param owner         what the content was bound through, such as a type adapter
+     * @param projection    the projection the content was bound with, or null
+     * @return the resource, or null if the content was not bound before
+     */
+    Object get( long hash, byte[] content, int length, Object owner, HalProjection projection ) {
+        Entry entry = lookup( hash, owner, projection );
+        return found( entry != null && equal( entry.content, content, length ) ? entry : null );
+    }
+
+    /**
+     * Remembers the resource bound from a document
+     *
+     * @param hash          the hash of the document
+     * @param content       the document
+     * @param owner         what the document was bound through, such as a type adapter
+     * @param projection    the projection the document was bound with, or null
+     * @param value         the resource, which is not remembered if it is null
+     */
+    void put( long hash, String content, Object owner, HalProjection projection, Object value ) {
+        if ( value != null )
+            entries.lazySet( slot( hash ), new Entry( hash, content, owner, projection, value ) );
+    }
+
+    /**
+     * Remembers the resource bound from content, with a copy of the content
+     *
+     * @param hash          the hash of the content
+     * @param content       the array with the content
+     * @param length        the length of the content
+     * @param owner         what the content was bound through, such as a type adapter
+     * @param projection    the projection the content was bound with, or null
+     * @param value         the resource, which is not remembered if it is null
+     */
+    void put( long hash, byte[] content, int length, Object owner, HalProjection projection, Object value ) {
+        if ( value != null )
+            entries.lazySet( slot( hash ),
+                new Entry( hash, Arrays.copyOf( content, length ), owner, projection, value ) );
+    }
+
+    private Entry lookup( long hash, Object owner, HalProjection projection ) {
+        Entry entry = entries.get( slot( hash ) );
+        return entry != null && entry.hash == hash && entry.owner == owner && entry.projection == projection ?
+            entry : null;
+    }
+
+    private Object found( Entry entry ) {
+        if ( entry == null ) {
+            misses.increment();
+            return null;
+        }
+
+        hits.increment();
+        return entry.value;
+    }
+
+    private static boolean equal( Object cached, byte[] content, int length ) {
+        if ( !( cached instanceof byte[] ) || ( (byte[])cached ).length != length )
+            return false;
+
+        byte[] bytes = (byte[])cached;
+        for ( int i = 0; i < length; i++ ) {
+            if ( bytes[ i ] != content[ i ] )
+                return false;
+        }
+        return true;
+    }
+
+    private int slot( long hash ) {
+        // Fold the higher bits in, as only the lower ones select the slot
+        return (int)( hash ^ ( hash >>> 32 ) ) & mask;
+    }
+
+    private static final class Entry {
+        final long hash;
+        /** The content, as a string or a byte array */
+        final Object content;
+        final Object owner;
+        final HalProjection projection;
+        final Object value;
+
+        Entry( long hash, Object content, Object owner, HalProjection projection, Object value ) {
+            this.hash = hash;
+            this.content = content;
+            this.owner = owner;
+            this.projection = projection;
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,213 @@
+/**
+ * Copyright 2015 Derk-Jan Karrenbeld
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.xpbytes.gson.hal;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The prefix table of the curies of a resource, as defined by the HAL specification. A table is
+ * created once per {@code curies} link and chained to the table of the resource it is embedded
+ * in, so curies of the root resource apply to everything embedded in it.
+ *
+ * Expanding a compact name such as {@code ea:orders} looks up the prefix in place, without
+ * splitting the name, and the expanded relations are cached per curie template across documents.
+ * Expanding a compact name that was seen before does not allocate.
+ */
+final class HalCuries {
+
+    /** The name of the curies link */
+    static final String LINK = "curies";
+
+    private static final String VARIABLE = "rel";
+    private static final int MAX_CACHED = 1024;
+    private static final Map<String, Curie> curies = new ConcurrentHashMap<>();
+
+    private final HalCuries parent;
+    private final String[] prefixes;
+    private final Curie[] templates;
+
+    private HalCuries( HalCuries parent, String[] prefixes, Curie[] templates ) {
+        this.parent = parent;
+        this.prefixes = prefixes;
+        this.templates = templates;
+    }
+
+    /**
+     * Creates the prefix table of a curies link
+     *
+     * @param link      the value of the curies link, a link object or an array of link objects
+     * @param parent    the table of the enclosing resource, or null
+     * @return the table, or the parent table if the link declares no curies
+     */
+    static HalCuries parse( JsonElement link, HalCuries parent ) {
+        List<String> prefixes = new ArrayList<>( 2 );
+        List<Curie> templates = new ArrayList<>( 2 );
+
+        JsonArray items = link.isJsonArray() ? link.getAsJsonArray() : null;
+        int count = items == null ? 1 : items.size();
+        for ( int i = 0; i < count; i++ ) {
+            JsonElement item = items == null ? link : items.get( i );
+            if ( !item.isJsonObject() )
+                continue;
+
+            JsonObject curie = item.getAsJsonObject();
+            JsonElement name = curie.get( "name" );
+            JsonElement href = curie.get( "href" );
+            if ( name == null || !name.isJsonPrimitive() || href == null || !href.isJsonPrimitive() )
+                continue;
+
+            // A curie that is not a valid template can't expand a name, as if it was not declared
+            Curie template;
+            try {
+                template = curie( href.getAsString() );
+            } catch ( IllegalArgumentException e ) {
+                continue;
+            }
+
+            prefixes.add( name.getAsString() );
+            templates.add( template );
+        }
+
+        if ( prefixes.isEmpty() )
+            return parent;
+
+        return new HalCuries( parent,
+            prefixes.toArray( new String[ prefixes.size() ] ),
+            templates.toArray( new Curie[ templates.size() ] ) );
+    }
+
+    /**
+     * Checks if a link name is a compact name, which is a prefix and a reference separated by a
+     * colon. Absolute URIs such as {@code http://example.com/rels/orders} are not compact.
+     *
+     * @param name the link name
+     * @return true if the name is compact
+     */
+    static boolean isCompact( String name ) {
+        int colon = name.indexOf( ':' );
+        return colon > 0 && ( colon + 1 == name.length() || name.charAt( colon + 1 ) != '/' );
+    }
+
+    /**
+     * Checks if the prefix of a compact name is declared by this table or one of its parents
+     *
+     * @param curies    the table, or null
+     * @param name      the compact name
+     * @return true if the prefix is declared
+     */
+    static boolean declares( HalCuries curies, String name ) {
+        int colon = name.indexOf( ':' );
+        for ( HalCuries table = curies; table != null && colon > 0; table = table.parent ) {
+            if ( table.indexOf( name, colon ) != -1 )
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Expands a compact name to its link relation type. Prefixes of this table take precedence over
+     * those of its parents.
+     *
+     * @param curies    the table, or null
+     * @param name      the compact name
+     * @return the link relation type, or null if the name is not compact or its prefix is unknown
+     */
+    static String expand( HalCuries curies, String name ) {
+        int colon = name.indexOf( ':' );
+        if ( colon <= 0 )
+            return null;
+
+        for ( HalCuries table = curies; table != null; table = table.parent ) {
+            int index = table.indexOf( name, colon );
+            if ( index != -1 )
+                return table.templates[ index ].expand( name, colon );
+        }
+        return null;
+    }
+
+    /**
+     * Computes a signature of the prefixes and templates of a table and its parents, which tells
+     * apart content that reads the same but expands to other relations
+     *
+     * @param curies the table, or null
+     * @return the signature, which is 0 for no table
+     */
+    static long signature( HalCuries curies ) {
+        long signature = 0;
+        for ( HalCuries table = curies; table != null; table = table.parent ) {
+            for ( int i = 0; i < table.prefixes.length; i++ ) {
+                signature = 31 * signature + table.prefixes[ i ].hashCode();
+                signature = 31 * signature + table.templates[ i ].template.toString().hashCode();
+            }
+        }
+        return signature;
+    }
+
+    private int indexOf( String name, int colon ) {
+        for ( int i = 0; i < prefixes.length; i++ ) {
+            String prefix = prefixes[ i ];
+            if ( prefix.length() == colon && name.regionMatches( 0, prefix, 0, colon ) )
+                return i;
+        }
+        return -1;
+    }
+
+    private static Curie curie( String href ) {
+        Curie curie = curies.get( href );
+        if ( curie != null )
+            return curie;
+
+        curie = new Curie( HalUriTemplate.compile( href ) );
+        if ( curies.size() < MAX_CACHED ) {
+            Curie previous = curies.putIfAbsent( href, curie );
+            if ( previous != null )
+                return previous;
+        }
+        return curie;
+    }
+
+    /**
+     * A curie template with the relations it expanded to, by compact name
+     */
+    private static final class Curie {
+        final HalUriTemplate template;
+        final Map<String, String> relations = new ConcurrentHashMap<>();
+
+        Curie( HalUriTemplate template ) {
+            this.template = template;
+        }
+
+        String expand( String name, int colon ) {
+            String relation = relations.get( name );
+            if ( relation != null )
+                return relation;
+
+            relation = template.expand( Collections.singletonMap( VARIABLE, name.substring( colon + 1 ) ) );
+            if ( relations.size() < MAX_CACHED )
+                relations.put( name, relation );
+            return relation;
+        }
+    }
+}
@@ -0,0 +1,326 @@
+/**
+ * Copyright 2015 Derk-Jan Karrenbeld
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.xpbytes.gson.hal;
+
+import com.google.gson.JsonElement;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Opt-in diagnostic capture for {@link HalTypeAdapterFactory}. Keeps the most recent captures in a
+ * fixed-size ring buffer, so bad upstream payloads can be inspected without logging every
+ * document.
+ *
+ * A sampled document is buffered before it is bound and its payload, capped at a number of
+ * bytes, is captured whether binding succeeds or fails. A document that is not sampled is streamed
+ * as usual; if it fails, only the type, the JSON path and the error are captured, since its
+ * payload was never held in memory.
+ *
+ * Warnings about how a type is bound, such as a fallback that changes how its instances are
+ * created, are captured when its adapter is created, regardless of sampling.
+ *
+ * <pre>{@code
+ * HalDiagnostics diagnostics = new HalDiagnostics( 32, 0.01, 16 * 1024 );
+ * Gson gson = new GsonBuilder()
+ *     .registerTypeAdapterFactory( new HalTypeAdapterFactory().setDiagnostics( diagnostics ) )
+ *     .create();
+ * }</pre>
+ */
+public final class HalDiagnostics {
+
+    /** The nesting depth of HAL reads on this thread, so only documents are captured */
+    private static final ThreadLocal<int[]> depth = new ThreadLocal<int[]>() {
+        @Override protected int[] initialValue() {
+            return new int[ 1 ];
+        }
+    };
+
+    private final AtomicReferenceArray<Capture> captures;
+    private final AtomicLong cursor = new AtomicLong();
+    private final double sampleRate;
+    private final int maxBytes;
+
+    /**
+     * @param capacity      the number of captures to keep
+     * @param sampleRate    the fraction of documents to capture, between 0 and 1
+     * @param maxBytes      the maximum number of UTF-8 bytes kept per payload
+     */
+    public HalDiagnostics( int capacity, double sampleRate, int maxBytes ) {
+        if ( capacity <= 0 )
+            throw new IllegalArgumentException( "capacity must be positive" );
+        if ( sampleRate < 0 || sampleRate > 1 )
+            throw new IllegalArgumentException( "sampleRate must be between 0 and 1" );
+        if ( maxBytes < 0 )
+            throw new IllegalArgumentException( "maxBytes must not be negative" );
+
+        this.captures = new AtomicReferenceArray<>( capacity );
+        this.sampleRate = sampleRate;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Gets the captures that are in the buffer
+     *
+     * @return the captures, oldest first
+     */
+    public List<Capture> getCaptures() {
+        int capacity = captures.length();
+        long end = cursor.get();
+        long start = Math.max( 0, end - capacity );
+
+        List<Capture> result = new ArrayList<>( (int)( end - start ) );
+        for ( long i = start; i < end; i++ ) {
+            Capture capture = captures.get( (int)( i % capacity ) );
+            if ( capture != null )
+                result.add( capture );
+        }
+        return Collections.unmodifiableList( result );
+    }
+
+    /**
+     * Removes all captures from the buffer
+     */
+    public void clear() {
+        for ( int i = 0; i < captures.length(); i++ )
+            captures.set( i, null );
+    }
+
+    /**
+     * Reads a document through an adapter, capturing it if it is sampled or fails. Nested reads,
+     * such as those of embedded resources, are not captured separately.
+     *
+     * @param adapter       the adapter
+     * @param treeAdapter   the adapter to buffer sampled documents with
+     * @param type          the resource type
+     * @param in            the reader
+     * @param <T>           the resource type
+     * @return the resource
+     */
+    <T> T read( HalTypeAdapter<T> adapter, TypeAdapter<JsonElement> treeAdapter, Class<?> type,
+        JsonReader in ) throws IOException {
+        int[] level = depth.get();
+        if ( level[ 0 ] > 0 )
+            return adapter.readResource( in );
+
+        level[ 0 ]++;
+        try {
+            if ( sampleRate > 0 && ThreadLocalRandom.current().nextDouble() < sampleRate )
+                return readSampled( adapter, treeAdapter, type, in );
+
+            String path = in.getPath();
+            try {
+                return adapter.readResource( in );
+            } catch ( IOException | RuntimeException e ) {
+                add( new Capture( type, path, null, false, e ) );
+                throw e;
+            }
+        } finally {
+            level[ 0 ]--;
+        }
+    }
+
+    private <T> T readSampled( HalTypeAdapter<T> adapter, TypeAdapter<JsonElement> treeAdapter,
+        Class<?> type, JsonReader in ) throws IOException {
+        String path = in.getPath();
+        JsonElement tree;
+        try {
+            tree = treeAdapter.read( in );
+        } catch ( IOException | RuntimeException e ) {
+            add( new Capture( type, path, null, false, e ) );
+            throw e;
+        }
+
+        PayloadWriter writer = new PayloadWriter( maxBytes );
+        JsonWriter out = HalStreams.lenientWriter( writer );
+        try {
+            treeAdapter.write( out, tree );
+        } catch ( PayloadFullException e ) {
+            // The cap was reached, the rest of the document is not written
+        }
+        String payload = writer.payload.toString();
+        boolean truncated = writer.full;
+
+        try {
+            T result = adapter.fromJsonTree( tree );
+            add( new Capture( type, path, payload, truncated, null ) );
+            return result;
+        } catch ( RuntimeException e ) {
+            add( new Capture( type, path, payload, truncated, e ) );
+            throw e;
+        }
+    }
+
+    /**
+     * Captures a warning about how a type is bound
+     *
+     * @param type      the resource type
+     * @param warning   the warning, with its cause if there is one
+     */
+    void warn( Class<?> type, Throwable warning ) {
+        add( new Capture( type, null, null, false, warning, true ) );
+    }
+
+    private void add( Capture capture ) {
+        captures.set( (int)( cursor.getAndIncrement() % captures.length() ), capture );
+    }
+
+    /**
+     * Collects the payload of a sampled document up to a number of UTF-8 bytes. Writing stops at the
+     * first character that does not fit as a whole, so the document is not written beyond the cap
+     * and no character is split.
+     */
+    private static final class PayloadWriter extends Writer {
+        private final StringBuilder payload = new StringBuilder();
+        private final int maxBytes;
+        private int bytes;
+        private boolean highSurrogate;
+        private boolean full;
+
+        PayloadWriter( int maxBytes ) {
+            this.maxBytes = maxBytes;
+        }
+
+        @Override public void write( int c ) throws IOException {
+            collect( (char)c );
+        }
+
+        @Override public void write( char[] buffer, int offset, int length ) throws IOException {
+            for ( int i = offset; i < offset + length; i++ )
+                collect( buffer[ i ] );
+        }
+
+        @Override public void write( String string, int offset, int length ) throws IOException {
+            for ( int i = offset; i < offset + length; i++ )
+                collect( string.charAt( i ) );
+        }
+
+        private void collect( char c ) throws PayloadFullException {
+            int size;
+            if ( c < 0x80 )
+                size = 1;
+            else if ( c < 0x800 )
+                size = 2;
+            else if ( Character.isHighSurrogate( c ) )
+                size = 4;
+            else if ( Character.isLowSurrogate( c ) && highSurrogate )
+                size = 0;
+            else
+                size = 3;
+
+            if ( bytes + size > maxBytes ) {
+                full = true;
+                throw new PayloadFullException();
+            }
+
+            bytes += size;
+            highSurrogate = Character.isHighSurrogate( c );
+            payload.append( c );
+        }
+
+        @Override public void flush() {}
+
+        @Override public void close() {}
+    }
+
+    /**
+     * Stops writing a payload that reached its cap
+     */
+    private static final class PayloadFullException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        @Override public synchronized Throwable fillInStackTrace() {
+            return this;
+        }
+    }
+
+    /**
+     * A captured document, or a warning about how a type is bound
+     */
+    public static final class Capture {
+        private final long timestamp = System.currentTimeMillis();
+        private final Class<?> type;
+        private final String path;
+        private final String payload;
+        private final boolean truncated;
+        private final Throwable error;
+        private final boolean warning;
+
+        Capture( Class<?> type, String path, String payload, boolean truncated, Throwable error ) {
+            this( type, path, payload, truncated, error, false );
+        }
+
+        Capture( Class<?> type, String path, String payload, boolean truncated, Throwable error,
+            boolean warning ) {
+            this.type = type;
+            this.path = path;
+            this.payload = payload;
+            this.truncated = truncated;
+            this.error = error;
+            this.warning = warning;
+        }
+
+        /** @return the time of the capture in milliseconds since the epoch */
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        /** @return the resource type that was read */
+        public Class<?> getType() {
+            return type;
+        }
+
+        /** @return the JSON path of the document in its reader, or null for a warning */
+        public String getPath() {
+            return path;
+        }
+
+        /** @return the payload, or null if the document was not sampled */
+        public String getPayload() {
+            return payload;
+        }
+
+        /** @return true if the payload was cut off at the byte cap */
+        public boolean isTruncated() {
+            return truncated;
+        }
+
+        /** @return the error that failed the read or the warning, or null if the read succeeded */
+        public Throwable getError() {
+            return error;
+        }
+
+        /** @return true if the read failed */
+        public boolean isFailure() {
+            return error != null && !warning;
+        }
+
+        /** @return true if this is a warning about how the type is bound rather than a document */
+        public boolean isWarning() {
+            return warning;
+        }
+    }
+}
@@ -0,0 +1,290 @@
+/**
+ * Copyright 2015 Derk-Jan Karrenbeld
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.xpbytes.gson.hal;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonIOException;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.MalformedJsonException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+
+/**
+ * Iterates over a single embed of a HAL document without holding the document in memory. The
+ * members of the resource up to the embed are bound when the iterator is opened, the items of the
+ * embed are then deserialized one at a time as they are requested, and the members after it are
+ * bound once the last item was read. Peak memory is that of the resource plus a single item, no
+ * matter how many items the document contains.
+ *
+ * <pre>
+ * try ( HalEmbeddedIterator&lt;Page, Item&gt; items =
+ *           HalEmbeddedIterator.open( gson, reader, Page.class, "items", Item.class ) ) {
+ *     Page page = items.getResource();
+ *     while ( items.hasNext() )
+ *         process( items.next() );
+ * }
+ * </pre>
+ *
+ * The iterated embed is never assigned to the resource, but does count as present for a required
+ * {@link HalEmbed} field. Both an array and a single object are accepted as the embed.
+ *
+ * @param <T> the resource type
+ * @param <E> the item type
+ */
+public final class HalEmbeddedIterator<T, E> implements Iterator<E>, Closeable {
+
+    private static final Charset UTF_8 = Charset.forName( "UTF-8" );
+
+    private enum State { ARRAY, SINGLE, DONE }
+
+    private final JsonReader in;
+    private final HalTypeAdapter<T> adapter;
+    private final TypeAdapter<E> itemAdapter;
+    private final String name;
+    private final T resource;
+    private final boolean[] present;
+    private final HalReadContext context;
+    private State state;
+
+    private HalEmbeddedIterator( JsonReader in, HalTypeAdapter<T> adapter, TypeAdapter<E> itemAdapter,
+        String name ) throws IOException {
+        this.in = in;
+        this.adapter = adapter;
+        this.itemAdapter = itemAdapter;
+        this.name = name;
+        this.context = adapter.newContext();
+        this.context.parseCuries = HalTypeAdapter.bindsRelations( itemAdapter );
+
+        if ( in.peek() == JsonToken.NULL ) {
+            in.nextNull();
+            this.resource = null;
+            this.present = null;
+            this.state = State.DONE;
+            return;
+        }
+
+        this.resource = adapter.construct();
+        this.present = adapter.newPresence();
+
+        in.beginObject();
+        this.state = seekEmbed();
+    }
+
+    /**
+     * Opens an iterator over an embed of a document
+     *
+     * @param gson          the gson instance, with a {@link HalTypeAdapterFactory} registered
+     * @param reader        the reader of the document, closed when the iterator is closed
+     * @param resourceType  the type of the resource
+     * @param name          the JSON name of the embed
+     * @param itemType      the type of the items
+     * @param <T>           the resource type
+     * @param <E>           the item type
+     * @return the iterator
+     *
+     * @throws IllegalArgumentException if the resource type is not handled by a {@link
+     *                                  HalTypeAdapterFactory}
+     * @throws JsonIOException          if the reader can't be read
+     * @throws JsonSyntaxException      if the document is malformed
+     */
+    public static <T, E> HalEmbeddedIterator<T, E> open( Gson gson, Reader reader, Class<T> resourceType,
+        String name, Class<E> itemType ) {
+        TypeAdapter<T> adapter = gson.getAdapter( resourceType );
+        if ( !( adapter instanceof HalTypeAdapter ) )
+            throw new IllegalArgumentException( String.format( Locale.US,
+                "%s is not a HAL resource, or no HalTypeAdapterFactory is registered",
+                resourceType.getName() )
+            );
+
+        // As lenient as Gson#fromJson, so documents that Gson accepts can be iterated as well
+        JsonReader in = HalStreams.lenientReader( reader );
+        try {
+            return new HalEmbeddedIterator<>( in, (HalTypeAdapter<T>)adapter, gson.getAdapter( itemType ), name );
+        } catch ( IOException | RuntimeException e ) {
+            closeQuietly( in );
+            throw wrap( e );
+        }
+    }
+
+    /**
+     * Opens an iterator over an embed of a UTF-8 encoded document
+     *
+     * @see #open(Gson, Reader, Class, String, Class)
+     *
+     * @param gson          the gson instance, with a {@link HalTypeAdapterFactory} registered
+     * @param stream        the document, closed when the iterator is closed
+     * @param resourceType  the type of the resource
+     * @param name          the JSON name of the embed
+     * @param itemType      the type of the items
+     * @param <T>           the resource type
+     * @param <E>           the item type
+     * @return the iterator
+     */
+    public static <T, E> HalEmbeddedIterator<T, E> open( Gson gson, InputStream stream, Class<T> resourceType,
+        String name, Class<E> itemType ) {
+        return open( gson, new InputStreamReader( stream, UTF_8 ), resourceType, name, itemType );
+    }
+
+    /**
+     * Gets the resource. Only the members that precede the embed in the document are bound until
+     * all items were iterated.
+     *
+     * @return the resource, or null if the document is null
+     */
+    public T getResource() {
+        return resource;
+    }
+
+    @Override
+    public boolean hasNext() {
+        try {
+            switch ( state ) {
+                case ARRAY:
+                    if ( in.hasNext() )
+                        return true;
+
+                    in.endArray();
+                    finish();
+                    return false;
+
+                case SINGLE:
+                    return true;
+
+                default:
+                    return false;
+            }
+        } catch ( IOException | RuntimeException e ) {
+            state = State.DONE;
+            throw wrap( e );
+        }
+    }
+
+    @Override
+    public E next() {
+        if ( !hasNext() )
+            throw new NoSuchElementException();
+
+        try {
+            // Items are embedded resources of the document, so their depth is one
+            E item = itemAdapter instanceof HalTypeAdapter ?
+                ( (HalTypeAdapter<E>)itemAdapter ).readResource( in, context, 1 ) :
+                itemAdapter.read( in );
+            if ( state == State.SINGLE )
+                finish();
+            return item;
+        } catch ( IOException | RuntimeException e ) {
+            state = State.DONE;
+            throw wrap( e );
+        }
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void close() throws IOException {
+        state = State.DONE;
+        in.close();
+    }
+
+    /**
+     * Binds the members of the resource until the embed is found
+     *
+     * @return the state at the embed, or {@link State#DONE} if the document has no such embed
+     */
+    private State seekEmbed() throws IOException {
+        while ( in.hasNext() ) {
+            String member = in.nextName();
+            if ( !HalConstants.RESERVED_EMBEDDED_ROOT.equals( member ) ) {
+                adapter.readMember( in, member, present, resource, context, 0 );
+                continue;
+            }
+
+            if ( in.peek() == JsonToken.NULL ) {
+                in.nextNull();
+                continue;
+            }
+
+            in.beginObject();
+            while ( in.hasNext() ) {
+                String embed = in.nextName();
+                if ( !name.equals( embed ) || in.peek() == JsonToken.NULL ) {
+                    adapter.readEmbed( in, embed, present, resource, context, 0 );
+                    continue;
+                }
+
+                adapter.markEmbedPresent( present, name );
+                if ( in.peek() != JsonToken.BEGIN_ARRAY )
+                    return State.SINGLE;
+
+                in.beginArray();
+                return State.ARRAY;
+            }
+            in.endObject();
+        }
+
+        in.endObject();
+        adapter.verifyRequired( present, context, 0 );
+        return State.DONE;
+    }
+
+    /**
+     * Binds the members of the embedded root and the resource that follow the embed
+     */
+    private void finish() throws IOException {
+        state = State.DONE;
+
+        while ( in.hasNext() )
+            adapter.readEmbed( in, in.nextName(), present, resource, context, 0 );
+        in.endObject();
+
+        while ( in.hasNext() )
+            adapter.readMember( in, in.nextName(), present, resource, context, 0 );
+        in.endObject();
+
+        adapter.verifyRequired( present, context, 0 );
+    }
+
+    private static RuntimeException wrap( Exception e ) {
+        if ( e instanceof MalformedJsonException )
+            return new JsonSyntaxException( e );
+        if ( e instanceof IOException )
+            return new JsonIOException( e );
+        return (RuntimeException)e;
+    }
+
+    private static void closeQuietly( Closeable closeable ) {
+        try {
+            closeable.close();
+        } catch ( IOException ignored ) {
+            // The original failure is more relevant
+        }
+    }
+}
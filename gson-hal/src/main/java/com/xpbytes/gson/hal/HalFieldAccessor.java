@@ -0,0 +1,121 @@
+/**
+ * Copyright 2015 Derk-Jan Karrenbeld
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.xpbytes.gson.hal;
+
+import com.google.gson.JsonIOException;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.reflect.Field;
+
+/**
+ * Reads and writes the value of a single member of a resource, either through a pre-resolved {@link
+ * MethodHandle} or through a generated {@link HalAccessor}.
+ */
+abstract class HalFieldAccessor {
+
+    /**
+     * Gets the value of the member
+     *
+     * @param target    the resource
+     * @return the value
+     */
+    abstract Object get( Object target );
+
+    /**
+     * Sets the value of the member
+     *
+     * @param target    the resource
+     * @param value     the value
+     */
+    abstract void set( Object target, Object value );
+
+    /**
+     * Creates an accessor that uses reflection, resolved once
+     *
+     * @param field the field
+     * @return the accessor
+     *
+     * @throws JsonIOException if the field can't be made accessible
+     */
+    static HalFieldAccessor of( Field field ) {
+        return new Reflective( HalReflection.getFieldGetter( field ), HalReflection.getFieldSetter( field ) );
+    }
+
+    /**
+     * Creates an accessor that uses a generated accessor
+     *
+     * @param accessor  the generated accessor
+     * @param member    the index of the member
+     * @param <T>       the resource type
+     * @return the accessor
+     */
+    static <T> HalFieldAccessor of( HalAccessor<T> accessor, int member ) {
+        return new Generated<>( accessor, member );
+    }
+
+    private static final class Reflective extends HalFieldAccessor {
+        private final MethodHandle getter;
+        private final MethodHandle setter;
+
+        Reflective( MethodHandle getter, MethodHandle setter ) {
+            this.getter = getter;
+            this.setter = setter;
+        }
+
+        @Override Object get( Object target ) {
+            try {
+                return (Object)getter.invokeExact( target );
+            } catch ( RuntimeException | Error e ) {
+                throw e;
+            } catch ( Throwable e ) {
+                throw new JsonIOException( e );
+            }
+        }
+
+        @Override void set( Object target, Object value ) {
+            try {
+                setter.invokeExact( target, value );
+            } catch ( RuntimeException | Error e ) {
+                throw e;
+            } catch ( Throwable e ) {
+                throw new JsonIOException( e );
+            }
+        }
+    }
+
+    private static final class Generated<T> extends HalFieldAccessor {
+        private final HalAccessor<T> accessor;
+        private final int member;
+
+        Generated( HalAccessor<T> accessor, int member ) {
+            this.accessor = accessor;
+            this.member = member;
+        }
+
+        @Override Object get( Object target ) {
+            @SuppressWarnings( "unchecked" )
+            T resource = (T)target;
+            return accessor.get( resource, member );
+        }
+
+        @Override void set( Object target, Object value ) {
+            @SuppressWarnings( "unchecked" )
+            T resource = (T)target;
+            accessor.set( resource, member, value );
+        }
+    }
+}
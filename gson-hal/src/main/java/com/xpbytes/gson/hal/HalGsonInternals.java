@@ -0,0 +1,105 @@
+/**
+ * Copyright 2015 Derk-Jan Karrenbeld
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.xpbytes.gson.hal;
+
+import com.google.gson.Gson;
+import com.google.gson.internal.ConstructorConstructor;
+import com.google.gson.internal.Excluder;
+import com.google.gson.internal.ObjectConstructor;
+import com.google.gson.reflect.TypeToken;
+
+import java.lang.reflect.Field;
+
+/**
+ * The internal Gson API this library uses, which Gson does not keep compatible between versions.
+ * Only this class links against it, so a Gson version that changed it fails with a {@link
+ * LinkageError} when one of these methods is called, which callers catch to fall back to public
+ * API, rather than when loading the adapters.
+ */
+final class HalGsonInternals {
+
+    /** The constructor factory of Gson instances, or null if it is not accessible */
+    private static final Field constructorsField = findConstructorsField();
+
+    private HalGsonInternals() {}
+
+    /**
+     * Gets how Gson creates instances of a type
+     *
+     * @param gson  the gson instance
+     * @param type  the type
+     * @param <T>   the type
+     * @return the constructor
+     *
+     * @throws ReflectiveOperationException if the constructor factory is not accessible
+     */
+    static <T> HalConstructor<T> getConstructor( Gson gson, TypeToken<T> type ) throws ReflectiveOperationException {
+        // Resolving the factory again throws the reason it is not accessible
+        Field field = constructorsField == null ? getConstructorsField() : constructorsField;
+        final ObjectConstructor<T> constructor = ( (ConstructorConstructor)field.get( gson ) ).get( type );
+        return new HalConstructor<T>() {
+            @Override public T construct() {
+                return constructor.construct();
+            }
+        };
+    }
+
+    /**
+     * Does the gson instance exclude fields the default way, that is, only those that are static
+     * or transient?
+     *
+     * @param gson the gson instance
+     * @return true if it does
+     */
+    @SuppressWarnings( "deprecation" )
+    static boolean isDefaultExclusion( Gson gson ) {
+        // Gson offers no other way to learn how it excludes fields
+        return gson.excluder() == Excluder.DEFAULT;
+    }
+
+    /**
+     * Does the gson instance exclude a field, either by itself or by its type?
+     *
+     * @param gson      the gson instance
+     * @param field     the field
+     * @param serialize true to ask for serialization, false for deserialization
+     * @return true if it does
+     */
+    static boolean excludes( Gson gson, Field field, boolean serialize ) {
+        @SuppressWarnings( "deprecation" )
+        Excluder excluder = gson.excluder();
+        return excluder.excludeClass( field.getType(), serialize ) ||
+            excluder.excludeField( field, serialize );
+    }
+
+    private static Field findConstructorsField() {
+        try {
+            return getConstructorsField();
+        } catch ( NoSuchFieldException | RuntimeException e ) {
+            return null;
+        }
+    }
+
+    private static Field getConstructorsField() throws NoSuchFieldException {
+        Field field = Gson.class.getDeclaredField( "constructorConstructor" );
+        if ( field.getType() != ConstructorConstructor.class )
+            throw new NoSuchFieldException( "constructorConstructor is a " + field.getType().getName() );
+
+        field.setAccessible( true );
+        return field;
+    }
+}
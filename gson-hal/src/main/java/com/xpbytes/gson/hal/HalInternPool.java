@@ -0,0 +1,179 @@
+/**
+ * Copyright 2015 Derk-Jan Karrenbeld
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.xpbytes.gson.hal;
+
+import java.net.URI;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded pool of link strings and URIs, so that resources which are kept around share a single
+ * instance of every href instead of holding their own copy. Register it with {@link
+ * HalTypeAdapterFactory#setInternPool(HalInternPool)} to intern the href, type, profile and
+ * deprecation of every link that is read, and the URIs of {@link java.net.URI} link fields.
+ *
+ * The pool is a direct-mapped table: each value has a single slot, determined by its hash, and
+ * replaces whatever occupied that slot before. Lookups are lock-free and the memory use is fixed,
+ * at the cost of evicting a value when another one with the same slot comes along.
+ */
+public final class HalInternPool {
+
+    private final AtomicReferenceArray<String> strings;
+    private final AtomicReferenceArray<URI> uris;
+    private final int mask;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * @param capacity the number of strings and the number of URIs to keep, rounded up to a power
+     *                 of two
+     */
+    public HalInternPool( int capacity ) {
+        if ( capacity <= 0 || capacity > 1 << 30 )
+            throw new IllegalArgumentException( "capacity must be between 1 and 2^30" );
+
+        int size = Integer.highestOneBit( capacity - 1 ) << 1;
+        size = Math.max( 1, size );
+        this.strings = new AtomicReferenceArray<>( size );
+        this.uris = new AtomicReferenceArray<>( size );
+        this.mask = size - 1;
+    }
+
+    /**
+     * Gets the pooled instance of a string
+     *
+     * @param value the string
+     * @return the pooled instance, which is the value itself if it wasn't pooled yet
+     */
+    public String intern( String value ) {
+        if ( value == null )
+            return null;
+
+        int slot = slot( value );
+        String pooled = strings.get( slot );
+        if ( value.equals( pooled ) ) {
+            hits.increment();
+            return pooled;
+        }
+
+        strings.lazySet( slot, value );
+        misses.increment();
+        return value;
+    }
+
+    /**
+     * Gets the pooled instance of a URI
+     *
+     * @param value the URI
+     * @return the pooled instance, which is the value itself if it wasn't pooled yet
+     */
+    public URI intern( URI value ) {
+        if ( value == null )
+            return null;
+
+        String string = value.toString();
+        int slot = slot( string );
+        URI pooled = uris.get( slot );
+        if ( pooled != null && string.equals( pooled.toString() ) ) {
+            hits.increment();
+            return pooled;
+        }
+
+        uris.lazySet( slot, value );
+        misses.increment();
+        return value;
+    }
+
+    /**
+     * Gets the pooled URI of an href, parsing it only if it wasn't pooled yet
+     *
+     * @param href the href
+     * @return the pooled URI
+     *
+     * @throws IllegalArgumentException if the href is not a valid URI
+     */
+    public URI toUri( String href ) {
+        int slot = slot( href );
+        URI pooled = uris.get( slot );
+        if ( pooled != null && href.equals( pooled.toString() ) ) {
+            hits.increment();
+            return pooled;
+        }
+
+        URI value = URI.create( intern( href ) );
+        uris.lazySet( slot, value );
+        misses.increment();
+        return value;
+    }
+
+    /**
+     * Interns the strings and URIs of a link in place
+     *
+     * @param link the link
+     */
+    void intern( HalLinkObject link ) {
+        link.setHref( intern( link.getHref() ) );
+        link.setType( intern( link.getType() ) );
+        link.setProfile( intern( link.getProfile() ) );
+        link.setDeprecation( intern( link.getDeprecation() ) );
+    }
+
+    /**
+     * Gets the number of lookups that returned a pooled instance
+     *
+     * @return the number of hits
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Gets the number of lookups that had to pool a new instance
+     *
+     * @return the number of misses
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Gets the number of strings, and the number of URIs, the pool holds at most
+     *
+     * @return the capacity
+     */
+    public int getCapacity() {
+        return mask + 1;
+    }
+
+    /**
+     * Removes all pooled instances and resets the counters
+     */
+    public void clear() {
+        for ( int i = 0; i <= mask; i++ ) {
+            strings.set( i, null );
+            uris.set( i, null );
+        }
+        hits.reset();
+        misses.reset();
+    }
+
+    private int slot( String value ) {
+        // Spread the higher bits, as only the lower ones select the slot
+        int hash = value.hashCode();
+        return ( hash ^ ( hash >>> 16 ) ) & mask;
+    }
+}
@@ -0,0 +1,135 @@
+/**
+ * Copyright 2015 Derk-Jan Karrenbeld
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.xpbytes.gson.hal;
+
+import com.google.gson.JsonIOException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+/**
+ * A value that is decoded on first access. Declare a field as {@code HalLazy<T>}, typically a
+ * {@link HalEmbed}, to capture its JSON while reading and only bind it to {@code T} when {@link
+ * #get()} is called. Resources that are rarely consumed completely skip the binding of everything
+ * that is never looked at.
+ *
+ * The JSON is captured as compact text rather than as a tree. Capturing still tokenizes the
+ * value, so what is saved is the binding and the objects of a tree, not the parsing.
+ *
+ * A resource is decoded as it would have been while reading the document: with the curies and
+ * projection that applied where it was captured, and against a snapshot of the resources the read
+ * had deduplicated up to there.
+ *
+ * Decoding is thread-safe and happens at most once; the captured JSON is released as soon as it
+ * was decoded.
+ *
+ * @param <T> the type of the value
+ */
+public final class HalLazy<T> {
+
+    /** The adapter to decode the captured JSON with, or null if there was no JSON */
+    private final TypeAdapter<T> adapter;
+
+    /** The captured JSON, or null once decoded. Written after {@link #value}, which it publishes */
+    private volatile String json;
+
+    /** A snapshot of the read the JSON was captured in, or null to decode it as a document */
+    private HalReadContext context;
+
+    /** The embed depth the JSON was captured at */
+    private final int depth;
+
+    private T value;
+
+    HalLazy( TypeAdapter<T> adapter, String json ) {
+        this( adapter, json, null, 0 );
+    }
+
+    HalLazy( TypeAdapter<T> adapter, String json, HalReadContext context, int depth ) {
+        this.adapter = adapter;
+        this.json = json;
+        this.context = context;
+        this.depth = depth;
+    }
+
+    /**
+     * Creates a lazy value that is already decoded, for example to serialize a resource
+     *
+     * @param value the value
+     * @param <T>   the type of the value
+     * @return the lazy value
+     */
+    public static <T> HalLazy<T> of( T value ) {
+        HalLazy<T> lazy = new HalLazy<>( null, null );
+        lazy.value = value;
+        return lazy;
+    }
+
+    /**
+     * Gets the value, decoding it if this is the first access
+     *
+     * @return the value
+     *
+     * @throws com.google.gson.JsonParseException if the captured JSON can't be decoded, in which
+     *                                            case the next access tries again
+     */
+    public T get() {
+        if ( json != null ) {
+            synchronized ( this ) {
+                String pending = json;
+                if ( pending != null ) {
+                    value = decode( pending );
+                    context = null;
+                    json = null;
+                }
+            }
+        }
+        return value;
+    }
+
+    private T decode( String pending ) {
+        JsonReader in = HalStreams.lenientReader( new StringReader( pending ) );
+        try {
+            if ( context == null || !( adapter instanceof HalTypeAdapter ) )
+                return adapter.read( in );
+
+            return ( (HalTypeAdapter<T>)adapter ).readResource( in, context.resume(), depth );
+        } catch ( IOException e ) {
+            throw new JsonIOException( e );
+        }
+    }
+
+    /**
+     * Has the value been decoded?
+     *
+     * @return true if it has
+     */
+    public boolean isDecoded() {
+        return json == null;
+    }
+
+    /**
+     * Gets the captured JSON, so it can be written without decoding it
+     *
+     * @return the JSON text, or null if the value was decoded
+     */
+    String getJson() {
+        return json;
+    }
+}
@@ -0,0 +1,112 @@
+/**
+ * Copyright 2015 Derk-Jan Karrenbeld
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.xpbytes.gson.hal;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+
+/**
+ * Adapter for {@link HalLazy} values. Reading captures the JSON of the value as text, which is
+ * only bound when the value is accessed. Writing a value that was never accessed copies the
+ * captured JSON as is.
+ *
+ * @param <T> the type of the lazy value
+ */
+final class HalLazyTypeAdapter<T> extends TypeAdapter<HalLazy<T>> {
+
+    private final TypeAdapter<T> adapter;
+
+    private HalLazyTypeAdapter( TypeAdapter<T> adapter ) {
+        this.adapter = adapter;
+    }
+
+    /**
+     * Creates the adapter for a {@link HalLazy} type
+     *
+     * @param gson  the gson instance
+     * @param type  the lazy type, raw or parameterized
+     * @return the adapter
+     */
+    static TypeAdapter<?> create( Gson gson, Type type ) {
+        Type valueType = type instanceof ParameterizedType ?
+            ( (ParameterizedType)type ).getActualTypeArguments()[ 0 ] :
+            Object.class;
+
+        return new HalLazyTypeAdapter<>( gson.getAdapter( TypeToken.get( valueType ) ) );
+    }
+
+    /**
+     * @return the adapter of the lazy value
+     */
+    TypeAdapter<T> getValueAdapter() {
+        return adapter;
+    }
+
+    @Override
+    public void write( JsonWriter out, HalLazy<T> value ) throws IOException {
+        if ( value == null ) {
+            out.nullValue();
+            return;
+        }
+
+        String json = value.getJson();
+        if ( json != null )
+            HalStreams.copy( HalStreams.lenientReader( new StringReader( json ) ), out );
+        else
+            adapter.write( out, value.get() );
+    }
+
+    @Override
+    public HalLazy<T> read( JsonReader in ) throws IOException {
+        if ( in.peek() == JsonToken.NULL ) {
+            in.nextNull();
+            return null;
+        }
+
+        return new HalLazy<>( adapter, HalStreams.capture( in ) );
+    }
+
+    /**
+     * Reads a lazy value as part of a read, so it is decoded with the state that applies here
+     *
+     * @param in        the reader, positioned at the value
+     * @param context   the state of the read
+     * @param depth     the embed depth of the value
+     * @return the lazy value, or null if the value is null
+     */
+    HalLazy<T> read( JsonReader in, HalReadContext context, int depth ) throws IOException {
+        if ( in.peek() == JsonToken.NULL ) {
+            in.nextNull();
+            return null;
+        }
+
+        if ( !( adapter instanceof HalTypeAdapter ) )
+            return new HalLazy<>( adapter, HalStreams.capture( in ) );
+
+        // Decoded later and possibly on another thread, so from a snapshot rather than the read
+        return new HalLazy<>( adapter, HalStreams.capture( in ), context.snapshot(), depth );
+    }
+}
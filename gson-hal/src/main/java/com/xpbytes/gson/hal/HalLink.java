@@ -36,6 +36,13 @@ public @interface HalLink  {
      */
     String name() default "";
 
+    /**
+     * The link relation type this link is bound to, such as "http://example.com/rels/orders".
+     * Besides its name, the link is then bound to the relation itself and to every compact name
+     * that expands to it through the curies of the document, whichever prefix the document uses.
+     * @return the expanded link relation type, or an empty string to only bind by name
+     */
+    String rel() default "";
 
     boolean optional() default false;
 }
@@ -0,0 +1,108 @@
+/**
+ * Copyright 2015 Derk-Jan Karrenbeld
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.xpbytes.gson.hal;
+
+import java.net.URI;
+import java.util.Locale;
+
+/**
+ * Converts a decoded {@link HalLinkObject} to the type of the field it is bound to, and the value
+ * of such a field back to a link. The conversion is selected once per field, when the binding
+ * plan is created.
+ */
+enum HalLinkConverter {
+
+    /** Binds the href of the link to a {@link CharSequence} field */
+    HREF {
+        @Override Object convert( HalLinkObject link, HalInternPool pool ) {
+            return link.getHref();
+        }
+
+        @Override HalLinkObject toLink( Object value ) {
+            return href( value.toString() );
+        }
+    },
+
+    /** Binds the href of the link to a {@link URI} field */
+    URI {
+        @Override Object convert( HalLinkObject link, HalInternPool pool ) {
+            return pool == null ? java.net.URI.create( link.getHref() ) : pool.toUri( link.getHref() );
+        }
+
+        @Override HalLinkObject toLink( Object value ) {
+            return href( value.toString() );
+        }
+    },
+
+    /** Binds the link itself to a {@link HalLinkObject} field */
+    LINK_OBJECT {
+        @Override Object convert( HalLinkObject link, HalInternPool pool ) {
+            return link;
+        }
+
+        @Override HalLinkObject toLink( Object value ) {
+            return (HalLinkObject)value;
+        }
+    };
+
+    /**
+     * Converts a link to the value that is assigned to the field
+     *
+     * @param link the link
+     * @param pool the intern pool, or null if values are not interned
+     * @return the value
+     */
+    abstract Object convert( HalLinkObject link, HalInternPool pool );
+
+    /**
+     * Converts the value of the field to the link that is written
+     *
+     * @param value the value, not null
+     * @return the link
+     */
+    abstract HalLinkObject toLink( Object value );
+
+    private static HalLinkObject href( String href ) {
+        return new HalLinkObject( href );
+    }
+
+    /**
+     * Selects the converter for a field
+     *
+     * @param fieldName         the name of the field
+     * @param destinationType   the itemized type of the field
+     * @return the converter
+     *
+     * @throws ClassCastException if field type is not compatible with {@link HalLinkObject}
+     */
+    static HalLinkConverter forType( String fieldName, Class<?> destinationType ) {
+        if ( HalLinkObject.class.isAssignableFrom( destinationType ) ||
+            destinationType.isAssignableFrom( HalLinkObject.class ) )
+            return LINK_OBJECT;
+        if ( destinationType.isAssignableFrom( String.class ) )
+            return HREF;
+        if ( destinationType.isAssignableFrom( java.net.URI.class ) )
+            return URI;
+
+        throw new ClassCastException( String.format( Locale.US,
+            "Field %s is of type %s and can't be assigned. Should be HalLinkObject, " +
+                "CharSequence or URI",
+            fieldName,
+            destinationType.getName() )
+        );
+    }
+}
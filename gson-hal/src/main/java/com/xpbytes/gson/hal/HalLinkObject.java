@@ -17,21 +17,131 @@
 package com.xpbytes.gson.hal;
 
 import java.net.URI;
+import java.util.Map;
 
+/**
+ * A link object, as defined by the HAL specification. Only the href is stored inline together
+ * with the templated flag; the other attributes, which most links don't have, are kept in a side
+ * object that is only allocated once one of them is set.
+ *
+ * The attributes are read and written through their accessors. Versions before the compact layout
+ * exposed them as public fields instead, so code that used those fields must be recompiled against
+ * the accessors.
+ */
 public class HalLinkObject {
 
+    private static final int TEMPLATED = 1;
+
+    private String href;
+    private int flags;
+    private Attributes attributes;
+
     public HalLinkObject() {}
 
-    public String href;
-    public boolean templated;
-    public String type;
-    public String name;
-    public URI profile;
-    public URI deprecation;
-    public String title;
-    public String hreflang;
+    public HalLinkObject( String href ) {
+        this.href = href;
+    }
 
     public String getHref() {
         return href;
     }
+
+    public void setHref( String href ) {
+        this.href = href;
+    }
+
+    public boolean isTemplated() {
+        return ( flags & TEMPLATED ) != 0;
+    }
+
+    public void setTemplated( boolean templated ) {
+        flags = templated ? flags | TEMPLATED : flags & ~TEMPLATED;
+    }
+
+    /**
+     * Expands the href of a templated link. The template is compiled once and shared by all links
+     * with the same href.
+     *
+     * @param variables the values by variable name
+     * @return the expanded href, or the href itself if the link is not templated
+     *
+     * @throws IllegalArgumentException if the href is not a valid URI template
+     */
+    public String expand( Map<String, ?> variables ) {
+        if ( href == null || !isTemplated() )
+            return href;
+        return HalUriTemplate.compile( href ).expand( variables );
+    }
+
+    public String getType() {
+        return attributes == null ? null : attributes.type;
+    }
+
+    public void setType( String type ) {
+        if ( type != null || attributes != null )
+            attributes().type = type;
+    }
+
+    public String getName() {
+        return attributes == null ? null : attributes.name;
+    }
+
+    public void setName( String name ) {
+        if ( name != null || attributes != null )
+            attributes().name = name;
+    }
+
+    public URI getProfile() {
+        return attributes == null ? null : attributes.profile;
+    }
+
+    public void setProfile( URI profile ) {
+        if ( profile != null || attributes != null )
+            attributes().profile = profile;
+    }
+
+    public URI getDeprecation() {
+        return attributes == null ? null : attributes.deprecation;
+    }
+
+    public void setDeprecation( URI deprecation ) {
+        if ( deprecation != null || attributes != null )
+            attributes().deprecation = deprecation;
+    }
+
+    public String getTitle() {
+        return attributes == null ? null : attributes.title;
+    }
+
+    public void setTitle( String title ) {
+        if ( title != null || attributes != null )
+            attributes().title = title;
+    }
+
+    public String getHreflang() {
+        return attributes == null ? null : attributes.hreflang;
+    }
+
+    public void setHreflang( String hreflang ) {
+        if ( hreflang != null || attributes != null )
+            attributes().hreflang = hreflang;
+    }
+
+    private Attributes attributes() {
+        if ( attributes == null )
+            attributes = new Attributes();
+        return attributes;
+    }
+
+    /**
+     * The attributes of a link that are rarely present
+     */
+    private static final class Attributes {
+        String type;
+        String name;
+        URI profile;
+        URI deprecation;
+        String title;
+        String hreflang;
+    }
 }
@@ -0,0 +1,240 @@
+/**
+ * Copyright 2015 Derk-Jan Karrenbeld
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.xpbytes.gson.hal;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonIOException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Locale;
+
+/**
+ * Streaming adapter for {@link HalLinkObject} and its subclasses. The attributes of the HAL
+ * specification are read and written through the accessors of the link, as the compact link
+ * doesn't have a field per attribute. Fields that a subclass adds are bound like the regular
+ * members of a resource.
+ *
+ * @param <L> the link type
+ */
+final class HalLinkObjectTypeAdapter<L extends HalLinkObject> extends TypeAdapter<L> {
+
+    private static final String HREF = "href";
+    private static final String TEMPLATED = "templated";
+    private static final String TYPE = "type";
+    private static final String NAME = "name";
+    private static final String PROFILE = "profile";
+    private static final String DEPRECATION = "deprecation";
+    private static final String TITLE = "title";
+    private static final String HREFLANG = "hreflang";
+
+    private final Class<L> type;
+    private final Constructor<L> constructor;
+    private final HalBindingPlan<L> extension;
+
+    private HalLinkObjectTypeAdapter( Class<L> type, Constructor<L> constructor, HalBindingPlan<L> extension ) {
+        this.type = type;
+        this.constructor = constructor;
+        this.extension = extension;
+    }
+
+    /**
+     * Creates the adapter for a link type
+     *
+     * @param gson  the gson instance
+     * @param type  the link type
+     * @param <L>   the link type
+     * @return the adapter
+     *
+     * @throws JsonIOException if a subclass has no no-args constructor
+     */
+    static <L extends HalLinkObject> HalLinkObjectTypeAdapter<L> create( Gson gson, Class<L> type ) {
+        if ( type == HalLinkObject.class )
+            return new HalLinkObjectTypeAdapter<>( type, null, null );
+
+        try {
+            Constructor<L> constructor = type.getDeclaredConstructor();
+            constructor.setAccessible( true );
+            return new HalLinkObjectTypeAdapter<>( type, constructor,
+                HalBindingPlan.create( gson, TypeToken.get( type ), null, null ) );
+        } catch ( NoSuchMethodException | SecurityException e ) {
+            throw new JsonIOException( String.format( Locale.US,
+                "Link type %s needs an accessible no-args constructor",
+                type.getName() ), e
+            );
+        }
+    }
+
+    @Override
+    public void write( JsonWriter out, L value ) throws IOException {
+        if ( value == null ) {
+            out.nullValue();
+            return;
+        }
+
+        out.beginObject();
+        out.name( HREF ).value( value.getHref() );
+        out.name( TEMPLATED ).value( value.isTemplated() );
+        writeString( out, TYPE, value.getType() );
+        writeString( out, NAME, value.getName() );
+        writeUri( out, PROFILE, value.getProfile() );
+        writeUri( out, DEPRECATION, value.getDeprecation() );
+        writeString( out, TITLE, value.getTitle() );
+        writeString( out, HREFLANG, value.getHreflang() );
+
+        if ( extension != null ) {
+            for ( HalBindingPlan.BoundField field : extension.serializedFields )
+                field.write( out, value );
+        }
+        out.endObject();
+    }
+
+    @Override
+    public L read( JsonReader in ) throws IOException {
+        return read( in, null );
+    }
+
+    /**
+     * Reads a link into an existing link object, if it is of the link type. The attributes of the
+     * HAL specification are reset first; the fields that a subclass adds keep their value unless
+     * the link has them.
+     *
+     * @param in        the reader, positioned at the link
+     * @param existing  the existing link object, or null
+     * @return the link, which is the existing link object if it was read into, or null
+     */
+    L read( JsonReader in, Object existing ) throws IOException {
+        if ( in.peek() == JsonToken.NULL ) {
+            in.nextNull();
+            return null;
+        }
+
+        L link;
+        if ( existing != null && existing.getClass() == type ) {
+            link = type.cast( existing );
+            reset( link );
+        } else {
+            link = construct();
+        }
+
+        in.beginObject();
+        while ( in.hasNext() ) {
+            String name = in.nextName();
+            switch ( name ) {
+                case HREF: link.setHref( readString( in ) ); break;
+                case TEMPLATED: link.setTemplated( readBoolean( in ) ); break;
+                case TYPE: link.setType( readString( in ) ); break;
+                case NAME: link.setName( readString( in ) ); break;
+                case PROFILE: link.setProfile( readUri( in ) ); break;
+                case DEPRECATION: link.setDeprecation( readUri( in ) ); break;
+                case TITLE: link.setTitle( readString( in ) ); break;
+                case HREFLANG: link.setHreflang( readString( in ) ); break;
+                default: readExtension( in, name, link ); break;
+            }
+        }
+        in.endObject();
+        return link;
+    }
+
+    private static void reset( HalLinkObject link ) {
+        link.setHref( null );
+        link.setTemplated( false );
+        link.setType( null );
+        link.setName( null );
+        link.setProfile( null );
+        link.setDeprecation( null );
+        link.setTitle( null );
+        link.setHreflang( null );
+    }
+
+    private void readExtension( JsonReader in, String name, L link ) throws IOException {
+        HalBindingPlan.BoundField field = extension == null ? null : extension.fields.get( name );
+        if ( field == null ) {
+            in.skipValue();
+            return;
+        }
+
+        field.read( in, link );
+    }
+
+    private L construct() {
+        if ( constructor == null ) {
+            @SuppressWarnings( "unchecked" )
+            L link = (L)new HalLinkObject();
+            return link;
+        }
+
+        try {
+            return constructor.newInstance();
+        } catch ( InstantiationException | IllegalAccessException e ) {
+            throw new JsonIOException( "Unable to invoke " + constructor + " with no args", e );
+        } catch ( InvocationTargetException e ) {
+            throw new JsonIOException( "Failed to invoke " + constructor + " with no args",
+                e.getTargetException() );
+        }
+    }
+
+    private static void writeString( JsonWriter out, String name, String value ) throws IOException {
+        if ( value != null || out.getSerializeNulls() )
+            out.name( name ).value( value );
+    }
+
+    private static void writeUri( JsonWriter out, String name, URI value ) throws IOException {
+        writeString( out, name, value == null ? null : value.toASCIIString() );
+    }
+
+    private static String readString( JsonReader in ) throws IOException {
+        switch ( in.peek() ) {
+            case NULL:
+                in.nextNull();
+                return null;
+            case BOOLEAN:
+                return Boolean.toString( in.nextBoolean() );
+            default:
+                return in.nextString();
+        }
+    }
+
+    private static boolean readBoolean( JsonReader in ) throws IOException {
+        switch ( in.peek() ) {
+            case NULL:
+                in.nextNull();
+                return false;
+            case STRING:
+                return Boolean.parseBoolean( in.nextString() );
+            default:
+                return in.nextBoolean();
+        }
+    }
+
+    private static URI readUri( JsonReader in ) throws IOException {
+        String value = readString( in );
+        try {
+            return value == null ? null : new URI( value );
+        } catch ( URISyntaxException e ) {
+            throw new JsonIOException( e );
+        }
+    }
+}
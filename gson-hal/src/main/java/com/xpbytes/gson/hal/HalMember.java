@@ -0,0 +1,155 @@
+/**
+ * Copyright 2015 Derk-Jan Karrenbeld
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.xpbytes.gson.hal;
+
+import java.lang.reflect.Type;
+
+/**
+ * Describes a member of a {@link HalResource} as seen by a generated {@link HalAccessor}: a
+ * regular field, a link or an embed. Instances are created by generated code.
+ */
+public final class HalMember {
+
+    /**
+     * The kind of a member
+     */
+    public enum Kind { FIELD, LINK, EMBED }
+
+    private static final String[] NO_ALTERNATES = new String[ 0 ];
+
+    private final Kind kind;
+    private final Class<?> declaringClass;
+    private final String fieldName;
+    private final String jsonName;
+    private final String[] alternates;
+    private final String relation;
+    private final boolean optional;
+    private final Type type;
+
+    private HalMember( Kind kind, Class<?> declaringClass, String fieldName, String jsonName,
+        String[] alternates, String relation, boolean optional, Type type ) {
+        this.kind = kind;
+        this.declaringClass = declaringClass;
+        this.fieldName = fieldName;
+        this.jsonName = jsonName;
+        this.alternates = alternates;
+        this.relation = relation;
+        this.optional = optional;
+        this.type = type;
+    }
+
+    /**
+     * Describes a regular field
+     *
+     * @param declaringClass    the class that declares the field
+     * @param fieldName         the name of the field
+     * @param serializedName    the {@link com.google.gson.annotations.SerializedName} value, or
+     *                          null to let the naming strategy of Gson decide
+     * @param type              the generic type of the field
+     * @param alternates        the alternate serialized names
+     * @return the member
+     */
+    public static HalMember field( Class<?> declaringClass, String fieldName, String serializedName,
+        Type type, String... alternates ) {
+        return new HalMember( Kind.FIELD, declaringClass, fieldName, serializedName,
+            alternates.length == 0 ? NO_ALTERNATES : alternates.clone(), null, false, type );
+    }
+
+    /**
+     * Describes a link
+     *
+     * @param declaringClass    the class that declares the field
+     * @param fieldName         the name of the field
+     * @param jsonName          the name of the link in the links root
+     * @param optional          true if the link may be absent
+     * @param type              the generic type of the field
+     * @return the member
+     */
+    public static HalMember link( Class<?> declaringClass, String fieldName, String jsonName,
+        boolean optional, Type type ) {
+        return link( declaringClass, fieldName, jsonName, null, optional, type );
+    }
+
+    /**
+     * Describes a link that is bound to a relation
+     *
+     * @param declaringClass    the class that declares the field
+     * @param fieldName         the name of the field
+     * @param jsonName          the name of the link in the links root
+     * @param relation          the link relation type, or null to only bind by name
+     * @param optional          true if the link may be absent
+     * @param type              the generic type of the field
+     * @return the member
+     */
+    public static HalMember link( Class<?> declaringClass, String fieldName, String jsonName,
+        String relation, boolean optional, Type type ) {
+        return new HalMember( Kind.LINK, declaringClass, fieldName, jsonName, NO_ALTERNATES, relation, optional, type );
+    }
+
+    /**
+     * Describes an embed
+     *
+     * @param declaringClass    the class that declares the field
+     * @param fieldName         the name of the field
+     * @param jsonName          the name of the embed in the embedded root
+     * @param optional          true if the embed may be absent
+     * @param type              the generic type of the field
+     * @return the member
+     */
+    public static HalMember embed( Class<?> declaringClass, String fieldName, String jsonName,
+        boolean optional, Type type ) {
+        return new HalMember( Kind.EMBED, declaringClass, fieldName, jsonName, NO_ALTERNATES, null, optional, type );
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public Class<?> getDeclaringClass() {
+        return declaringClass;
+    }
+
+    public String getFieldName() {
+        return fieldName;
+    }
+
+    /**
+     * @return the name in the JSON, or null if a regular field is named by the naming strategy
+     */
+    public String getJsonName() {
+        return jsonName;
+    }
+
+    public String[] getAlternates() {
+        return alternates.clone();
+    }
+
+    /**
+     * @return the link relation type of a link, or null if it is only bound by name
+     */
+    public String getRelation() {
+        return relation;
+    }
+
+    public boolean isOptional() {
+        return optional;
+    }
+
+    public Type getType() {
+        return type;
+    }
+}
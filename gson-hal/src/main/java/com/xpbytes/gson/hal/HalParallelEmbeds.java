@@ -0,0 +1,155 @@
+/**
+ * Copyright 2015 Derk-Jan Karrenbeld
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.xpbytes.gson.hal;
+
+import com.google.gson.JsonIOException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Binds the items of large embedded arrays on an executor. The first items of an array are bound
+ * straight from the stream, like those of any other array. Once the array turns out to be larger
+ * than the threshold, the rest of it is captured as JSON text on the reading thread and handed to
+ * the executor in chunks, while the reading thread carries on tokenizing. The items are added to
+ * the collection in the order of the document.
+ *
+ * The reading thread binds every chunk that no worker has started yet itself, so neither a busy
+ * or rejecting executor nor a large array within an item that is bound in parallel can deadlock
+ * the read.
+ */
+final class HalParallelEmbeds {
+
+    /** The number of items per chunk, enough to amortize the handover of heavyweight resources */
+    static final int CHUNK_SIZE = 64;
+
+    private final Executor executor;
+    final int threshold;
+
+    /**
+     * @param executor  the executor that binds the chunks
+     * @param threshold the number of items that are bound before the rest of an array goes parallel
+     */
+    HalParallelEmbeds( Executor executor, int threshold ) {
+        this.executor = executor;
+        this.threshold = threshold;
+    }
+
+    /**
+     * Reads the remaining items of an array and adds them to the collection
+     *
+     * @param in        the reader, positioned at the first item to read in parallel
+     * @param adapter   the adapter of the items
+     * @param items     the collection of the items read so far
+     * @param context   the state of the read
+     * @param depth     the embed depth of the items
+     */
+    void read( JsonReader in, TypeAdapter<?> adapter, Collection<Object> items, HalReadContext context,
+        int depth ) throws IOException {
+        List<FutureTask<Object[]>> tasks = new ArrayList<>();
+        try {
+            while ( in.hasNext() ) {
+                String[] values = new String[ CHUNK_SIZE ];
+                int size = 0;
+                while ( size < CHUNK_SIZE && in.hasNext() )
+                    values[ size++ ] = HalStreams.capture( in );
+
+                FutureTask<Object[]> task = new FutureTask<>( new Chunk( adapter, values, size, context.fork(), depth ) );
+                tasks.add( task );
+                try {
+                    executor.execute( task );
+                } catch ( RejectedExecutionException ignored ) {
+                    // Bound on the reading thread below
+                }
+            }
+
+            for ( FutureTask<Object[]> task : tasks ) {
+                // Does nothing if a worker started the chunk already
+                task.run();
+                for ( Object item : get( task ) )
+                    items.add( item );
+            }
+        } finally {
+            for ( FutureTask<Object[]> task : tasks )
+                task.cancel( false );
+        }
+    }
+
+    private static Object[] get( FutureTask<Object[]> task ) throws IOException {
+        try {
+            return task.get();
+        } catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new JsonIOException( "Interrupted while reading an embedded array", e );
+        } catch ( ExecutionException e ) {
+            Throwable cause = e.getCause();
+            if ( cause instanceof IOException )
+                throw (IOException)cause;
+            if ( cause instanceof RuntimeException )
+                throw (RuntimeException)cause;
+            if ( cause instanceof Error )
+                throw (Error)cause;
+            throw new JsonIOException( cause );
+        }
+    }
+
+    /**
+     * A chunk of items, bound as a single task with its own state of the read
+     */
+    private static final class Chunk implements Callable<Object[]> {
+        private final TypeAdapter<?> adapter;
+        private final String[] values;
+        private final int size;
+        private final HalReadContext context;
+        private final int depth;
+
+        Chunk( TypeAdapter<?> adapter, String[] values, int size, HalReadContext context, int depth ) {
+            this.adapter = adapter;
+            this.values = values;
+            this.size = size;
+            this.context = context;
+            this.depth = depth;
+        }
+
+        @Override public Object[] call() throws IOException {
+            Object[] items = new Object[ size ];
+            for ( int i = 0; i < size; i++ ) {
+                JsonReader in = HalStreams.lenientReader( new StringReader( values[ i ] ) );
+                if ( adapter instanceof HalTypeAdapter )
+                    items[ i ] = ( (HalTypeAdapter<?>)adapter ).readResource( in, context, depth );
+                else if ( adapter instanceof HalLazyTypeAdapter )
+                    items[ i ] = ( (HalLazyTypeAdapter<?>)adapter ).read( in, context, depth );
+                else
+                    items[ i ] = adapter.read( in );
+
+                // The JSON is garbage once the item is bound
+                values[ i ] = null;
+            }
+            return items;
+        }
+    }
+}
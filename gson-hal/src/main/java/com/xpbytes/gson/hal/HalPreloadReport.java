@@ -0,0 +1,62 @@
+/**
+ * Copyright 2015 Derk-Jan Karrenbeld
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.xpbytes.gson.hal;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The outcome of {@link HalTypeAdapterFactory#preload(com.google.gson.Gson, Class[])}: the
+ * resource types that were preloaded and how long that took.
+ */
+public final class HalPreloadReport {
+
+    private final List<Class<?>> resourceTypes;
+    private final long durationNanos;
+
+    HalPreloadReport( List<Class<?>> resourceTypes, long durationNanos ) {
+        this.resourceTypes = Collections.unmodifiableList( resourceTypes );
+        this.durationNanos = durationNanos;
+    }
+
+    /**
+     * @return the preloaded resource types, including the embedded ones, in the order they were
+     *         reached
+     */
+    public List<Class<?>> getResourceTypes() {
+        return resourceTypes;
+    }
+
+    /**
+     * Gets the duration of the preload
+     *
+     * @param unit the unit of the duration
+     * @return the duration
+     */
+    public long getDuration( TimeUnit unit ) {
+        return unit.convert( durationNanos, TimeUnit.NANOSECONDS );
+    }
+
+    @Override public String toString() {
+        return String.format( Locale.US,
+            "Preloaded %d HAL resources in %.1f ms",
+            resourceTypes.size(),
+            durationNanos / 1e6 );
+    }
+}
@@ -0,0 +1,231 @@
+/**
+ * Copyright 2015 Derk-Jan Karrenbeld
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.xpbytes.gson.hal;
+
+import java.io.Closeable;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Selects which links and embeds are bound when reading resources. Everything that is not
+ * selected is skipped at the token level, without being decoded. Selections apply to resources
+ * at every depth; the embed depth limits how deeply embedded resources are read, where the
+ * embeds of the resource being read are at depth 1.
+ *
+ * A required link or embed that is not selected is not verified. Projections are immutable and
+ * are either set on a {@link HalTypeAdapterFactory} or opened for the reads of the current thread:
+ *
+ * <pre>
+ * HalProjection nextOnly = HalProjection.ALL.withLinks( "self", "next" ).withEmbeds();
+ * try ( HalProjection.Scope ignored = nextOnly.open() ) {
+ *     page = gson.fromJson( json, Page.class );
+ * }
+ * </pre>
+ */
+public final class HalProjection {
+
+    /** Binds all links and embeds, at any depth */
+    public static final HalProjection ALL = new HalProjection( null, null, Integer.MAX_VALUE );
+
+    private static final ThreadLocal<HalProjection> scoped = new ThreadLocal<>();
+
+    /** The number of open scopes over all threads, so reads skip the thread local when there are none */
+    private static final AtomicInteger openScopes = new AtomicInteger();
+
+    private final Set<String> links;
+    private final Set<String> embeds;
+    private final int maxEmbedDepth;
+
+    private HalProjection( Set<String> links, Set<String> embeds, int maxEmbedDepth ) {
+        this.links = links;
+        this.embeds = embeds;
+        this.maxEmbedDepth = maxEmbedDepth;
+    }
+
+    /**
+     * Selects the links to bind. Pass no names to skip all links.
+     *
+     * @param names the JSON names of the links
+     * @return the new projection
+     */
+    public HalProjection withLinks( String... names ) {
+        return new HalProjection( setOf( names ), embeds, maxEmbedDepth );
+    }
+
+    /**
+     * Binds all links
+     *
+     * @return the new projection
+     */
+    public HalProjection withAllLinks() {
+        return new HalProjection( null, embeds, maxEmbedDepth );
+    }
+
+    /**
+     * Selects the embeds to bind. Pass no names to skip all embeds.
+     *
+     * @param names the JSON names of the embeds
+     * @return the new projection
+     */
+    public HalProjection withEmbeds( String... names ) {
+        return new HalProjection( links, setOf( names ), maxEmbedDepth );
+    }
+
+    /**
+     * Binds all embeds
+     *
+     * @return the new projection
+     */
+    public HalProjection withAllEmbeds() {
+        return new HalProjection( links, null, maxEmbedDepth );
+    }
+
+    /**
+     * Limits the depth of embedded resources that are bound
+     *
+     * @param maxEmbedDepth the maximum depth, 0 to skip all embeds
+     * @return the new projection
+     */
+    public HalProjection withMaxEmbedDepth( int maxEmbedDepth ) {
+        if ( maxEmbedDepth < 0 )
+            throw new IllegalArgumentException( "maxEmbedDepth must not be negative" );
+
+        return new HalProjection( links, embeds, maxEmbedDepth );
+    }
+
+    /**
+     * Applies this projection to all reads on the current thread until the scope is closed. A
+     * scoped projection takes precedence over the projection of the factory.
+     *
+     * @return the scope
+     */
+    public Scope open() {
+        Scope scope = new Scope( scoped.get() );
+        scoped.set( this );
+        openScopes.incrementAndGet();
+        return scope;
+    }
+
+    /**
+     * Gets the projection of the current read
+     *
+     * @param fallback the projection of the factory
+     * @return the scoped projection, or the fallback if there is none
+     */
+    static HalProjection current( HalProjection fallback ) {
+        if ( openScopes.get() == 0 )
+            return fallback;
+
+        HalProjection projection = scoped.get();
+        return projection == null ? fallback : projection;
+    }
+
+    /**
+     * Are any links of a resource bound?
+     *
+     * @return false if the links root can be skipped as a whole
+     */
+    boolean readsLinks() {
+        return links == null || !links.isEmpty();
+    }
+
+    /**
+     * Are any embeds of a resource at a depth bound?
+     *
+     * @param depth the depth of the resource, 0 for the resource being read
+     * @return false if the embedded root can be skipped as a whole
+     */
+    boolean readsEmbeds( int depth ) {
+        return depth < maxEmbedDepth && ( embeds == null || !embeds.isEmpty() );
+    }
+
+    /**
+     * Does the projection bind all links and embeds, at any depth, like {@link #ALL}? Resources
+     * read with it are then bound completely.
+     *
+     * @return true if it does
+     */
+    boolean isUnrestricted() {
+        return links == null && embeds == null && !limitsEmbedDepth();
+    }
+
+    /**
+     * Is the depth of embedded resources limited? The same resource is then bound differently
+     * depending on where it is embedded.
+     *
+     * @return true if it is
+     */
+    boolean limitsEmbedDepth() {
+        return maxEmbedDepth != Integer.MAX_VALUE;
+    }
+
+    /**
+     * Is a binding of a resource at a depth bound?
+     *
+     * @param binding   the binding
+     * @param depth     the depth of the resource, 0 for the resource being read
+     * @return true if it is
+     */
+    boolean selects( HalBindingPlan.Binding binding, int depth ) {
+        if ( binding.link )
+            return links == null || links.contains( binding.name );
+
+        return selectsEmbed( binding.name, depth );
+    }
+
+    /**
+     * Is an embed of a resource at a depth bound, whether or not a field is bound to it?
+     *
+     * @param name      the JSON name of the embed
+     * @param depth     the depth of the resource, 0 for the resource being read
+     * @return true if it is
+     */
+    boolean selectsEmbed( String name, int depth ) {
+        return depth < maxEmbedDepth && ( embeds == null || embeds.contains( name ) );
+    }
+
+    private static Set<String> setOf( String... names ) {
+        return Collections.unmodifiableSet( new HashSet<>( Arrays.asList( names ) ) );
+    }
+
+    /**
+     * An open projection, restoring the previous projection of the thread when closed
+     */
+    public static final class Scope implements Closeable {
+        private final HalProjection previous;
+        private boolean closed;
+
+        private Scope( HalProjection previous ) {
+            this.previous = previous;
+        }
+
+        @Override public void close() {
+            if ( closed )
+                return;
+
+            closed = true;
+            if ( previous == null )
+                scoped.remove();
+            else
+                scoped.set( previous );
+            openScopes.decrementAndGet();
+        }
+    }
+}
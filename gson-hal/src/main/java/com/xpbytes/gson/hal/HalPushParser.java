@@ -0,0 +1,711 @@
+/**
+ * Copyright 2015 Derk-Jan Karrenbeld
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.xpbytes.gson.hal;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonIOException;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.MalformedJsonException;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Decodes a UTF-8 encoded HAL document that is pushed to it in chunks, as the bytes arrive, and
+ * never blocks waiting for more. The parser keeps its place in the document between chunks; every
+ * member of the resource is bound through the same binding plan {@link HalTypeAdapterFactory}
+ * uses as soon as its value is complete, so only the value that is still arriving is buffered.
+ *
+ * <pre>
+ * HalPushParser&lt;Page, Item&gt; parser = HalPushParser.open( gson, Page.class, "items", Item.class,
+ *     new HalPushParser.Listener&lt;Page, Item&gt;() { ... } );
+ *
+ * // For every chunk of the body, as it arrives
+ * parser.feed( chunk );
+ *
+ * // At the end of the body
+ * parser.complete();
+ * </pre>
+ *
+ * Opened with the name of an embed, the items of that embed are handed to the listener one at a
+ * time as each of them is complete, like {@link HalEmbeddedIterator} does. The iterated embed is
+ * never assigned to the resource, but does count as present for a required {@link HalEmbed}
+ * field.
+ *
+ * The listener is called on the thread that feeds the parser, and either {@link
+ * Listener#onComplete(Object)} or {@link Listener#onError(JsonParseException)} is called exactly
+ * once. Strings may be quoted with double or single quotes; other lenient syntax that Gson
+ * accepts, such as comments and unquoted names, is not supported. A parser is not thread-safe.
+ *
+ * With a {@link HalContentCache}, every embed and every item is hashed as its bytes arrive, and
+ * the document is digested chunk by chunk. An embed or item whose bytes are the same as those of
+ * one bound before is not bound again but resolves to the value bound before, and so does an
+ * unchanged document.
+ *
+ * @param <T> the resource type
+ * @param <E> the item type
+ */
+public final class HalPushParser<T, E> {
+
+    private static final Charset UTF_8 = Charset.forName( "UTF-8" );
+    private static final int SCRATCH_SIZE = 8 * 1024;
+
+    /**
+     * Receives the results of a parser, always on the thread that feeds it
+     *
+     * @param <T> the resource type
+     * @param <E> the item type
+     */
+    public interface Listener<T, E> {
+
+        /**
+         * Called with each item of the iterated embed, in document order. Never called if the
+         * parser doesn't iterate an embed.
+         *
+         * @param item the item, or null if the item is the JSON literal null
+         */
+        void onItem( E item );
+
+        /**
+         * Called once the document is complete. The resource is completely bound, and all items
+         * were handed over.
+         *
+         * @param resource the resource, or null if the document is the JSON literal null
+         */
+        void onComplete( T resource );
+
+        /**
+         * Called once the document turned out to be malformed, or could not be bound. No more
+         * calls follow, and the remaining input is ignored.
+         *
+         * @param error the failure
+         */
+        void onError( JsonParseException error );
+    }
+
+    private enum State {
+        DOCUMENT,
+        ROOT_NAME, ROOT_COLON, ROOT_VALUE, ROOT_NEXT,
+        EMBEDDED_NAME, EMBEDDED_COLON, EMBEDDED_VALUE, EMBEDDED_NEXT,
+        ITEM_VALUE, ITEM_NEXT,
+        TRAILER, FAILED
+    }
+
+    /** What a captured value is bound to once it is complete */
+    private enum Target { DOCUMENT, ROOT_NAME, MEMBER, EMBEDDED_NAME, EMBED, ITEM, SINGLE_ITEM }
+
+    private final HalTypeAdapter<T> adapter;
+    private final TypeAdapter<E> itemAdapter;
+    private final String name;
+    private final Listener<? super T, ? super E> listener;
+    private final HalReadContext context;
+
+    /** True if the items of the embed are handed to the listener, false if the projection skips it */
+    private final boolean streamed;
+
+    private State state = State.DOCUMENT;
+    private boolean listening;
+    private boolean first;
+    private long position;
+    private T resource;
+    private boolean[] present;
+    private String member;
+    private String embed;
+    private HalContentCache cache;
+    private MessageDigest digest;
+    private long curiesSignature;
+
+    // The value being captured, if any
+    private Target target;
+    private byte[] value = new byte[ 256 ];
+    private int length;
+    private int depth;
+    private byte quote;
+    private boolean escape;
+    private boolean scalar;
+    private long hash;
+    private byte[] scratch;
+
+    // The chunk being fed, while the document is digested
+    private byte[] chunk;
+    private int chunkOffset;
+    private long chunkPosition;
+
+    private HalPushParser( HalTypeAdapter<T> adapter, TypeAdapter<E> itemAdapter, String name,
+        Listener<? super T, ? super E> listener ) {
+        this.adapter = adapter;
+        this.itemAdapter = itemAdapter;
+        this.name = name;
+        this.listener = listener;
+        this.context = adapter.newContext();
+        this.context.parseCuries = HalTypeAdapter.bindsRelations( itemAdapter );
+        this.streamed = name != null && context.projection.selectsEmbed( name, 0 );
+    }
+
+    /**
+     * Opens a parser for a document, binding the resource as the document arrives. The listener
+     * is called with the resource once the document is complete.
+     *
+     * @param gson          the gson instance, with a {@link HalTypeAdapterFactory} registered
+     * @param resourceType  the type of the resource
+     * @param listener      the listener for the results
+     * @param <T>           the resource type
+     * @return the parser
+     *
+     * @throws IllegalArgumentException if the resource type is not handled by a {@link
+     *                                  HalTypeAdapterFactory}
+     */
+    public static <T> HalPushParser<T, Void> open( Gson gson, Class<T> resourceType,
+        Listener<? super T, ? super Void> listener ) {
+        return new HalPushParser<>( adapter( gson, resourceType ), null, null, listener );
+    }
+
+    /**
+     * Opens a parser for a document, handing the items of an embed to the listener as they
+     * arrive. Both an array and a single object are accepted as the embed. If the projection of
+     * the read doesn't select the embed, it is skipped and no items are handed over.
+     *
+     * @param gson          the gson instance, with a {@link HalTypeAdapterFactory} registered
+     * @param resourceType  the type of the resource
+     * @param name          the JSON name of the embed
+     * @param itemType      the type of the items
+     * @param listener      the listener for the results
+     * @param <T>           the resource type
+     * @param <E>           the item type
+     * @return the parser
+     *
+     * @throws IllegalArgumentException if the resource type is not handled by a {@link
+     *                                  HalTypeAdapterFactory}
+     */
+    public static <T, E> HalPushParser<T, E> open( Gson gson, Class<T> resourceType, String name,
+        Class<E> itemType, Listener<? super T, ? super E> listener ) {
+        return new HalPushParser<>( adapter( gson, resourceType ), gson.getAdapter( itemType ), name, listener );
+    }
+
+    private static <T> HalTypeAdapter<T> adapter( Gson gson, Class<T> resourceType ) {
+        TypeAdapter<T> adapter = gson.getAdapter( resourceType );
+        if ( !( adapter instanceof HalTypeAdapter ) )
+            throw new IllegalArgumentException( String.format( Locale.US,
+                "%s is not a HAL resource, or no HalTypeAdapterFactory is registered",
+                resourceType.getName() )
+            );
+        return (HalTypeAdapter<T>)adapter;
+    }
+
+    /**
+     * Sets the cache of the content that was bound before, so unchanged embeds, items and
+     * documents are not bound again
+     *
+     * @param cache the cache, or null to bind all content
+     * @return the parser
+     *
+     * @throws IllegalStateException if part of the document was fed already
+     */
+    public HalPushParser<T, E> setContentCache( HalContentCache cache ) {
+        if ( position != 0 )
+            throw new IllegalStateException( "The content cache must be set before the document is fed" );
+
+        this.cache = cache;
+        this.digest = cache == null ? null : HalContentCache.newDigest();
+        return this;
+    }
+
+    /**
+     * Pushes the remaining bytes of a buffer to the parser, which consumes all of them
+     *
+     * @param bytes the next chunk of the document
+     *
+     * @throws JsonSyntaxException if there is more than whitespace after the document
+     */
+    public void feed( ByteBuffer bytes ) {
+        if ( bytes.hasArray() ) {
+            int remaining = bytes.remaining();
+            feed( bytes.array(), bytes.arrayOffset() + bytes.position(), remaining );
+            bytes.position( bytes.position() + remaining );
+            return;
+        }
+
+        if ( scratch == null )
+            scratch = new byte[ SCRATCH_SIZE ];
+        while ( bytes.hasRemaining() ) {
+            int count = Math.min( scratch.length, bytes.remaining() );
+            bytes.get( scratch, 0, count );
+            feed( scratch, 0, count );
+        }
+    }
+
+    /**
+     * Pushes bytes to the parser
+     *
+     * @param bytes     the array with the next chunk of the document
+     * @param offset    the offset of the chunk in the array
+     * @param count     the number of bytes of the chunk
+     *
+     * @throws JsonSyntaxException if there is more than whitespace after the document
+     */
+    public void feed( byte[] bytes, int offset, int count ) {
+        boolean digesting = digest != null && state != State.TRAILER;
+        if ( digesting ) {
+            chunk = bytes;
+            chunkOffset = offset;
+            chunkPosition = position;
+        }
+
+        try {
+            for ( int i = offset; i < offset + count && state != State.FAILED; i++ ) {
+                accept( bytes[ i ] );
+                position++;
+            }
+
+            // A document that ended in this chunk was digested up to its end already
+            if ( digesting && state != State.TRAILER && state != State.FAILED )
+                digest.update( bytes, offset, count );
+        } catch ( JsonParseException e ) {
+            if ( listening ) {
+                // Thrown by the listener
+                state = State.FAILED;
+                throw e;
+            }
+            if ( state == State.TRAILER )
+                throw e;
+            fail( e );
+        } catch ( RuntimeException | Error e ) {
+            // Thrown by the listener
+            state = State.FAILED;
+            throw e;
+        } finally {
+            chunk = null;
+        }
+    }
+
+    /**
+     * Signals the end of the document. Reports an error to the listener if the document is
+     * incomplete.
+     */
+    public void complete() {
+        try {
+            if ( target != null && scalar )
+                finish();
+            if ( state != State.TRAILER && state != State.FAILED )
+                throw new JsonSyntaxException( String.format( Locale.US,
+                    "Document ended early, at byte %d", position ) );
+        } catch ( JsonParseException e ) {
+            if ( listening ) {
+                state = State.FAILED;
+                throw e;
+            }
+            fail( e );
+        }
+    }
+
+    /**
+     * Checks if the document is complete or failed, after which input is no longer accepted
+     *
+     * @return true if the listener was called with the outcome
+     */
+    public boolean isDone() {
+        return state == State.TRAILER || state == State.FAILED;
+    }
+
+    private void fail( JsonParseException e ) {
+        state = State.FAILED;
+        target = null;
+        listener.onError( e );
+    }
+
+    private void accept( byte b ) {
+        // A scalar only ends at the byte that follows it, which belongs to the enclosing structure
+        if ( target != null && capture( b ) )
+            return;
+
+        if ( b == ' ' || b == '\n' || b == '\r' || b == '\t' )
+            return;
+
+        switch ( state ) {
+            case DOCUMENT:
+                if ( b != '{' ) {
+                    begin( Target.DOCUMENT, b );
+                    return;
+                }
+
+                resource = adapter.construct();
+                present = adapter.newPresence();
+                next( State.ROOT_NAME );
+                return;
+
+            case ROOT_NAME:
+            case EMBEDDED_NAME:
+                if ( b == '}' && first ) {
+                    end();
+                    return;
+                }
+
+                expectQuote( b );
+                begin( state == State.ROOT_NAME ? Target.ROOT_NAME : Target.EMBEDDED_NAME, b );
+                return;
+
+            case ROOT_COLON:
+            case EMBEDDED_COLON:
+                expect( b, ':' );
+                state = state == State.ROOT_COLON ? State.ROOT_VALUE : State.EMBEDDED_VALUE;
+                return;
+
+            case ROOT_VALUE:
+                if ( b == '{' && HalConstants.RESERVED_EMBEDDED_ROOT.equals( member ) ) {
+                    next( State.EMBEDDED_NAME );
+                    return;
+                }
+
+                begin( Target.MEMBER, b );
+                return;
+
+            case EMBEDDED_VALUE:
+                if ( !streamed || !embed.equals( name ) || b == 'n' ) {
+                    begin( Target.EMBED, b );
+                    return;
+                }
+
+                adapter.markEmbedPresent( present, name );
+                if ( b == '[' )
+                    next( State.ITEM_VALUE );
+                else
+                    begin( Target.SINGLE_ITEM, b );
+                return;
+
+            case ITEM_VALUE:
+                if ( b == ']' && first ) {
+                    state = State.EMBEDDED_NEXT;
+                    return;
+                }
+
+                begin( Target.ITEM, b );
+                return;
+
+            case ROOT_NEXT:
+            case EMBEDDED_NEXT:
+                if ( b == '}' ) {
+                    end();
+                    return;
+                }
+
+                expect( b, ',' );
+                state = state == State.ROOT_NEXT ? State.ROOT_NAME : State.EMBEDDED_NAME;
+                first = false;
+                return;
+
+            case ITEM_NEXT:
+                if ( b == ']' ) {
+                    state = State.EMBEDDED_NEXT;
+                    return;
+                }
+
+                expect( b, ',' );
+                state = State.ITEM_VALUE;
+                first = false;
+                return;
+
+            default:
+                throw unexpected( b );
+        }
+    }
+
+    private void next( State next ) {
+        state = next;
+        first = true;
+    }
+
+    /**
+     * Ends the root or the embedded root
+     */
+    private void end() {
+        if ( state == State.EMBEDDED_NAME || state == State.EMBEDDED_NEXT ) {
+            state = State.ROOT_NEXT;
+            return;
+        }
+
+        adapter.verifyRequired( present, context, 0 );
+        state = State.TRAILER;
+        onComplete( cache == null ? resource : cachedDocument() );
+    }
+
+    /**
+     * Hands the resource to the listener. Anything the listener throws is rethrown to the caller
+     * rather than reported to the listener as a failure of the document.
+     */
+    private void onComplete( T document ) {
+        listening = true;
+        listener.onComplete( document );
+        listening = false;
+    }
+
+    private void onItem( E item ) {
+        listening = true;
+        listener.onItem( item );
+        listening = false;
+    }
+
+    /**
+     * Looks up the resource of an unchanged document, or remembers the resource that was bound
+     *
+     * @return the resource to complete with
+     */
+    private T cachedDocument() {
+        // The document ends at the current byte, which is not counted yet
+        digest.update( chunk, chunkOffset, (int)( position - chunkPosition ) + 1 );
+        byte[] document = digest.digest();
+        long documentHash = HalContentCache.hash( document );
+
+        Object cached = cache.get( documentHash, document, document.length, adapter, context.projection );
+        if ( cached != null ) {
+            @SuppressWarnings( "unchecked" )
+            T hit = (T)cached;
+            return hit;
+        }
+
+        cache.put( documentHash, document, document.length, adapter, context.projection, resource );
+        return resource;
+    }
+
+    /**
+     * Starts capturing a value
+     *
+     * @param target    what the value is bound to
+     * @param b         the first byte of the value
+     */
+    private void begin( Target target, byte b ) {
+        this.target = target;
+        this.length = 0;
+        this.depth = 0;
+        this.quote = 0;
+        this.escape = false;
+        this.scalar = false;
+        if ( cache != null ) {
+            // Identical embeds under another name, or with other curies in scope, bind differently
+            long seed = target == Target.EMBED ? 31 * curiesSignature + embed.hashCode() : curiesSignature;
+            this.hash = HalContentCache.start( seed );
+        }
+        append( b );
+
+        if ( b == '{' || b == '[' )
+            depth = 1;
+        else if ( b == '"' || b == '\'' )
+            quote = b;
+        else if ( b == '}' || b == ']' || b == ',' || b == ':' )
+            throw unexpected( b );
+        else
+            scalar = true;
+    }
+
+    /**
+     * Adds a byte to the value being captured
+     *
+     * @param b the byte
+     * @return false if the byte ends a scalar and is not part of the value
+     */
+    private boolean capture( byte b ) {
+        if ( quote != 0 ) {
+            append( b );
+            if ( escape )
+                escape = false;
+            else if ( b == '\\' )
+                escape = true;
+            else if ( b == quote ) {
+                quote = 0;
+                if ( depth == 0 )
+                    finish();
+            }
+            return true;
+        }
+
+        if ( scalar ) {
+            if ( b == ' ' || b == '\n' || b == '\r' || b == '\t' || b == ',' || b == '}' || b == ']' || b == ':' ) {
+                finish();
+                return false;
+            }
+
+            append( b );
+            return true;
+        }
+
+        append( b );
+        if ( b == '"' || b == '\'' )
+            quote = b;
+        else if ( b == '{' || b == '[' )
+            depth++;
+        else if ( ( b == '}' || b == ']' ) && --depth == 0 )
+            finish();
+        return true;
+    }
+
+    private void append( byte b ) {
+        if ( length == value.length )
+            value = Arrays.copyOf( value, length * 2 );
+        value[ length++ ] = b;
+        if ( cache != null )
+            hash = HalContentCache.update( hash, b & 0xff );
+    }
+
+    /**
+     * Binds the value that was captured
+     */
+    private void finish() {
+        Target finished = target;
+        target = null;
+
+        switch ( finished ) {
+            case ROOT_NAME:
+                member = name();
+                state = State.ROOT_COLON;
+                return;
+
+            case EMBEDDED_NAME:
+                embed = name();
+                state = State.EMBEDDED_COLON;
+                return;
+
+            case DOCUMENT:
+                T document = read( adapter, 0 );
+                state = State.TRAILER;
+                onComplete( document );
+                return;
+
+            case ITEM:
+            case SINGLE_ITEM:
+                state = finished == Target.ITEM ? State.ITEM_NEXT : State.EMBEDDED_NEXT;
+                onItem( cache == null ? read( itemAdapter, 1 ) : cachedItem() );
+                return;
+
+            default:
+                try {
+                    if ( finished == Target.MEMBER ) {
+                        adapter.readMember( reader(), member, present, resource, context, 0 );
+                        if ( cache != null && HalConstants.RESERVED_LINKS_ROOT.equals( member ) )
+                            curiesSignature = HalCuries.signature( context.curies );
+                    } else if ( cache == null || value[ 0 ] == 'n' )
+                        adapter.readEmbed( reader(), embed, present, resource, context, 0 );
+                    else
+                        cachedEmbed();
+                } catch ( IOException | IllegalStateException e ) {
+                    throw wrap( e );
+                }
+                state = finished == Target.MEMBER ? State.ROOT_NEXT : State.EMBEDDED_NEXT;
+        }
+    }
+
+    /**
+     * Assigns the value bound from the same embed before, or binds the captured embed and
+     * remembers its value
+     */
+    private void cachedEmbed() throws IOException {
+        Object cached = cache.get( hash, value, length, adapter, context.projection );
+        if ( cached != null ) {
+            adapter.assignEmbed( embed, cached, present, resource, context, 0 );
+            return;
+        }
+
+        adapter.readEmbed( reader(), embed, present, resource, context, 0 );
+        cache.put( hash, value, length, adapter, context.projection, adapter.getEmbed( embed, resource ) );
+    }
+
+    /**
+     * Looks up the item bound from the same content before, or binds the captured item and
+     * remembers it
+     *
+     * @return the item
+     */
+    private E cachedItem() {
+        Object cached = cache.get( hash, value, length, itemAdapter, context.projection );
+        if ( cached != null ) {
+            @SuppressWarnings( "unchecked" )
+            E hit = (E)cached;
+            return hit;
+        }
+
+        E item = read( itemAdapter, 1 );
+        cache.put( hash, value, length, itemAdapter, context.projection, item );
+        return item;
+    }
+
+    /**
+     * Reads the captured value through an adapter
+     *
+     * @param valueAdapter  the adapter
+     * @param embedDepth    the embed depth of the value, if it is a resource
+     * @return the value
+     */
+    private <V> V read( TypeAdapter<V> valueAdapter, int embedDepth ) {
+        try {
+            return valueAdapter instanceof HalTypeAdapter ?
+                ( (HalTypeAdapter<V>)valueAdapter ).readResource( reader(), context, embedDepth ) :
+                valueAdapter.read( reader() );
+        } catch ( IOException | IllegalStateException e ) {
+            throw wrap( e );
+        }
+    }
+
+    private JsonReader reader() {
+        return HalStreams.lenientReader( new StringReader( new String( value, 0, length, UTF_8 ) ) );
+    }
+
+    /**
+     * Decodes the captured member name, without its quotes
+     */
+    private String name() {
+        for ( int i = 1; i < length - 1; i++ ) {
+            if ( value[ i ] == '\\' ) {
+                try {
+                    return reader().nextString();
+                } catch ( IOException e ) {
+                    throw wrap( e );
+                }
+            }
+        }
+        return new String( value, 1, length - 2, UTF_8 );
+    }
+
+    private void expectQuote( byte b ) {
+        if ( b != '"' && b != '\'' )
+            throw unexpected( b );
+    }
+
+    private void expect( byte b, char expected ) {
+        if ( b != expected )
+            throw unexpected( b );
+    }
+
+    private JsonSyntaxException unexpected( byte b ) {
+        return new JsonSyntaxException( String.format( Locale.US,
+            state == State.TRAILER ? "Unexpected '%c' after the document, at byte %d" : "Unexpected '%c' at byte %d",
+            (char)( b & 0xff ),
+            position )
+        );
+    }
+
+    private static JsonParseException wrap( Exception e ) {
+        if ( e instanceof MalformedJsonException || e instanceof IllegalStateException )
+            return new JsonSyntaxException( e );
+        return new JsonIOException( e );
+    }
+}
@@ -0,0 +1,125 @@
+/**
+ * Copyright 2015 Derk-Jan Karrenbeld
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.xpbytes.gson.hal;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The state of a single read of a document, shared by the root resource and every resource that
+ * is embedded in it.
+ */
+final class HalReadContext {
+
+    /** The projection of the read */
+    final HalProjection projection;
+
+    /** The curies of the resource being read and the resources it is embedded in, or null */
+    HalCuries curies;
+
+    /** The resources read so far by their self href, or null if embeds are not deduplicated */
+    Map<String, Object> resources;
+
+    /**
+     * True to parse curies even where the resource being read and those embedded in it bind no
+     * link by relation, for items of the document that are read by another adapter
+     */
+    boolean parseCuries;
+
+    /** True to read into the resources, links and collections that are already assigned */
+    boolean reuse;
+
+    /** The link object that links bound by their href only are read into, or null until needed */
+    private HalLinkObject scratchLink;
+
+    /** The copy of {@link #resources} handed to the last snapshot, or null */
+    private Map<String, Object> snapshotResources;
+
+    HalReadContext( HalProjection projection, boolean deduplicate ) {
+        this.projection = projection;
+        this.resources = deduplicate && !projection.limitsEmbedDepth() ? new HashMap<String, Object>() : null;
+    }
+
+    /**
+     * Creates the state for reading part of the document on another thread, with the projection
+     * and the curies that apply at this point of the read. The resources read so far are shared
+     * with the fork, through a concurrent map from then on.
+     *
+     * @return the state
+     */
+    HalReadContext fork() {
+        if ( resources != null && !( resources instanceof ConcurrentHashMap ) )
+            resources = new ConcurrentHashMap<>( resources );
+
+        HalReadContext fork = new HalReadContext( projection, false );
+        fork.curies = curies;
+        fork.resources = resources;
+        fork.reuse = reuse;
+        fork.parseCuries = parseCuries;
+        return fork;
+    }
+
+    /**
+     * Creates the state for reading part of the document later, such as a lazy value, with the
+     * projection and the curies that apply at this point of the read and a copy of the resources
+     * read so far. The copy is never changed, and snapshots taken while no resource was read in
+     * between share it; {@link #resume()} reads from a snapshot. This read keeps its own map.
+     *
+     * @return the state
+     */
+    HalReadContext snapshot() {
+        HalReadContext snapshot = new HalReadContext( projection, false );
+        snapshot.curies = curies;
+        snapshot.parseCuries = parseCuries;
+        if ( resources != null ) {
+            // Resources are only ever added, so an unchanged size means an unchanged map
+            if ( snapshotResources == null || snapshotResources.size() != resources.size() )
+                snapshotResources = Collections.unmodifiableMap( new HashMap<>( resources ) );
+            snapshot.resources = snapshotResources;
+        }
+        return snapshot;
+    }
+
+    /**
+     * Creates the state for reading from a {@link #snapshot()}, with its own copy of the resources
+     * so the snapshot stays as it was
+     *
+     * @return the state
+     */
+    HalReadContext resume() {
+        HalReadContext resumed = new HalReadContext( projection, false );
+        resumed.curies = curies;
+        resumed.parseCuries = parseCuries;
+        if ( resources != null )
+            resumed.resources = new HashMap<>( resources );
+        return resumed;
+    }
+
+    /**
+     * Gets the link object of the read that links are read into when only their href is bound,
+     * so those links don't allocate a link object each
+     *
+     * @return the link object
+     */
+    HalLinkObject scratchLink() {
+        if ( scratchLink == null )
+            scratchLink = new HalLinkObject();
+        return scratchLink;
+    }
+}
@@ -17,78 +17,59 @@
 package com.xpbytes.gson.hal;
 
 import com.google.gson.FieldAttributes;
+import com.google.gson.Gson;
+import com.google.gson.JsonIOException;
 import com.google.gson.annotations.SerializedName;
+import com.google.gson.reflect.TypeToken;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.Modifier;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
-import java.net.URI;
+import java.lang.reflect.TypeVariable;
+import java.lang.reflect.WildcardType;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
-import java.util.Map;
 
 final class HalReflection {
 
-    static Map<Class<?>, List<Field>> fieldCache = new HashMap<>(  );
-    static Map<Class<?>, List<Field>> halFieldCache = new HashMap<>(  );
-
+    private static final MethodType SETTER_TYPE =
+        MethodType.methodType( void.class, Object.class, Object.class );
+    private static final MethodType GETTER_TYPE =
+        MethodType.methodType( Object.class, Object.class );
 
     /**
-     * Gets all fields of a type
-     *
-     * @see #getAllFields(Class)
-     *
-     * @param type the type
-     * @return a list of fields
+     * The fields declared by a class and all its superclasses. Values are computed once per class
+     * and are released together with the class, so this cache never pins classes of an unloaded
+     * class loader. Reads are lock-free.
      */
-    static synchronized List<Field> getAllFields( Class<?> type ) {
-        return getAllFields( new ArrayList<Field>(), type );
-    }
-
-    /**
-     * Gets the fields of a type
-     *
-     * @param fields the destination list
-     * @param type the type
-     * @return all the fields for this type and its subtypes
-     */
-    static synchronized List<Field> getAllFields( List<Field> fields, Class<?> type ) {
-        // TODO save entire chain? Bottom up save cache?. Test to see speed gain
-        List<Field> fieldsForOnlyThisClass = fieldCache.getOrDefault( type,
-            Arrays.asList( type.getDeclaredFields() )
-        );
-        fieldCache.put( type, fieldsForOnlyThisClass );
-
-        fields.addAll( fieldsForOnlyThisClass );
-        return type.getSuperclass() == null ? fields : getAllFields( fields, type.getSuperclass() );
-    }
+    private static final ClassValue<List<Field>> fieldCache = new ClassValue<List<Field>>() {
+        @Override protected List<Field> computeValue( Class<?> type ) {
+            List<Field> fields = new ArrayList<>( Arrays.asList( type.getDeclaredFields() ) );
+            if ( type.getSuperclass() != null )
+                fields.addAll( get( type.getSuperclass() ) );
+            return Collections.unmodifiableList( fields );
+        }
+    };
 
     /**
-     * Gets all HAL fields of a type.
-     * The resulting fields are cached.
-     *
-     * @see #getAllFields(Class)
+     * Gets all fields of a type
      *
      * @param type the type
-     * @return the list of fields
+     * @return an unmodifiable list of fields
      */
-    static synchronized List<Field> getHalFields( Class<?> type ) {
-        if ( halFieldCache.containsKey( type ) )
-            return halFieldCache.get( type );
-
-        List<Field> result = new ArrayList<>();
-        List<Field> fields = getAllFields( type );
-        for( Field field : fields ) {
-            if ( isLink( field ) || isEmbed( field ) )
-                result.add( field );
-        }
-
-        halFieldCache.put( type, result );
-        return result;
+    static List<Field> getAllFields( Class<?> type ) {
+        return fieldCache.get( type );
     }
 
     /**
@@ -98,7 +79,7 @@ final class HalReflection {
      * @param type the class type
      * @return true if it is
      */
-    static boolean isResource( Class type ) {
+    static boolean isResource( Class<?> type ) {
         return type.isAnnotationPresent( HalResource.class );
     }
 
@@ -153,7 +134,7 @@ final class HalReflection {
      * @return the proper name
      */
     static String getJsonFieldName( HalLink link, Field field ) {
-        return getJsonFieldName( link.name(), field );
+        return getJsonFieldName( link == null ? null : link.name(), field );
     }
 
     /**
@@ -166,7 +147,7 @@ final class HalReflection {
      * @return the proper name
      */
     static String getJsonFieldName( HalEmbed embed, Field field ) {
-        return getJsonFieldName( embed.name(), field );
+        return getJsonFieldName( embed == null ? null : embed.name(), field );
 
     }
 
@@ -180,67 +161,51 @@ final class HalReflection {
     }
 
     /**
-     * Set a link on a object
+     * Gets a setter for a field. The handle is resolved and access checked once, so assigning
+     * through it needs no further reflection. Its type is {@code (Object, Object)void}, for use
+     * with {@link MethodHandle#invokeExact(Object...)}.
      *
-     * @param field     the field
-     * @param resource  the link object
-     * @param object    the object
-     * @param <A>       the resulting type of the object
+     * @param field the field
+     * @return the setter
      *
-     * @throws ClassCastException if field type is not compatible with {@link HalLinkObject}
+     * @throws JsonIOException if the field can't be made accessible
      */
-    public static <A> void setLink( Field field, HalLinkObject resource, A object ) {
-        Class<?> destinationType = getFieldItemizedType( field );
-        if ( CharSequence.class.isAssignableFrom( destinationType ) )
-            setFieldSafe( field, object, resource.getHref() );
-        else if ( URI.class.isAssignableFrom( destinationType ) )
-            setFieldSafe( field, object, URI.create( resource.getHref() ) );
-        else if ( HalLinkObject.class.isAssignableFrom( destinationType ) )
-            setFieldSafe( field, object, resource );
-        else
-            throw new ClassCastException( String.format( Locale.US,
-                "Field %s is of type %s and can't be assigned. Should be HalLinkObject, " +
-                    "CharSequence or URI",
+    static MethodHandle getFieldSetter( Field field ) {
+        try {
+            field.setAccessible( true );
+            MethodHandle setter = Modifier.isFinal( field.getModifiers() ) ?
+                // Final fields can only be written through the reflective accessor
+                MethodHandles.lookup().findVirtual( Field.class, "set", SETTER_TYPE ).bindTo( field ) :
+                MethodHandles.lookup().unreflectSetter( field );
+            return setter.asType( SETTER_TYPE );
+        } catch ( IllegalAccessException | NoSuchMethodException | RuntimeException e ) {
+            throw new JsonIOException( String.format( Locale.US,
+                "Field %s of %s can't be made accessible",
                 field.getName(),
-                destinationType.getName() )
+                field.getDeclaringClass().getName() ), e
             );
+        }
     }
 
     /**
-     * Set a embed on a object
+     * Gets a getter for a field, resolved once like {@link #getFieldSetter(Field)}. Its type is
+     * {@code (Object)Object}, for use with {@link MethodHandle#invokeExact(Object...)}.
      *
-     * @param field     the field
-     * @param resource  the link object
-     * @param object    the object
-     * @param <A>       the resulting type of the object
+     * @param field the field
+     * @return the getter
      *
-     * @throws ClassCastException if field type is not compatible with {@link HalLinkObject}
+     * @throws JsonIOException if the field can't be made accessible
      */
-    public static <A> void setEmbed( Field field, Object resource, A object ) {
-        Class<?> destinationType = getFieldItemizedType( field );
-        if ( destinationType.isAssignableFrom( resource.getClass() ) )
-            setFieldSafe( field, object, resource );
-        else
-            throw new ClassCastException( String.format( Locale.US,
-                "Field %s is of type %s and can't be assigned.",
+    static MethodHandle getFieldGetter( Field field ) {
+        try {
+            field.setAccessible( true );
+            return MethodHandles.lookup().unreflectGetter( field ).asType( GETTER_TYPE );
+        } catch ( IllegalAccessException | RuntimeException e ) {
+            throw new JsonIOException( String.format( Locale.US,
+                "Field %s of %s can't be made accessible",
                 field.getName(),
-                destinationType.getName() )
+                field.getDeclaringClass().getName() ), e
             );
-    }
-
-    /**
-     * Sets a field on an object with a value and swallows any error
-     *
-     * @param field     field
-     * @param object    object
-     * @param value     value
-     */
-    private static void setFieldSafe( Field field, Object object, Object value ) {
-        field.setAccessible( true );
-        try {
-            field.set( object, value );
-        } catch ( IllegalAccessException e ) {
-            e.printStackTrace();
         }
     }
 
@@ -269,16 +234,73 @@ final class HalReflection {
      * @return the type
      */
     static Class<?> getFieldItemizedType( FieldAttributes attributes ) {
-        if ( Collection.class.isAssignableFrom( attributes.getDeclaredClass() ) ) {
-            ParameterizedType gType = (ParameterizedType) attributes.getDeclaredType();
+        Type elementType = getCollectionElementType( attributes.getDeclaredType() );
+        return elementType == null ? attributes.getDeclaredClass() : TypeToken.get( elementType ).getRawType();
+    }
 
-            Type[] actualTypeArguments = gType.getActualTypeArguments();
-            if ( actualTypeArguments != null && actualTypeArguments.length > 0 )
-                return (Class)actualTypeArguments[0];
+    /**
+     * Get the element type of a collection type. Raw collections and elements that are type
+     * variables have {@link Object} elements.
+     *
+     * @param type the generic type
+     * @return the element type, or null if the type is not a collection
+     */
+    static Type getCollectionElementType( Type type ) {
+        if ( !Collection.class.isAssignableFrom( TypeToken.get( type ).getRawType() ) )
+            return null;
+
+        if ( type instanceof ParameterizedType ) {
+            Type[] actualTypeArguments = ( (ParameterizedType)type ).getActualTypeArguments();
+            if ( actualTypeArguments.length > 0 && !hasTypeVariable( actualTypeArguments[ 0 ] ) )
+                return actualTypeArguments[ 0 ] instanceof WildcardType ?
+                    ( (WildcardType)actualTypeArguments[ 0 ] ).getUpperBounds()[ 0 ] :
+                    actualTypeArguments[ 0 ];
+        }
+        return Object.class;
+    }
+
+    /**
+     * Gets the generic type of a field. Type variables can't be resolved without the context of
+     * the declaring type, so fields that use them fall back to their raw type.
+     *
+     * @param field the field
+     * @return the type
+     */
+    static Type getFieldGenericType( Field field ) {
+        Type type = field.getGenericType();
+        return hasTypeVariable( type ) ? field.getType() : type;
+    }
+
+    /**
+     * Does the type contain a type variable, for example as the argument of a parameterized type?
+     *
+     * @param type the type
+     * @return true if it does
+     */
+    private static boolean hasTypeVariable( Type type ) {
+        if ( type instanceof TypeVariable )
+            return true;
+
+        if ( type instanceof GenericArrayType )
+            return hasTypeVariable( ( (GenericArrayType)type ).getGenericComponentType() );
+
+        if ( type instanceof WildcardType ) {
+            for ( Type bound : ( (WildcardType)type ).getUpperBounds() )
+                if ( hasTypeVariable( bound ) )
+                    return true;
+            for ( Type bound : ( (WildcardType)type ).getLowerBounds() )
+                if ( hasTypeVariable( bound ) )
+                    return true;
+            return false;
+        }
 
-            return getFieldType( attributes );
+        if ( type instanceof ParameterizedType ) {
+            for ( Type argument : ( (ParameterizedType)type ).getActualTypeArguments() )
+                if ( hasTypeVariable( argument ) )
+                    return true;
         }
-        return getFieldType( attributes );
+
+        return false;
     }
 
     /**
@@ -308,4 +330,54 @@ final class HalReflection {
     static Class<?> getFieldType( FieldAttributes attributes ) {
         return attributes.getDeclaredClass();
     }
+
+    /**
+     * Resolves how instances of a type are created, once per type, the way Gson creates them:
+     * through a registered instance creator, the no-args constructor, or without running a
+     * constructor for classes that have none, such as inner classes. If the constructors of
+     * Gson are not accessible, for example on a module path that doesn't open Gson, only the
+     * no-args constructor is used, and a warning says so in the diagnostics.
+     *
+     * @param gson          the gson instance
+     * @param type          the type
+     * @param diagnostics   the diagnostics to report a fallback to, or null
+     * @param <T>           the type
+     * @return the constructor, or null if there is no way to create an instance other than through
+     *         a type adapter
+     */
+    static <T> HalConstructor<T> getObjectConstructor( Gson gson, TypeToken<T> type, HalDiagnostics diagnostics ) {
+        try {
+            return HalGsonInternals.getConstructor( gson, type );
+        } catch ( ReflectiveOperationException | RuntimeException | LinkageError e ) {
+            if ( diagnostics != null )
+                diagnostics.warn( type.getRawType(), new JsonIOException( String.format( Locale.US,
+                    "The constructors of Gson are not accessible, so %s is only created through its " +
+                        "no-args constructor, without instance creators",
+                    type ), e
+                ) );
+        }
+
+        final Constructor<?> constructor;
+        try {
+            constructor = type.getRawType().getDeclaredConstructor();
+            constructor.setAccessible( true );
+        } catch ( NoSuchMethodException | SecurityException e ) {
+            return null;
+        }
+
+        return new HalConstructor<T>() {
+            @Override public T construct() {
+                try {
+                    @SuppressWarnings( "unchecked" )
+                    T instance = (T)constructor.newInstance();
+                    return instance;
+                } catch ( InstantiationException | IllegalAccessException e ) {
+                    throw new JsonIOException( "Unable to invoke " + constructor + " with no args", e );
+                } catch ( InvocationTargetException e ) {
+                    throw new JsonIOException( "Failed to invoke " + constructor + " with no args",
+                        e.getTargetException() );
+                }
+            }
+        };
+    }
 }
@@ -0,0 +1,669 @@
+/**
+ * Copyright 2015 Derk-Jan Karrenbeld
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.xpbytes.gson.hal;
+
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A bounded in-process cache of resources by the href of their self link. The {@code _embedded}
+ * resources of a document are a prefetch of the resources it links to; registered with {@link
+ * HalTypeAdapterFactory#setResourceCache(HalResourceCache)}, every embedded resource with a self
+ * link that is read is put in the cache, so a client that follows a link to it later can look it
+ * up before fetching it.
+ *
+ * <pre>
+ * Customer customer = cache.get( order.customer, Customer.class );
+ * if ( customer == null )
+ *     customer = fetch( order.customer );
+ * </pre>
+ *
+ * The cache holds a maximum number of resources, and evicts by one of two policies:
+ *
+ * <ul>
+ *     <li>{@link EvictionPolicy#LRU} evicts the resource that was used least recently</li>
+ *     <li>{@link EvictionPolicy#TINY_LFU} admits new resources through a small LRU window, and
+ *     only keeps one that leaves the window if it was used more often than the resource it would
+ *     evict, by an approximate count of recent lookups. One-off resources, such as the items of a
+ *     large page that is read once, then don't push out the resources that are used over and
+ *     over.</li>
+ * </ul>
+ *
+ * Resources can expire a fixed time after they were put. Expired resources are removed once they
+ * are looked up or evicted. The cache can be shared by any number of threads, and the resources
+ * it returns are shared with everyone who looks them up. A large cache is split into stripes by
+ * href, each with its own lock, policy and share of the maximum size, so parallel reads that put
+ * and look up different resources rarely wait for each other.
+ */
+public final class HalResourceCache {
+
+    /**
+     * The policies for evicting a resource once the cache is full
+     */
+    public enum EvictionPolicy {
+        /** Evicts the resource that was used least recently */
+        LRU,
+
+        /** Admits and evicts resources by their recent frequency of use, like W-TinyLFU */
+        TINY_LFU
+    }
+
+    /** Reads the time in nanoseconds, which tests can stub */
+    interface Ticker {
+        long read();
+    }
+
+    private static final Ticker SYSTEM_TICKER = new Ticker() {
+        @Override public long read() {
+            return System.nanoTime();
+        }
+    };
+
+    // Rough sizes of the structures held per resource on a 64-bit VM with compressed references
+    private static final int NODE_BYTES = 48;
+    private static final int MAP_ENTRY_BYTES = 48;
+    private static final int STRING_BYTES = 40;
+
+    /** The least number of resources per stripe, so the policy of a stripe still has room to work */
+    private static final int MIN_STRIPE_SIZE = 256;
+
+    private final int maximumSize;
+    private final EvictionPolicy policy;
+    private final Stripe[] stripes;
+
+    private volatile Ticker ticker = SYSTEM_TICKER;
+    private volatile long timeToLive;
+
+    /**
+     * @param maximumSize   the number of resources to keep at most
+     * @param policy        the policy for evicting resources once the cache is full
+     */
+    public HalResourceCache( int maximumSize, EvictionPolicy policy ) {
+        this( maximumSize, policy, stripeCount( maximumSize, Runtime.getRuntime().availableProcessors() ) );
+    }
+
+    HalResourceCache( int maximumSize, EvictionPolicy policy, int stripeCount ) {
+        if ( maximumSize <= 0 )
+            throw new IllegalArgumentException( "maximumSize <= 0: " + maximumSize );
+        if ( policy == null )
+            throw new IllegalArgumentException( "policy == null" );
+        if ( Integer.bitCount( stripeCount ) != 1 || stripeCount > maximumSize )
+            throw new IllegalArgumentException( String.format( Locale.US,
+                "Can't split %d resources into %d stripes", maximumSize, stripeCount ) );
+
+        this.maximumSize = maximumSize;
+        this.policy = policy;
+        this.stripes = new Stripe[ stripeCount ];
+        for ( int i = 0; i < stripeCount; i++ )
+            stripes[ i ] = new Stripe( maximumSize / stripeCount + ( i < maximumSize % stripeCount ? 1 : 0 ) );
+    }
+
+    /**
+     * Gets the number of stripes for a cache: a power of two up to four per processor, as long as
+     * every stripe holds at least {@link #MIN_STRIPE_SIZE} resources
+     *
+     * @param maximumSize   the number of resources to keep at most
+     * @param processors    the number of processors
+     * @return the number of stripes
+     */
+    static int stripeCount( int maximumSize, int processors ) {
+        int stripes = Math.min( maximumSize / MIN_STRIPE_SIZE, 4 * processors );
+        return stripes <= 1 ? 1 : Integer.highestOneBit( stripes );
+    }
+
+    /**
+     * Expires resources a fixed time after they were put. Resources don't expire by default.
+     *
+     * @param duration  the time to live, or 0 for resources not to expire
+     * @param unit      the unit of the duration
+     * @return this cache
+     */
+    public HalResourceCache setTimeToLive( long duration, TimeUnit unit ) {
+        if ( duration < 0 )
+            throw new IllegalArgumentException( "duration < 0: " + duration );
+
+        this.timeToLive = unit.toNanos( duration );
+        return this;
+    }
+
+    HalResourceCache setTicker( Ticker ticker ) {
+        this.ticker = ticker;
+        return this;
+    }
+
+    /**
+     * Looks up the resource with a self href
+     *
+     * @param href  the href
+     * @param type  the type of the resource
+     * @param <T>   the type of the resource
+     * @return the resource, or null if the cache has no resource of the type with the href
+     */
+    public <T> T get( String href, Class<T> type ) {
+        Object value = stripe( href ).get( href, type );
+        return value == null ? null : type.cast( value );
+    }
+
+    /**
+     * Looks up the resource a link points to
+     *
+     * @param href  the href of the link
+     * @param type  the type of the resource
+     * @param <T>   the type of the resource
+     * @return the resource, or null if the cache has no resource of the type with the href
+     */
+    public <T> T get( URI href, Class<T> type ) {
+        return get( href == null ? null : href.toString(), type );
+    }
+
+    /**
+     * Looks up the resource a link points to. Templated links don't point to a single resource,
+     * so they are never found.
+     *
+     * @param link  the link
+     * @param type  the type of the resource
+     * @param <T>   the type of the resource
+     * @return the resource, or null if the cache has no resource of the type with the href
+     */
+    public <T> T get( HalLinkObject link, Class<T> type ) {
+        return get( link == null || link.isTemplated() ? null : link.getHref(), type );
+    }
+
+    /**
+     * Puts a resource in the cache, replacing the resource with the same self href
+     *
+     * @param href      the href of the self link of the resource
+     * @param resource  the resource
+     */
+    public void put( String href, Object resource ) {
+        if ( href == null || resource == null )
+            throw new IllegalArgumentException( String.format( Locale.US,
+                "Can't cache resource %s with self href %s", resource, href ) );
+
+        stripe( href ).put( href, resource );
+    }
+
+    /**
+     * Removes the resource with a self href
+     *
+     * @param href the href
+     */
+    public void invalidate( String href ) {
+        if ( href != null )
+            stripe( href ).invalidate( href );
+    }
+
+    /**
+     * Removes all resources and resets the counters
+     */
+    public void clear() {
+        for ( Stripe stripe : stripes )
+            stripe.clear();
+    }
+
+    /**
+     * Gets the number of lookups that found a resource
+     *
+     * @return the number of hits
+     */
+    public long getHits() {
+        long hits = 0;
+        for ( Stripe stripe : stripes )
+            hits += stripe.counter( Counter.HITS );
+        return hits;
+    }
+
+    /**
+     * Gets the number of lookups that found no resource, or one of another type or that expired
+     *
+     * @return the number of misses
+     */
+    public long getMisses() {
+        long misses = 0;
+        for ( Stripe stripe : stripes )
+            misses += stripe.counter( Counter.MISSES );
+        return misses;
+    }
+
+    /**
+     * Gets the fraction of lookups that found a resource
+     *
+     * @return the hit ratio, or 0 if there were no lookups
+     */
+    public double getHitRatio() {
+        long hits = getHits();
+        long lookups = hits + getMisses();
+        return lookups == 0 ? 0 : (double)hits / lookups;
+    }
+
+    /**
+     * Gets the number of resources that were evicted to make room for others
+     *
+     * @return the number of evictions
+     */
+    public long getEvictions() {
+        long evictions = 0;
+        for ( Stripe stripe : stripes )
+            evictions += stripe.counter( Counter.EVICTIONS );
+        return evictions;
+    }
+
+    /**
+     * Gets the number of resources that were removed because they expired
+     *
+     * @return the number of expirations
+     */
+    public long getExpirations() {
+        long expirations = 0;
+        for ( Stripe stripe : stripes )
+            expirations += stripe.counter( Counter.EXPIRATIONS );
+        return expirations;
+    }
+
+    /**
+     * Gets the number of resources in the cache, including those that expired but were not
+     * removed yet
+     *
+     * @return the number of resources
+     */
+    public int size() {
+        int size = 0;
+        for ( Stripe stripe : stripes )
+            size += stripe.size();
+        return size;
+    }
+
+    /**
+     * Gets the number of resources the cache holds at most
+     *
+     * @return the maximum size
+     */
+    public int getMaximumSize() {
+        return maximumSize;
+    }
+
+    /**
+     * Gets the policy for evicting resources
+     *
+     * @return the policy
+     */
+    public EvictionPolicy getEvictionPolicy() {
+        return policy;
+    }
+
+    /**
+     * Estimates the memory the cache itself holds: its entries, the hrefs they are keyed by and
+     * the frequency sketches. The resources are not measured, as they are usually referenced
+     * elsewhere as well.
+     *
+     * @return the estimated number of bytes
+     */
+    public long getEstimatedBytes() {
+        long bytes = 0;
+        for ( Stripe stripe : stripes )
+            bytes += stripe.estimatedBytes();
+        return bytes;
+    }
+
+    /**
+     * Gets the stripe of an href. The stripe is picked by the high bits of a hash that is mixed
+     * differently from the one the frequency sketch of the stripe uses, so hrefs don't cluster in
+     * the counters of a stripe.
+     */
+    private Stripe stripe( String href ) {
+        if ( stripes.length == 1 || href == null )
+            return stripes[ 0 ];
+        return stripes[ ( href.hashCode() * 0x9e3779b9 ) >>> ( 32 - Integer.numberOfTrailingZeros( stripes.length ) ) ];
+    }
+
+    private static int spread( int hash ) {
+        hash ^= hash >>> 16;
+        hash *= 0x45d9f3b;
+        return hash ^ ( hash >>> 16 );
+    }
+
+    /**
+     * The counters that are kept per stripe
+     */
+    private enum Counter {
+        HITS, MISSES, EVICTIONS, EXPIRATIONS
+    }
+
+    /**
+     * A part of the cache with its own lock, holding the resources of some of the hrefs and evicting
+     * among those by the policy of the cache
+     */
+    private final class Stripe {
+        private final int maximumSize;
+        private final Map<String, Node> nodes = new HashMap<>();
+
+        // With LRU, all resources are in probation. With TinyLFU, new resources enter the window and
+        // move to probation when they leave it; resources in probation that are used again are
+        // protected, and demoted back to probation once the protected segment is full.
+        private final Segment window = new Segment();
+        private final Segment probation = new Segment();
+        private final Segment protectedSegment = new Segment();
+        private final int windowSize;
+        private final int protectedSize;
+        private final FrequencySketch sketch;
+
+        private long keyBytes;
+        private long hits;
+        private long misses;
+        private long evictions;
+        private long expirations;
+
+        Stripe( int maximumSize ) {
+            this.maximumSize = maximumSize;
+            if ( policy == EvictionPolicy.TINY_LFU ) {
+                // A window of 1% and a protected segment of 80% of the rest, as W-TinyLFU starts with
+                this.windowSize = Math.max( 1, maximumSize / 100 );
+                this.protectedSize = (int)( ( maximumSize - windowSize ) * .8f );
+                this.sketch = new FrequencySketch( maximumSize );
+            } else {
+                this.windowSize = 0;
+                this.protectedSize = 0;
+                this.sketch = null;
+            }
+        }
+
+        synchronized Object get( String href, Class<?> type ) {
+            Node node = href == null ? null : nodes.get( href );
+            if ( sketch != null && href != null )
+                sketch.increment( spread( href.hashCode() ) );
+
+            if ( node != null && node.expiresAt != 0 && node.expiresAt - ticker.read() <= 0 ) {
+                remove( node );
+                expirations++;
+                node = null;
+            }
+
+            if ( node == null || !type.isInstance( node.value ) ) {
+                misses++;
+                return null;
+            }
+
+            hits++;
+            touch( node );
+            return node.value;
+        }
+
+        synchronized void put( String href, Object resource ) {
+            long timeToLive = HalResourceCache.this.timeToLive;
+            long expiresAt = timeToLive == 0 ? 0 : ticker.read() + timeToLive;
+            if ( expiresAt == 0 && timeToLive != 0 )
+                expiresAt = 1;
+
+            Node node = nodes.get( href );
+            if ( sketch != null )
+                sketch.increment( spread( href.hashCode() ) );
+
+            if ( node != null ) {
+                node.value = resource;
+                node.expiresAt = expiresAt;
+                touch( node );
+                return;
+            }
+
+            node = new Node( href, resource, expiresAt );
+            nodes.put( href, node );
+            keyBytes += 2L * href.length();
+
+            if ( policy == EvictionPolicy.LRU ) {
+                probation.addLast( node );
+                if ( nodes.size() > maximumSize )
+                    evict( probation.head );
+                return;
+            }
+
+            window.addLast( node );
+            if ( window.size <= windowSize )
+                return;
+
+            Node candidate = window.head;
+            window.remove( candidate );
+            probation.addLast( candidate );
+            if ( nodes.size() > maximumSize )
+                evict( admit( candidate ) );
+        }
+
+        synchronized void invalidate( String href ) {
+            Node node = nodes.get( href );
+            if ( node != null )
+                remove( node );
+        }
+
+        synchronized void clear() {
+            nodes.clear();
+            window.clear();
+            probation.clear();
+            protectedSegment.clear();
+            keyBytes = 0;
+            hits = 0;
+            misses = 0;
+            evictions = 0;
+            expirations = 0;
+        }
+
+        synchronized long counter( Counter counter ) {
+            switch ( counter ) {
+                case HITS:
+                    return hits;
+                case MISSES:
+                    return misses;
+                case EVICTIONS:
+                    return evictions;
+                default:
+                    return expirations;
+            }
+        }
+
+        synchronized int size() {
+            return nodes.size();
+        }
+
+        synchronized long estimatedBytes() {
+            long bytes = nodes.size() * (long)( NODE_BYTES + MAP_ENTRY_BYTES + STRING_BYTES ) + keyBytes;
+            return sketch == null ? bytes : bytes + sketch.bytes();
+        }
+
+        /**
+         * Records a use of a resource in the order of its segment
+         */
+        private void touch( Node node ) {
+            if ( node.segment != probation || policy == EvictionPolicy.LRU ) {
+                node.segment.moveToLast( node );
+                return;
+            }
+
+            // A resource in probation that is used again is protected
+            probation.remove( node );
+            protectedSegment.addLast( node );
+            if ( protectedSegment.size > protectedSize ) {
+                Node demoted = protectedSegment.head;
+                protectedSegment.remove( demoted );
+                probation.addLast( demoted );
+            }
+        }
+
+        /**
+         * Decides between a resource that left the window and the resource it would evict from the
+         * main segments, favouring the one that was used more often recently
+         *
+         * @param candidate the resource that left the window
+         * @return the resource to evict
+         */
+        private Node admit( Node candidate ) {
+            Node victim = probation.head != candidate ? probation.head : protectedSegment.head;
+            if ( victim == null || victim == candidate )
+                return candidate;
+
+            int candidateFrequency = sketch.frequency( spread( candidate.key.hashCode() ) );
+            int victimFrequency = sketch.frequency( spread( victim.key.hashCode() ) );
+            return candidateFrequency > victimFrequency ? victim : candidate;
+        }
+
+        private void evict( Node node ) {
+            boolean expired = node.expiresAt != 0 && node.expiresAt - ticker.read() <= 0;
+            remove( node );
+            if ( expired )
+                expirations++;
+            else
+                evictions++;
+        }
+
+        private void remove( Node node ) {
+            nodes.remove( node.key );
+            node.segment.remove( node );
+            keyBytes -= 2L * node.key.length();
+        }
+    }
+
+    /**
+     * A cached resource, linked into the order of its segment
+     */
+    private static final class Node {
+        final String key;
+        Object value;
+        long expiresAt;
+        Segment segment;
+        Node previous;
+        Node next;
+
+        Node( String key, Object value, long expiresAt ) {
+            this.key = key;
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /**
+     * The resources of a segment, from least to most recently used
+     */
+    private static final class Segment {
+        Node head;
+        Node tail;
+        int size;
+
+        void addLast( Node node ) {
+            node.segment = this;
+            node.previous = tail;
+            node.next = null;
+            if ( tail == null )
+                head = node;
+            else
+                tail.next = node;
+            tail = node;
+            size++;
+        }
+
+        void remove( Node node ) {
+            if ( node.previous == null )
+                head = node.next;
+            else
+                node.previous.next = node.next;
+            if ( node.next == null )
+                tail = node.previous;
+            else
+                node.next.previous = node.previous;
+            node.previous = null;
+            node.next = null;
+            size--;
+        }
+
+        void moveToLast( Node node ) {
+            if ( node != tail ) {
+                remove( node );
+                addLast( node );
+            }
+        }
+
+        void clear() {
+            head = null;
+            tail = null;
+            size = 0;
+        }
+    }
+
+    /**
+     * Counts how often hrefs were used recently, approximately, in 4-bit counters. Each href has a
+     * counter in four of the rows of the table, and its frequency is the lowest of them. All
+     * counters are halved once the table saw ten times as many uses as the cache holds resources,
+     * so the counts favour recent use.
+     */
+    static final class FrequencySketch {
+        private static final long[] SEEDS = {
+            0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L };
+        private static final long RESET_MASK = 0x7777777777777777L;
+
+        private final long[] table;
+        private final int mask;
+        private final int sampleSize;
+        private int additions;
+
+        FrequencySketch( int maximumSize ) {
+            int size = Math.max( 8, Integer.highestOneBit( Math.max( 1, maximumSize - 1 ) ) << 1 );
+            this.table = new long[ size ];
+            this.mask = size - 1;
+            this.sampleSize = (int)Math.min( Integer.MAX_VALUE, 10L * Math.max( maximumSize, 16 ) );
+        }
+
+        int frequency( int hash ) {
+            int frequency = 15;
+            for ( int row = 0; row < 4; row++ ) {
+                int offset = offset( hash, row );
+                frequency = Math.min( frequency, (int)( ( table[ index( hash, row ) ] >>> offset ) & 0xf ) );
+            }
+            return frequency;
+        }
+
+        void increment( int hash ) {
+            boolean added = false;
+            for ( int row = 0; row < 4; row++ ) {
+                int index = index( hash, row );
+                int offset = offset( hash, row );
+                if ( ( ( table[ index ] >>> offset ) & 0xf ) != 0xf ) {
+                    table[ index ] += 1L << offset;
+                    added = true;
+                }
+            }
+
+            if ( added && ++additions == sampleSize ) {
+                for ( int i = 0; i < table.length; i++ )
+                    table[ i ] = ( table[ i ] >>> 1 ) & RESET_MASK;
+                additions /= 2;
+            }
+        }
+
+        long bytes() {
+            return 8L * table.length;
+        }
+
+        private int index( int hash, int row ) {
+            long h = ( hash + SEEDS[ row ] ) * SEEDS[ row ];
+            return (int)( h ^ ( h >>> 32 ) ) & mask;
+        }
+
+        private static int offset( int hash, int row ) {
+            // One of the 16 counters of the long, with a separate group of counters per row
+            return ( ( ( hash >>> ( row << 3 ) ) & 0x3 ) | ( row << 2 ) ) << 2;
+        }
+    }
+}
@@ -0,0 +1,182 @@
+/**
+ * Copyright 2015 Derk-Jan Karrenbeld
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.xpbytes.gson.hal;
+
+import com.google.gson.JsonElement;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+
+/**
+ * Creates readers and writers that are as lenient as Gson itself, and copies JSON between them.
+ * Newer Gson versions deprecate the lenient setters in favour of a strictness setting that older
+ * versions don't have, so the setters are only called here.
+ */
+final class HalStreams {
+
+    private HalStreams() {}
+
+    /**
+     * Creates a lenient reader
+     *
+     * @param reader the reader of the JSON
+     * @return the JSON reader
+     */
+    @SuppressWarnings( "deprecation" )
+    static JsonReader lenientReader( Reader reader ) {
+        JsonReader in = new JsonReader( reader );
+        in.setLenient( true );
+        return in;
+    }
+
+    /**
+     * Creates a lenient writer
+     *
+     * @param writer the writer of the JSON
+     * @return the JSON writer
+     */
+    @SuppressWarnings( "deprecation" )
+    static JsonWriter lenientWriter( Writer writer ) {
+        JsonWriter out = new JsonWriter( writer );
+        out.setLenient( true );
+        return out;
+    }
+
+    /**
+     * Creates a reader of a tree. Gson's own tree reader is internal API, so the tree is read from
+     * its JSON text instead.
+     *
+     * @param tree the tree
+     * @return the JSON reader
+     */
+    static JsonReader reader( JsonElement tree ) {
+        return lenientReader( new StringReader( tree.toString() ) );
+    }
+
+    /**
+     * Captures the next value of a reader as compact JSON text, without building a tree of it
+     *
+     * @param in the reader, positioned at the value
+     * @return the JSON text of the value
+     */
+    static String capture( JsonReader in ) throws IOException {
+        StringWriter json = new StringWriter();
+        copy( in, lenientWriter( json ) );
+        return json.toString();
+    }
+
+    /**
+     * Copies the next value of a reader to a writer token by token, so neither needs a tree of it
+     *
+     * @param in  the reader, positioned at the value
+     * @param out the writer
+     */
+    static void copy( JsonReader in, JsonWriter out ) throws IOException {
+        int depth = 0;
+        do {
+            switch ( in.peek() ) {
+                case BEGIN_ARRAY:
+                    in.beginArray();
+                    out.beginArray();
+                    depth++;
+                    break;
+                case END_ARRAY:
+                    in.endArray();
+                    out.endArray();
+                    depth--;
+                    break;
+                case BEGIN_OBJECT:
+                    in.beginObject();
+                    out.beginObject();
+                    depth++;
+                    break;
+                case END_OBJECT:
+                    in.endObject();
+                    out.endObject();
+                    depth--;
+                    break;
+                case NAME:
+                    out.name( in.nextName() );
+                    break;
+                case STRING:
+                    out.value( in.nextString() );
+                    break;
+                case NUMBER:
+                    out.value( new JsonNumber( in.nextString() ) );
+                    break;
+                case BOOLEAN:
+                    out.value( in.nextBoolean() );
+                    break;
+                case NULL:
+                    in.nextNull();
+                    out.nullValue();
+                    break;
+                default:
+                    throw new IllegalStateException( "Expected a value but was " + in.peek() );
+            }
+        } while ( depth > 0 );
+    }
+
+    /**
+     * A number as it was written, so copying it doesn't change its precision or notation
+     */
+    private static final class JsonNumber extends Number {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String value;
+
+        JsonNumber( String value ) {
+            this.value = value;
+        }
+
+        @Override
+        public int intValue() {
+            return (int)longValue();
+        }
+
+        @Override
+        public long longValue() {
+            try {
+                return Long.parseLong( value );
+            } catch ( NumberFormatException e ) {
+                return (long)doubleValue();
+            }
+        }
+
+        @Override
+        public float floatValue() {
+            return Float.parseFloat( value );
+        }
+
+        @Override
+        public double doubleValue() {
+            return Double.parseDouble( value );
+        }
+
+        @Override
+        public String toString() {
+            return value;
+        }
+    }
+}
@@ -0,0 +1,678 @@
+/**
+ * Copyright 2015 Derk-Jan Karrenbeld
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.xpbytes.gson.hal;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonIOException;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Streaming adapter for {@link HalResource} types. The {@link JsonReader} is consumed exactly once:
+ * regular members are bound to their fields as they are encountered and the members of the
+ * reserved {@link HalConstants#RESERVED_LINKS_ROOT} and {@link HalConstants#RESERVED_EMBEDDED_ROOT}
+ * objects are handed to the HAL fields, without ever building an intermediate {@link
+ * com.google.gson.JsonElement} tree. The only exceptions are the curies link and links that are
+ * bound by relation but precede the curies, which are small and buffered as a tree.
+ *
+ * Writing streams the same way: the regular members first, followed by the reserved roots built
+ * from the HAL fields that are not null.
+ *
+ * @param <T> the resource type
+ */
+final class HalTypeAdapter<T> extends TypeAdapter<T> {
+
+    private static final JsonObject EMPTY_OBJECT = new JsonObject();
+
+    private final TypeAdapter<T> delegate;
+    private final Class<? super T> rawType;
+    private final HalConstructor<T> constructor;
+    private final HalBindingPlan<T> plan;
+    private final HalDiagnostics diagnostics;
+    private final TypeAdapter<JsonElement> treeAdapter;
+    private final HalProjection projection;
+    private final boolean deduplicate;
+    private final HalResourceCache resourceCache;
+    private final Gson gson;
+
+    /** Whether this resource or one embedded in it binds a link by relation, or null until known */
+    private volatile Boolean bindsRelations;
+
+    HalTypeAdapter( Gson gson, TypeAdapter<T> delegate, TypeToken<T> type, HalAccessor<T> accessor,
+        HalDiagnostics diagnostics, HalProjection projection, HalInternPool pool, HalParallelEmbeds parallel,
+        boolean deduplicate, HalResourceCache resourceCache ) {
+        this.delegate = delegate;
+        this.rawType = type.getRawType();
+        this.plan = accessor == null ?
+            HalBindingPlan.create( gson, type, pool, parallel ) :
+            HalBindingPlan.create( gson, accessor, pool, parallel );
+        this.constructor = accessor == null ? HalReflection.getObjectConstructor( gson, type, diagnostics ) : null;
+        this.diagnostics = diagnostics;
+        this.treeAdapter = gson.getAdapter( JsonElement.class );
+        this.projection = projection;
+        this.deduplicate = deduplicate;
+        this.resourceCache = resourceCache;
+        this.gson = gson;
+    }
+
+    @Override
+    public void write( JsonWriter out, T value ) throws IOException {
+        if ( value == null ) {
+            out.nullValue();
+            return;
+        }
+
+        out.beginObject();
+        for ( HalBindingPlan.BoundField field : plan.serializedFields )
+            field.write( out, value );
+
+        writeBindings( out, HalConstants.RESERVED_LINKS_ROOT, true, value );
+        writeBindings( out, HalConstants.RESERVED_EMBEDDED_ROOT, false, value );
+        out.endObject();
+    }
+
+    @Override
+    public T read( JsonReader in ) throws IOException {
+        if ( diagnostics != null )
+            return diagnostics.read( this, treeAdapter, rawType, in );
+
+        return readResource( in );
+    }
+
+    /**
+     * Reads the resource from the reader, as the root of a new read
+     *
+     * @param in the reader, positioned at the resource
+     * @return the resource or null
+     */
+    T readResource( JsonReader in ) throws IOException {
+        return readResource( in, newContext(), 0 );
+    }
+
+    /**
+     * Reads the resource from the reader into an existing instance, reusing the links, embeds and
+     * collections that are assigned to it
+     *
+     * @param in        the reader, positioned at the resource
+     * @param target    the instance
+     * @return the instance, or null if the resource is null
+     */
+    T readInto( JsonReader in, T target ) throws IOException {
+        HalReadContext context = newContext();
+        context.reuse = true;
+        return readResource( in, context, 0, target );
+    }
+
+    /**
+     * Reads the resource from the reader
+     *
+     * @param in            the reader, positioned at the resource
+     * @param context       the state of the read
+     * @param depth         the embed depth of the resource
+     * @return the resource or null
+     */
+    T readResource( JsonReader in, HalReadContext context, int depth ) throws IOException {
+        return readResource( in, context, depth, null );
+    }
+
+    /**
+     * Reads the resource from the reader, into an existing instance if it is of the resource type.
+     * The links and embeds that the document doesn't have are cleared from an existing instance;
+     * regular fields that it doesn't have keep their value.
+     *
+     * @param in            the reader, positioned at the resource
+     * @param context       the state of the read
+     * @param depth         the embed depth of the resource
+     * @param existing      the existing instance, or null
+     * @return the resource or null
+     */
+    T readResource( JsonReader in, HalReadContext context, int depth, Object existing ) throws IOException {
+        if ( in.peek() == JsonToken.NULL ) {
+            in.nextNull();
+            return null;
+        }
+
+        boolean reuse = existing != null && existing.getClass() == rawType;
+        T deserialized = reuse ? asResource( existing ) : construct();
+        boolean[] present = reuse ? new boolean[ plan.bindings.length ] : newPresence();
+
+        // The curies of this resource only apply to the resource and what is embedded in it
+        HalCuries curies = context.curies;
+
+        in.beginObject();
+        while ( in.hasNext() ) {
+            String name = in.nextName();
+            readMember( in, name, present, deserialized, context, depth );
+
+            // An embedded resource that was read before is skipped as soon as its self link is known
+            if ( depth > 0 && context.resources != null && HalConstants.RESERVED_LINKS_ROOT.equals( name ) ) {
+                String href = getSelfHref( deserialized );
+                Object shared = href == null ? null : context.resources.get( href );
+                if ( rawType.isInstance( shared ) ) {
+                    while ( in.hasNext() ) {
+                        in.nextName();
+                        in.skipValue();
+                    }
+                    in.endObject();
+
+                    context.curies = curies;
+                    return asResource( shared );
+                }
+            }
+        }
+        in.endObject();
+
+        context.curies = curies;
+        if ( reuse )
+            clearAbsent( present, deserialized, context, depth );
+        verifyRequired( present, context, depth );
+
+        if ( context.resources != null ) {
+            // Items that are bound in parallel may have registered the same resource in the meantime
+            String href = getSelfHref( deserialized );
+            Object shared = href == null ? null : context.resources.putIfAbsent( href, deserialized );
+            if ( depth > 0 && rawType.isInstance( shared ) )
+                return asResource( shared );
+        }
+
+        // Only completely bound resources are cached, as those are what a lookup expects. Resources
+        // of a read into existing instances are not, as the next such read changes them in place.
+        if ( resourceCache != null && depth > 0 && !context.reuse && context.projection.isUnrestricted() ) {
+            String href = getSelfHref( deserialized );
+            if ( href != null )
+                resourceCache.put( href, deserialized );
+        }
+        return deserialized;
+    }
+
+    /**
+     * Casts an instance of the raw resource type to the resource type
+     *
+     * @param resource  the instance
+     * @return the resource
+     */
+    @SuppressWarnings( "unchecked" )
+    private T asResource( Object resource ) {
+        return (T)resource;
+    }
+
+    /**
+     * Clears the links and embeds that the projection selects but the document didn't have
+     *
+     * @param present       the presence marker per binding
+     * @param deserialized  the object being deserialized
+     * @param context       the state of the read
+     * @param depth         the embed depth of the resource
+     */
+    private void clearAbsent( boolean[] present, T deserialized, HalReadContext context, int depth ) {
+        for ( HalBindingPlan.Binding binding : plan.bindings ) {
+            if ( !present[ binding.index ] && context.projection.selects( binding, depth ) &&
+                binding.accessor.get( deserialized ) != null )
+                binding.accessor.set( deserialized, null );
+        }
+    }
+
+    /**
+     * Gets the href of the self link of a resource
+     *
+     * @param deserialized  the resource
+     * @return the href, or null if the resource has no self link or it is not bound
+     */
+    private String getSelfHref( T deserialized ) {
+        if ( plan.self == null )
+            return null;
+
+        Object self = plan.self.accessor.get( deserialized );
+        if ( self == null || self instanceof String )
+            return (String)self;
+        return plan.self.converter.toLink( self ).getHref();
+    }
+
+    /**
+     * Starts a new read, with the scoped projection if one is open or the projection of the
+     * factory otherwise
+     *
+     * @return the state of the read
+     */
+    HalReadContext newContext() {
+        return new HalReadContext( HalProjection.current( projection ), deduplicate );
+    }
+
+    /**
+     * Collects the resource type of this adapter and those of the resources embedded in it,
+     * transitively and in declaration order. Recursive embeds are resolved by Gson through a future adapter, which is not
+     * followed, but its type has been collected already.
+     *
+     * @param types the collected types
+     */
+    void collectResourceTypes( Set<Class<?>> types ) {
+        if ( !types.add( rawType ) )
+            return;
+
+        for ( HalBindingPlan.Binding binding : plan.bindings ) {
+            if ( binding.link )
+                continue;
+
+            TypeAdapter<?> adapter = binding.adapter;
+            if ( adapter instanceof HalLazyTypeAdapter )
+                adapter = ( (HalLazyTypeAdapter<?>)adapter ).getValueAdapter();
+            if ( adapter instanceof HalTypeAdapter )
+                ( (HalTypeAdapter<?>)adapter ).collectResourceTypes( types );
+        }
+    }
+
+    /**
+     * Checks if this resource, or a resource embedded in it at any depth, binds a link by
+     * relation. Only then do the curies of a document matter, so they are skipped otherwise.
+     * Determined on first use, once the adapters of all embedded resources were created.
+     *
+     * @return true if it does
+     */
+    boolean bindsRelations() {
+        Boolean binds = bindsRelations;
+        if ( binds == null ) {
+            binds = bindsRelations( new HashSet<Class<?>>() );
+            bindsRelations = binds;
+        }
+        return binds;
+    }
+
+    private boolean bindsRelations( Set<Class<?>> visited ) {
+        if ( !visited.add( rawType ) )
+            return false;
+        if ( !plan.relations.isEmpty() )
+            return true;
+
+        for ( HalBindingPlan.Binding binding : plan.bindings ) {
+            if ( binding.link )
+                continue;
+
+            // Recursive resources were bound through a future adapter while the plan was created
+            TypeAdapter<?> adapter = binding.adapter;
+            if ( !( adapter instanceof HalTypeAdapter ) && !( adapter instanceof HalLazyTypeAdapter ) )
+                adapter = gson.getAdapter( TypeToken.get( binding.type ) );
+            if ( bindsRelations( adapter, visited ) )
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Checks if the resources read by an adapter bind a link by relation, at any depth
+     *
+     * @param adapter the adapter of a resource, or of any other value
+     * @return true if they do
+     */
+    static boolean bindsRelations( TypeAdapter<?> adapter ) {
+        return bindsRelations( adapter, null );
+    }
+
+    private static boolean bindsRelations( TypeAdapter<?> adapter, Set<Class<?>> visited ) {
+        if ( adapter instanceof HalLazyTypeAdapter )
+            adapter = ( (HalLazyTypeAdapter<?>)adapter ).getValueAdapter();
+        if ( !( adapter instanceof HalTypeAdapter ) )
+            return false;
+
+        HalTypeAdapter<?> resourceAdapter = (HalTypeAdapter<?>)adapter;
+        return visited == null ? resourceAdapter.bindsRelations() : resourceAdapter.bindsRelations( visited );
+    }
+
+    /**
+     * Creates the presence markers of a read
+     *
+     * @return the presence marker per binding, or null if none are required
+     */
+    boolean[] newPresence() {
+        return plan.hasRequired ? new boolean[ plan.bindings.length ] : null;
+    }
+
+    /**
+     * Reads a member of the resource, which is either one of the reserved roots or a regular
+     * member
+     *
+     * @param in            the reader, positioned at the member value
+     * @param name          the member name
+     * @param present       the presence marker per binding, or null if none are required
+     * @param deserialized  the object being deserialized
+     * @param context       the state of the read
+     * @param depth         the embed depth of the resource
+     */
+    void readMember( JsonReader in, String name, boolean[] present, T deserialized,
+        HalReadContext context, int depth ) throws IOException {
+        if ( HalConstants.RESERVED_LINKS_ROOT.equals( name ) ) {
+            if ( context.projection.readsLinks() )
+                readLinks( in, present, deserialized, context, depth );
+            else
+                in.skipValue();
+        } else if ( HalConstants.RESERVED_EMBEDDED_ROOT.equals( name ) ) {
+            if ( context.projection.readsEmbeds( depth ) )
+                readEmbeds( in, present, deserialized, context, depth );
+            else
+                in.skipValue();
+        } else {
+            readField( in, name, deserialized );
+        }
+    }
+
+    /**
+     * Reads a regular member into its bound field, or skips it if no field is bound to the name
+     *
+     * @param in            the reader, positioned at the member value
+     * @param name          the member name
+     * @param deserialized  the object being deserialized
+     */
+    private void readField( JsonReader in, String name, T deserialized ) throws IOException {
+        HalBindingPlan.BoundField field = plan.fields.get( name );
+        if ( field == null ) {
+            in.skipValue();
+            return;
+        }
+
+        field.read( in, deserialized );
+    }
+
+    /**
+     * Reads the embedded root and assigns each member that is bound to a field. Embeds are
+     * deserialized through the adapter of their type, so embedded resources stream as well.
+     *
+     * @param in            the reader, positioned at the root
+     * @param present       the presence marker per binding, or null if none are required
+     * @param deserialized  the object being deserialized
+     * @param context       the state of the read
+     * @param depth         the embed depth of the resource
+     */
+    private void readEmbeds( JsonReader in, boolean[] present, T deserialized, HalReadContext context,
+        int depth ) throws IOException {
+        if ( in.peek() == JsonToken.NULL ) {
+            in.nextNull();
+            return;
+        }
+
+        in.beginObject();
+        while ( in.hasNext() )
+            readBinding( in, plan.embeds.get( in.nextName() ), present, deserialized, context, depth );
+        in.endObject();
+    }
+
+    /**
+     * Reads the links root. Links are bound by name, and by relation if the plan has links that
+     * are bound to a relation: a link named after the relation itself or after a compact name that
+     * the curies expand to the relation. A compact name with a prefix that is not declared yet is
+     * kept until the end of the root, as the curies may follow it.
+     *
+     * @param in            the reader, positioned at the root
+     * @param present       the presence marker per binding, or null if none are required
+     * @param deserialized  the object being deserialized
+     * @param context       the state of the read
+     * @param depth         the embed depth of the resource
+     */
+    private void readLinks( JsonReader in, boolean[] present, T deserialized, HalReadContext context,
+        int depth ) throws IOException {
+        if ( in.peek() == JsonToken.NULL ) {
+            in.nextNull();
+            return;
+        }
+
+        Map<String, String> deferred = null;
+        boolean curiesRead = false;
+
+        in.beginObject();
+        while ( in.hasNext() ) {
+            String name = in.nextName();
+            if ( HalCuries.LINK.equals( name ) ) {
+                if ( context.parseCuries || bindsRelations() )
+                    readCuries( in, present, deserialized, context, depth );
+                else
+                    readBinding( in, plan.links.get( name ), present, deserialized, context, depth );
+                curiesRead = true;
+                continue;
+            }
+
+            HalBindingPlan.Binding binding = plan.links.get( name );
+            if ( binding == null && !plan.relations.isEmpty() ) {
+                binding = findRelation( name, context );
+                if ( binding == null && !curiesRead && HalCuries.isCompact( name ) &&
+                    !HalCuries.declares( context.curies, name ) ) {
+                    if ( deferred == null )
+                        deferred = new LinkedHashMap<>();
+                    deferred.put( name, HalStreams.capture( in ) );
+                    continue;
+                }
+            }
+
+            readBinding( in, binding, present, deserialized, context, depth );
+        }
+        in.endObject();
+
+        if ( deferred == null )
+            return;
+
+        for ( Map.Entry<String, String> link : deferred.entrySet() ) {
+            HalBindingPlan.Binding binding = findRelation( link.getKey(), context );
+            if ( binding != null )
+                readBinding( HalStreams.lenientReader( new StringReader( link.getValue() ) ), binding, present,
+                    deserialized, context, depth );
+        }
+    }
+
+    /**
+     * Reads the curies link into the prefix table of the read, and into its field if one is bound
+     * to it
+     *
+     * @param in            the reader, positioned at the curies
+     * @param present       the presence marker per binding, or null if none are required
+     * @param deserialized  the object being deserialized
+     * @param context       the state of the read
+     * @param depth         the embed depth of the resource
+     */
+    private void readCuries( JsonReader in, boolean[] present, T deserialized, HalReadContext context,
+        int depth ) throws IOException {
+        JsonElement curies = treeAdapter.read( in );
+        if ( curies == null || curies.isJsonNull() )
+            return;
+
+        context.curies = HalCuries.parse( curies, context.curies );
+
+        HalBindingPlan.Binding binding = plan.links.get( HalCuries.LINK );
+        if ( binding != null )
+            readBinding( HalStreams.reader( curies ), binding, present, deserialized, context, depth );
+    }
+
+    /**
+     * Finds the link that is bound to the relation of a link name
+     *
+     * @param name      the name of the link, which is either a relation or a compact name
+     * @param context   the state of the read
+     * @return the binding, or null if no link is bound to the relation
+     */
+    private HalBindingPlan.Binding findRelation( String name, HalReadContext context ) {
+        HalBindingPlan.Binding binding = plan.relations.get( name );
+        if ( binding != null )
+            return binding;
+
+        String relation = HalCuries.expand( context.curies, name );
+        return relation == null ? null : plan.relations.get( relation );
+    }
+
+    /**
+     * Reads a member of the links or embedded root into the field it is bound to, or skips it if
+     * no field is bound to the name or the projection doesn't select it
+     *
+     * @param in            the reader, positioned at the member value
+     * @param binding       the binding of the member, or null if it is not bound
+     * @param present       the presence marker per binding, or null if none are required
+     * @param deserialized  the object being deserialized
+     * @param context       the state of the read
+     * @param depth         the embed depth of the resource
+     */
+    private void readBinding( JsonReader in, HalBindingPlan.Binding binding, boolean[] present,
+        T deserialized, HalReadContext context, int depth ) throws IOException {
+        if ( binding == null || !context.projection.selects( binding, depth ) ) {
+            in.skipValue();
+            return;
+        }
+
+        binding.read( in, deserialized, context, depth );
+        markPresent( present, binding );
+    }
+
+    /**
+     * Reads a single member of the embedded root, for callers that walk the root themselves
+     *
+     * @param in            the reader, positioned at the member value
+     * @param name          the member name
+     * @param present       the presence marker per binding, or null if none are required
+     * @param deserialized  the object being deserialized
+     * @param context       the state of the read
+     * @param depth         the embed depth of the resource
+     */
+    void readEmbed( JsonReader in, String name, boolean[] present, T deserialized,
+        HalReadContext context, int depth ) throws IOException {
+        readBinding( in, plan.embeds.get( name ), present, deserialized, context, depth );
+    }
+
+    /**
+     * Assigns a value that was bound before to a member of the embedded root, as if it was read,
+     * or ignores it if no field is bound to the name or the projection doesn't select it
+     *
+     * @param name          the member name
+     * @param value         the value
+     * @param present       the presence marker per binding, or null if none are required
+     * @param deserialized  the object being deserialized
+     * @param context       the state of the read
+     * @param depth         the embed depth of the resource
+     */
+    void assignEmbed( String name, Object value, boolean[] present, T deserialized, HalReadContext context,
+        int depth ) {
+        HalBindingPlan.Binding binding = plan.embeds.get( name );
+        if ( binding == null || !context.projection.selects( binding, depth ) )
+            return;
+
+        binding.accessor.set( deserialized, value );
+        markPresent( present, binding );
+    }
+
+    /**
+     * Gets the value of a member of the embedded root
+     *
+     * @param name          the member name
+     * @param deserialized  the object
+     * @return the value, or null if no field is bound to the name
+     */
+    Object getEmbed( String name, T deserialized ) {
+        HalBindingPlan.Binding binding = plan.embeds.get( name );
+        return binding == null ? null : binding.accessor.get( deserialized );
+    }
+
+    /**
+     * Marks an embed as present without reading it, for embeds that are consumed by the caller
+     *
+     * @param present   the presence marker per binding, or null if none are required
+     * @param name      the name of the embed
+     */
+    void markEmbedPresent( boolean[] present, String name ) {
+        HalBindingPlan.Binding binding = plan.embeds.get( name );
+        if ( binding != null )
+            markPresent( present, binding );
+    }
+
+    private static void markPresent( boolean[] present, HalBindingPlan.Binding binding ) {
+        if ( present != null )
+            present[ binding.index ] = true;
+    }
+
+    /**
+     * Writes the links or embedded root with every binding that is not null. The root is only
+     * written if there is at least one such binding.
+     *
+     * @param out       the writer
+     * @param root      the name of the root
+     * @param links     true to write the links, false to write the embeds
+     * @param value     the object being serialized
+     */
+    private void writeBindings( JsonWriter out, String root, boolean links, T value ) throws IOException {
+        boolean open = false;
+        for ( HalBindingPlan.Binding binding : plan.bindings ) {
+            if ( binding.link != links )
+                continue;
+
+            Object bound = binding.accessor.get( value );
+            if ( bound == null )
+                continue;
+
+            if ( !open ) {
+                out.name( root ).beginObject();
+                open = true;
+            }
+
+            out.name( binding.name );
+            binding.write( out, bound );
+        }
+
+        if ( open )
+            out.endObject();
+    }
+
+    /**
+     * Verifies that all required bindings that the projection selects were present in the JSON
+     *
+     * @param present       the presence marker per binding, or null if none are required
+     * @param context       the state of the read
+     * @param depth         the embed depth of the resource
+     * @throws JsonParseException if a required binding was not present
+     */
+    void verifyRequired( boolean[] present, HalReadContext context, int depth ) {
+        if ( present == null )
+            return;
+
+        for ( HalBindingPlan.Binding binding : plan.bindings ) {
+            if ( !binding.optional && !present[ binding.index ] && context.projection.selects( binding, depth ) )
+                throw binding.missing();
+        }
+    }
+
+    /**
+     * Creates a new instance of the resource, through the generated accessor if there is one or
+     * the way Gson creates instances otherwise. How instances are created is resolved once, when
+     * the adapter is created; only if it can't be resolved is the instance created by the
+     * delegate.
+     *
+     * @return the instance
+     */
+    T construct() {
+        if ( plan.accessor != null )
+            return plan.accessor.newInstance();
+
+        if ( constructor == null )
+            return delegate.fromJsonTree( EMPTY_OBJECT );
+
+        return constructor.construct();
+    }
+}
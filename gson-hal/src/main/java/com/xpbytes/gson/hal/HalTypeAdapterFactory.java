@@ -17,157 +17,280 @@
 package com.xpbytes.gson.hal;
 
 import com.google.gson.Gson;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
-import com.google.gson.JsonParseException;
+import com.google.gson.JsonIOException;
+import com.google.gson.JsonSyntaxException;
 import com.google.gson.TypeAdapter;
 import com.google.gson.TypeAdapterFactory;
 import com.google.gson.reflect.TypeToken;
 import com.google.gson.stream.JsonReader;
-import com.google.gson.stream.JsonWriter;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.MalformedJsonException;
 
 import java.io.IOException;
-import java.lang.reflect.Field;
-import java.lang.reflect.Type;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
-import java.util.logging.Level;
-import java.util.logging.Logger;
+import java.util.Set;
+import java.util.concurrent.Executor;
 
 /**
  * @author Derk-Jan Karrenbeld
  */
 public class HalTypeAdapterFactory implements TypeAdapterFactory {
 
-    @Override public <T> TypeAdapter<T> create( final Gson gson, final TypeToken<T> type ) {
-
-        final TypeAdapter<T> delegate = gson.getDelegateAdapter( this, type );
-        final TypeAdapter<JsonElement> basicAdapter = gson.getAdapter( JsonElement.class );
-        // If we convert to JSON, isn't the deserializer more appropriate...?
-
-        // Is this a HalResource?
-        if ( !HalReflection.isResource( type.getRawType() ) )
-            return delegate;
+    private HalDiagnostics diagnostics;
+    private HalProjection projection = HalProjection.ALL;
+    private HalInternPool internPool;
+    private HalParallelEmbeds parallelEmbeds;
+    private boolean deduplicateEmbeds;
+    private HalResourceCache resourceCache;
+
+    /**
+     * Captures sampled and failed documents into a diagnostics buffer. Diagnostics are off by
+     * default, in which case documents are streamed without ever being held as a whole.
+     *
+     * @param diagnostics the diagnostics buffer, or null to turn diagnostics off
+     * @return this factory
+     */
+    public HalTypeAdapterFactory setDiagnostics( HalDiagnostics diagnostics ) {
+        this.diagnostics = diagnostics;
+        return this;
+    }
 
-        return new TypeAdapter<T>() {
-            @Override
-            public void write(JsonWriter out, T value) throws IOException {
-                delegate.write( out, value );
-            }
+    /**
+     * Selects the links and embeds that are bound when reading. All are bound by default. A
+     * projection opened with {@link HalProjection#open()} takes precedence over this one.
+     *
+     * @param projection the projection, or null to bind all links and embeds
+     * @return this factory
+     */
+    public HalTypeAdapterFactory setProjection( HalProjection projection ) {
+        this.projection = projection == null ? HalProjection.ALL : projection;
+        return this;
+    }
 
-            @Override
-            public T read( JsonReader in ) throws IOException {
-                JsonElement fullJson = basicAdapter.read( in );
-                Logger.getGlobal().log( Level.ALL, fullJson.toString() );
-                T deserialized = delegate.fromJsonTree( fullJson );
+    /**
+     * Interns the strings and URIs of every link that is read, so resources that are kept in
+     * memory share them. Links are not interned by default.
+     *
+     * @param internPool the pool, or null to turn interning off
+     * @return this factory
+     */
+    public HalTypeAdapterFactory setInternPool( HalInternPool internPool ) {
+        this.internPool = internPool;
+        return this;
+    }
 
-                if ( fullJson.isJsonObject()) {
-                    JsonObject fullJsonObject = fullJson.getAsJsonObject();
+    /**
+     * Binds the items of large embedded arrays in parallel. Once an array has more items than the
+     * threshold, the items after it are tokenized on the reading thread and bound on the executor
+     * in chunks, while the collection keeps the order of the document. Arrays are read
+     * sequentially by default.
+     *
+     * Items are bound with the projection of the read, but on other threads, so their adapters
+     * must not depend on the thread that reads the document.
+     *
+     * @param executor  the executor, or null to read arrays sequentially
+     * @param threshold the number of items that are read sequentially before an array goes parallel
+     * @return this factory
+     */
+    public HalTypeAdapterFactory setParallelEmbeds( Executor executor, int threshold ) {
+        if ( threshold < 0 )
+            throw new IllegalArgumentException( "threshold < 0: " + threshold );
+
+        this.parallelEmbeds = executor == null ? null : new HalParallelEmbeds( executor, threshold );
+        return this;
+    }
 
-                    JsonObject linksObject = fullJsonObject.getAsJsonObject( HalConstants.RESERVED_LINKS_ROOT );
-                    JsonObject embeddedObject = fullJsonObject.getAsJsonObject( HalConstants.RESERVED_EMBEDDED_ROOT );
+    /**
+     * Shares a single instance between all occurrences of an embedded resource within a read,
+     * identified by the href of its self link. Once the links of an embedded resource show that
+     * an instance with the same self href and type was read before, the rest of the resource is
+     * skipped and the earlier instance is bound instead. Resources are not deduplicated by
+     * default.
+     *
+     * Resources are only identified once their links have been read, so this saves the most work
+     * for documents with {@code _links} first, as most are. The resources of a read are kept
+     * until the read ends, including the items of a {@link HalEmbeddedIterator}. Projections that
+     * limit the embed depth turn deduplication off, as they bind a resource differently
+     * depending on its depth.
+     *
+     * @param deduplicate true to deduplicate embedded resources
+     * @return this factory
+     */
+    public HalTypeAdapterFactory setDeduplicateEmbeds( boolean deduplicate ) {
+        this.deduplicateEmbeds = deduplicate;
+        return this;
+    }
 
-                    List<Field> fieldsList = HalReflection.getHalFields( type.getRawType() );
-                    for (Field field : fieldsList) {
-                        if ( HalReflection.isLink( field ) )
-                            readLink( field, linksObject, deserialized );
-                        else if ( HalReflection.isEmbed( field ) )
-                            readEmbed( field, embeddedObject, deserialized );
-                    }
+    /**
+     * Puts every embedded resource that is read in a cache, by the href of its self link, so
+     * links to it can be looked up in the cache before they are fetched. A resource replaces the
+     * one with the same self href. Resources are only cached when all links and embeds are bound,
+     * and not cached by default.
+     *
+     * @param resourceCache the cache, or null to turn caching off
+     * @return this factory
+     */
+    public HalTypeAdapterFactory setResourceCache( HalResourceCache resourceCache ) {
+        this.resourceCache = resourceCache;
+        return this;
+    }
 
-                }
+    @Override public <T> TypeAdapter<T> create( final Gson gson, final TypeToken<T> type ) {
 
-                return deserialized;
-            }
+        // Is this a lazily decoded value?
+        if ( type.getRawType() == HalLazy.class ) {
+            @SuppressWarnings( "unchecked" )
+            TypeAdapter<T> lazy = (TypeAdapter<T>)HalLazyTypeAdapter.create( gson, type.getType() );
+            return lazy;
+        }
+
+        // Is this a link object?
+        if ( HalLinkObject.class.isAssignableFrom( type.getRawType() ) ) {
+            @SuppressWarnings( "unchecked" )
+            TypeAdapter<T> link = (TypeAdapter<T>)HalLinkObjectTypeAdapter.create( gson,
+                type.getRawType().asSubclass( HalLinkObject.class ) );
+            return link;
+        }
 
-            private <A> void readEmbed( Field field, JsonObject rootObject, A deserialized ) {
-                HalEmbed embed = field.getAnnotation( HalEmbed.class );
-                boolean optional = embed.optional();
-                if ( rootObject == null && optional )
-                    return;
-
-                String memberName = HalReflection.getJsonFieldName( embed, field );
-                JsonParseException missingException = new JsonParseException(
-                    String.format( Locale.US,
-                        "Expected embed `%s` in the embedded root `%s` to be present",
-                        memberName,
-                        HalConstants.RESERVED_EMBEDDED_ROOT
-                    )
-                );
-
-                if ( rootObject == null )
-                    throw missingException;
+        final TypeAdapter<T> delegate = gson.getDelegateAdapter( this, type );
 
-                boolean exists = rootObject.has( memberName );
-                if ( !exists ) {
-                    if ( optional )
-                        return;
-                    throw missingException;
-                }
+        // Is this a HalResource?
+        if ( !HalReflection.isResource( type.getRawType() ) )
+            return delegate;
 
-                Type innerType = HalReflection.getFieldItemizedType( field );
-                //Class outerType = HalReflection.getFieldType( field );
-                JsonElement element = rootObject.get( memberName );
+        // Prefer the accessor generated by gson-hal-processor over reflection
+        @SuppressWarnings( "unchecked" )
+        HalAccessor<T> accessor = type.getType() == type.getRawType() ?
+            HalAccessors.find( (Class<T>)type.getRawType() ) : null;
 
-                // This gson.fromJson call will actually call into the proper stack to recursively
-                // deserialize embeds and set their links where necessary.
-                HalReflection.setEmbed( field, gson.fromJson( element, innerType ), deserialized );
-            }
+        return new HalTypeAdapter<>( gson, delegate, type, accessor, diagnostics, projection, internPool,
+            parallelEmbeds, deduplicateEmbeds, resourceCache );
+    }
 
-            private <A> void readLink( Field field, JsonObject rootObject, A deserialized ) {
+    /**
+     * Reads a document into an existing resource instead of creating a new one, for clients that
+     * poll the same resource over and over. Regular fields are overwritten, links and embeds are
+     * read into the link objects, resources and collections that are assigned already if those
+     * are of the same type, and links that are bound by their href keep their value if the href
+     * is the same. In the steady state, a read then allocates little more than the strings of the
+     * document.
+     *
+     * The links and embeds that the document doesn't have are cleared, as their absence is
+     * meaningful. Regular fields that it doesn't have keep their value.
+     *
+     * @param gson      the gson instance, with a {@link HalTypeAdapterFactory} registered
+     * @param json      the document
+     * @param target    the resource to read into
+     * @param <T>       the resource type
+     * @return the resource, which is the target, or null if the document is null
+     *
+     * @throws IllegalArgumentException if the type of the target is not handled by a {@link
+     *                                  HalTypeAdapterFactory}
+     * @throws JsonSyntaxException      if the document is malformed
+     */
+    public static <T> T readInto( Gson gson, String json, T target ) {
+        return readInto( gson, new StringReader( json ), target );
+    }
 
-                HalLink link = field.getAnnotation( HalLink.class );
-                boolean optional = link.optional();
-                if ( rootObject == null && optional )
-                    return;
+    /**
+     * Reads a document into an existing resource instead of creating a new one. The reader is not
+     * closed.
+     *
+     * @see #readInto(Gson, String, Object)
+     *
+     * @param gson      the gson instance, with a {@link HalTypeAdapterFactory} registered
+     * @param reader    the reader of the document
+     * @param target    the resource to read into
+     * @param <T>       the resource type
+     * @return the resource, which is the target, or null if the document is null
+     *
+     * @throws IllegalArgumentException if the type of the target is not handled by a {@link
+     *                                  HalTypeAdapterFactory}
+     * @throws JsonIOException          if the reader can't be read
+     * @throws JsonSyntaxException      if the document is malformed
+     */
+    public static <T> T readInto( Gson gson, Reader reader, T target ) {
+        TypeAdapter<?> adapter = gson.getAdapter( target.getClass() );
+        if ( !( adapter instanceof HalTypeAdapter ) )
+            throw new IllegalArgumentException( String.format( Locale.US,
+                "%s is not a HAL resource, or no HalTypeAdapterFactory is registered",
+                target.getClass().getName() )
+            );
+
+        // As lenient as Gson#fromJson, and just as strict about trailing data
+        @SuppressWarnings( "unchecked" )
+        HalTypeAdapter<T> resourceAdapter = (HalTypeAdapter<T>)adapter;
+        JsonReader in = HalStreams.lenientReader( reader );
+        try {
+            T read = resourceAdapter.readInto( in, target );
+            if ( read != null && in.peek() != JsonToken.END_DOCUMENT )
+                throw new JsonSyntaxException( "JSON document was not fully consumed." );
+            return read;
+        } catch ( MalformedJsonException | IllegalStateException e ) {
+            throw new JsonSyntaxException( e );
+        } catch ( IOException e ) {
+            throw new JsonIOException( e );
+        }
+    }
 
-                String memberName = HalReflection.getJsonFieldName( link, field );
-                JsonParseException missingException = new JsonParseException(
-                    String.format( Locale.US,
-                        "Expected link `%s` in the links root `%s` to be present",
-                        memberName,
-                        HalConstants.RESERVED_LINKS_ROOT
-                    )
+    /**
+     * Builds the binding plans and adapters of resource types ahead of the first read or write,
+     * so that cost is paid at startup. The resources embedded in the types are preloaded as well,
+     * transitively, as are the adapters of all their fields and links. Adapters are cached per
+     * {@link Gson} instance, so preload the instance that serves the traffic.
+     *
+     * @param gson  the gson instance, with a {@link HalTypeAdapterFactory} registered
+     * @param types the resource types
+     * @return the report of the preload
+     *
+     * @throws IllegalArgumentException if a type is not handled by a {@link HalTypeAdapterFactory}
+     */
+    public static HalPreloadReport preload( Gson gson, Class<?>... types ) {
+        long start = System.nanoTime();
+
+        Set<Class<?>> resources = new LinkedHashSet<>();
+        for ( Class<?> type : types ) {
+            TypeAdapter<?> adapter = gson.getAdapter( type );
+            if ( !( adapter instanceof HalTypeAdapter ) )
+                throw new IllegalArgumentException( String.format( Locale.US,
+                    "%s is not a HAL resource, or no HalTypeAdapterFactory is registered",
+                    type.getName() )
                 );
 
-                if ( rootObject == null )
-                    throw missingException;
-
-                boolean exists = rootObject.has( memberName );
-                if ( !exists ) {
-                    if ( optional )
-                        return;
-                    throw missingException;
-                }
-
-                // If this is not a descendant of a HalLinkObject, we better treat it as one.
-                Class<?> innerType = HalReflection.getFieldItemizedType( field );
-                if ( !innerType.isAssignableFrom( HalLinkObject.class ) )
-                    innerType = HalLinkObject.class;
+            ( (HalTypeAdapter<?>)adapter ).collectResourceTypes( resources );
+        }
 
-                //Class outerType = HalReflection.getFieldType( field );
-                JsonElement element = rootObject.get( memberName );
-
-                // TODO support collections
+        return new HalPreloadReport( new ArrayList<>( resources ), System.nanoTime() - start );
+    }
 
-                /*if ( Collection.class.isAssignableFrom( outerType ) )
-                {
-                    innerType.
-                    //noinspection unchecked
-                    Class<Collection> collectionClass = (Class<Collection>)outerType;
-                    Collection collection = gson.fromJson( element, collectionClass );
+    /**
+     * Preloads every resource type that gson-hal-processor generated an accessor for, as listed
+     * by the {@link HalAccessorRegistry} services of a class loader. Types that can't be loaded
+     * are skipped.
+     *
+     * @see #preload(Gson, Class[])
+     *
+     * @param gson      the gson instance, with a {@link HalTypeAdapterFactory} registered
+     * @param loader    the class loader of the resources
+     * @return the report of the preload
+     */
+    public static HalPreloadReport preloadGenerated( Gson gson, ClassLoader loader ) {
+        List<Class<?>> types = new ArrayList<>();
+        for ( HalAccessorRegistry registry : HalAccessors.getRegistries( loader ) ) {
+            for ( String name : registry.typeNames() ) {
+                try {
+                    types.add( Class.forName( name, false, loader ) );
+                } catch ( ClassNotFoundException | LinkageError ignored ) {
+                    // Without its class, the type is never read or written either
                 }
-
-                field.getType()
-
-                if ( element.isJsonArray() ) {
-                    for ( JsonElement element1 : element.getAsJsonArray() )
-                        HalReflection.setLink( field, , deserialized );
-                } else {
-                 */
-                HalReflection.setLink( field, (HalLinkObject)gson.fromJson( element, (Type)innerType ), deserialized );
             }
+        }
 
-        }.nullSafe();
+        return preload( gson, types.toArray( new Class<?>[ types.size() ] ) );
     }
 }
@@ -0,0 +1,484 @@
+/**
+ * Copyright 2015 Derk-Jan Karrenbeld
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.xpbytes.gson.hal;
+
+import java.lang.reflect.Array;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A compiled URI template, as defined by RFC 6570, up to and including level 4. Templated links
+ * use these to expand their href, see {@link HalLinkObject#expand(Map)}.
+ *
+ * A template is parsed once into literals, which are encoded up front, and expressions. Expanding
+ * it appends straight to a single builder, and values that need no encoding are appended as they
+ * are. Compiled templates are cached by their source, up to a fixed number of templates.
+ *
+ * Values are expanded by their type: {@code null}, empty collections and empty maps are
+ * undefined, collections, iterables and arrays are lists, maps are associative arrays and anything
+ * else is expanded as its {@link Object#toString()}.
+ */
+public final class HalUriTemplate {
+
+    private static final int MAX_CACHED = 4096;
+    private static final Map<String, HalUriTemplate> cache = new ConcurrentHashMap<>();
+
+    private static final Charset UTF_8 = Charset.forName( "UTF-8" );
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+    private static final String RESERVED = ":/?#[]@!$&'()*+,;=";
+
+    private final String template;
+    private final Object[] parts;
+    private final int literalLength;
+
+    private HalUriTemplate( String template, Object[] parts, int literalLength ) {
+        this.template = template;
+        this.parts = parts;
+        this.literalLength = literalLength;
+    }
+
+    /**
+     * Gets the compiled form of a template, compiling it if it wasn't cached yet
+     *
+     * @param template the template
+     * @return the compiled template
+     *
+     * @throws IllegalArgumentException if the template is malformed
+     */
+    public static HalUriTemplate compile( String template ) {
+        HalUriTemplate compiled = cache.get( template );
+        if ( compiled != null )
+            return compiled;
+
+        compiled = parse( template );
+        if ( cache.size() < MAX_CACHED )
+            cache.put( template, compiled );
+        return compiled;
+    }
+
+    /**
+     * Expands the template
+     *
+     * @param variables the values by variable name
+     * @return the expanded URI reference
+     */
+    public String expand( Map<String, ?> variables ) {
+        StringBuilder out = new StringBuilder( literalLength + 16 * ( parts.length - 1 ) + 16 );
+        for ( Object part : parts ) {
+            if ( part instanceof String )
+                out.append( (String)part );
+            else
+                ( (Expression)part ).expand( variables, out );
+        }
+        return out.toString();
+    }
+
+    /**
+     * Gets the names of all variables in the template, in order of appearance
+     *
+     * @return the variable names
+     */
+    public List<String> getVariableNames() {
+        List<String> names = new ArrayList<>();
+        for ( Object part : parts ) {
+            if ( part instanceof Expression ) {
+                for ( VarSpec spec : ( (Expression)part ).specs ) {
+                    if ( !names.contains( spec.name ) )
+                        names.add( spec.name );
+                }
+            }
+        }
+        return names;
+    }
+
+    @Override public String toString() {
+        return template;
+    }
+
+    static HalUriTemplate parse( String template ) {
+        List<Object> parts = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+        int literalLength = 0;
+
+        int i = 0;
+        while ( i < template.length() ) {
+            char c = template.charAt( i );
+            if ( c == '}' )
+                throw malformed( template, i, "unopened expression" );
+
+            if ( c != '{' ) {
+                int end = i + 1;
+                while ( end < template.length() && template.charAt( end ) != '{' && template.charAt( end ) != '}' )
+                    end++;
+                encode( template, i, end, true, literal );
+                i = end;
+                continue;
+            }
+
+            int close = template.indexOf( '}', i );
+            if ( close == -1 )
+                throw malformed( template, i, "unclosed expression" );
+
+            if ( literal.length() > 0 ) {
+                parts.add( literal.toString() );
+                literalLength += literal.length();
+                literal.setLength( 0 );
+            }
+
+            parts.add( Expression.parse( template, i + 1, close ) );
+            i = close + 1;
+        }
+
+        if ( literal.length() > 0 ) {
+            parts.add( literal.toString() );
+            literalLength += literal.length();
+        }
+
+        return new HalUriTemplate( template, parts.toArray(), literalLength );
+    }
+
+    private static IllegalArgumentException malformed( String template, int index, String reason ) {
+        return new IllegalArgumentException( String.format( Locale.US,
+            "Malformed URI template %s at index %d: %s",
+            template,
+            index,
+            reason )
+        );
+    }
+
+    /**
+     * The operators of RFC 6570, with their expansion behaviour from its appendix A
+     */
+    private enum Operator {
+        SIMPLE( "", ",", false, "", false ),
+        RESERVED( "", ",", false, "", true ),
+        FRAGMENT( "#", ",", false, "", true ),
+        LABEL( ".", ".", false, "", false ),
+        PATH( "/", "/", false, "", false ),
+        PARAMETER( ";", ";", true, "", false ),
+        QUERY( "?", "&", true, "=", false ),
+        CONTINUATION( "&", "&", true, "=", false );
+
+        final String first;
+        final String separator;
+        final boolean named;
+        final String ifEmpty;
+        final boolean allowReserved;
+
+        Operator( String first, String separator, boolean named, String ifEmpty, boolean allowReserved ) {
+            this.first = first;
+            this.separator = separator;
+            this.named = named;
+            this.ifEmpty = ifEmpty;
+            this.allowReserved = allowReserved;
+        }
+
+        static Operator of( char c ) {
+            switch ( c ) {
+                case '+': return RESERVED;
+                case '#': return FRAGMENT;
+                case '.': return LABEL;
+                case '/': return PATH;
+                case ';': return PARAMETER;
+                case '?': return QUERY;
+                case '&': return CONTINUATION;
+                default: return null;
+            }
+        }
+    }
+
+    /**
+     * A variable of an expression, with its modifiers
+     */
+    private static final class VarSpec {
+        final String name;
+        final int prefix;
+        final boolean explode;
+
+        VarSpec( String name, int prefix, boolean explode ) {
+            this.name = name;
+            this.prefix = prefix;
+            this.explode = explode;
+        }
+    }
+
+    /**
+     * An expression, such as {@code {?x,y}}
+     */
+    private static final class Expression {
+        final Operator operator;
+        final VarSpec[] specs;
+
+        Expression( Operator operator, VarSpec[] specs ) {
+            this.operator = operator;
+            this.specs = specs;
+        }
+
+        static Expression parse( String template, int start, int end ) {
+            if ( start == end )
+                throw malformed( template, start, "empty expression" );
+
+            char first = template.charAt( start );
+            Operator operator = Operator.of( first );
+            if ( operator == null ) {
+                if ( "=,!@|".indexOf( first ) != -1 )
+                    throw malformed( template, start, "reserved operator " + first );
+                operator = Operator.SIMPLE;
+            } else {
+                start++;
+            }
+
+            List<VarSpec> specs = new ArrayList<>();
+            int i = start;
+            while ( i <= end ) {
+                int comma = template.indexOf( ',', i );
+                int specEnd = comma == -1 || comma > end ? end : comma;
+                specs.add( parseVarSpec( template, i, specEnd ) );
+                i = specEnd + 1;
+            }
+            return new Expression( operator, specs.toArray( new VarSpec[ specs.size() ] ) );
+        }
+
+        static VarSpec parseVarSpec( String template, int start, int end ) {
+            int nameEnd = start;
+            while ( nameEnd < end && isVarChar( template, nameEnd ) )
+                nameEnd++;
+
+            if ( nameEnd == start )
+                throw malformed( template, start, "missing variable name" );
+
+            String name = template.substring( start, nameEnd );
+            if ( nameEnd == end )
+                return new VarSpec( name, 0, false );
+
+            if ( template.charAt( nameEnd ) == '*' && nameEnd + 1 == end )
+                return new VarSpec( name, 0, true );
+
+            if ( template.charAt( nameEnd ) == ':' ) {
+                int prefix = 0;
+                int digits = end - nameEnd - 1;
+                if ( digits < 1 || digits > 4 || template.charAt( nameEnd + 1 ) == '0' )
+                    throw malformed( template, nameEnd, "invalid prefix" );
+
+                for ( int i = nameEnd + 1; i < end; i++ ) {
+                    char c = template.charAt( i );
+                    if ( c < '0' || c > '9' )
+                        throw malformed( template, i, "invalid prefix" );
+                    prefix = prefix * 10 + ( c - '0' );
+                }
+                return new VarSpec( name, prefix, false );
+            }
+
+            throw malformed( template, nameEnd, "invalid variable name" );
+        }
+
+        static boolean isVarChar( String template, int i ) {
+            char c = template.charAt( i );
+            if ( ( c >= 'a' && c <= 'z' ) || ( c >= 'A' && c <= 'Z' ) || ( c >= '0' && c <= '9' ) ||
+                c == '_' || c == '.' )
+                return true;
+
+            // Percent-encoded triplets are allowed in variable names
+            return c == '%' && i + 2 < template.length() &&
+                isHex( template.charAt( i + 1 ) ) && isHex( template.charAt( i + 2 ) );
+        }
+
+        void expand( Map<String, ?> variables, StringBuilder out ) {
+            boolean first = true;
+            for ( VarSpec spec : specs ) {
+                Object value = variables.get( spec.name );
+                if ( value == null )
+                    continue;
+
+                if ( value instanceof Map ) {
+                    Map<?, ?> map = (Map<?, ?>)value;
+                    if ( map.isEmpty() )
+                        continue;
+
+                    out.append( first ? operator.first : operator.separator );
+                    expandMap( spec, map, out );
+                } else if ( value instanceof Iterable || value.getClass().isArray() ) {
+                    List<?> list = asList( value );
+                    if ( list.isEmpty() )
+                        continue;
+
+                    out.append( first ? operator.first : operator.separator );
+                    expandList( spec, list, out );
+                } else {
+                    out.append( first ? operator.first : operator.separator );
+                    expandString( spec, value.toString(), out );
+                }
+                first = false;
+            }
+        }
+
+        private void expandString( VarSpec spec, String value, StringBuilder out ) {
+            if ( operator.named ) {
+                out.append( spec.name );
+                if ( value.isEmpty() ) {
+                    out.append( operator.ifEmpty );
+                    return;
+                }
+                out.append( '=' );
+            }
+
+            int end = value.length();
+            if ( spec.prefix > 0 && spec.prefix < value.codePointCount( 0, end ) )
+                end = value.offsetByCodePoints( 0, spec.prefix );
+
+            HalUriTemplate.encode( value, 0, end, operator.allowReserved, out );
+        }
+
+        private void expandList( VarSpec spec, List<?> list, StringBuilder out ) {
+            if ( !spec.explode ) {
+                if ( operator.named )
+                    out.append( spec.name ).append( '=' );
+
+                for ( int i = 0; i < list.size(); i++ ) {
+                    if ( i > 0 )
+                        out.append( ',' );
+                    encodeValue( list.get( i ), out );
+                }
+                return;
+            }
+
+            for ( int i = 0; i < list.size(); i++ ) {
+                if ( i > 0 )
+                    out.append( operator.separator );
+
+                String item = String.valueOf( list.get( i ) );
+                if ( operator.named ) {
+                    out.append( spec.name );
+                    if ( item.isEmpty() ) {
+                        out.append( operator.ifEmpty );
+                        continue;
+                    }
+                    out.append( '=' );
+                }
+                HalUriTemplate.encode( item, 0, item.length(), operator.allowReserved, out );
+            }
+        }
+
+        private void expandMap( VarSpec spec, Map<?, ?> map, StringBuilder out ) {
+            boolean first = true;
+            if ( !spec.explode ) {
+                if ( operator.named )
+                    out.append( spec.name ).append( '=' );
+
+                for ( Map.Entry<?, ?> entry : map.entrySet() ) {
+                    if ( !first )
+                        out.append( ',' );
+                    encodeValue( entry.getKey(), out );
+                    out.append( ',' );
+                    encodeValue( entry.getValue(), out );
+                    first = false;
+                }
+                return;
+            }
+
+            for ( Map.Entry<?, ?> entry : map.entrySet() ) {
+                if ( !first )
+                    out.append( operator.separator );
+
+                encodeValue( entry.getKey(), out );
+                String item = String.valueOf( entry.getValue() );
+                if ( operator.named && item.isEmpty() )
+                    out.append( operator.ifEmpty );
+                else
+                    HalUriTemplate.encode( item, 0, item.length(), operator.allowReserved, out.append( '=' ) );
+                first = false;
+            }
+        }
+
+        private void encodeValue( Object value, StringBuilder out ) {
+            String string = String.valueOf( value );
+            HalUriTemplate.encode( string, 0, string.length(), operator.allowReserved, out );
+        }
+
+        private static List<?> asList( Object value ) {
+            if ( value instanceof List )
+                return (List<?>)value;
+
+            List<Object> list = new ArrayList<>();
+            if ( value instanceof Collection ) {
+                list.addAll( (Collection<?>)value );
+            } else if ( value instanceof Iterable ) {
+                for ( Iterator<?> iterator = ( (Iterable<?>)value ).iterator(); iterator.hasNext(); )
+                    list.add( iterator.next() );
+            } else {
+                for ( int i = 0; i < Array.getLength( value ); i++ )
+                    list.add( Array.get( value, i ) );
+            }
+            return list;
+        }
+    }
+
+    /**
+     * Appends part of a value, percent-encoding every character that is not unreserved, or that is
+     * not reserved either if reserved characters are allowed. Values without such characters are
+     * appended in one go.
+     */
+    private static void encode( String value, int start, int end, boolean allowReserved, StringBuilder out ) {
+        int i = start;
+        while ( i < end && isAllowed( value, i, allowReserved ) )
+            i++;
+
+        out.append( value, start, i );
+        if ( i == end )
+            return;
+
+        while ( i < end ) {
+            char c = value.charAt( i );
+            if ( isAllowed( value, i, allowReserved ) ) {
+                out.append( c );
+                i++;
+                continue;
+            }
+
+            int codePoint = value.codePointAt( i );
+            int length = Character.charCount( codePoint );
+            for ( byte b : value.substring( i, i + length ).getBytes( UTF_8 ) )
+                out.append( '%' ).append( HEX[ ( b >> 4 ) & 0xF ] ).append( HEX[ b & 0xF ] );
+            i += length;
+        }
+    }
+
+    private static boolean isAllowed( String value, int i, boolean allowReserved ) {
+        char c = value.charAt( i );
+        if ( ( c >= 'a' && c <= 'z' ) || ( c >= 'A' && c <= 'Z' ) || ( c >= '0' && c <= '9' ) ||
+            c == '-' || c == '.' || c == '_' || c == '~' )
+            return true;
+
+        if ( !allowReserved )
+            return false;
+
+        if ( c == '%' )
+            return i + 2 < value.length() && isHex( value.charAt( i + 1 ) ) && isHex( value.charAt( i + 2 ) );
+
+        return RESERVED.indexOf( c ) != -1;
+    }
+
+    private static boolean isHex( char c ) {
+        return ( c >= '0' && c <= '9' ) || ( c >= 'a' && c <= 'f' ) || ( c >= 'A' && c <= 'F' );
+    }
+}
@@ -0,0 +1,259 @@
+/**
+ * Copyright 2015 Derk-Jan Karrenbeld
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.xpbytes.gson.hal;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.URI;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Guards the number of bytes a deserialization allocates, as measured per thread by the JVM. The
+ * budgets are for the HAL binding only: the allocation of plain Gson reading the same document,
+ * which includes the reader and its buffer, is subtracted first.
+ *
+ * Most resources are static classes with a no-args constructor; the inner resources, which have
+ * none, are guarded by a budget of their own.
+ */
+@RunWith( JUnit4.class )
+public class HalAllocationTest {
+
+    private static final int WARMUP = 2000;
+    private static final int ITERATIONS = 500;
+
+    private static com.sun.management.ThreadMXBean threads;
+
+    private Gson gson;
+    private Gson plain;
+
+    @BeforeClass public static void setupThreads() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue( "Allocation measurement is not supported by this JVM",
+            bean instanceof com.sun.management.ThreadMXBean &&
+            ( (com.sun.management.ThreadMXBean)bean ).isThreadAllocatedMemorySupported() );
+
+        threads = (com.sun.management.ThreadMXBean)bean;
+        if ( !threads.isThreadAllocatedMemoryEnabled() )
+            threads.setThreadAllocatedMemoryEnabled( true );
+    }
+
+    @Before public void setup() {
+        gson = new GsonBuilder()
+            .registerTypeAdapterFactory( new HalTypeAdapterFactory() )
+            .create();
+        plain = new Gson();
+    }
+
+    @Test
+    public void smallResourceBudget() {
+        String gsonSerialized = "{ 'id': 'sample', 'count': 3, '_links': { 'self': { 'href': '/api/sample' }, " +
+            "'next': { 'href': '/api/sample/next' } }, '_embedded': { 'owner': { 'id': 324, " +
+            "'_links': { 'self': { 'href': '/api/owners/324' } } } } }";
+
+        assertBudget( gsonSerialized, HalSmallTestResource.class, 1, 1536 );
+    }
+
+    @Test
+    public void innerResourceBudget() {
+        String gsonSerialized = "{ 'id': 'sample', 'count': 3, '_links': { 'self': { 'href': '/api/sample' }, " +
+            "'next': { 'href': '/api/sample/next' } }, '_embedded': { 'owner': { 'id': 324, " +
+            "'_links': { 'self': { 'href': '/api/owners/324' } } } } }";
+
+        assertBudget( gsonSerialized, HalInnerSmallTestResource.class, 1, 1536 );
+    }
+
+    @Test
+    public void nestedResourceBudget() {
+        final int depth = 16;
+        StringBuilder gsonSerialized = new StringBuilder();
+        for ( int i = 0; i < depth; i++ ) {
+            gsonSerialized.append( String.format( Locale.US, "{ 'depth': %d, '_links': { 'self': { 'href': '/api/nodes/%d' } }", i, i ) );
+            if ( i + 1 < depth )
+                gsonSerialized.append( ", '_embedded': { 'child': " );
+        }
+        for ( int i = 0; i < depth; i++ )
+            gsonSerialized.append( i == 0 ? " }" : " } }" );
+
+        assertBudget( gsonSerialized.toString(), HalNestedTestResource.class, depth, 768 );
+    }
+
+    @Test
+    public void wideLinksBudget() {
+        final int links = 16;
+        StringBuilder gsonSerialized = new StringBuilder( "{ '_links': { " );
+        for ( int i = 0; i < links; i++ )
+            gsonSerialized.append( String.format( Locale.US, "%s'link%02d': { 'href': '/api/links/%d', 'title': 'Link' }",
+                i == 0 ? "" : ", ", i, i ) );
+        gsonSerialized.append( " } }" );
+
+        assertBudget( gsonSerialized.toString(), HalWideLinksTestResource.class, links, 512 );
+    }
+
+    @Test
+    public void largeCollectionBudget() {
+        final int items = 500;
+        StringBuilder gsonSerialized = new StringBuilder( "{ '_links': { 'self': { 'href': '/api/items' } }, '_embedded': { 'items': [ " );
+        for ( int i = 0; i < items; i++ )
+            gsonSerialized.append( String.format( Locale.US, "%s{ 'id': %d, '_links': { 'self': { 'href': '/api/items/%d' } } }",
+                i == 0 ? "" : ", ", i, i ) );
+        gsonSerialized.append( " ] } }" );
+
+        assertBudget( gsonSerialized.toString(), HalPageTestResource.class, items, 512 );
+    }
+
+    @Test
+    public void pollingBudget() {
+        final int items = 500;
+        StringBuilder gsonSerialized = new StringBuilder( "{ '_links': { 'self': { 'href': '/api/items' } }, '_embedded': { 'items': [ " );
+        for ( int i = 0; i < items; i++ )
+            gsonSerialized.append( String.format( Locale.US, "%s{ 'id': %d, '_links': { 'self': { 'href': '/api/items/%d' }, " +
+                "'edit': { 'href': '/api/items/%d/edit', 'title': 'Edit' } } }", i == 0 ? "" : ", ", i, i, i ) );
+        gsonSerialized.append( " ] } }" );
+        String json = gsonSerialized.toString();
+
+        final HalPolledPageTestResource page = gson.fromJson( json, HalPolledPageTestResource.class );
+        long readBytes = allocatedPerRead( gson, json, HalPolledPageTestResource.class );
+        long pollBytes = allocatedPerRead( new Read() {
+            @Override public void read( String json ) {
+                HalTypeAdapterFactory.readInto( gson, json, page );
+            }
+        }, json );
+
+        // What remains are the member names and values that the reader allocates as strings
+        long perItem = pollBytes / items;
+        assertTrue( String.format( Locale.US,
+            "Reading into a page allocates %d bytes per read, %d bytes per item, over the budget of 640",
+            pollBytes, perItem ), perItem <= 640 );
+        assertTrue( String.format( Locale.US,
+            "Reading into a page allocates %d bytes per read, not less than the %d of a new page",
+            pollBytes, readBytes ), pollBytes < readBytes );
+    }
+
+    /**
+     * Asserts that the HAL binding of a document allocates at most a number of bytes per resource,
+     * or per link for documents that are mostly links, on top of what plain Gson allocates for the
+     * same document
+     *
+     * @param json      the document
+     * @param type      the resource type
+     * @param count     the number of resources or links in the document
+     * @param budget    the budget per resource or link, in bytes
+     */
+    private void assertBudget( String json, Class<?> type, int count, long budget ) {
+        long plainBytes = allocatedPerRead( plain, json, type );
+        long halBytes = allocatedPerRead( gson, json, type );
+        long perItem = ( halBytes - plainBytes ) / count;
+
+        assertTrue( String.format( Locale.US,
+            "%s allocates %d bytes per read, %d more than plain Gson, which is %d bytes per item " +
+                "and over the budget of %d",
+            type.getSimpleName(), halBytes, halBytes - plainBytes, perItem, budget ),
+            perItem <= budget );
+    }
+
+    private static long allocatedPerRead( final Gson gson, String json, final Class<?> type ) {
+        return allocatedPerRead( new Read() {
+            @Override public void read( String json ) {
+                gson.fromJson( json, type );
+            }
+        }, json );
+    }
+
+    private static long allocatedPerRead( Read read, String json ) {
+        for ( int i = 0; i < WARMUP; i++ )
+            read.read( json );
+
+        long thread = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes( thread );
+        for ( int i = 0; i < ITERATIONS; i++ )
+            read.read( json );
+        return ( threads.getThreadAllocatedBytes( thread ) - before ) / ITERATIONS;
+    }
+
+    /**
+     * A read of a document
+     */
+    private interface Read {
+        void read( String json );
+    }
+
+    @HalResource static class HalOwnerTestResource {
+        int id;
+        @HalLink String self;
+    }
+
+    @HalResource static class HalSmallTestResource {
+        String id;
+        int count;
+        @HalLink String self;
+        @HalLink URI next;
+        @HalEmbed HalOwnerTestResource owner;
+    }
+
+    @HalResource class HalInnerOwnerTestResource {
+        int id;
+        @HalLink String self;
+    }
+
+    @HalResource class HalInnerSmallTestResource {
+        String id;
+        int count;
+        @HalLink String self;
+        @HalLink URI next;
+        @HalEmbed HalInnerOwnerTestResource owner;
+    }
+
+    @HalResource static class HalNestedTestResource {
+        int depth;
+        @HalLink String self;
+        @HalEmbed( optional = true ) HalNestedTestResource child;
+    }
+
+    @HalResource static class HalWideLinksTestResource {
+        @HalLink( optional = true ) HalLinkObject link00, link01, link02, link03, link04, link05, link06, link07;
+        @HalLink( optional = true ) HalLinkObject link08, link09, link10, link11, link12, link13, link14, link15;
+    }
+
+    @HalResource static class HalPolledTestResource {
+        int id;
+        @HalLink URI self;
+        @HalLink HalLinkObject edit;
+    }
+
+    @HalResource static class HalPolledPageTestResource {
+        @HalLink String self;
+        @HalEmbed List<HalPolledTestResource> items;
+    }
+
+    @HalResource static class HalPageTestResource {
+        @HalLink String self;
+        @HalEmbed List<HalOwnerTestResource> items;
+    }
+}
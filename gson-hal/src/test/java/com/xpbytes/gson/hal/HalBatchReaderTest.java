@@ -0,0 +1,215 @@
+/**
+ * Copyright 2015 Derk-Jan Karrenbeld
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.xpbytes.gson.hal;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonIOException;
+import com.google.gson.JsonParseException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertTrue;
+
+@RunWith( JUnit4.class )
+public class HalBatchReaderTest {
+
+    private Gson gson;
+    private ExecutorService executor;
+
+    @Before public void setup() {
+        gson = new GsonBuilder()
+            .registerTypeAdapterFactory( new HalTypeAdapterFactory() )
+            .create();
+        executor = Executors.newFixedThreadPool( 4 );
+    }
+
+    @After public void teardown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void readInOrder() {
+        Collecting callback = new Collecting();
+        HalBatchReport report = new HalBatchReader<>( gson, HalItemTestResource.class )
+            .setExecutor( executor )
+            .setChunkSize( 7 )
+            .read( new StringReader( lines( 1000 ) ), callback );
+
+        assertThat( report.getDocuments(), is( 1000L ) );
+        assertThat( report.getErrors(), is( 0L ) );
+        assertThat( callback.ids.size(), is( 1000 ) );
+        for ( int i = 0; i < 1000; i++ ) {
+            assertThat( callback.ids.get( i ), is( i ) );
+            assertThat( callback.lines.get( i ), is( i + 1L ) );
+        }
+    }
+
+    @Test
+    public void readUnordered() {
+        Collecting callback = new Collecting();
+        HalBatchReport report = new HalBatchReader<>( gson, HalItemTestResource.class )
+            .setExecutor( executor )
+            .setChunkSize( 3 )
+            .setOrdered( false )
+            .read( new ByteArrayInputStream( lines( 500 ).getBytes( Charset.forName( "UTF-8" ) ) ), callback );
+
+        assertThat( report.getDocuments(), is( 500L ) );
+
+        List<Integer> ids = new ArrayList<>( callback.ids );
+        Collections.sort( ids );
+        for ( int i = 0; i < 500; i++ )
+            assertThat( ids.get( i ), is( i ) );
+    }
+
+    @Test
+    public void reportErrorsPerLine() {
+        String input = "{ 'id': 1, '_links': { 'self': { 'href': '/api/items/1' } } }\n" +
+            "{ 'id': 2 }\n" +
+            "\n" +
+            "{ 'id': \n" +
+            "{ 'id': 5, '_links': { 'self': { 'href': '/api/items/5' } } }\n";
+
+        Collecting callback = new Collecting();
+        HalBatchReport report = new HalBatchReader<>( gson, HalItemTestResource.class )
+            .setExecutor( executor )
+            .setChunkSize( 2 )
+            .read( new StringReader( input ), callback );
+
+        assertThat( report.getDocuments(), is( 4L ) );
+        assertThat( report.getErrors(), is( 2L ) );
+        assertThat( callback.ids, is( Arrays.asList( 1, 5 ) ) );
+        assertThat( callback.lines, is( Arrays.asList( 1L, 5L ) ) );
+        assertThat( callback.errorLines, is( Arrays.asList( 2L, 4L ) ) );
+        assertThat( callback.errors.get( 0 ), is( instanceOf( JsonParseException.class ) ) );
+    }
+
+    @Test
+    public void boundInFlightChunks() {
+        final int maxInFlight = 2;
+        final AtomicInteger submitted = new AtomicInteger();
+        final int[] handedOver = { 0 };
+
+        new HalBatchReader<>( gson, HalItemTestResource.class )
+            .setExecutor( new Executor() {
+                @Override public void execute( Runnable command ) {
+                    submitted.incrementAndGet();
+                    executor.execute( command );
+                }
+            } )
+            .setChunkSize( 1 )
+            .setMaxInFlight( maxInFlight )
+            .read( new StringReader( lines( 200 ) ), new HalBatchReader.Callback<HalItemTestResource>() {
+                @Override public void onResource( long line, HalItemTestResource resource ) {
+                    assertTrue( submitted.get() <= handedOver[ 0 ] + maxInFlight );
+                    handedOver[ 0 ]++;
+                }
+
+                @Override public void onError( long line, String json, RuntimeException error ) {
+                    throw error;
+                }
+            } );
+
+        assertThat( handedOver[ 0 ], is( 200 ) );
+    }
+
+    @Test
+    public void decodeRejectedChunksOnReadingThread() {
+        final AtomicInteger submitted = new AtomicInteger();
+        Collecting callback = new Collecting();
+        HalBatchReport report = new HalBatchReader<>( gson, HalItemTestResource.class )
+            .setExecutor( new Executor() {
+                @Override public void execute( Runnable command ) {
+                    if ( submitted.incrementAndGet() % 2 == 0 )
+                        throw new RejectedExecutionException( "saturated" );
+                    executor.execute( command );
+                }
+            } )
+            .setChunkSize( 5 )
+            .read( new StringReader( lines( 100 ) ), callback );
+
+        assertThat( report.getDocuments(), is( 100L ) );
+        assertThat( callback.ids.size(), is( 100 ) );
+        for ( int i = 0; i < 100; i++ )
+            assertThat( callback.ids.get( i ), is( i ) );
+    }
+
+    @Test( expected = JsonIOException.class )
+    public void failOnUnreadableInput() {
+        new HalBatchReader<>( gson, HalItemTestResource.class )
+            .setExecutor( executor )
+            .read( new Reader() {
+                @Override public int read( char[] buffer, int offset, int length ) throws IOException {
+                    throw new IOException( "Broken input" );
+                }
+
+                @Override public void close() {}
+            }, new Collecting() );
+    }
+
+    private static String lines( int count ) {
+        StringBuilder out = new StringBuilder();
+        for ( int i = 0; i < count; i++ )
+            out.append( String.format( Locale.US, "{ 'id': %d, '_links': { 'self': { 'href': '/api/items/%d' } } }\n", i, i ) );
+        return out.toString();
+    }
+
+    private static final class Collecting implements HalBatchReader.Callback<HalItemTestResource> {
+        final List<Integer> ids = new ArrayList<>();
+        final List<Long> lines = new ArrayList<>();
+        final List<Long> errorLines = new ArrayList<>();
+        final List<RuntimeException> errors = new ArrayList<>();
+
+        @Override public void onResource( long line, HalItemTestResource resource ) {
+            ids.add( resource.id );
+            lines.add( line );
+        }
+
+        @Override public void onError( long line, String json, RuntimeException error ) {
+            errorLines.add( line );
+            errors.add( error );
+        }
+    }
+
+    @HalResource static class HalItemTestResource {
+        int id;
+        @HalLink String self;
+    }
+}
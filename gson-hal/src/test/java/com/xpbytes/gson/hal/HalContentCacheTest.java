@@ -0,0 +1,201 @@
+/**
+ * Copyright 2015 Derk-Jan Karrenbeld
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.xpbytes.gson.hal;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.xpbytes.gson.hal.HalPushParserFixtures.HalItemTestResource;
+import com.xpbytes.gson.hal.HalPushParserFixtures.HalPageTestResource;
+import com.xpbytes.gson.hal.HalPushParserFixtures.Recording;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.nio.charset.Charset;
+
+import static com.xpbytes.gson.hal.HalPushParserFixtures.feed;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+@RunWith( JUnit4.class )
+public class HalContentCacheTest {
+
+    private static final Charset UTF_8 = Charset.forName( "UTF-8" );
+
+    private static final String CURIES = "'curies': [ { 'name': 'ex', 'href': 'http://example.com/%s/{rel}', 'templated': true } ]";
+
+    private Gson gson;
+    private HalContentCache cache;
+
+    @Before public void setup() {
+        gson = new GsonBuilder()
+            .registerTypeAdapterFactory( new HalTypeAdapterFactory() )
+            .create();
+        cache = new HalContentCache( 64 );
+    }
+
+    @Test
+    public void reuseUnchangedDocument() {
+        String gsonSerialized = "{ 'total': 1, '_links': { 'self': { 'href': '/api/items' } } }";
+
+        HalPageTestResource first = cache.fromJson( gson, gsonSerialized, HalPageTestResource.class );
+        HalPageTestResource second = cache.fromJson( gson, gsonSerialized, HalPageTestResource.class );
+        HalPageTestResource changed = cache.fromJson( gson, gsonSerialized.replace( '1', '2' ), HalPageTestResource.class );
+
+        assertThat( second, is( sameInstance( first ) ) );
+        assertThat( changed, is( not( sameInstance( first ) ) ) );
+        assertThat( changed.total, is( 2 ) );
+        assertThat( cache.getHits(), is( 1L ) );
+        assertThat( cache.getMisses(), is( 2L ) );
+    }
+
+    @Test
+    public void readAgainWithOtherGson() {
+        String gsonSerialized = "{ '_links': { 'self': { 'href': '/api/items' } }, '_embedded': { 'other': { 'id': 1 } } }";
+        Gson projected = new GsonBuilder()
+            .registerTypeAdapterFactory( new HalTypeAdapterFactory().setProjection( HalProjection.ALL.withEmbeds() ) )
+            .create();
+
+        HalPageTestResource first = cache.fromJson( gson, gsonSerialized, HalPageTestResource.class );
+        HalPageTestResource other = cache.fromJson( projected, gsonSerialized, HalPageTestResource.class );
+
+        assertThat( other, is( not( sameInstance( first ) ) ) );
+        assertThat( other.other, is( (HalItemTestResource)null ) );
+    }
+
+    @Test
+    public void compareContentOnHashCollision() {
+        Object owner = new Object();
+        cache.put( 42, "{ 'id': 1 }", owner, null, "first" );
+        assertThat( cache.get( 42, "{ 'id': 2 }", owner, null ), is( (Object)null ) );
+        assertThat( cache.get( 42, "{ 'id': 1 }", owner, null ), is( (Object)"first" ) );
+
+        byte[] content = "{ 'id': 1 }".getBytes( UTF_8 );
+        cache.put( 43, content, content.length, owner, null, "bytes" );
+        byte[] collision = "{ 'id': 2 }".getBytes( UTF_8 );
+        assertThat( cache.get( 43, collision, collision.length, owner, null ), is( (Object)null ) );
+        assertThat( cache.get( 43, content, content.length, owner, null ), is( (Object)"bytes" ) );
+    }
+
+    @Test
+    public void readAgainWithOtherProjection() {
+        String gsonSerialized = "{ '_links': { 'self': { 'href': '/api/items' } }, '_embedded': { 'other': { 'id': 1 } } }";
+
+        HalPageTestResource first = cache.fromJson( gson, gsonSerialized, HalPageTestResource.class );
+        try ( HalProjection.Scope ignored = HalProjection.ALL.withEmbeds().open() ) {
+            HalPageTestResource projected = cache.fromJson( gson, gsonSerialized, HalPageTestResource.class );
+            assertThat( projected, is( not( sameInstance( first ) ) ) );
+            assertThat( projected.other, is( (HalItemTestResource)null ) );
+        }
+    }
+
+    @Test
+    public void reuseUnchangedItems() {
+        String page = "{ 'total': %d, '_links': { 'self': { 'href': '/api/items' } }, " +
+            "'_embedded': { 'other': { 'id': 0 }, 'items': [ { 'id': 1 }, { 'id': %d } ] } }";
+
+        Recording<HalPageTestResource, HalItemTestResource> first = parse( String.format( page, 2, 2 ) );
+        Recording<HalPageTestResource, HalItemTestResource> second = parse( String.format( page, 3, 3 ) );
+
+        assertThat( second.items.get( 0 ), is( sameInstance( first.items.get( 0 ) ) ) );
+        assertThat( second.items.get( 1 ), is( not( sameInstance( first.items.get( 1 ) ) ) ) );
+        assertThat( second.items.get( 1 ).id, is( 3 ) );
+        assertThat( second.resource.other, is( sameInstance( first.resource.other ) ) );
+        assertThat( second.resource, is( not( sameInstance( first.resource ) ) ) );
+        assertThat( second.resource.total, is( 3 ) );
+    }
+
+    @Test
+    public void reuseUnchangedPushedDocument() {
+        String page = "{ '_links': { 'self': { 'href': '/api/items' } }, '_embedded': { 'items': [ { 'id': 1 } ] } }";
+
+        Recording<HalPageTestResource, HalItemTestResource> first = parse( page );
+        Recording<HalPageTestResource, HalItemTestResource> second = parse( page );
+
+        assertThat( second.resource, is( sameInstance( first.resource ) ) );
+        assertThat( second.items.get( 0 ), is( sameInstance( first.items.get( 0 ) ) ) );
+    }
+
+    @Test
+    public void reuseDocumentFedInChunks() {
+        String page = "{ '_links': { 'self': { 'href': '/api/items' } }, 'total': 1 }";
+        HalPageTestResource first = parse( page ).resource;
+
+        Recording<HalPageTestResource, Void> listener = new Recording<>();
+        HalPushParser<HalPageTestResource, Void> parser =
+            HalPushParser.open( gson, HalPageTestResource.class, listener ).setContentCache( cache );
+        feed( parser, page.substring( 0, 20 ) );
+        feed( parser, page.substring( 20 ) + "  " );
+        feed( parser, "\n" );
+        parser.complete();
+
+        assertThat( listener.resource, is( sameInstance( first ) ) );
+        assertThat( parse( page.replace( '1', '2' ) ).resource, is( not( sameInstance( first ) ) ) );
+    }
+
+    @Test
+    public void bindItemsAgainWithOtherCuries() {
+        String page = "{ '_links': { 'self': { 'href': '/api/items' }, " + CURIES + " }, " +
+            "'_embedded': { 'items': [ { 'id': 1, '_links': { 'ex:owner': { 'href': '/api/owners/1' } } } ] } }";
+
+        Recording<HalPageTestResource, HalItemTestResource> first = parse( String.format( page, "rels" ) );
+        Recording<HalPageTestResource, HalItemTestResource> second = parse( String.format( page, "other" ) );
+
+        assertThat( first.items.get( 0 ).owner, is( "/api/owners/1" ) );
+        assertThat( second.items.get( 0 ), is( not( sameInstance( first.items.get( 0 ) ) ) ) );
+        assertThat( second.items.get( 0 ).owner, is( (String)null ) );
+    }
+
+    @Test
+    public void separateEmbedsWithSameContent() {
+        String page = "{ '_links': { 'self': { 'href': '/api/items' } }, " +
+            "'_embedded': { 'other': { 'id': 1 }, 'last': { 'id': 1 } } }";
+
+        HalPageTestResource resource = parse( page ).resource;
+        assertThat( resource.last, is( not( sameInstance( resource.other ) ) ) );
+        assertThat( parse( page ).resource.last, is( sameInstance( resource.last ) ) );
+    }
+
+    @Test( expected = IllegalStateException.class )
+    public void setCacheBeforeFeeding() {
+        HalPushParser<HalPageTestResource, Void> parser =
+            HalPushParser.open( gson, HalPageTestResource.class, new Recording<HalPageTestResource, Void>() );
+        feed( parser, "{ " );
+        parser.setContentCache( cache );
+    }
+
+    @Test( expected = IllegalArgumentException.class )
+    public void requirePositiveCapacity() {
+        new HalContentCache( 0 );
+    }
+
+    private Recording<HalPageTestResource, HalItemTestResource> parse( String json ) {
+        Recording<HalPageTestResource, HalItemTestResource> listener = new Recording<>();
+        HalPushParser<HalPageTestResource, HalItemTestResource> parser =
+            HalPushParser.open( gson, HalPageTestResource.class, "items", HalItemTestResource.class, listener )
+                .setContentCache( cache );
+        feed( parser, json );
+        parser.complete();
+
+        assertThat( listener.errors.size(), is( 0 ) );
+        return listener;
+    }
+}
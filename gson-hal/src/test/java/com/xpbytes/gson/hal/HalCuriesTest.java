@@ -0,0 +1,200 @@
+/**
+ * Copyright 2015 Derk-Jan Karrenbeld
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.xpbytes.gson.hal;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParser;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.List;
+import java.util.Locale;
+
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+@RunWith( JUnit4.class )
+public class HalCuriesTest {
+
+    private static final String ORDERS = "http://example.com/rels/orders";
+    private static final String CUSTOMER = "http://example.com/rels/customer";
+
+    private Gson gson;
+
+    @Before public void setup() {
+        gson = new GsonBuilder()
+            .registerTypeAdapterFactory( new HalTypeAdapterFactory() )
+            .create();
+    }
+
+    @Test
+    public void bindByRelationWithAnyPrefix() {
+        String first = "{ '_links': { 'curies': [ { 'name': 'ea', 'href': 'http://example.com/rels/{rel}', " +
+            "'templated': true } ], 'ea:orders': { 'href': '/orders' } } }";
+        String second = "{ '_links': { 'curies': [ { 'name': 'shop', 'href': 'http://example.com/rels/{rel}', " +
+            "'templated': true } ], 'shop:orders': { 'href': '/shop/orders' } } }";
+
+        assertThat( gson.fromJson( first, HalRelationTestResource.class ).orders, is( "/orders" ) );
+        assertThat( gson.fromJson( second, HalRelationTestResource.class ).orders, is( "/shop/orders" ) );
+    }
+
+    @Test
+    public void bindByRelationAndName() {
+        String relation = String.format( Locale.US, "{ '_links': { '%s': { 'href': '/orders' } } }", ORDERS );
+        String name = "{ '_links': { 'orders': { 'href': '/by/name' } } }";
+
+        assertThat( gson.fromJson( relation, HalRelationTestResource.class ).orders, is( "/orders" ) );
+        assertThat( gson.fromJson( name, HalRelationTestResource.class ).orders, is( "/by/name" ) );
+    }
+
+    @Test
+    public void bindBeforeCuries() {
+        String gsonSerialized = "{ '_links': { 'ea:orders': { 'href': '/orders' }, 'ea:other': { 'href': '/other' }, " +
+            "'curies': { 'name': 'ea', 'href': 'http://example.com/rels/{rel}', 'templated': true } } }";
+
+        HalRelationTestResource resource = gson.fromJson( gsonSerialized, HalRelationTestResource.class );
+        assertThat( resource.orders, is( "/orders" ) );
+        assertThat( resource.curies.size(), is( 1 ) );
+        assertThat( resource.curies.get( 0 ).getName(), is( "ea" ) );
+    }
+
+    @Test
+    public void inheritCuries() {
+        String gsonSerialized = "{ '_links': { 'curies': [ { 'name': 'ea', 'href': 'http://example.com/rels/{rel}', " +
+            "'templated': true } ] }, '_embedded': { 'order': { '_links': { 'ea:customer': { 'href': '/customers/1' }, " +
+            "'ea:orders': { 'href': '/customers/1/orders' } } } } }";
+
+        HalRelationTestResource resource = gson.fromJson( gsonSerialized, HalRelationTestResource.class );
+        assertThat( resource.orders, is( nullValue() ) );
+        assertThat( resource.order.customer, is( "/customers/1" ) );
+        assertThat( resource.order.orders, is( "/customers/1/orders" ) );
+    }
+
+    @Test
+    public void scopeCuriesToResource() {
+        String gsonSerialized = "{ '_embedded': { 'order': { '_links': { 'curies': [ { 'name': 'ea', " +
+            "'href': 'http://example.com/rels/{rel}', 'templated': true } ] } } }, " +
+            "'_links': { 'ea:orders': { 'href': '/orders' } } }";
+
+        HalRelationTestResource resource = gson.fromJson( gsonSerialized, HalRelationTestResource.class );
+        assertThat( resource.orders, is( nullValue() ) );
+    }
+
+    @Test
+    public void cacheExpandedRelations() {
+        HalCuries curies = HalCuries.parse( new JsonParser().parse(
+            "[ { 'name': 'ea', 'href': 'http://example.com/rels/{rel}', 'templated': true } ]" ), null );
+        HalCuries other = HalCuries.parse( new JsonParser().parse(
+            "{ 'name': 'ea', 'href': 'http://example.com/rels/{rel}', 'templated': true }" ), null );
+
+        String relation = HalCuries.expand( curies, "ea:orders" );
+        assertThat( relation, is( ORDERS ) );
+        assertThat( HalCuries.expand( other, "ea:orders" ), is( sameInstance( relation ) ) );
+        assertThat( HalCuries.expand( curies, "xx:orders" ), is( nullValue() ) );
+        assertThat( HalCuries.expand( curies, "orders" ), is( nullValue() ) );
+    }
+
+    @Test
+    public void detectCompactNames() {
+        assertThat( HalCuries.isCompact( "ea:orders" ), is( true ) );
+        assertThat( HalCuries.isCompact( "orders" ), is( false ) );
+        assertThat( HalCuries.isCompact( ":orders" ), is( false ) );
+        assertThat( HalCuries.isCompact( ORDERS ), is( false ) );
+    }
+
+    @Test
+    public void ignoreMalformedCuries() {
+        String gsonSerialized = "{ '_links': { 'curies': [ { 'name': 'xx', 'href': 'http://example.com/{rel', " +
+            "'templated': true }, { 'name': 'ea', 'href': 'http://example.com/rels/{rel}', 'templated': true } ], " +
+            "'xx:orders': { 'href': '/by/malformed' }, 'ea:orders': { 'href': '/orders' } } }";
+
+        HalRelationTestResource resource = gson.fromJson( gsonSerialized, HalRelationTestResource.class );
+        assertThat( resource.orders, is( "/orders" ) );
+        assertThat( resource.curies.size(), is( 2 ) );
+    }
+
+    @Test
+    public void bindCuriesWithoutRelations() {
+        String gsonSerialized = "{ '_links': { 'curies': [ { 'name': 'ea', 'href': 'http://example.com/rels/{rel}', " +
+            "'templated': true } ], 'self': { 'href': '/plain' } } }";
+
+        HalPlainTestResource resource = gson.fromJson( gsonSerialized, HalPlainTestResource.class );
+        assertThat( resource.self, is( "/plain" ) );
+        assertThat( resource.curies.size(), is( 1 ) );
+        assertThat( resource.curies.get( 0 ).getHref(), is( "http://example.com/rels/{rel}" ) );
+    }
+
+    @Test
+    public void detectReachableRelations() {
+        assertThat( HalTypeAdapter.bindsRelations( gson.getAdapter( HalPlainTestResource.class ) ), is( false ) );
+        assertThat( HalTypeAdapter.bindsRelations( gson.getAdapter( HalRecursiveTestResource.class ) ), is( false ) );
+        assertThat( HalTypeAdapter.bindsRelations( gson.getAdapter( HalOrderTestResource.class ) ), is( true ) );
+        assertThat( HalTypeAdapter.bindsRelations( gson.getAdapter( HalWrapperTestResource.class ) ), is( true ) );
+        assertThat( HalTypeAdapter.bindsRelations( gson.getAdapter( String.class ) ), is( false ) );
+    }
+
+    @Test
+    public void resolveRelationsBelowResourcesWithout() {
+        String gsonSerialized = "{ '_links': { 'curies': { 'name': 'ea', 'href': 'http://example.com/rels/{rel}', " +
+            "'templated': true } }, '_embedded': { 'order': { '_links': { 'ea:customer': { 'href': '/customers/1' } } } } }";
+
+        HalWrapperTestResource resource = gson.fromJson( gsonSerialized, HalWrapperTestResource.class );
+        assertThat( resource.order.customer, is( "/customers/1" ) );
+    }
+
+    @Test( expected = IllegalArgumentException.class )
+    public void rejectDuplicateRelations() {
+        gson.getAdapter( HalDuplicateRelationTestResource.class );
+    }
+
+    @HalResource class HalOrderTestResource {
+        @HalLink( rel = CUSTOMER, optional = true ) String customer;
+        @HalLink( rel = ORDERS, optional = true ) String orders;
+    }
+
+    @HalResource class HalRelationTestResource {
+        @HalLink( rel = ORDERS, optional = true ) String orders;
+        @HalLink( optional = true ) List<HalLinkObject> curies;
+        @HalEmbed( optional = true ) HalOrderTestResource order;
+    }
+
+    @HalResource class HalPlainTestResource {
+        @HalLink( optional = true ) String self;
+        @HalLink( optional = true ) List<HalLinkObject> curies;
+    }
+
+    @HalResource class HalWrapperTestResource {
+        @HalLink( optional = true ) String self;
+        @HalEmbed( optional = true ) HalOrderTestResource order;
+    }
+
+    @HalResource class HalRecursiveTestResource {
+        @HalLink( optional = true ) String self;
+        @HalEmbed( optional = true ) HalRecursiveTestResource parent;
+    }
+
+    @HalResource class HalDuplicateRelationTestResource {
+        @HalLink( rel = ORDERS, optional = true ) String orders;
+        @HalLink( rel = ORDERS, optional = true ) String otherOrders;
+    }
+}
@@ -0,0 +1,151 @@
+/**
+ * Copyright 2015 Derk-Jan Karrenbeld
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.xpbytes.gson.hal;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+@RunWith( JUnit4.class )
+public class HalDeduplicationTest {
+
+    private static final String ORDERS = "{ '_embedded': { 'orders': [ " +
+        "{ 'id': 1, '_embedded': { 'customer': { '_links': { 'self': { 'href': '/customers/7' } }, 'name': 'Ann' } } }, " +
+        "{ 'id': 2, '_embedded': { 'customer': { '_links': { 'self': { 'href': '/customers/8' } }, 'name': 'Bob' } } }, " +
+        "{ 'id': 3, '_embedded': { 'customer': { '_links': { 'self': { 'href': '/customers/7' } }, 'name': 'Other' } } } " +
+        "] } }";
+
+    @Test
+    public void shareRepeatedEmbeds() {
+        HalOrdersTestResource orders = gson( true ).fromJson( ORDERS, HalOrdersTestResource.class );
+
+        HalCustomerTestResource first = orders.orders.get( 0 ).customer;
+        assertThat( orders.orders.get( 2 ).customer, is( sameInstance( first ) ) );
+        assertThat( orders.orders.get( 1 ).customer, is( not( sameInstance( first ) ) ) );
+
+        // Everything after the links of a duplicate is skipped
+        assertThat( first.name, is( "Ann" ) );
+        assertThat( orders.orders.get( 2 ).id, is( 3 ) );
+    }
+
+    @Test
+    public void keepEmbedsByDefault() {
+        HalOrdersTestResource orders = gson( false ).fromJson( ORDERS, HalOrdersTestResource.class );
+
+        assertThat( orders.orders.get( 2 ).customer, is( not( sameInstance( orders.orders.get( 0 ).customer ) ) ) );
+        assertThat( orders.orders.get( 2 ).customer.name, is( "Other" ) );
+    }
+
+    @Test
+    public void scopeToSingleRead() {
+        Gson gson = gson( true );
+        HalOrdersTestResource first = gson.fromJson( ORDERS, HalOrdersTestResource.class );
+        HalOrdersTestResource second = gson.fromJson( ORDERS, HalOrdersTestResource.class );
+
+        assertThat( second.orders.get( 0 ).customer, is( not( sameInstance( first.orders.get( 0 ).customer ) ) ) );
+    }
+
+    @Test
+    public void shareOnlyResourcesOfTheSameType() {
+        String json = "{ '_embedded': { 'customer': { '_links': { 'self': { 'href': '/customers/7' } } }, " +
+            "'account': { '_links': { 'self': { 'href': '/customers/7' } }, 'balance': 12 } } }";
+        HalProfileTestResource profile = gson( true ).fromJson( json, HalProfileTestResource.class );
+
+        assertThat( profile.account.balance, is( 12 ) );
+        assertThat( profile.account.getHalSelfReference(), is( "/customers/7" ) );
+    }
+
+    @Test
+    public void keepEmbedsWithDepthLimitedProjection() {
+        Gson gson = new GsonBuilder()
+            .registerTypeAdapterFactory( new HalTypeAdapterFactory()
+                .setDeduplicateEmbeds( true )
+                .setProjection( HalProjection.ALL.withMaxEmbedDepth( 5 ) ) )
+            .create();
+        HalOrdersTestResource orders = gson.fromJson( ORDERS, HalOrdersTestResource.class );
+
+        assertThat( orders.orders.get( 2 ).customer.name, is( "Other" ) );
+    }
+
+    @Test
+    public void shareAcrossParallelItems() {
+        StringBuilder json = new StringBuilder( "{ '_embedded': { 'orders': [ " );
+        for ( int i = 0; i < 500; i++ ) {
+            json.append( i == 0 ? "" : ", " ).append( String.format( Locale.US,
+                "{ 'id': %d, '_embedded': { 'customer': { '_links': { 'self': { 'href': '/customers/%d' } } } } }",
+                i, i % 3 ) );
+        }
+        json.append( " ] } }" );
+
+        ExecutorService executor = Executors.newFixedThreadPool( 4 );
+        try {
+            Gson gson = new GsonBuilder()
+                .registerTypeAdapterFactory( new HalTypeAdapterFactory()
+                    .setDeduplicateEmbeds( true )
+                    .setParallelEmbeds( executor, 10 ) )
+                .create();
+            HalOrdersTestResource orders = gson.fromJson( json.toString(), HalOrdersTestResource.class );
+
+            for ( int i = 3; i < 500; i++ )
+                assertThat( orders.orders.get( i ).customer, is( sameInstance( orders.orders.get( i % 3 ).customer ) ) );
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static Gson gson( boolean deduplicate ) {
+        return new GsonBuilder()
+            .registerTypeAdapterFactory( new HalTypeAdapterFactory().setDeduplicateEmbeds( deduplicate ) )
+            .create();
+    }
+
+    @HalResource static class HalCustomerTestResource {
+        String name;
+        @HalLink String self;
+    }
+
+    @HalResource static class HalAccountTestResource extends HalResourceBase {
+        int balance;
+    }
+
+    @HalResource static class HalOrderTestResource {
+        int id;
+        @HalEmbed HalCustomerTestResource customer;
+    }
+
+    @HalResource static class HalOrdersTestResource {
+        @HalEmbed List<HalOrderTestResource> orders;
+    }
+
+    @HalResource static class HalProfileTestResource {
+        @HalEmbed HalCustomerTestResource customer;
+        @HalEmbed HalAccountTestResource account;
+    }
+}
@@ -0,0 +1,164 @@
+/**
+ * Copyright 2015 Derk-Jan Karrenbeld
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.xpbytes.gson.hal;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonIOException;
+import com.google.gson.JsonParseException;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+@RunWith( JUnit4.class )
+public class HalDiagnosticsTest {
+
+    private static final String VALID = "{ 'name': 'valid', '_links': { 'self': { 'href': '/api/valid' } }, " +
+        "'_embedded': { 'child': { '_links': { 'self': { 'href': '/api/valid/child' } } } } }";
+    private static final String MISSING_LINK = "{ 'name': 'invalid' }";
+
+    private Gson create( HalDiagnostics diagnostics ) {
+        return new GsonBuilder()
+            .registerTypeAdapterFactory( new HalTypeAdapterFactory().setDiagnostics( diagnostics ) )
+            .create();
+    }
+
+    @Test
+    public void captureSampledDocument() {
+        HalDiagnostics diagnostics = new HalDiagnostics( 4, 1, 1024 );
+        HalDiagnosticsTestResource deserialized = create( diagnostics ).fromJson( VALID, HalDiagnosticsTestResource.class );
+        assertThat( deserialized.child.self, is( "/api/valid/child" ) );
+
+        List<HalDiagnostics.Capture> captures = diagnostics.getCaptures();
+        assertThat( captures.size(), is( 1 ) );
+        assertThat( captures.get( 0 ).isFailure(), is( false ) );
+        assertThat( captures.get( 0 ).getType(), is( (Object)HalDiagnosticsTestResource.class ) );
+        assertThat( captures.get( 0 ).getPayload(), containsString( "/api/valid/child" ) );
+        assertThat( captures.get( 0 ).isTruncated(), is( false ) );
+    }
+
+    @Test
+    public void captureSampledFailure() {
+        HalDiagnostics diagnostics = new HalDiagnostics( 4, 1, 1024 );
+        try {
+            create( diagnostics ).fromJson( MISSING_LINK, HalDiagnosticsTestResource.class );
+        } catch ( JsonParseException ignored ) {}
+
+        List<HalDiagnostics.Capture> captures = diagnostics.getCaptures();
+        assertThat( captures.size(), is( 1 ) );
+        assertThat( captures.get( 0 ).isFailure(), is( true ) );
+        assertThat( captures.get( 0 ).getPayload(), containsString( "invalid" ) );
+    }
+
+    @Test
+    public void captureFailureWithoutPayloadWhenNotSampled() {
+        HalDiagnostics diagnostics = new HalDiagnostics( 4, 0, 1024 );
+        Gson gson = create( diagnostics );
+        gson.fromJson( VALID, HalDiagnosticsTestResource.class );
+        try {
+            gson.fromJson( MISSING_LINK, HalDiagnosticsTestResource.class );
+        } catch ( JsonParseException ignored ) {}
+
+        List<HalDiagnostics.Capture> captures = diagnostics.getCaptures();
+        assertThat( captures.size(), is( 1 ) );
+        assertThat( captures.get( 0 ).isFailure(), is( true ) );
+        assertThat( captures.get( 0 ).getError(), is( notNullValue() ) );
+        assertThat( captures.get( 0 ).getPayload(), is( nullValue() ) );
+    }
+
+    @Test
+    public void truncatePayloadAtByteCap() {
+        HalDiagnostics diagnostics = new HalDiagnostics( 4, 1, 10 );
+        create( diagnostics ).fromJson( VALID, HalDiagnosticsTestResource.class );
+
+        HalDiagnostics.Capture capture = diagnostics.getCaptures().get( 0 );
+        assertThat( capture.isTruncated(), is( true ) );
+        assertThat( capture.getPayload().length(), is( 10 ) );
+    }
+
+    @Test
+    public void truncatePayloadOnCharacterBoundary() {
+        String accented = VALID.replace( "valid'", "\u00e9\u00e9\u00e9'" );
+        HalDiagnostics diagnostics = new HalDiagnostics( 4, 1, 12 );
+        create( diagnostics ).fromJson( accented, HalDiagnosticsTestResource.class );
+        assertThat( diagnostics.getCaptures().get( 0 ).getPayload(), is( "{\"name\":\"\u00e9" ) );
+
+        String surrogates = VALID.replace( "valid'", "\ud83d\ude00'" );
+        diagnostics = new HalDiagnostics( 4, 1, 12 );
+        create( diagnostics ).fromJson( surrogates, HalDiagnosticsTestResource.class );
+        assertThat( diagnostics.getCaptures().get( 0 ).getPayload(), is( "{\"name\":\"" ) );
+        assertThat( diagnostics.getCaptures().get( 0 ).isTruncated(), is( true ) );
+    }
+
+    @Test
+    public void keepPayloadThatFitsExactly() {
+        HalDiagnostics diagnostics = new HalDiagnostics( 4, 1, 1024 );
+        create( diagnostics ).fromJson( VALID, HalDiagnosticsTestResource.class );
+        String payload = diagnostics.getCaptures().get( 0 ).getPayload();
+
+        diagnostics = new HalDiagnostics( 4, 1, payload.length() );
+        create( diagnostics ).fromJson( VALID, HalDiagnosticsTestResource.class );
+        assertThat( diagnostics.getCaptures().get( 0 ).getPayload(), is( payload ) );
+        assertThat( diagnostics.getCaptures().get( 0 ).isTruncated(), is( false ) );
+    }
+
+    @Test
+    public void captureWarningsApartFromDocuments() {
+        HalDiagnostics diagnostics = new HalDiagnostics( 4, 0, 1024 );
+        create( diagnostics ).fromJson( VALID, HalDiagnosticsTestResource.class );
+        assertThat( diagnostics.getCaptures().size(), is( 0 ) );
+
+        diagnostics.warn( HalDiagnosticsTestResource.class, new JsonIOException( "fallback" ) );
+        HalDiagnostics.Capture capture = diagnostics.getCaptures().get( 0 );
+        assertThat( capture.isWarning(), is( true ) );
+        assertThat( capture.isFailure(), is( false ) );
+        assertThat( capture.getPath(), is( nullValue() ) );
+        assertThat( capture.getError().getMessage(), is( "fallback" ) );
+    }
+
+    @Test
+    public void keepOnlyMostRecentCaptures() {
+        HalDiagnostics diagnostics = new HalDiagnostics( 2, 1, 1024 );
+        Gson gson = create( diagnostics );
+        for ( int i = 0; i < 5; i++ )
+            gson.fromJson( VALID.replace( "valid'", "valid" + i + "'" ), HalDiagnosticsTestResource.class );
+
+        List<HalDiagnostics.Capture> captures = diagnostics.getCaptures();
+        assertThat( captures.size(), is( 2 ) );
+        assertThat( captures.get( 0 ).getPayload(), containsString( "valid3" ) );
+        assertThat( captures.get( 1 ).getPayload(), containsString( "valid4" ) );
+
+        diagnostics.clear();
+        assertThat( diagnostics.getCaptures().size(), is( 0 ) );
+    }
+
+    @HalResource class SimpleEmbed { @HalLink public String self; }
+    @HalResource class HalDiagnosticsTestResource {
+        public String name;
+        @HalLink public String self;
+        @HalEmbed public SimpleEmbed child;
+    }
+}
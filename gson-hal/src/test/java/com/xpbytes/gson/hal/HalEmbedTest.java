@@ -26,6 +26,9 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Locale;
 
 import static org.hamcrest.CoreMatchers.notNullValue;
@@ -99,6 +102,42 @@ public class HalEmbedTest {
         assertThat( deserialized.overrideEmbed.self, is( doublyNamedLink ) );
     }
 
+    @Test
+    public void deserializeCollectionEmbed() {
+        String fooEmbed = "{ 'baz': 'foo', '_links': { 'self': { 'href': '/api/deserializeCollectionEmbed/foo' } } }";
+        String barEmbed = "{ 'baz': 'bar', '_links': { 'self': { 'href': '/api/deserializeCollectionEmbed/bar' } } }";
+        String gsonSerialized = String.format( Locale.US, "{ '_embedded': { 'items': [ %s, %s ] } }", fooEmbed, barEmbed );
+
+        HalEmbedCollectionTestResource deserialized = gson.fromJson( gsonSerialized, HalEmbedCollectionTestResource.class );
+        assertThat( deserialized.items.size(), is( 2 ) );
+        assertThat( deserialized.items.get( 0 ).baz, is( "foo" ) );
+        assertThat( deserialized.items.get( 1 ).baz, is( "bar" ) );
+        assertThat( deserialized.items.get( 1 ).self, is( "/api/deserializeCollectionEmbed/bar" ) );
+    }
+
+    @Test
+    public void deserializeSingleEmbedIntoCollection() {
+        String embed = "{ 'baz': 'foo', '_links': { 'self': { 'href': '/api/deserializeSingleEmbedIntoCollection' } } }";
+        String gsonSerialized = String.format( Locale.US, "{ '_embedded': { 'items': %s } }", embed );
+
+        HalEmbedCollectionTestResource deserialized = gson.fromJson( gsonSerialized, HalEmbedCollectionTestResource.class );
+        assertThat( deserialized.items.size(), is( 1 ) );
+        assertThat( deserialized.items.get( 0 ).baz, is( "foo" ) );
+    }
+
+    @Test
+    public void serializeCollectionEmbed() {
+        HalEmbedCollectionTestResource resource = new HalEmbedCollectionTestResource();
+        resource.items = new ArrayList<>();
+        for ( String baz : Arrays.asList( "foo", "bar" ) ) {
+            SimpleEmbed embed = new SimpleEmbed();
+            embed.baz = baz;
+            resource.items.add( embed );
+        }
+
+        assertThat( gson.toJson( resource ), is( "{\"_embedded\":{\"items\":[{\"baz\":\"foo\"},{\"baz\":\"bar\"}]}}" ) );
+    }
+
     @Test
     public void deserializeMissingOptionalEmbed() {
         String requiredBaz = "requiredBarBaz";
@@ -152,6 +191,7 @@ public class HalEmbedTest {
 
     @HalResource class SimpleEmbed { public String baz; @HalLink public String self; }
     @HalResource class HalEmbedTestResource { @HalEmbed public SimpleEmbed simpleEmbed; }
+    @HalResource class HalEmbedCollectionTestResource { @HalEmbed public List<SimpleEmbed> items; }
     @HalResource class HalEmbedMultipleTestResource {
         @HalEmbed public SimpleEmbed foo;
         @HalEmbed public SimpleEmbed bar;
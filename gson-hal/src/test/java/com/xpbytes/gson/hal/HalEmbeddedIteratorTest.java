@@ -0,0 +1,188 @@
+/**
+ * Copyright 2015 Derk-Jan Karrenbeld
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.xpbytes.gson.hal;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonSyntaxException;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.List;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+@RunWith( JUnit4.class )
+public class HalEmbeddedIteratorTest {
+
+    private Gson gson;
+
+    @Before public void setup() {
+        gson = new GsonBuilder()
+            .registerTypeAdapterFactory( new HalTypeAdapterFactory() )
+            .create();
+    }
+
+    @Test
+    public void iterateEmbeddedItems() throws IOException {
+        String gsonSerialized = "{ 'total': 2, '_links': { 'self': { 'href': '/api/items' } }, " +
+            "'_embedded': { 'items': [ { 'id': 1 }, { 'id': 2 } ] }, 'page': 1 }";
+
+        try ( HalEmbeddedIterator<HalPageTestResource, HalItemTestResource> items =
+                  HalEmbeddedIterator.open( gson, new StringReader( gsonSerialized ), HalPageTestResource.class,
+                      "items", HalItemTestResource.class ) ) {
+            HalPageTestResource page = items.getResource();
+            assertThat( page.total, is( 2 ) );
+            assertThat( page.self, is( "/api/items" ) );
+            assertThat( page.page, is( 0 ) );
+
+            assertThat( items.next().id, is( 1 ) );
+            assertThat( items.next().id, is( 2 ) );
+            assertThat( items.hasNext(), is( false ) );
+
+            assertThat( page.page, is( 1 ) );
+            assertThat( page.items, is( nullValue() ) );
+        }
+    }
+
+    @Test
+    public void iterateSingleEmbeddedItem() throws IOException {
+        String gsonSerialized = "{ '_embedded': { 'other': { 'id': 0 }, 'items': { 'id': 1 }, 'last': { 'id': 2 } }, " +
+            "'_links': { 'self': { 'href': '/api/single' } } }";
+
+        try ( HalEmbeddedIterator<HalPageTestResource, HalItemTestResource> items =
+                  HalEmbeddedIterator.open( gson, new StringReader( gsonSerialized ), HalPageTestResource.class,
+                      "items", HalItemTestResource.class ) ) {
+            assertThat( items.getResource().other.id, is( 0 ) );
+            assertThat( items.next().id, is( 1 ) );
+            assertThat( items.hasNext(), is( false ) );
+            assertThat( items.getResource().last.id, is( 2 ) );
+            assertThat( items.getResource().self, is( "/api/single" ) );
+        }
+    }
+
+    @Test( expected = NoSuchElementException.class )
+    public void iterateMissingEmbed() throws IOException {
+        String gsonSerialized = "{ '_links': { 'self': { 'href': '/api/missing' } } }";
+
+        try ( HalEmbeddedIterator<HalPageTestResource, HalItemTestResource> items =
+                  HalEmbeddedIterator.open( gson, new StringReader( gsonSerialized ), HalPageTestResource.class,
+                      "items", HalItemTestResource.class ) ) {
+            assertThat( items.hasNext(), is( false ) );
+            assertThat( items.getResource().self, is( "/api/missing" ) );
+            items.next();
+        }
+    }
+
+    @Test( expected = JsonParseException.class )
+    public void iterateVerifiesRequiredLinks() {
+        String gsonSerialized = "{ '_embedded': { 'items': [ { 'id': 1 } ] } }";
+
+        HalEmbeddedIterator<HalPageTestResource, HalItemTestResource> items =
+            HalEmbeddedIterator.open( gson, new StringReader( gsonSerialized ), HalPageTestResource.class,
+                "items", HalItemTestResource.class );
+        while ( items.hasNext() )
+            items.next();
+    }
+
+    @Test( expected = JsonSyntaxException.class )
+    public void iterateMalformedItems() {
+        String gsonSerialized = "{ '_embedded': { 'items': [ { 'id': 1 }, { 'id': } ] } }";
+
+        HalEmbeddedIterator<HalPageTestResource, HalItemTestResource> items =
+            HalEmbeddedIterator.open( gson, new StringReader( gsonSerialized ), HalPageTestResource.class,
+                "items", HalItemTestResource.class );
+        while ( items.hasNext() )
+            items.next();
+    }
+
+    @Test( expected = IllegalArgumentException.class )
+    public void openRequiresResource() {
+        HalEmbeddedIterator.open( gson, new StringReader( "{}" ), String.class, "items", HalItemTestResource.class );
+    }
+
+    @Test
+    public void iterateLargePage() throws IOException {
+        final int count = 200000;
+
+        try ( HalEmbeddedIterator<HalPageTestResource, HalItemTestResource> items =
+                  HalEmbeddedIterator.open( gson, new GeneratedPageReader( count ), HalPageTestResource.class,
+                      "items", HalItemTestResource.class ) ) {
+            int expected = 0;
+            while ( items.hasNext() )
+                assertThat( items.next().id, is( expected++ ) );
+
+            assertThat( expected, is( count ) );
+            assertThat( items.getResource().total, is( count ) );
+        }
+    }
+
+    /**
+     * Generates a page with a number of items as it is read, so the document never exists in memory
+     */
+    private static final class GeneratedPageReader extends Reader {
+        private final int count;
+        private int item = -1;
+        private String chunk;
+        private int position;
+
+        GeneratedPageReader( int count ) {
+            this.count = count;
+            this.chunk = String.format( Locale.US,
+                "{ \"total\": %d, \"_links\": { \"self\": { \"href\": \"/api/large\" } }, \"_embedded\": { \"items\": [",
+                count );
+        }
+
+        @Override public int read( char[] buffer, int offset, int length ) {
+            if ( position == chunk.length() ) {
+                if ( ++item > count )
+                    return -1;
+
+                chunk = item == count ? "] } }" : String.format( Locale.US, "%s{ \"id\": %d }", item == 0 ? "" : ",", item );
+                position = 0;
+            }
+
+            int read = Math.min( length, chunk.length() - position );
+            chunk.getChars( position, position + read, buffer, offset );
+            position += read;
+            return read;
+        }
+
+        @Override public void close() {}
+    }
+
+    @HalResource class HalItemTestResource { public int id; }
+    @HalResource class HalPageTestResource {
+        public int total;
+        public int page;
+        @HalLink public String self;
+        @HalEmbed( optional = true ) public List<HalItemTestResource> items;
+        @HalEmbed( optional = true ) public HalItemTestResource other;
+        @HalEmbed( optional = true ) public HalItemTestResource last;
+    }
+}
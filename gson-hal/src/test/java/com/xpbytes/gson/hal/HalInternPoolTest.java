@@ -0,0 +1,119 @@
+/**
+ * Copyright 2015 Derk-Jan Karrenbeld
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.xpbytes.gson.hal;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.net.URI;
+import java.util.Locale;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+@RunWith( JUnit4.class )
+public class HalInternPoolTest {
+
+    private HalInternPool pool;
+    private Gson gson;
+
+    @Before public void setup() {
+        pool = new HalInternPool( 64 );
+        gson = new GsonBuilder()
+            .registerTypeAdapterFactory( new HalTypeAdapterFactory().setInternPool( pool ) )
+            .create();
+    }
+
+    @Test
+    public void internLinksAcrossResources() {
+        String gsonSerialized = "{ '_links': { 'self': { 'href': '/api/items' }, " +
+            "'uri': { 'href': '/api/uri' }, " +
+            "'profile': { 'href': '/api/profile', 'profile': '/profiles/item', 'type': 'application/hal+json' } } }";
+
+        HalInternTestResource first = gson.fromJson( gsonSerialized, HalInternTestResource.class );
+        HalInternTestResource second = gson.fromJson( gsonSerialized, HalInternTestResource.class );
+
+        assertThat( second.self, is( sameInstance( first.self ) ) );
+        assertThat( second.uri, is( sameInstance( first.uri ) ) );
+        assertThat( second.profile.getHref(), is( sameInstance( first.profile.getHref() ) ) );
+        assertThat( second.profile.getType(), is( sameInstance( first.profile.getType() ) ) );
+        assertThat( second.profile.getProfile(), is( sameInstance( first.profile.getProfile() ) ) );
+        assertThat( pool.getMisses(), is( 6L ) );
+        assertThat( pool.getHits(), is( 7L ) );
+    }
+
+    @Test
+    public void countHitsAndMisses() {
+        String first = new String( "/api/first" );
+        assertThat( pool.intern( first ), is( sameInstance( first ) ) );
+        assertThat( pool.intern( new String( "/api/first" ) ), is( sameInstance( first ) ) );
+
+        URI uri = pool.toUri( "/api/first" );
+        assertThat( pool.toUri( "/api/first" ), is( sameInstance( uri ) ) );
+        assertThat( pool.intern( URI.create( "/api/first" ) ), is( sameInstance( uri ) ) );
+
+        // Parsing the URI interned its href, which was already pooled
+        assertThat( pool.getMisses(), is( 2L ) );
+        assertThat( pool.getHits(), is( 4L ) );
+
+        pool.clear();
+        assertThat( pool.getHits(), is( 0L ) );
+        assertThat( pool.intern( new String( "/api/first" ) ), is( not( sameInstance( first ) ) ) );
+    }
+
+    @Test
+    public void boundedCapacity() {
+        HalInternPool bounded = new HalInternPool( 100 );
+        assertThat( bounded.getCapacity(), is( 128 ) );
+
+        for ( int i = 0; i < 10000; i++ )
+            bounded.intern( String.format( Locale.US, "/api/items/%d", i ) );
+
+        int pooled = 0;
+        for ( int i = 0; i < 10000; i++ ) {
+            String value = String.format( Locale.US, "/api/items/%d", i );
+            if ( bounded.intern( value ) != value )
+                pooled++;
+        }
+        assertThat( pooled <= bounded.getCapacity(), is( true ) );
+    }
+
+    @Test
+    public void internNull() {
+        assertThat( pool.intern( (String)null ), is( equalTo( null ) ) );
+        assertThat( pool.intern( (URI)null ), is( equalTo( null ) ) );
+    }
+
+    @Test( expected = IllegalArgumentException.class )
+    public void invalidCapacityFails() {
+        new HalInternPool( 0 );
+    }
+
+    @HalResource class HalInternTestResource {
+        @HalLink public String self;
+        @HalLink public URI uri;
+        @HalLink public HalLinkObject profile;
+    }
+}
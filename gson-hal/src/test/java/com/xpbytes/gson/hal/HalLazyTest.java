@@ -0,0 +1,214 @@
+/**
+ * Copyright 2015 Derk-Jan Karrenbeld
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.xpbytes.gson.hal;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonObject;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+@RunWith( JUnit4.class )
+public class HalLazyTest {
+
+    private static final String LAZY_RESOURCE = "{ 'name': 'lazy', " +
+        "'_embedded': { 'child': { 'baz': 'child', '_links': { 'self': { 'href': '/api/child' } } }, " +
+        "'children': [ { 'baz': 'first' }, { 'baz': 'second' } ] } }";
+    private static final String NODES = "{ '_embedded': { " +
+        "'owner': { '_links': { 'self': { 'href': '/api/nodes/2' } } }, " +
+        "'child': { '_links': { 'self': { 'href': '/api/nodes/1' } }, " +
+        "'_embedded': { 'next': { '_links': { 'self': { 'href': '/api/nodes/2' } } } } } } }";
+
+    private Gson gson;
+
+    @Before public void setup() {
+        gson = new GsonBuilder()
+            .registerTypeAdapterFactory( new HalTypeAdapterFactory() )
+            .create();
+    }
+
+    @Test
+    public void deserializeLazily() {
+        HalLazyTestResource deserialized = gson.fromJson( LAZY_RESOURCE, HalLazyTestResource.class );
+        assertThat( deserialized.name, is( "lazy" ) );
+        assertThat( deserialized.child.isDecoded(), is( false ) );
+
+        SimpleEmbed child = deserialized.child.get();
+        assertThat( deserialized.child.isDecoded(), is( true ) );
+        assertThat( child.baz, is( "child" ) );
+        assertThat( child.self, is( "/api/child" ) );
+        assertThat( deserialized.child.get(), is( sameInstance( child ) ) );
+
+        assertThat( deserialized.children.get().size(), is( 2 ) );
+        assertThat( deserialized.children.get().get( 1 ).baz, is( "second" ) );
+        assertThat( deserialized.missing, is( nullValue() ) );
+    }
+
+    @Test
+    public void decodeOnceAcrossThreads() throws Exception {
+        final HalLazyTestResource deserialized = gson.fromJson( LAZY_RESOURCE, HalLazyTestResource.class );
+        ExecutorService executor = Executors.newFixedThreadPool( 4 );
+        try {
+            List<Future<SimpleEmbed>> futures = new ArrayList<>();
+            for ( int i = 0; i < 16; i++ ) {
+                futures.add( executor.submit( new Callable<SimpleEmbed>() {
+                    @Override public SimpleEmbed call() {
+                        return deserialized.child.get();
+                    }
+                } ) );
+            }
+
+            SimpleEmbed first = futures.get( 0 ).get();
+            for ( Future<SimpleEmbed> future : futures )
+                assertThat( future.get(), is( sameInstance( first ) ) );
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void serializeWithoutDecoding() {
+        HalLazyTestResource deserialized = gson.fromJson( LAZY_RESOURCE, HalLazyTestResource.class );
+        String serialized = gson.toJson( deserialized );
+
+        assertThat( deserialized.child.isDecoded(), is( false ) );
+        HalLazyTestResource roundTrip = gson.fromJson( serialized, HalLazyTestResource.class );
+        assertThat( roundTrip.child.get().self, is( "/api/child" ) );
+        assertThat( roundTrip.children.get().get( 0 ).baz, is( "first" ) );
+    }
+
+    @Test
+    public void serializeTreeWithoutDecoding() {
+        HalLazyTestResource deserialized = gson.fromJson( LAZY_RESOURCE, HalLazyTestResource.class );
+        JsonObject tree = gson.toJsonTree( deserialized ).getAsJsonObject();
+
+        assertThat( deserialized.child.isDecoded(), is( false ) );
+        JsonObject embedded = tree.getAsJsonObject( "_embedded" );
+        assertThat( embedded.getAsJsonObject( "child" ).get( "baz" ).getAsString(), is( "child" ) );
+        assertThat( embedded.getAsJsonArray( "children" ).size(), is( 2 ) );
+    }
+
+    @Test
+    public void snapshotResourcesOfRead() {
+        HalReadContext context = new HalReadContext( HalProjection.ALL, true );
+        context.resources.put( "/api/nodes/1", "first" );
+
+        HalReadContext snapshot = context.snapshot();
+        assertThat( context.snapshot().resources, is( sameInstance( snapshot.resources ) ) );
+        context.resources.put( "/api/nodes/2", "second" );
+        assertThat( context.resources instanceof HashMap, is( true ) );
+        assertThat( snapshot.resources.size(), is( 1 ) );
+
+        HalReadContext resumed = snapshot.resume();
+        resumed.resources.put( "/api/nodes/3", "third" );
+        assertThat( resumed.resources.get( "/api/nodes/1" ), is( (Object)"first" ) );
+        assertThat( snapshot.resources.size(), is( 1 ) );
+        assertThat( context.snapshot().resources.size(), is( 2 ) );
+    }
+
+    @Test
+    public void serializeDecodedValue() {
+        SimpleEmbed child = new SimpleEmbed();
+        child.baz = "of";
+        child.self = "/api/of";
+
+        HalLazyTestResource resource = new HalLazyTestResource();
+        resource.child = HalLazy.of( child );
+
+        HalLazyTestResource roundTrip = gson.fromJson( gson.toJson( resource ), HalLazyTestResource.class );
+        assertThat( roundTrip.child.get().baz, is( "of" ) );
+        assertThat( roundTrip.child.get().self, is( "/api/of" ) );
+    }
+
+    @Test
+    public void decodeWithCuriesOfDocument() {
+        String document = "{ '_links': { 'curies': { 'name': 'ea', 'href': 'http://example.com/rels/{rel}', " +
+            "'templated': true } }, '_embedded': { 'order': { '_links': { 'ea:orders': { 'href': '/orders' } } } } }";
+
+        HalLazyCuriesTestResource deserialized = gson.fromJson( document, HalLazyCuriesTestResource.class );
+        assertThat( deserialized.order.get().orders, is( "/orders" ) );
+    }
+
+    @Test
+    public void decodeWithProjectionOfRead() {
+        Gson projected = new GsonBuilder()
+            .registerTypeAdapterFactory( new HalTypeAdapterFactory()
+                .setProjection( HalProjection.ALL.withMaxEmbedDepth( 1 ) ) )
+            .create();
+
+        HalLazyNodeTestResource deserialized = projected.fromJson( NODES, HalLazyNodeTestResource.class );
+        assertThat( deserialized.child.get().self, is( "/api/nodes/1" ) );
+        assertThat( deserialized.child.get().next, is( nullValue() ) );
+    }
+
+    @Test
+    public void decodeIntoResourcesOfRead() {
+        HalResourceCache cache = new HalResourceCache( 16, HalResourceCache.EvictionPolicy.LRU );
+        Gson shared = new GsonBuilder()
+            .registerTypeAdapterFactory( new HalTypeAdapterFactory()
+                .setDeduplicateEmbeds( true )
+                .setResourceCache( cache ) )
+            .create();
+
+        HalLazyNodeTestResource deserialized = shared.fromJson( NODES, HalLazyNodeTestResource.class );
+        HalNodeTestResource child = deserialized.child.get();
+        assertThat( child.next, is( sameInstance( deserialized.owner ) ) );
+        assertThat( cache.get( "/api/nodes/1", HalNodeTestResource.class ), is( sameInstance( child ) ) );
+    }
+
+    @HalResource static class HalRelationEmbed {
+        @HalLink( rel = "http://example.com/rels/orders", optional = true ) public String orders;
+    }
+    @HalResource static class HalLazyCuriesTestResource {
+        @HalEmbed public HalLazy<HalRelationEmbed> order;
+    }
+    @HalResource static class HalLeafTestResource {
+        @HalLink( optional = true ) public String self;
+    }
+    @HalResource static class HalNodeTestResource {
+        @HalLink( optional = true ) public String self;
+        @HalEmbed( optional = true ) public HalLeafTestResource next;
+    }
+    @HalResource static class HalLazyNodeTestResource {
+        @HalEmbed( optional = true ) public HalLeafTestResource owner;
+        @HalEmbed public HalLazy<HalNodeTestResource> child;
+    }
+
+    @HalResource static class SimpleEmbed { public String baz; @HalLink( optional = true ) public String self; }
+    @HalResource static class HalLazyTestResource {
+        public String name;
+        @HalEmbed public HalLazy<SimpleEmbed> child;
+        @HalEmbed( optional = true ) public HalLazy<List<SimpleEmbed>> children;
+        @HalEmbed( optional = true ) public HalLazy<SimpleEmbed> missing;
+    }
+}
@@ -0,0 +1,128 @@
+/**
+ * Copyright 2015 Derk-Jan Karrenbeld
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.xpbytes.gson.hal;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.openjdk.jol.info.ClassLayout;
+import org.openjdk.jol.info.GraphLayout;
+
+import java.net.URI;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+@RunWith( JUnit4.class )
+public class HalLinkObjectTest {
+
+    private Gson gson;
+
+    @Before public void setup() {
+        gson = new GsonBuilder()
+            .registerTypeAdapterFactory( new HalTypeAdapterFactory() )
+            .create();
+    }
+
+    @Test
+    public void deserializeAllAttributes() {
+        String gsonSerialized = "{ 'href': '/api/{id}', 'templated': true, 'type': 'application/hal+json', " +
+            "'name': 'item', 'profile': '/profiles/item', 'deprecation': '/deprecations/item', " +
+            "'title': 'Item', 'hreflang': 'en', 'unknown': [ 1 ] }";
+
+        HalLinkObject link = gson.fromJson( gsonSerialized, HalLinkObject.class );
+        assertThat( link.getHref(), is( "/api/{id}" ) );
+        assertThat( link.isTemplated(), is( true ) );
+        assertThat( link.getType(), is( "application/hal+json" ) );
+        assertThat( link.getName(), is( "item" ) );
+        assertThat( link.getProfile(), is( URI.create( "/profiles/item" ) ) );
+        assertThat( link.getDeprecation(), is( URI.create( "/deprecations/item" ) ) );
+        assertThat( link.getTitle(), is( "Item" ) );
+        assertThat( link.getHreflang(), is( "en" ) );
+    }
+
+    @Test
+    public void serializeOnlyPresentAttributes() {
+        HalLinkObject link = new HalLinkObject( "/api/1" );
+        assertThat( gson.toJson( link ), is( "{\"href\":\"/api/1\",\"templated\":false}" ) );
+
+        link.setTitle( "One" );
+        link.setTemplated( true );
+        assertThat( gson.toJson( link ), is( "{\"href\":\"/api/1\",\"templated\":true,\"title\":\"One\"}" ) );
+    }
+
+    @Test
+    public void unsetAttributes() {
+        HalLinkObject link = new HalLinkObject( "/api/1" );
+        link.setName( "one" );
+        link.setName( null );
+        link.setTemplated( true );
+        link.setTemplated( false );
+
+        assertThat( link.getName(), is( nullValue() ) );
+        assertThat( link.isTemplated(), is( false ) );
+    }
+
+    @Test
+    public void bindSubclassFields() {
+        String gsonSerialized = "{ '_links': { 'item': { 'href': '/api/1', 'title': 'One', 'method': 'PUT' } } }";
+
+        HalMethodLinkTestResource deserialized = gson.fromJson( gsonSerialized, HalMethodLinkTestResource.class );
+        assertThat( deserialized.item.getHref(), is( "/api/1" ) );
+        assertThat( deserialized.item.getTitle(), is( "One" ) );
+        assertThat( deserialized.item.method, is( "PUT" ) );
+        assertThat( gson.toJson( deserialized.item ),
+            is( equalTo( "{\"href\":\"/api/1\",\"templated\":false,\"title\":\"One\",\"method\":\"PUT\"}" ) ) );
+    }
+
+    @Test
+    public void compactFootprint() {
+        HalLinkObject compact = new HalLinkObject( "/api/1" );
+        LegacyLinkObject legacy = new LegacyLinkObject();
+        legacy.href = compact.getHref();
+
+        long compactSize = ClassLayout.parseClass( HalLinkObject.class ).instanceSize();
+        long legacySize = ClassLayout.parseClass( LegacyLinkObject.class ).instanceSize();
+        assertThat( compactSize < legacySize, is( true ) );
+
+        // The href is shared, so the graphs only differ in the link objects themselves
+        assertThat( GraphLayout.parseInstance( compact ).totalSize() -
+            GraphLayout.parseInstance( legacy ).totalSize(), is( compactSize - legacySize ) );
+    }
+
+    /** The layout of a link before it was made compact, with a field per attribute */
+    @SuppressWarnings( "unused" )
+    static class LegacyLinkObject {
+        String href;
+        boolean templated;
+        String type;
+        String name;
+        URI profile;
+        URI deprecation;
+        String title;
+        String hreflang;
+    }
+
+    public static class MethodLinkObject extends HalLinkObject { public String method; }
+    @HalResource class HalMethodLinkTestResource { @HalLink public MethodLinkObject item; }
+}
@@ -27,8 +27,15 @@ import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
 
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Locale;
+import java.util.Set;
 
+import static org.hamcrest.CoreMatchers.containsString;
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.hamcrest.CoreMatchers.notNullValue;
 import static org.hamcrest.CoreMatchers.nullValue;
@@ -136,9 +143,79 @@ public class HalLinkTest {
         gson.fromJson( gsonSerialized, HalLinkOptionalTestResource.class );
     }
 
+    @Test
+    public void deserializeCharSequenceLink() {
+        String link = "/api/deserializeCharSequenceLink";
+        String gsonSerialized = String.format( Locale.US, "{ '_links': { 'charSequenceLink': { 'href' : '%s' } } }", link );
+
+        HalLinkCharSequenceTestResource deserialized = gson.fromJson( gsonSerialized, HalLinkCharSequenceTestResource.class );
+        assertThat( deserialized.charSequenceLink.toString(), equalTo( link ) );
+    }
+
+    @Test
+    public void deserializeFinalLink() {
+        String link = "/api/deserializeFinalLink";
+        String gsonSerialized = String.format( Locale.US, "{ '_links': { 'finalLink': { 'href' : '%s' } } }", link );
+
+        HalLinkFinalTestResource deserialized = gson.fromJson( gsonSerialized, HalLinkFinalTestResource.class );
+        assertThat( deserialized.finalLink, equalTo( link ) );
+    }
+
+    @Test
+    public void deserializeCollectionLinks() {
+        String first = "/api/deserializeCollectionLinks/1";
+        String second = "/api/deserializeCollectionLinks/2";
+        String gsonSerialized = String.format( Locale.US,
+            "{ '_links': { 'items': [ { 'href': '%s' }, { 'href': '%s' } ], " +
+                "'uris': [ { 'href': '%s' } ], 'linkObjects': [ { 'href': '%s', 'templated': true } ] } }",
+            first, second, first, second );
+
+        HalLinkCollectionTestResource deserialized = gson.fromJson( gsonSerialized, HalLinkCollectionTestResource.class );
+        assertThat( deserialized.items, is( equalTo( Arrays.asList( first, second ) ) ) );
+        assertThat( deserialized.uris, is( equalTo( Collections.singleton( URI.create( first ) ) ) ) );
+        assertThat( deserialized.linkObjects.size(), is( 1 ) );
+        assertThat( deserialized.linkObjects.get( 0 ).getHref(), is( second ) );
+        assertThat( deserialized.linkObjects.get( 0 ).isTemplated(), is( true ) );
+    }
+
+    @Test
+    public void deserializeSingleLinkIntoCollection() {
+        String link = "/api/deserializeSingleLinkIntoCollection";
+        String gsonSerialized = String.format( Locale.US, "{ '_links': { 'items': { 'href': '%s' } } }", link );
+
+        HalLinkCollectionTestResource deserialized = gson.fromJson( gsonSerialized, HalLinkCollectionTestResource.class );
+        assertThat( deserialized.items, is( equalTo( Collections.singletonList( link ) ) ) );
+        assertThat( deserialized.uris, is( nullValue() ) );
+    }
+
+    @Test
+    public void serializeCollectionLinks() {
+        HalLinkCollectionTestResource resource = new HalLinkCollectionTestResource();
+        resource.items = Arrays.asList( "/api/1", "/api/2" );
+        resource.uris = new LinkedHashSet<>( Collections.singleton( URI.create( "/api/3" ) ) );
+
+        HalLinkCollectionTestResource deserialized = gson.fromJson( gson.toJson( resource ), HalLinkCollectionTestResource.class );
+        assertThat( gson.toJson( resource ), containsString( "\"items\":[{\"href\":\"/api/1\"" ) );
+        assertThat( deserialized.items, is( equalTo( resource.items ) ) );
+        assertThat( deserialized.uris, is( equalTo( resource.uris ) ) );
+    }
+
+    @Test( expected = ClassCastException.class )
+    public void incompatibleLinkFailsOnCreate() {
+        gson.getAdapter( HalLinkIncompatibleTestResource.class );
+    }
+
     @HalResource class HalLinkStringTestResource { @HalLink public String stringLink; }
+    @HalResource class HalLinkCharSequenceTestResource { @HalLink public CharSequence charSequenceLink; }
+    @HalResource class HalLinkFinalTestResource { @HalLink public final String finalLink = null; }
+    @HalResource class HalLinkIncompatibleTestResource { @HalLink public Integer incompatibleLink; }
     @HalResource class HalLinkUriTestResource { @HalLink public URI uriLink; }
     @HalResource class HalLinkLinkObjectTestResource { @HalLink public HalLinkObject linkObjectLink; }
+    @HalResource class HalLinkCollectionTestResource {
+        @HalLink public List<String> items;
+        @HalLink( optional = true ) public Set<URI> uris;
+        @HalLink( optional = true ) public ArrayList<HalLinkObject> linkObjects;
+    }
     @HalResource class HalLinkMultipleTestResource {
         @HalLink public String foo;
         @HalLink public String bar;
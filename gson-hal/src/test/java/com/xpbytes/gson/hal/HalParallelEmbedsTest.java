@@ -0,0 +1,193 @@
+/**
+ * Copyright 2015 Derk-Jan Karrenbeld
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.xpbytes.gson.hal;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+@RunWith( JUnit4.class )
+public class HalParallelEmbedsTest {
+
+    private ExecutorService executor;
+
+    @Before public void setup() {
+        executor = Executors.newFixedThreadPool( 4 );
+    }
+
+    @After public void teardown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void readInDocumentOrder() {
+        HalPageTestResource page = gson( executor, 10 ).fromJson( page( 1000, 0 ), HalPageTestResource.class );
+
+        assertThat( page.items.size(), is( 1000 ) );
+        for ( int i = 0; i < 1000; i++ ) {
+            HalItemTestResource item = page.items.get( i );
+            assertThat( item.id, is( i ) );
+            assertThat( item.self, is( "/api/items/" + i ) );
+            assertThat( item.owner, is( "/api/owners/" + i ) );
+        }
+        assertThat( page.self, is( "/api/items" ) );
+    }
+
+    @Test
+    public void readSmallArraysSequentially() {
+        CountingExecutor counting = new CountingExecutor( executor );
+        HalPageTestResource page = gson( counting, 100 ).fromJson( page( 100, 0 ), HalPageTestResource.class );
+
+        assertThat( page.items.size(), is( 100 ) );
+        assertThat( counting.executed.get(), is( 0 ) );
+    }
+
+    @Test
+    public void readRejectedChunksOnReadingThread() {
+        Executor rejecting = new Executor() {
+            @Override public void execute( Runnable command ) {
+                throw new RejectedExecutionException();
+            }
+        };
+        HalPageTestResource page = gson( rejecting, 0 ).fromJson( page( 300, 0 ), HalPageTestResource.class );
+
+        assertThat( page.items.size(), is( 300 ) );
+        assertThat( page.items.get( 299 ).id, is( 299 ) );
+    }
+
+    @Test
+    public void readNestedArraysWithSingleWorker() {
+        ExecutorService single = Executors.newSingleThreadExecutor();
+        try {
+            String json = String.format( Locale.US,
+                "{ '_links': { 'self': { 'href': '/api/nested' } }, '_embedded': { 'pages': [ %s, %s, %s ] } }",
+                page( 200, 0 ), page( 200, 200 ), page( 200, 400 ) );
+            HalBookTestResource book = gson( single, 1 ).fromJson( json, HalBookTestResource.class );
+
+            assertThat( book.pages.size(), is( 3 ) );
+            for ( int i = 0; i < 3; i++ ) {
+                assertThat( book.pages.get( i ).items.size(), is( 200 ) );
+                assertThat( book.pages.get( i ).items.get( 199 ).id, is( i * 200 + 199 ) );
+            }
+        } finally {
+            single.shutdownNow();
+        }
+    }
+
+    @Test
+    public void readIntoSet() {
+        HalTaggedTestResource tagged = gson( executor, 2 ).fromJson(
+            "{ '_embedded': { 'items': [ " + items( 0, 300 ) + " ] } }",
+            HalTaggedTestResource.class );
+
+        assertThat( tagged.items.size(), is( 300 ) );
+        int expected = 0;
+        for ( HalItemTestResource item : tagged.items )
+            assertThat( item.id, is( expected++ ) );
+    }
+
+    @Test( expected = JsonParseException.class )
+    public void failOnInvalidItem() {
+        String json = "{ '_links': { 'self': { 'href': '/api/items' } }, '_embedded': { 'items': [ " +
+            items( 0, 500 ) + ", { 'id': 500 } ] } }";
+        gson( executor, 10 ).fromJson( json, HalPageTestResource.class );
+    }
+
+    @Test( expected = IllegalArgumentException.class )
+    public void rejectNegativeThreshold() {
+        new HalTypeAdapterFactory().setParallelEmbeds( executor, -1 );
+    }
+
+    private static Gson gson( Executor executor, int threshold ) {
+        return new GsonBuilder()
+            .registerTypeAdapterFactory( new HalTypeAdapterFactory().setParallelEmbeds( executor, threshold ) )
+            .create();
+    }
+
+    private static String page( int count, int first ) {
+        return "{ '_links': { 'self': { 'href': '/api/items' }, " +
+            "'curies': [ { 'name': 'ex', 'href': 'http://example.com/rels/{rel}', 'templated': true } ] }, " +
+            "'_embedded': { 'items': [ " + items( first, count ) + " ] } }";
+    }
+
+    private static String items( int first, int count ) {
+        StringBuilder items = new StringBuilder();
+        for ( int i = first; i < first + count; i++ ) {
+            if ( i > first )
+                items.append( ", " );
+            items.append( String.format( Locale.US,
+                "{ 'id': %d, '_links': { 'self': { 'href': '/api/items/%d' }, 'ex:owner': { 'href': '/api/owners/%d' } } }",
+                i, i, i ) );
+        }
+        return items.toString();
+    }
+
+    /**
+     * Passes commands on to an executor, counting them
+     */
+    private static final class CountingExecutor implements Executor {
+        final Executor executor;
+        final AtomicInteger executed = new AtomicInteger();
+
+        CountingExecutor( Executor executor ) {
+            this.executor = executor;
+        }
+
+        @Override public void execute( Runnable command ) {
+            executed.incrementAndGet();
+            executor.execute( command );
+        }
+    }
+
+    @HalResource static class HalItemTestResource {
+        int id;
+        @HalLink String self;
+        @HalLink( rel = "http://example.com/rels/owner", optional = true ) String owner;
+    }
+
+    @HalResource static class HalPageTestResource {
+        @HalLink String self;
+        @HalEmbed List<HalItemTestResource> items;
+    }
+
+    @HalResource static class HalBookTestResource {
+        @HalLink String self;
+        @HalEmbed List<HalPageTestResource> pages;
+    }
+
+    @HalResource static class HalTaggedTestResource {
+        @HalEmbed LinkedHashSet<HalItemTestResource> items;
+    }
+}
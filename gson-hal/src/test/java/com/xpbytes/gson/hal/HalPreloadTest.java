@@ -0,0 +1,103 @@
+/**
+ * Copyright 2015 Derk-Jan Karrenbeld
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.xpbytes.gson.hal;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+@RunWith( JUnit4.class )
+public class HalPreloadTest {
+
+    private Gson gson;
+
+    @Before public void setup() {
+        gson = new GsonBuilder()
+            .registerTypeAdapterFactory( new HalTypeAdapterFactory() )
+            .create();
+    }
+
+    @Test
+    public void preloadEmbeddedResources() {
+        HalPreloadReport report = HalTypeAdapterFactory.preload( gson, HalOrderTestResource.class );
+
+        assertThat( report.getResourceTypes(), is( Arrays.<Class<?>>asList(
+            HalOrderTestResource.class,
+            HalCustomerTestResource.class,
+            HalAddressTestResource.class,
+            HalLineTestResource.class ) ) );
+        assertThat( report.getDuration( TimeUnit.NANOSECONDS ) >= 0, is( true ) );
+        assertThat( report.toString(), containsString( "Preloaded 4 HAL resources" ) );
+    }
+
+    @Test
+    public void preloadCachesAdapters() {
+        HalTypeAdapterFactory.preload( gson, HalOrderTestResource.class, HalCustomerTestResource.class );
+
+        assertThat( gson.getAdapter( HalOrderTestResource.class ),
+            is( sameInstance( gson.getAdapter( HalOrderTestResource.class ) ) ) );
+        assertThat( HalTypeAdapterFactory.preload( gson, HalCustomerTestResource.class ).getResourceTypes(),
+            is( Arrays.<Class<?>>asList( HalCustomerTestResource.class, HalAddressTestResource.class ) ) );
+    }
+
+    @Test( expected = IllegalArgumentException.class )
+    public void preloadRequiresResource() {
+        HalTypeAdapterFactory.preload( gson, String.class );
+    }
+
+    @Test
+    public void preloadGeneratedWithoutRegistries() {
+        assertThat( HalTypeAdapterFactory.preloadGenerated( gson, getClass().getClassLoader() )
+            .getResourceTypes().isEmpty(), is( true ) );
+    }
+
+    @HalResource static class HalAddressTestResource {
+        String street;
+        @HalLink String self;
+    }
+
+    @HalResource static class HalCustomerTestResource {
+        String name;
+        @HalLink String self;
+        @HalEmbed( optional = true ) HalAddressTestResource address;
+        @HalEmbed( optional = true ) HalCustomerTestResource referrer;
+    }
+
+    @HalResource static class HalLineTestResource {
+        int quantity;
+        @HalEmbed( optional = true ) HalLazy<HalOrderTestResource> order;
+    }
+
+    @HalResource static class HalOrderTestResource {
+        @HalLink String self;
+        @HalEmbed HalCustomerTestResource customer;
+        @HalEmbed( optional = true ) List<HalLineTestResource> lines;
+    }
+}
@@ -0,0 +1,129 @@
+/**
+ * Copyright 2015 Derk-Jan Karrenbeld
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.xpbytes.gson.hal;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+@RunWith( JUnit4.class )
+public class HalProjectionTest {
+
+    private static final String PAGE = "{ 'total': 2, " +
+        "'_links': { 'self': { 'href': '/api/page/1' }, 'next': { 'href': '/api/page/2' }, 'prev': { 'href': '/api/page/0' } }, " +
+        "'_embedded': { 'items': [ " +
+        "{ 'id': 1, '_links': { 'self': { 'href': '/api/item/1' } }, '_embedded': { 'owner': { 'id': 10 } } }, " +
+        "{ 'id': 2, '_links': { 'self': { 'href': '/api/item/2' } }, '_embedded': { 'owner': { 'id': 20 } } } ] } }";
+
+    private Gson gson;
+
+    @Before public void setup() {
+        gson = new GsonBuilder()
+            .registerTypeAdapterFactory( new HalTypeAdapterFactory() )
+            .create();
+    }
+
+    @Test
+    public void projectLinksOnFactory() {
+        Gson projected = new GsonBuilder()
+            .registerTypeAdapterFactory( new HalTypeAdapterFactory()
+                .setProjection( HalProjection.ALL.withLinks( "self", "next" ).withEmbeds() ) )
+            .create();
+
+        HalPageTestResource page = projected.fromJson( PAGE, HalPageTestResource.class );
+        assertThat( page.total, is( 2 ) );
+        assertThat( page.self, is( "/api/page/1" ) );
+        assertThat( page.next, is( "/api/page/2" ) );
+        assertThat( page.prev, is( nullValue() ) );
+        assertThat( page.items, is( nullValue() ) );
+    }
+
+    @Test
+    public void projectPerCall() {
+        try ( HalProjection.Scope ignored = HalProjection.ALL.withEmbeds().open() ) {
+            HalPageTestResource page = gson.fromJson( PAGE, HalPageTestResource.class );
+            assertThat( page.prev, is( "/api/page/0" ) );
+            assertThat( page.items, is( nullValue() ) );
+        }
+
+        HalPageTestResource page = gson.fromJson( PAGE, HalPageTestResource.class );
+        assertThat( page.items.size(), is( 2 ) );
+        assertThat( page.items.get( 0 ).owner.id, is( 10 ) );
+    }
+
+    @Test
+    public void projectNestedScopes() {
+        try ( HalProjection.Scope ignored = HalProjection.ALL.withEmbeds().open() ) {
+            try ( HalProjection.Scope nested = HalProjection.ALL.open() ) {
+                assertThat( gson.fromJson( PAGE, HalPageTestResource.class ).items, is( notNullValue() ) );
+            }
+            assertThat( gson.fromJson( PAGE, HalPageTestResource.class ).items, is( nullValue() ) );
+        }
+    }
+
+    @Test
+    public void projectMaxEmbedDepth() {
+        try ( HalProjection.Scope ignored = HalProjection.ALL.withMaxEmbedDepth( 1 ).open() ) {
+            HalPageTestResource page = gson.fromJson( PAGE, HalPageTestResource.class );
+            assertThat( page.items.size(), is( 2 ) );
+            assertThat( page.items.get( 1 ).id, is( 2 ) );
+            assertThat( page.items.get( 1 ).self, is( "/api/item/2" ) );
+            assertThat( page.items.get( 1 ).owner, is( nullValue() ) );
+        }
+    }
+
+    @Test
+    public void projectSelectedEmbedsAtEveryDepth() {
+        try ( HalProjection.Scope ignored = HalProjection.ALL.withLinks( "next" ).withEmbeds( "items" ).open() ) {
+            HalPageTestResource page = gson.fromJson( PAGE, HalPageTestResource.class );
+            assertThat( page.self, is( nullValue() ) );
+            assertThat( page.items.get( 0 ).id, is( 1 ) );
+            assertThat( page.items.get( 0 ).self, is( nullValue() ) );
+            assertThat( page.items.get( 0 ).owner, is( nullValue() ) );
+        }
+    }
+
+    @Test( expected = IllegalArgumentException.class )
+    public void negativeMaxEmbedDepthFails() {
+        HalProjection.ALL.withMaxEmbedDepth( -1 );
+    }
+
+    @HalResource class HalOwnerTestResource { public int id; }
+    @HalResource class HalItemTestResource {
+        public int id;
+        @HalLink public String self;
+        @HalEmbed public HalOwnerTestResource owner;
+    }
+    @HalResource class HalPageTestResource {
+        public int total;
+        @HalLink public String self;
+        @HalLink( optional = true ) public String next;
+        @HalLink( optional = true ) public String prev;
+        @HalEmbed public List<HalItemTestResource> items;
+    }
+}
@@ -0,0 +1,77 @@
+/**
+ * Copyright 2015 Derk-Jan Karrenbeld
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.xpbytes.gson.hal;
+
+import com.google.gson.JsonParseException;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The listener and resources the tests of {@link HalPushParser} share
+ */
+final class HalPushParserFixtures {
+
+    private static final Charset UTF_8 = Charset.forName( "UTF-8" );
+
+    private HalPushParserFixtures() {}
+
+    static void feed( HalPushParser<?, ?> parser, String json ) {
+        byte[] bytes = json.getBytes( UTF_8 );
+        parser.feed( bytes, 0, bytes.length );
+    }
+
+    /**
+     * Records everything a parser hands over
+     */
+    static class Recording<T, E> implements HalPushParser.Listener<T, E> {
+        final List<E> items = new ArrayList<>();
+        final List<JsonParseException> errors = new ArrayList<>();
+        T resource;
+        int completions;
+
+        @Override public void onItem( E item ) {
+            items.add( item );
+        }
+
+        @Override public void onComplete( T resource ) {
+            this.resource = resource;
+            completions++;
+        }
+
+        @Override public void onError( JsonParseException error ) {
+            errors.add( error );
+        }
+    }
+
+    @HalResource static class HalItemTestResource {
+        int id;
+        List<String> tags;
+        @HalLink( rel = "http://example.com/rels/owner", optional = true ) String owner;
+    }
+
+    @HalResource static class HalPageTestResource {
+        int total;
+        int page;
+        String title;
+        @HalLink String self;
+        @HalEmbed( optional = true ) List<HalItemTestResource> items;
+        @HalEmbed( optional = true ) HalItemTestResource other;
+        @HalEmbed( optional = true ) HalItemTestResource last;
+    }
+}
@@ -0,0 +1,258 @@
+/**
+ * Copyright 2015 Derk-Jan Karrenbeld
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.xpbytes.gson.hal;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonSyntaxException;
+
+import com.xpbytes.gson.hal.HalPushParserFixtures.HalItemTestResource;
+import com.xpbytes.gson.hal.HalPushParserFixtures.HalPageTestResource;
+import com.xpbytes.gson.hal.HalPushParserFixtures.Recording;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+import static com.xpbytes.gson.hal.HalPushParserFixtures.feed;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.fail;
+
+@RunWith( JUnit4.class )
+public class HalPushParserTest {
+
+    private static final Charset UTF_8 = Charset.forName( "UTF-8" );
+
+    private static final String PAGE = "{ \"total\": 3, \"title\": \"caf\u00e9 \\\"menu\\\"\", " +
+        "\"_links\": { \"self\": { \"href\": \"/api/items\" }, " +
+        "\"curies\": [ { \"name\": \"ex\", \"href\": \"http://example.com/rels/{rel}\", \"templated\": true } ] }, " +
+        "\"_embedded\": { \"other\": { \"id\": 0 }, \"items\": [ " +
+        "{ \"id\": 1, \"_links\": { \"ex:owner\": { \"href\": \"/api/owners/1\" } } }, " +
+        "{ \"id\": 2, \"tags\": [ \"a]\", \"b}\" ] }, null ], \"last\": { \"id\": 3 } }, \"page\": 1 }";
+
+    private Gson gson;
+
+    @Before public void setup() {
+        gson = new GsonBuilder()
+            .registerTypeAdapterFactory( new HalTypeAdapterFactory() )
+            .create();
+    }
+
+    @Test
+    public void parseByteByByte() {
+        Recording<HalPageTestResource, HalItemTestResource> listener = new Recording<>();
+        HalPushParser<HalPageTestResource, HalItemTestResource> parser =
+            HalPushParser.open( gson, HalPageTestResource.class, "items", HalItemTestResource.class, listener );
+
+        byte[] bytes = PAGE.getBytes( UTF_8 );
+        for ( int i = 0; i < bytes.length; i++ )
+            parser.feed( ByteBuffer.wrap( bytes, i, 1 ) );
+        parser.complete();
+
+        assertThat( listener.errors.size(), is( 0 ) );
+        assertThat( listener.items.size(), is( 3 ) );
+        assertThat( listener.items.get( 0 ).id, is( 1 ) );
+        assertThat( listener.items.get( 0 ).owner, is( "/api/owners/1" ) );
+        assertThat( listener.items.get( 1 ).tags.get( 1 ), is( "b}" ) );
+        assertThat( listener.items.get( 2 ), is( nullValue() ) );
+
+        HalPageTestResource page = listener.resource;
+        assertThat( listener.completions, is( 1 ) );
+        assertThat( page.total, is( 3 ) );
+        assertThat( page.page, is( 1 ) );
+        assertThat( page.title, is( "caf\u00e9 \"menu\"" ) );
+        assertThat( page.self, is( "/api/items" ) );
+        assertThat( page.other.id, is( 0 ) );
+        assertThat( page.last.id, is( 3 ) );
+        assertThat( page.items, is( nullValue() ) );
+    }
+
+    @Test
+    public void parseWholeDocument() {
+        Recording<HalPageTestResource, Void> listener = new Recording<>();
+        HalPushParser<HalPageTestResource, Void> parser = HalPushParser.open( gson, HalPageTestResource.class, listener );
+
+        ByteBuffer direct = ByteBuffer.allocateDirect( 1024 );
+        direct.put( PAGE.getBytes( UTF_8 ) ).flip();
+        while ( direct.hasRemaining() ) {
+            ByteBuffer chunk = direct.slice();
+            chunk.limit( Math.min( 7, chunk.remaining() ) );
+            parser.feed( chunk );
+            direct.position( direct.position() + chunk.position() );
+        }
+        parser.complete();
+
+        assertThat( parser.isDone(), is( true ) );
+        assertThat( listener.items.size(), is( 0 ) );
+        assertThat( gson.toJson( listener.resource ), is( gson.toJson( gson.fromJson( PAGE, HalPageTestResource.class ) ) ) );
+        assertThat( listener.resource.items.size(), is( 3 ) );
+    }
+
+    @Test
+    public void handOverItemsAsTheyArrive() {
+        Recording<HalPageTestResource, HalItemTestResource> listener = new Recording<>();
+        HalPushParser<HalPageTestResource, HalItemTestResource> parser =
+            HalPushParser.open( gson, HalPageTestResource.class, "items", HalItemTestResource.class, listener );
+
+        feed( parser, "{ '_links': { 'self': { 'href': '/api/items' } }, '_embedded': { 'items': [ { 'id': 1 }, " );
+        assertThat( listener.items.size(), is( 1 ) );
+        feed( parser, "{ 'id': 2 }" );
+        assertThat( listener.items.size(), is( 2 ) );
+        assertThat( parser.isDone(), is( false ) );
+
+        feed( parser, " ] } }\n" );
+        assertThat( listener.completions, is( 1 ) );
+        assertThat( parser.isDone(), is( true ) );
+    }
+
+    @Test
+    public void parseSingleEmbeddedItem() {
+        Recording<HalPageTestResource, HalItemTestResource> listener = new Recording<>();
+        HalPushParser<HalPageTestResource, HalItemTestResource> parser =
+            HalPushParser.open( gson, HalPageTestResource.class, "items", HalItemTestResource.class, listener );
+
+        feed( parser, "{ '_embedded': { 'items': { 'id': 7 } }, '_links': { 'self': { 'href': '/api/single' } } }" );
+        parser.complete();
+
+        assertThat( listener.items.get( 0 ).id, is( 7 ) );
+        assertThat( listener.resource.self, is( "/api/single" ) );
+    }
+
+    @Test
+    public void parseNullDocument() {
+        Recording<HalPageTestResource, Void> listener = new Recording<>();
+        HalPushParser<HalPageTestResource, Void> parser = HalPushParser.open( gson, HalPageTestResource.class, listener );
+
+        feed( parser, "nu" );
+        feed( parser, "ll" );
+        assertThat( listener.completions, is( 0 ) );
+        parser.complete();
+
+        assertThat( listener.completions, is( 1 ) );
+        assertThat( listener.resource, is( nullValue() ) );
+    }
+
+    @Test
+    public void reportMalformedDocumentOnce() {
+        Recording<HalPageTestResource, Void> listener = new Recording<>();
+        HalPushParser<HalPageTestResource, Void> parser = HalPushParser.open( gson, HalPageTestResource.class, listener );
+
+        feed( parser, "{ 'total': 1 'page': 2 }" );
+        feed( parser, "{ 'total': 1 }" );
+        parser.complete();
+
+        assertThat( listener.errors.size(), is( 1 ) );
+        assertThat( listener.errors.get( 0 ), is( instanceOf( JsonSyntaxException.class ) ) );
+        assertThat( listener.completions, is( 0 ) );
+    }
+
+    @Test
+    public void reportIncompleteDocument() {
+        Recording<HalPageTestResource, Void> listener = new Recording<>();
+        HalPushParser<HalPageTestResource, Void> parser = HalPushParser.open( gson, HalPageTestResource.class, listener );
+
+        feed( parser, "{ '_links': { 'self': { 'href': '/api/items' } }, 'total': " );
+        parser.complete();
+
+        assertThat( listener.errors.size(), is( 1 ) );
+        assertThat( listener.completions, is( 0 ) );
+    }
+
+    @Test
+    public void reportMissingRequiredLink() {
+        Recording<HalPageTestResource, Void> listener = new Recording<>();
+        HalPushParser<HalPageTestResource, Void> parser = HalPushParser.open( gson, HalPageTestResource.class, listener );
+
+        feed( parser, "{ 'total': 1 }" );
+
+        assertThat( listener.errors.size(), is( 1 ) );
+        assertThat( parser.isDone(), is( true ) );
+    }
+
+    @Test
+    public void skipEmbedOutsideProjection() {
+        Recording<HalPageTestResource, HalItemTestResource> listener = new Recording<>();
+        HalPushParser<HalPageTestResource, HalItemTestResource> parser;
+        try ( HalProjection.Scope ignored = HalProjection.ALL.withEmbeds( "other" ).open() ) {
+            parser = HalPushParser.open( gson, HalPageTestResource.class, "items", HalItemTestResource.class, listener );
+        }
+
+        feed( parser, PAGE );
+
+        assertThat( listener.errors.size(), is( 0 ) );
+        assertThat( listener.items.size(), is( 0 ) );
+        assertThat( listener.resource.other.id, is( 0 ) );
+        assertThat( listener.resource.last, is( nullValue() ) );
+    }
+
+    @Test
+    public void skipEmbedBeyondProjectionDepth() {
+        Recording<HalPageTestResource, HalItemTestResource> listener = new Recording<>();
+        HalPushParser<HalPageTestResource, HalItemTestResource> parser;
+        try ( HalProjection.Scope ignored = HalProjection.ALL.withMaxEmbedDepth( 0 ).open() ) {
+            parser = HalPushParser.open( gson, HalPageTestResource.class, "items", HalItemTestResource.class, listener );
+        }
+
+        feed( parser, PAGE );
+
+        assertThat( listener.items.size(), is( 0 ) );
+        assertThat( listener.completions, is( 1 ) );
+    }
+
+    @Test
+    public void rethrowListenerFailure() {
+        final JsonParseException failure = new JsonParseException( "listener" );
+        Recording<HalPageTestResource, HalItemTestResource> listener = new Recording<HalPageTestResource, HalItemTestResource>() {
+            @Override public void onItem( HalItemTestResource item ) {
+                throw failure;
+            }
+        };
+        HalPushParser<HalPageTestResource, HalItemTestResource> parser =
+            HalPushParser.open( gson, HalPageTestResource.class, "items", HalItemTestResource.class, listener );
+
+        try {
+            feed( parser, PAGE );
+            fail( "Expected the failure of the listener" );
+        } catch ( JsonParseException e ) {
+            assertThat( e, is( sameInstance( failure ) ) );
+        }
+        assertThat( listener.errors.size(), is( 0 ) );
+        assertThat( parser.isDone(), is( true ) );
+    }
+
+    @Test( expected = JsonSyntaxException.class )
+    public void failOnTrailingData() {
+        Recording<HalPageTestResource, Void> listener = new Recording<>();
+        HalPushParser<HalPageTestResource, Void> parser = HalPushParser.open( gson, HalPageTestResource.class, listener );
+
+        feed( parser, "{ '_links': { 'self': { 'href': '/api/items' } } } {" );
+    }
+
+    @Test( expected = IllegalArgumentException.class )
+    public void openRequiresResource() {
+        HalPushParser.open( gson, String.class, new Recording<String, Void>() );
+    }
+}
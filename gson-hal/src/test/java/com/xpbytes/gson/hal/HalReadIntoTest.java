@@ -0,0 +1,183 @@
+/**
+ * Copyright 2015 Derk-Jan Karrenbeld
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.xpbytes.gson.hal;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonSyntaxException;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+@RunWith( JUnit4.class )
+public class HalReadIntoTest {
+
+    private static final String FIRST = "{ 'status': 'pending', 'count': 2, " +
+        "'_links': { 'self': { 'href': '/api/orders/1' }, 'next': { 'href': '/api/orders/2' }, " +
+        "'payment': { 'href': '/api/payments/1', 'title': 'Pay' } }, " +
+        "'_embedded': { 'customer': { 'name': 'Ann', '_links': { 'self': { 'href': '/api/customers/7' } } }, " +
+        "'lines': [ { 'sku': 'a' }, { 'sku': 'b' } ], 'tags': [ { 'sku': 'x' } ] } }";
+
+    private Gson gson;
+
+    @Before public void setup() {
+        gson = new GsonBuilder()
+            .registerTypeAdapterFactory( new HalTypeAdapterFactory() )
+            .create();
+    }
+
+    @Test
+    public void readIntoExistingInstances() {
+        HalOrderTestResource order = gson.fromJson( FIRST, HalOrderTestResource.class );
+        HalCustomerTestResource customer = order.customer;
+        HalLinkObject payment = order.payment;
+        List<HalLineTestResource> lines = order.lines;
+        HalLineTestResource firstLine = lines.get( 0 );
+        URI next = order.next;
+
+        String json = FIRST.replace( "pending", "shipped" ).replace( "'Ann'", "'Anne'" ).replace( "'Pay'", "'Paid'" );
+        HalOrderTestResource read = HalTypeAdapterFactory.readInto( gson, json, order );
+
+        assertThat( read, is( sameInstance( order ) ) );
+        assertThat( order.status, is( "shipped" ) );
+        assertThat( order.customer, is( sameInstance( customer ) ) );
+        assertThat( customer.name, is( "Anne" ) );
+        assertThat( order.payment, is( sameInstance( payment ) ) );
+        assertThat( payment.getTitle(), is( "Paid" ) );
+        assertThat( order.lines, is( sameInstance( lines ) ) );
+        assertThat( order.lines.get( 0 ), is( sameInstance( firstLine ) ) );
+        assertThat( order.next, is( sameInstance( next ) ) );
+    }
+
+    @Test
+    public void resizeReusedLists() {
+        HalOrderTestResource order = gson.fromJson( FIRST, HalOrderTestResource.class );
+        List<HalLineTestResource> lines = order.lines;
+        HalLineTestResource firstLine = lines.get( 0 );
+
+        HalTypeAdapterFactory.readInto( gson, FIRST.replace( "{ 'sku': 'b' }", "{ 'sku': 'b' }, { 'sku': 'c' }" ), order );
+        assertThat( order.lines, is( sameInstance( lines ) ) );
+        assertThat( order.lines.get( 0 ), is( sameInstance( firstLine ) ) );
+        assertThat( order.lines.get( 2 ).sku, is( "c" ) );
+
+        HalTypeAdapterFactory.readInto( gson, FIRST.replace( "{ 'sku': 'a' }, { 'sku': 'b' }", "{ 'sku': 'z' }" ), order );
+        assertThat( order.lines.size(), is( 1 ) );
+        assertThat( order.lines.get( 0 ), is( sameInstance( firstLine ) ) );
+        assertThat( firstLine.sku, is( "z" ) );
+    }
+
+    @Test
+    public void refillReusedSets() {
+        HalOrderTestResource order = gson.fromJson( FIRST, HalOrderTestResource.class );
+        LinkedHashSet<HalLineTestResource> tags = order.tags;
+
+        HalTypeAdapterFactory.readInto( gson, FIRST.replace( "{ 'sku': 'x' }", "{ 'sku': 'y' }, { 'sku': 'z' }" ), order );
+        assertThat( order.tags, is( sameInstance( tags ) ) );
+        assertThat( order.tags.size(), is( 2 ) );
+        assertThat( order.tags.iterator().next().sku, is( "y" ) );
+    }
+
+    @Test
+    public void clearAbsentLinksAndEmbeds() {
+        HalOrderTestResource order = gson.fromJson( FIRST, HalOrderTestResource.class );
+
+        String json = "{ '_links': { 'self': { 'href': '/api/orders/1' } }, '_embedded': { 'lines': [] } }";
+        HalTypeAdapterFactory.readInto( gson, json, order );
+
+        assertThat( order.next, is( nullValue() ) );
+        assertThat( order.payment, is( nullValue() ) );
+        assertThat( order.customer, is( nullValue() ) );
+        assertThat( order.tags, is( nullValue() ) );
+        assertThat( order.lines.size(), is( 0 ) );
+
+        // Regular fields that are absent keep their value
+        assertThat( order.status, is( "pending" ) );
+    }
+
+    @Test
+    public void replaceChangedLinks() {
+        HalOrderTestResource order = gson.fromJson( FIRST, HalOrderTestResource.class );
+        URI next = order.next;
+
+        HalTypeAdapterFactory.readInto( gson, FIRST.replace( "/api/orders/2", "/api/orders/3" ), order );
+        assertThat( order.next, is( not( sameInstance( next ) ) ) );
+        assertThat( order.next, is( URI.create( "/api/orders/3" ) ) );
+    }
+
+    @Test
+    public void readIntoMatchesFromJson() {
+        HalOrderTestResource order = gson.fromJson( "{ '_links': { 'self': { 'href': '/api/orders/0' } } }",
+            HalOrderTestResource.class );
+        HalTypeAdapterFactory.readInto( gson, FIRST, order );
+
+        assertThat( gson.toJson( order ), is( gson.toJson( gson.fromJson( FIRST, HalOrderTestResource.class ) ) ) );
+        assertThat( order.lines.size(), is( 2 ) );
+        assertThat( Arrays.asList( order.lines.get( 0 ).sku, order.lines.get( 1 ).sku ), is( Arrays.asList( "a", "b" ) ) );
+    }
+
+    @Test
+    public void readNullDocument() {
+        HalOrderTestResource order = gson.fromJson( FIRST, HalOrderTestResource.class );
+
+        assertThat( HalTypeAdapterFactory.readInto( gson, "null", order ), is( nullValue() ) );
+        assertThat( order.status, is( "pending" ) );
+    }
+
+    @Test( expected = JsonSyntaxException.class )
+    public void failOnTrailingData() {
+        HalOrderTestResource order = gson.fromJson( FIRST, HalOrderTestResource.class );
+        HalTypeAdapterFactory.readInto( gson, FIRST + " {}", order );
+    }
+
+    @Test( expected = IllegalArgumentException.class )
+    public void readIntoRequiresResource() {
+        HalTypeAdapterFactory.readInto( gson, "'text'", "text" );
+    }
+
+    @HalResource static class HalLineTestResource {
+        String sku;
+    }
+
+    @HalResource static class HalCustomerTestResource {
+        String name;
+        @HalLink String self;
+    }
+
+    @HalResource static class HalOrderTestResource {
+        String status;
+        int count;
+        @HalLink String self;
+        @HalLink( optional = true ) URI next;
+        @HalLink( optional = true ) HalLinkObject payment;
+        @HalEmbed( optional = true ) HalCustomerTestResource customer;
+        @HalEmbed( optional = true ) List<HalLineTestResource> lines;
+        @HalEmbed( optional = true ) LinkedHashSet<HalLineTestResource> tags;
+    }
+}
@@ -0,0 +1,94 @@
+/**
+ * Copyright 2015 Derk-Jan Karrenbeld
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.xpbytes.gson.hal;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+@RunWith( JUnit4.class )
+public class HalReflectionTest {
+
+    @Test
+    public void getAllFieldsIncludesSuperclasses() {
+        List<String> names = new ArrayList<>();
+        for ( Field field : HalReflection.getAllFields( HalReflectionTestResource.class ) )
+            names.add( field.getName() );
+
+        assertThat( names.contains( "name" ), is( true ) );
+        assertThat( names.contains( "next" ), is( true ) );
+        assertThat( names.contains( "halSelfReference" ), is( true ) );
+    }
+
+    @Test
+    public void getAllFieldsIsCached() {
+        List<Field> fields = HalReflection.getAllFields( HalReflectionTestResource.class );
+        assertThat( HalReflection.getAllFields( HalReflectionTestResource.class ), is( sameInstance( fields ) ) );
+    }
+
+    @Test( expected = UnsupportedOperationException.class )
+    public void getAllFieldsIsUnmodifiable() {
+        HalReflection.getAllFields( HalReflectionTestResource.class ).clear();
+    }
+
+    @Test
+    public void getAllFieldsConcurrently() throws Exception {
+        final int threads = 16;
+        final CountDownLatch start = new CountDownLatch( 1 );
+        ExecutorService executor = Executors.newFixedThreadPool( threads );
+
+        try {
+            List<Future<List<Field>>> results = new ArrayList<>();
+            for ( int i = 0; i < threads; i++ ) {
+                results.add( executor.submit( new Callable<List<Field>>() {
+                    @Override public List<Field> call() throws Exception {
+                        start.await();
+                        return HalReflection.getAllFields( HalConcurrentTestResource.class );
+                    }
+                } ) );
+            }
+            start.countDown();
+
+            List<Field> expected = HalReflection.getAllFields( HalConcurrentTestResource.class );
+            for ( Future<List<Field>> result : results )
+                assertThat( result.get(), is( sameInstance( expected ) ) );
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @HalResource class HalReflectionTestResource extends HalResourceBase {
+        public String name;
+        @HalLink public String next;
+    }
+    @HalResource class HalConcurrentTestResource {
+        @HalLink public String self;
+    }
+}
@@ -0,0 +1,285 @@
+/**
+ * Copyright 2015 Derk-Jan Karrenbeld
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.xpbytes.gson.hal;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+@RunWith( JUnit4.class )
+public class HalResourceCacheTest {
+
+    private static final String ORDER = "{ 'id': 1, '_links': { 'self': { 'href': '/api/orders/1' }, " +
+        "'customer': { 'href': '/api/customers/7' } }, " +
+        "'_embedded': { 'customer': { 'name': 'Ann', '_links': { 'self': { 'href': '/api/customers/7' } } }, " +
+        "'lines': [ { 'sku': 'a', '_links': { 'self': { 'href': '/api/lines/1' } } }, { 'sku': 'b' } ] } }";
+
+    @Test
+    public void cacheEmbeddedResources() {
+        HalResourceCache cache = new HalResourceCache( 16, HalResourceCache.EvictionPolicy.LRU );
+        Gson gson = gson( cache );
+
+        HalOrderTestResource order = gson.fromJson( ORDER, HalOrderTestResource.class );
+
+        assertThat( cache.size(), is( 2 ) );
+        assertThat( cache.get( order.customerLink, HalCustomerTestResource.class ), is( sameInstance( order.customer ) ) );
+        assertThat( cache.get( URI.create( "/api/lines/1" ), HalLineTestResource.class ), is( sameInstance( order.lines.get( 0 ) ) ) );
+        assertThat( cache.get( "/api/orders/1", HalOrderTestResource.class ), is( nullValue() ) );
+        assertThat( cache.get( "/api/customers/7", HalLineTestResource.class ), is( nullValue() ) );
+        assertThat( cache.getHits(), is( 2L ) );
+        assertThat( cache.getMisses(), is( 2L ) );
+        assertThat( cache.getHitRatio(), is( .5 ) );
+    }
+
+    @Test
+    public void replaceResourceWithSameSelf() {
+        HalResourceCache cache = new HalResourceCache( 16, HalResourceCache.EvictionPolicy.TINY_LFU );
+        Gson gson = gson( cache );
+
+        gson.fromJson( ORDER, HalOrderTestResource.class );
+        HalOrderTestResource order = gson.fromJson( ORDER.replace( "Ann", "Bob" ), HalOrderTestResource.class );
+
+        assertThat( cache.size(), is( 2 ) );
+        assertThat( cache.get( "/api/customers/7", HalCustomerTestResource.class ).name, is( "Bob" ) );
+        assertThat( cache.get( "/api/customers/7", HalCustomerTestResource.class ), is( sameInstance( order.customer ) ) );
+    }
+
+    @Test
+    public void skipProjectedResources() {
+        HalResourceCache cache = new HalResourceCache( 16, HalResourceCache.EvictionPolicy.LRU );
+        Gson gson = gson( cache );
+
+        try ( HalProjection.Scope ignored = HalProjection.ALL.withLinks( "self" ).open() ) {
+            gson.fromJson( ORDER, HalOrderTestResource.class );
+        }
+        assertThat( cache.size(), is( 0 ) );
+    }
+
+    @Test
+    public void neverFindTemplatedLinks() {
+        HalResourceCache cache = new HalResourceCache( 16, HalResourceCache.EvictionPolicy.LRU );
+        cache.put( "/api/customers/{id}", new HalCustomerTestResource() );
+
+        HalLinkObject link = new HalLinkObject( "/api/customers/{id}" );
+        link.setTemplated( true );
+        assertThat( cache.get( link, HalCustomerTestResource.class ), is( nullValue() ) );
+    }
+
+    @Test
+    public void evictLeastRecentlyUsed() {
+        HalResourceCache cache = new HalResourceCache( 2, HalResourceCache.EvictionPolicy.LRU );
+        cache.put( "/a", "a" );
+        cache.put( "/b", "b" );
+        cache.get( "/a", String.class );
+        cache.put( "/c", "c" );
+
+        assertThat( cache.get( "/a", String.class ), is( "a" ) );
+        assertThat( cache.get( "/b", String.class ), is( nullValue() ) );
+        assertThat( cache.get( "/c", String.class ), is( "c" ) );
+        assertThat( cache.getEvictions(), is( 1L ) );
+    }
+
+    @Test
+    public void keepFrequentlyUsedThroughScan() {
+        HalResourceCache lru = new HalResourceCache( 100, HalResourceCache.EvictionPolicy.LRU );
+        HalResourceCache tinyLfu = new HalResourceCache( 100, HalResourceCache.EvictionPolicy.TINY_LFU );
+
+        for ( HalResourceCache cache : new HalResourceCache[] { lru, tinyLfu } ) {
+            for ( int i = 0; i < 50; i++ ) {
+                cache.put( "/hot/" + i, "hot" );
+                for ( int use = 0; use < 3; use++ )
+                    cache.get( "/hot/" + i, String.class );
+            }
+            for ( int i = 0; i < 1000; i++ )
+                cache.put( "/scan/" + i, "scan" );
+        }
+
+        assertThat( hot( lru ), is( 0 ) );
+        // The frequencies are approximate, so a few one-off resources may win against a hot one
+        assertThat( hot( tinyLfu ) >= 45, is( true ) );
+        assertThat( tinyLfu.size(), is( 100 ) );
+        assertThat( tinyLfu.getEvictions(), is( 950L ) );
+    }
+
+    @Test
+    public void expireAfterTimeToLive() {
+        final long[] now = { 0 };
+        HalResourceCache cache = new HalResourceCache( 16, HalResourceCache.EvictionPolicy.LRU )
+            .setTimeToLive( 10, TimeUnit.SECONDS )
+            .setTicker( new HalResourceCache.Ticker() {
+                @Override public long read() {
+                    return now[ 0 ];
+                }
+            } );
+
+        cache.put( "/a", "a" );
+        now[ 0 ] = TimeUnit.SECONDS.toNanos( 9 );
+        assertThat( cache.get( "/a", String.class ), is( "a" ) );
+
+        now[ 0 ] = TimeUnit.SECONDS.toNanos( 10 );
+        assertThat( cache.get( "/a", String.class ), is( nullValue() ) );
+        assertThat( cache.getExpirations(), is( 1L ) );
+        assertThat( cache.size(), is( 0 ) );
+    }
+
+    @Test
+    public void estimateMemory() {
+        HalResourceCache cache = new HalResourceCache( 16, HalResourceCache.EvictionPolicy.LRU );
+        assertThat( cache.getEstimatedBytes(), is( 0L ) );
+
+        cache.put( "/a", "a" );
+        long one = cache.getEstimatedBytes();
+        cache.put( "/b", "b" );
+        assertThat( cache.getEstimatedBytes(), is( 2 * one ) );
+
+        cache.invalidate( "/a" );
+        assertThat( cache.getEstimatedBytes(), is( one ) );
+    }
+
+    @Test
+    public void skipResourcesReadIntoExistingInstances() {
+        HalResourceCache cache = new HalResourceCache( 16, HalResourceCache.EvictionPolicy.LRU );
+        Gson gson = gson( cache );
+
+        HalCustomerTestResource cached = gson.fromJson( ORDER, HalOrderTestResource.class ).customer;
+        HalOrderTestResource polled = new HalOrderTestResource();
+        HalTypeAdapterFactory.readInto( gson, ORDER.replace( "'Ann'", "'Bob'" ), polled );
+        HalTypeAdapterFactory.readInto( gson, ORDER.replace( "'Ann'", "'Eve'" ), polled );
+
+        assertThat( polled.customer.name, is( "Eve" ) );
+        assertThat( cache.get( "/api/customers/7", HalCustomerTestResource.class ), is( sameInstance( cached ) ) );
+        assertThat( cached.name, is( "Ann" ) );
+    }
+
+    @Test
+    public void splitLargeCachesIntoStripes() {
+        assertThat( HalResourceCache.stripeCount( 100, 8 ), is( 1 ) );
+        assertThat( HalResourceCache.stripeCount( 1000, 64 ), is( 2 ) );
+        assertThat( HalResourceCache.stripeCount( 10000, 2 ), is( 8 ) );
+        assertThat( HalResourceCache.stripeCount( 10000, 8 ), is( 32 ) );
+    }
+
+    @Test
+    public void boundStripedCacheByMaximumSize() {
+        HalResourceCache cache = new HalResourceCache( 100, HalResourceCache.EvictionPolicy.LRU, 4 );
+        for ( int i = 0; i < 1000; i++ )
+            cache.put( "/resources/" + i, "resource" );
+
+        assertThat( cache.size() <= 100, is( true ) );
+        assertThat( cache.getEvictions(), is( 1000L - cache.size() ) );
+        assertThat( cache.get( "/resources/999", String.class ), is( "resource" ) );
+
+        cache.invalidate( "/resources/999" );
+        assertThat( cache.get( "/resources/999", String.class ), is( nullValue() ) );
+        assertThat( cache.getHits(), is( 1L ) );
+        assertThat( cache.getMisses(), is( 1L ) );
+
+        cache.clear();
+        assertThat( cache.size(), is( 0 ) );
+        assertThat( cache.getEstimatedBytes(), is( 0L ) );
+    }
+
+    @Test
+    public void shareStripedCacheBetweenThreads() throws Exception {
+        final HalResourceCache cache = new HalResourceCache( 4096, HalResourceCache.EvictionPolicy.TINY_LFU, 8 );
+        final int lookups = 10000;
+        ExecutorService executor = Executors.newFixedThreadPool( 4 );
+        try {
+            List<Future<Integer>> futures = new ArrayList<>();
+            for ( int t = 0; t < 4; t++ ) {
+                final int thread = t;
+                futures.add( executor.submit( new Callable<Integer>() {
+                    @Override public Integer call() {
+                        int found = 0;
+                        for ( int i = 0; i < lookups; i++ ) {
+                            String href = "/resources/" + ( ( i * 7 + thread ) % 2048 );
+                            if ( cache.get( href, String.class ) == null )
+                                cache.put( href, href );
+                            else
+                                found++;
+                        }
+                        return found;
+                    }
+                } ) );
+            }
+
+            long found = 0;
+            for ( Future<Integer> future : futures )
+                found += future.get();
+            assertThat( cache.getHits(), is( found ) );
+            assertThat( cache.getHits() + cache.getMisses(), is( 4L * lookups ) );
+            assertThat( cache.size() <= 4096, is( true ) );
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test( expected = IllegalArgumentException.class )
+    public void requirePositiveSize() {
+        new HalResourceCache( 0, HalResourceCache.EvictionPolicy.LRU );
+    }
+
+    private static int hot( HalResourceCache cache ) {
+        int found = 0;
+        for ( int i = 0; i < 50; i++ ) {
+            if ( cache.get( "/hot/" + i, String.class ) != null )
+                found++;
+        }
+        return found;
+    }
+
+    private static Gson gson( HalResourceCache cache ) {
+        return new GsonBuilder()
+            .registerTypeAdapterFactory( new HalTypeAdapterFactory().setResourceCache( cache ) )
+            .create();
+    }
+
+    @HalResource static class HalCustomerTestResource {
+        String name;
+        @HalLink String self;
+    }
+
+    @HalResource static class HalLineTestResource {
+        String sku;
+        @HalLink( optional = true ) String self;
+    }
+
+    @HalResource static class HalOrderTestResource {
+        int id;
+        @HalLink String self;
+        @HalLink( name = "customer" ) HalLinkObject customerLink;
+        @HalEmbed HalCustomerTestResource customer;
+        @HalEmbed List<HalLineTestResource> lines;
+    }
+}
@@ -0,0 +1,55 @@
+/**
+ * Copyright 2015 Derk-Jan Karrenbeld
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.xpbytes.gson.hal;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.StringReader;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+@RunWith( JUnit4.class )
+public class HalStreamsTest {
+
+    @Test
+    public void captureValueAsWritten() throws Exception {
+        JsonReader in = HalStreams.lenientReader( new StringReader(
+            "[ { 'a': [ 1, 2.50, 1e400, 12345678901234567890 ], 'b': null, 'c': true, 'd': 'x' }, 2 ]" ) );
+        in.beginArray();
+
+        assertThat( HalStreams.capture( in ),
+            is( "{\"a\":[1,2.50,1e400,12345678901234567890],\"b\":null,\"c\":true,\"d\":\"x\"}" ) );
+        assertThat( in.peek(), is( JsonToken.NUMBER ) );
+        assertThat( HalStreams.capture( in ), is( "2" ) );
+    }
+
+    @Test
+    @SuppressWarnings( "deprecation" )
+    public void readTree() throws Exception {
+        JsonElement tree = new JsonParser().parse( "{ 'href': '/api/{id}', 'templated': true }" );
+        assertThat( HalStreams.capture( HalStreams.reader( tree ) ),
+            is( "{\"href\":\"/api/{id}\",\"templated\":true}" ) );
+    }
+}
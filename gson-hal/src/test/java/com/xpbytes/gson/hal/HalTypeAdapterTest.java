@@ -0,0 +1,191 @@
+/**
+ * Copyright 2015 Derk-Jan Karrenbeld
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.xpbytes.gson.hal;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.annotations.SerializedName;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+@RunWith( JUnit4.class )
+public class HalTypeAdapterTest {
+
+    private Gson gson;
+
+    @Before public void setup() {
+        gson = new GsonBuilder()
+            .registerTypeAdapterFactory( new HalTypeAdapterFactory() )
+            .create();
+    }
+
+    @Test
+    public void deserializeMembersInAnyOrder() {
+        String link = "/api/deserializeMembersInAnyOrder";
+        String gsonSerialized = String.format( Locale.US,
+            "{ '_links': { 'self': { 'href': '%s' } }, 'name': 'first', " +
+                "'_embedded': { 'child': { 'baz': 'child', '_links': { 'self': { 'href': '%s' } } } }, " +
+                "'count': 3, 'tags': [ 'a', 'b' ] }", link, link );
+
+        HalStreamingTestResource deserialized = gson.fromJson( gsonSerialized, HalStreamingTestResource.class );
+        assertThat( deserialized, is( notNullValue() ) );
+        assertThat( deserialized.name, is( "first" ) );
+        assertThat( deserialized.count, is( 3 ) );
+        assertThat( deserialized.tags.size(), is( 2 ) );
+        assertThat( deserialized.self, is( link ) );
+        assertThat( deserialized.child.baz, is( "child" ) );
+        assertThat( deserialized.child.self, is( link ) );
+    }
+
+    @Test
+    public void deserializeSkipsUnknownMembers() {
+        String link = "/api/deserializeSkipsUnknownMembers";
+        String gsonSerialized = String.format( Locale.US,
+            "{ 'unknown': { 'nested': [ 1, 2, { 'deep': true } ] }, 'name': 'known', " +
+                "'_links': { 'curies': [ { 'name': 'ea', 'href': '/rels/{rel}', 'templated': true } ], " +
+                "'self': { 'href': '%s' } }, " +
+                "'_embedded': { 'other': { 'foo': 'bar' }, " +
+                "'child': { 'baz': 'child', '_links': { 'self': { 'href': '%s' } } } } }", link, link );
+
+        HalStreamingTestResource deserialized = gson.fromJson( gsonSerialized, HalStreamingTestResource.class );
+        assertThat( deserialized.name, is( "known" ) );
+        assertThat( deserialized.self, is( link ) );
+        assertThat( deserialized.child.self, is( link ) );
+    }
+
+    @Test
+    public void deserializeSerializedNameMembers() {
+        String gsonSerialized = "{ 'renamed_member': 'renamed', " +
+            "'_links': { 'self': { 'href': '/api/renamed' } }, " +
+            "'_embedded': { 'child': { '_links': { 'self': { 'href': '/api/renamed/child' } } } } }";
+
+        HalStreamingTestResource deserialized = gson.fromJson( gsonSerialized, HalStreamingTestResource.class );
+        assertThat( deserialized.renamed, is( "renamed" ) );
+        assertThat( deserialized.name, is( nullValue() ) );
+    }
+
+    @Test
+    public void deserializeNull() {
+        assertThat( gson.fromJson( "null", HalStreamingTestResource.class ), is( nullValue() ) );
+    }
+
+    @Test
+    public void readConsumesOnlyTheResource() throws IOException {
+        String gsonSerialized = "[ { 'name': 'first', " +
+            "'_links': { 'self': { 'href': '/api/first' } }, " +
+            "'_embedded': { 'child': { '_links': { 'self': { 'href': '/api/first/child' } } } } }, " +
+            "'after' ]";
+
+        JsonReader reader = new JsonReader( new StringReader( gsonSerialized ) );
+        reader.setLenient( true );
+        reader.beginArray();
+
+        HalStreamingTestResource deserialized = gson.getAdapter( HalStreamingTestResource.class ).read( reader );
+        assertThat( deserialized.name, is( equalTo( "first" ) ) );
+        assertThat( reader.peek(), is( JsonToken.STRING ) );
+        assertThat( reader.nextString(), is( equalTo( "after" ) ) );
+    }
+
+    @Test
+    public void serializeHalSections() {
+        HalStreamingTestResource resource = new HalStreamingTestResource();
+        resource.name = "first";
+        resource.count = 3;
+        resource.tags = Arrays.asList( "a", "b" );
+        resource.self = "/api/first";
+        resource.child = new SimpleEmbed();
+        resource.child.baz = "child";
+        resource.child.self = "/api/first/child";
+
+        String expected = "{'name':'first','count':3,'tags':['a','b']," +
+            "'_links':{'self':{'href':'/api/first','templated':false}}," +
+            "'_embedded':{'child':{'baz':'child','_links':{'self':{'href':'/api/first/child','templated':false}}}}}";
+        assertThat( gson.toJson( resource ), is( equalTo( expected.replace( '\'', '"' ) ) ) );
+    }
+
+    @Test
+    public void serializeOmitsEmptyRoots() {
+        HalStreamingTestResource resource = new HalStreamingTestResource();
+        resource.name = "empty";
+
+        assertThat( gson.toJson( resource ), is( equalTo( "{\"name\":\"empty\",\"count\":0}" ) ) );
+    }
+
+    @Test
+    public void serializeNull() {
+        assertThat( gson.toJson( null, HalStreamingTestResource.class ), is( equalTo( "null" ) ) );
+    }
+
+    @Test
+    public void serializeRoundTrip() {
+        HalLinkTypesTestResource resource = new HalLinkTypesTestResource();
+        resource.uri = URI.create( "/api/uri" );
+        resource.link = new HalLinkObject( "/api/{id}" );
+        resource.link.setTemplated( true );
+        resource.link.setTitle( "Templated" );
+        resource.renamed = "/api/renamed";
+
+        HalLinkTypesTestResource deserialized = gson.fromJson( gson.toJson( resource ), HalLinkTypesTestResource.class );
+        assertThat( deserialized.uri, is( equalTo( resource.uri ) ) );
+        assertThat( deserialized.link.getHref(), is( equalTo( "/api/{id}" ) ) );
+        assertThat( deserialized.link.isTemplated(), is( true ) );
+        assertThat( deserialized.link.getTitle(), is( equalTo( "Templated" ) ) );
+        assertThat( deserialized.renamed, is( equalTo( "/api/renamed" ) ) );
+    }
+
+    @Test( expected = IllegalArgumentException.class )
+    public void duplicateLinkNamesFailOnCreate() {
+        gson.getAdapter( HalDuplicateLinkTestResource.class );
+    }
+
+    @HalResource class SimpleEmbed { public String baz; @HalLink public String self; }
+    @HalResource class HalStreamingTestResource {
+        public String name;
+        public int count;
+        public List<String> tags;
+        @SerializedName( "renamed_member" ) public String renamed;
+        @HalLink public String self;
+        @HalEmbed public SimpleEmbed child;
+    }
+    @HalResource class HalLinkTypesTestResource {
+        @HalLink public URI uri;
+        @HalLink public HalLinkObject link;
+        @HalLink( name = "ea:renamed" ) public CharSequence renamed;
+    }
+    @HalResource class HalDuplicateLinkTestResource {
+        @HalLink( name = "self" ) public String first;
+        @HalLink( name = "self" ) public String second;
+    }
+}
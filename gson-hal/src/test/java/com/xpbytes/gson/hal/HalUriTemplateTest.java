@@ -0,0 +1,198 @@
+/**
+ * Copyright 2015 Derk-Jan Karrenbeld
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.xpbytes.gson.hal;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+/**
+ * Uses the examples of RFC 6570, section 1.2 and 3.2
+ */
+@RunWith( JUnit4.class )
+public class HalUriTemplateTest {
+
+    private static final Map<String, Object> VARIABLES = new HashMap<>();
+
+    static {
+        Map<String, String> keys = new LinkedHashMap<>();
+        keys.put( "semi", ";" );
+        keys.put( "dot", "." );
+        keys.put( "comma", "," );
+
+        VARIABLES.put( "count", Arrays.asList( "one", "two", "three" ) );
+        VARIABLES.put( "dom", Arrays.asList( "example", "com" ) );
+        VARIABLES.put( "dub", "me/too" );
+        VARIABLES.put( "hello", "Hello World!" );
+        VARIABLES.put( "half", "50%" );
+        VARIABLES.put( "var", "value" );
+        VARIABLES.put( "who", "fred" );
+        VARIABLES.put( "base", "http://example.com/home/" );
+        VARIABLES.put( "path", "/foo/bar" );
+        VARIABLES.put( "list", new String[] { "red", "green", "blue" } );
+        VARIABLES.put( "keys", keys );
+        VARIABLES.put( "v", 6 );
+        VARIABLES.put( "x", 1024 );
+        VARIABLES.put( "y", 768 );
+        VARIABLES.put( "empty", "" );
+        VARIABLES.put( "empty_keys", Collections.emptyMap() );
+    }
+
+    @Test
+    public void expandLevel1() {
+        assertExpands( "{var}", "value" );
+        assertExpands( "{hello}", "Hello%20World%21" );
+        assertExpands( "{half}", "50%25" );
+        assertExpands( "O{empty}X", "OX" );
+        assertExpands( "O{undef}X", "OX" );
+    }
+
+    @Test
+    public void expandLevel2() {
+        assertExpands( "{+var}", "value" );
+        assertExpands( "{+hello}", "Hello%20World!" );
+        assertExpands( "{+half}", "50%25" );
+        assertExpands( "{base}index", "http%3A%2F%2Fexample.com%2Fhome%2Findex" );
+        assertExpands( "{+base}index", "http://example.com/home/index" );
+        assertExpands( "{+path}/here", "/foo/bar/here" );
+        assertExpands( "here?ref={+path}", "here?ref=/foo/bar" );
+        assertExpands( "X{#var}", "X#value" );
+        assertExpands( "X{#hello}", "X#Hello%20World!" );
+    }
+
+    @Test
+    public void expandLevel3() {
+        assertExpands( "map?{x,y}", "map?1024,768" );
+        assertExpands( "{x,hello,y}", "1024,Hello%20World%21,768" );
+        assertExpands( "{+x,hello,y}", "1024,Hello%20World!,768" );
+        assertExpands( "{+path,x}/here", "/foo/bar,1024/here" );
+        assertExpands( "{#x,hello,y}", "#1024,Hello%20World!,768" );
+        assertExpands( "{#path,x}/here", "#/foo/bar,1024/here" );
+        assertExpands( "X{.var}", "X.value" );
+        assertExpands( "X{.x,y}", "X.1024.768" );
+        assertExpands( "{/var}", "/value" );
+        assertExpands( "{/var,x}/here", "/value/1024/here" );
+        assertExpands( "{;x,y}", ";x=1024;y=768" );
+        assertExpands( "{;x,y,empty}", ";x=1024;y=768;empty" );
+        assertExpands( "{?x,y}", "?x=1024&y=768" );
+        assertExpands( "{?x,y,empty}", "?x=1024&y=768&empty=" );
+        assertExpands( "?fixed=yes{&x}", "?fixed=yes&x=1024" );
+        assertExpands( "{&x,y,empty}", "&x=1024&y=768&empty=" );
+    }
+
+    @Test
+    public void expandLevel4() {
+        assertExpands( "{var:3}", "val" );
+        assertExpands( "{var:30}", "value" );
+        assertExpands( "{list}", "red,green,blue" );
+        assertExpands( "{list*}", "red,green,blue" );
+        assertExpands( "{keys}", "semi,%3B,dot,.,comma,%2C" );
+        assertExpands( "{keys*}", "semi=%3B,dot=.,comma=%2C" );
+        assertExpands( "{+path:6}/here", "/foo/b/here" );
+        assertExpands( "{+list}", "red,green,blue" );
+        assertExpands( "{+list*}", "red,green,blue" );
+        assertExpands( "{+keys}", "semi,;,dot,.,comma,," );
+        assertExpands( "{+keys*}", "semi=;,dot=.,comma=," );
+        assertExpands( "{#path:6}/here", "#/foo/b/here" );
+        assertExpands( "{#list}", "#red,green,blue" );
+        assertExpands( "{#list*}", "#red,green,blue" );
+        assertExpands( "{#keys}", "#semi,;,dot,.,comma,," );
+        assertExpands( "{#keys*}", "#semi=;,dot=.,comma=," );
+        assertExpands( "X{.var:3}", "X.val" );
+        assertExpands( "X{.list}", "X.red,green,blue" );
+        assertExpands( "X{.list*}", "X.red.green.blue" );
+        assertExpands( "X{.keys}", "X.semi,%3B,dot,.,comma,%2C" );
+        assertExpands( "X{.keys*}", "X.semi=%3B.dot=..comma=%2C" );
+        assertExpands( "X{.empty_keys}", "X" );
+        assertExpands( "{/var:1,var}", "/v/value" );
+        assertExpands( "{/list}", "/red,green,blue" );
+        assertExpands( "{/list*}", "/red/green/blue" );
+        assertExpands( "{/list*,path:4}", "/red/green/blue/%2Ffoo" );
+        assertExpands( "{/keys}", "/semi,%3B,dot,.,comma,%2C" );
+        assertExpands( "{/keys*}", "/semi=%3B/dot=./comma=%2C" );
+        assertExpands( "{;hello:5}", ";hello=Hello" );
+        assertExpands( "{;list}", ";list=red,green,blue" );
+        assertExpands( "{;list*}", ";list=red;list=green;list=blue" );
+        assertExpands( "{;keys}", ";keys=semi,%3B,dot,.,comma,%2C" );
+        assertExpands( "{;keys*}", ";semi=%3B;dot=.;comma=%2C" );
+        assertExpands( "{?var:3}", "?var=val" );
+        assertExpands( "{?list}", "?list=red,green,blue" );
+        assertExpands( "{?list*}", "?list=red&list=green&list=blue" );
+        assertExpands( "{?keys}", "?keys=semi,%3B,dot,.,comma,%2C" );
+        assertExpands( "{?keys*}", "?semi=%3B&dot=.&comma=%2C" );
+        assertExpands( "{&var:3}", "&var=val" );
+        assertExpands( "{&list}", "&list=red,green,blue" );
+        assertExpands( "{&list*}", "&list=red&list=green&list=blue" );
+        assertExpands( "{&keys}", "&keys=semi,%3B,dot,.,comma,%2C" );
+        assertExpands( "{&keys*}", "&semi=%3B&dot=.&comma=%2C" );
+    }
+
+    @Test
+    public void expandEncodesNonAscii() {
+        Map<String, Object> variables = Collections.<String, Object>singletonMap( "name", "D\u00fcrst \ud83d\ude00" );
+        assertThat( HalUriTemplate.compile( "/users/{name}" ).expand( variables ),
+            is( "/users/D%C3%BCrst%20%F0%9F%98%80" ) );
+        assertThat( HalUriTemplate.compile( "/users/{name:2}" ).expand( variables ), is( "/users/D%C3%BC" ) );
+    }
+
+    @Test
+    public void compileOnce() {
+        HalUriTemplate template = HalUriTemplate.compile( "/orders{?page,size}" );
+        assertThat( HalUriTemplate.compile( "/orders{?page,size}" ), is( sameInstance( template ) ) );
+        assertThat( template.getVariableNames(), is( Arrays.asList( "page", "size" ) ) );
+        assertThat( template.toString(), is( "/orders{?page,size}" ) );
+    }
+
+    @Test( expected = IllegalArgumentException.class )
+    public void compileUnclosedExpression() {
+        HalUriTemplate.compile( "/orders{?page" );
+    }
+
+    @Test( expected = IllegalArgumentException.class )
+    public void compileInvalidPrefix() {
+        HalUriTemplate.compile( "/orders/{id:0}" );
+    }
+
+    @Test( expected = IllegalArgumentException.class )
+    public void compileReservedOperator() {
+        HalUriTemplate.compile( "/orders/{=id}" );
+    }
+
+    @Test
+    public void expandTemplatedLink() {
+        HalLinkObject link = new HalLinkObject( "/orders{?page}" );
+        Map<String, Object> variables = Collections.<String, Object>singletonMap( "page", 2 );
+        assertThat( link.expand( variables ), is( "/orders{?page}" ) );
+
+        link.setTemplated( true );
+        assertThat( link.expand( variables ), is( "/orders?page=2" ) );
+    }
+
+    private static void assertExpands( String template, String expected ) {
+        assertThat( template, HalUriTemplate.compile( template ).expand( VARIABLES ), is( expected ) );
+    }
+}
@@ -88,7 +88,7 @@ public class SampleTest {
         // links
         assertThat( resource.self, is( URI.create( "/api/samples/19f4f735-8a2d-43e4-b70d-a8f9a26fec0c" ) ) );
         assertThat( resource.next.getHref(), is( equalTo( "/api/samples/next/{id}" ) ) );
-        assertThat( resource.next.templated, is( true ) );
+        assertThat( resource.next.isTemplated(), is( true ) );
         assertThat( resource.last, is( equalTo( "/api/samples/last" ) ) );
     }
 